@@ -14,6 +14,8 @@
  */
 package com.gargoylesoftware.css.dom;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import com.gargoylesoftware.css.parser.AbstractLocatable;
@@ -25,6 +27,7 @@ public abstract class AbstractCSSRuleImpl extends AbstractLocatable implements S
 
     private CSSStyleSheetImpl parentStyleSheet_;
     private AbstractCSSRuleImpl parentRule_;
+    private transient volatile LazyRuleSource lazySource_;
 
     /**
      * Ctor.
@@ -78,6 +81,88 @@ public AbstractCSSRuleImpl getParentRule() {
         return parentRule_;
     }
 
+    /**
+     * Makes the content of this rule parsed on first access; used by the parser
+     * to create the skeleton of a style sheet (see
+     * {@link com.gargoylesoftware.css.parser.CSSOMParser#setLazyParsing(boolean)}).
+     *
+     * @param source the source of the content or null
+     */
+    public void setLazySource(final LazyRuleSource source) {
+        lazySource_ = source;
+    }
+
+    /**
+     * @return true if the content of this rule is not parsed so far
+     */
+    public boolean isLazy() {
+        return lazySource_ != null;
+    }
+
+    /**
+     * @return the length of the source text of the content not parsed so far or 0
+     *         if the content is parsed (see {@link #isLazy()})
+     */
+    public int getLazySourceLength() {
+        final LazyRuleSource source = lazySource_;
+        if (source == null) {
+            return 0;
+        }
+        return source.getLength();
+    }
+
+    /**
+     * Parses the content of this rule if not done so far; has to be called
+     * by the subclasses before accessing the content.
+     */
+    protected final void parseLazySource() {
+        if (lazySource_ == null) {
+            return;
+        }
+        synchronized (this) {
+            final LazyRuleSource source = lazySource_;
+            if (source != null) {
+                adopt(source.parse());
+                lazySource_ = null;
+            }
+        }
+    }
+
+    /**
+     * Creates a deep copy of this rule; a rule not parsed so far stays lazy
+     * and uses the same source (see {@link #initCopy(AbstractCSSRuleImpl)}).
+     *
+     * @param parentStyleSheet the parent style sheet of the copy
+     * @param parentRule the parent rule of the copy
+     * @return the copy
+     */
+    protected abstract AbstractCSSRuleImpl copy(CSSStyleSheetImpl parentStyleSheet, AbstractCSSRuleImpl parentRule);
+
+    /**
+     * Initializes the copy of this rule.
+     *
+     * @param copy the copy
+     * @return true if the content has to be copied, false if the copy is lazy
+     */
+    protected final boolean initCopy(final AbstractCSSRuleImpl copy) {
+        copy.setLocator(getLocator());
+        final LazyRuleSource source = lazySource_;
+        if (source != null) {
+            copy.lazySource_ = source;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes over the content of the rule parsed from the lazy source.
+     *
+     * @param rule the parsed rule or null if the source is not a valid rule
+     */
+    protected void adopt(final AbstractCSSRuleImpl rule) {
+        // nothing to take over
+    }
+
     @Override
     public boolean equals(final Object obj) {
         if (this == obj) {
@@ -98,4 +183,10 @@ public int hashCode() {
         // recursive loop -> stack overflow!
         return hash;
     }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        // the subclass fields are written after this
+        parseLazySource();
+        out.defaultWriteObject();
+    }
 }
@@ -19,7 +19,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -52,8 +52,7 @@ public CSSCharsetRuleImpl(
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be a charset rule
             if (r instanceof CSSCharsetRuleImpl) {
@@ -106,6 +105,14 @@ public int hashCode() {
         return hash;
     }
 
+    @Override
+    protected CSSCharsetRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSCharsetRuleImpl copy = new CSSCharsetRuleImpl(parentStyleSheet, parentRule, encoding_);
+        initCopy(copy);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
@@ -19,7 +19,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -51,7 +51,7 @@ public String getCssText() {
         final CSSStyleDeclarationImpl style = getStyle();
         if (null != style) {
             sb.append(style.getCssText());
-            if (style.getProperties().size() > 0) {
+            if (style.getLength() > 0) {
                 sb.append(";");
             }
         }
@@ -65,11 +65,11 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be a font face rule
             if (r instanceof CSSFontFaceRuleImpl) {
+                parseLazySource();
                 style_ = ((CSSFontFaceRuleImpl) r).style_;
             }
             else {
@@ -96,6 +96,7 @@ public void setCssText(final String cssText) throws DOMException {
      * @return the style
      */
     public CSSStyleDeclarationImpl getStyle() {
+        parseLazySource();
         return style_;
     }
 
@@ -104,6 +105,7 @@ public CSSStyleDeclarationImpl getStyle() {
      * @param style the new style
      */
     public void setStyle(final CSSStyleDeclarationImpl style) {
+        parseLazySource();
         style_ = style;
     }
 
@@ -122,11 +124,28 @@ public boolean equals(final Object obj) {
 
     @Override
     public int hashCode() {
+        parseLazySource();
         int hash = super.hashCode();
         hash = LangUtils.hashCode(hash, style_);
         return hash;
     }
 
+    @Override
+    protected void adopt(final AbstractCSSRuleImpl rule) {
+        style_ = CSSStyleDeclarationImpl.adopt(this,
+                rule instanceof CSSFontFaceRuleImpl ? ((CSSFontFaceRuleImpl) rule).style_ : null);
+    }
+
+    @Override
+    protected CSSFontFaceRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSFontFaceRuleImpl copy = new CSSFontFaceRuleImpl(parentStyleSheet, parentRule);
+        if (initCopy(copy)) {
+            copy.style_ = style_ == null ? null : style_.copy(copy);
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
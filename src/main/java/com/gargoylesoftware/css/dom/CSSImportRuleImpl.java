@@ -19,7 +19,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -77,8 +77,7 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be an import rule
             if (r instanceof CSSImportRuleImpl) {
@@ -126,6 +125,15 @@ public CSSStyleSheetImpl getStyleSheet() {
         return getParentStyleSheet();
     }
 
+    @Override
+    protected CSSImportRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSImportRuleImpl copy = new CSSImportRuleImpl(parentStyleSheet, parentRule, href_,
+                media_ == null ? null : media_.copy());
+        initCopy(copy);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
@@ -21,7 +21,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 import com.gargoylesoftware.css.util.ThrowCssExceptionErrorHandler;
 
@@ -72,8 +72,7 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be a media rule
             if (r instanceof CSSMediaRuleImpl) {
@@ -127,10 +126,11 @@ public void insertRule(final String rule, final int index) throws DOMException {
         final CSSStyleSheetImpl parentStyleSheet = getParentStyleSheet();
 
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            parser.setParentStyleSheet(parentStyleSheet);
-            parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
-            final AbstractCSSRuleImpl r = parser.parseRule(rule);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> {
+                parser.setParentStyleSheet(parentStyleSheet);
+                parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
+                return parser.parseRule(rule);
+            });
 
             // Insert the rule into the list of rules
             getCssRules().insert(r, index);
@@ -182,6 +182,17 @@ public void setRuleList(final CSSRuleListImpl rules) {
         cssRules_ = rules;
     }
 
+    @Override
+    protected CSSMediaRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSMediaRuleImpl copy = new CSSMediaRuleImpl(parentStyleSheet, parentRule, null);
+        if (initCopy(copy)) {
+            copy.mediaList_ = mediaList_ == null ? null : mediaList_.copy();
+            copy.cssRules_ = cssRules_ == null ? null : cssRules_.copy(parentStyleSheet, copy);
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
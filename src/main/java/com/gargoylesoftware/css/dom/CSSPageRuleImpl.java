@@ -19,7 +19,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -65,7 +65,7 @@ public String getCssText() {
         final CSSStyleDeclarationImpl style = getStyle();
         if (null != style) {
             sb.append(style.getCssText());
-            if (style.getProperties().size() > 0) {
+            if (style.getLength() > 0) {
                 sb.append("; ");
             }
         }
@@ -79,11 +79,11 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be a page rule
             if (r instanceof CSSPageRuleImpl) {
+                parseLazySource();
                 pseudoPage_ = ((CSSPageRuleImpl) r).pseudoPage_;
                 style_ = ((CSSPageRuleImpl) r).style_;
             }
@@ -111,6 +111,7 @@ public void setCssText(final String cssText) throws DOMException {
      * @return the selector text
      */
     public String getSelectorText() {
+        parseLazySource();
         if (null == pseudoPage_) {
             return "";
         }
@@ -121,6 +122,7 @@ public String getSelectorText() {
      * @return the style
      */
     public CSSStyleDeclarationImpl getStyle() {
+        parseLazySource();
         return style_;
     }
 
@@ -129,6 +131,7 @@ public CSSStyleDeclarationImpl getStyle() {
      * @param style the new style
      */
     public void setStyle(final CSSStyleDeclarationImpl style) {
+        parseLazySource();
         style_ = style;
     }
 
@@ -148,12 +151,35 @@ public boolean equals(final Object obj) {
 
     @Override
     public int hashCode() {
+        parseLazySource();
         int hash = super.hashCode();
         hash = LangUtils.hashCode(hash, pseudoPage_);
         hash = LangUtils.hashCode(hash, style_);
         return hash;
     }
 
+    @Override
+    protected void adopt(final AbstractCSSRuleImpl rule) {
+        if (rule instanceof CSSPageRuleImpl) {
+            pseudoPage_ = ((CSSPageRuleImpl) rule).pseudoPage_;
+            style_ = CSSStyleDeclarationImpl.adopt(this, ((CSSPageRuleImpl) rule).style_);
+        }
+        else {
+            style_ = new CSSStyleDeclarationImpl(this);
+        }
+    }
+
+    @Override
+    protected CSSPageRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSPageRuleImpl copy = new CSSPageRuleImpl(parentStyleSheet, parentRule, null);
+        if (initCopy(copy)) {
+            copy.pseudoPage_ = pseudoPage_;
+            copy.style_ = style_ == null ? null : style_.copy(copy);
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
@@ -67,6 +67,22 @@ public void insert(final AbstractCSSRuleImpl rule, final int index) {
         getRules().add(index, rule);
     }
 
+    /**
+     * Creates a deep copy of this list.
+     *
+     * @param parentStyleSheet the parent style sheet of the copied rules
+     * @param parentRule the parent rule of the copied rules
+     * @return the copy
+     */
+    CSSRuleListImpl copy(final CSSStyleSheetImpl parentStyleSheet, final AbstractCSSRuleImpl parentRule) {
+        final CSSRuleListImpl copy = new CSSRuleListImpl();
+        copy.rules_ = new ArrayList<>(rules_.size());
+        for (final AbstractCSSRuleImpl rule : rules_) {
+            copy.rules_.add(rule.copy(parentStyleSheet, parentRule));
+        }
+        return copy;
+    }
+
     /**
      * Delete the rule at the given pos.
      * @param index the delete pos
@@ -21,7 +21,8 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSErrorHandler;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
+import com.gargoylesoftware.css.parser.LexicalUnit;
 import com.gargoylesoftware.css.util.LangUtils;
 import com.gargoylesoftware.css.util.ThrowCssExceptionErrorHandler;
 
@@ -36,6 +37,8 @@ public class CSSStyleDeclarationImpl implements Serializable {
 
     private AbstractCSSRuleImpl parentRule_;
     private List<Property> properties_ = new ArrayList<>();
+    // the parsed values of the properties if they are shared with other declarations
+    private List<LexicalUnit> sharedValues_;
 
     /**
      * Ctor.
@@ -46,13 +49,100 @@ public CSSStyleDeclarationImpl(final AbstractCSSRuleImpl parentRule) {
         parentRule_ = parentRule;
     }
 
+    /**
+     * Creates a declaration with the properties of the given one.
+     *
+     * @param parentRule the parent rule
+     * @param style the declaration to take the properties from; null for none
+     * @return the new declaration
+     */
+    static CSSStyleDeclarationImpl adopt(final AbstractCSSRuleImpl parentRule, final CSSStyleDeclarationImpl style) {
+        final CSSStyleDeclarationImpl decl = new CSSStyleDeclarationImpl(parentRule);
+        if (style != null) {
+            decl.properties_ = style.properties_;
+            decl.sharedValues_ = style.sharedValues_;
+        }
+        return decl;
+    }
+
+    /**
+     * Creates a deep copy of this declaration.
+     *
+     * @param parentRule the parent rule of the copy
+     * @return the copy
+     */
+    CSSStyleDeclarationImpl copy(final AbstractCSSRuleImpl parentRule) {
+        final CSSStyleDeclarationImpl copy = new CSSStyleDeclarationImpl(parentRule);
+        if (sharedValues_ != null) {
+            // shared properties are never changed
+            copy.properties_ = properties_;
+            copy.sharedValues_ = sharedValues_;
+            return copy;
+        }
+
+        copy.properties_ = new ArrayList<>(properties_.size());
+        for (final Property property : properties_) {
+            if (property == null) {
+                copy.properties_.add(null);
+                continue;
+            }
+            final Property p = new Property(property.getName(),
+                                    CSSValueImpl.copy(property.getValue()), property.isImportant());
+            p.setLocator(property.getLocator());
+            copy.properties_.add(p);
+        }
+        return copy;
+    }
+
     /**
      * @return the properties
      */
     public List<Property> getProperties() {
+        unshare();
         return properties_;
     }
 
+    /**
+     * Lets this declaration use the given properties, parsed once and shared with
+     * other declarations (e.g. by a {@link com.gargoylesoftware.css.parser.StyleDeclarationCache}).
+     * The shared properties are never changed; a private copy is created from the
+     * given (immutable) lexical units before the first modification or before
+     * handing out any of the objects.
+     *
+     * @param properties the shared, unmodifiable properties
+     * @param values the lexical units the values of the properties are created from
+     */
+    public void setSharedProperties(final List<Property> properties, final List<LexicalUnit> values) {
+        properties_ = properties;
+        sharedValues_ = values;
+    }
+
+    /**
+     * @return true if the properties are shared with other declarations
+     * @see #setSharedProperties(List, List)
+     */
+    public boolean isShared() {
+        return sharedValues_ != null;
+    }
+
+    private void unshare() {
+        if (sharedValues_ == null) {
+            return;
+        }
+
+        final List<Property> properties = new ArrayList<>(properties_.size());
+        for (int i = 0; i < properties_.size(); i++) {
+            final Property shared = properties_.get(i);
+            final LexicalUnit value = sharedValues_.get(i);
+            final Property property = new Property(shared.getName(),
+                                        value == null ? null : new CSSValueImpl(value), shared.isImportant());
+            property.setLocator(shared.getLocator());
+            properties.add(property);
+        }
+        properties_ = properties;
+        sharedValues_ = null;
+    }
+
     /**
      * @return the current css text
      */
@@ -88,10 +178,13 @@ public void setCssText(final String cssText) throws DOMException {
      */
     public void setCssText(final String cssText, final CSSErrorHandler cssErrorHandler) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            parser.setErrorHandler(cssErrorHandler);
-            properties_.clear();
-            parser.parseStyleDeclaration(this, cssText);
+            properties_ = new ArrayList<>();
+            sharedValues_ = null;
+            CSSOMParserPool.getDefault().withParser(parser -> {
+                parser.setErrorHandler(cssErrorHandler);
+                parser.parseStyleDeclaration(this, cssText);
+                return null;
+            });
         }
         catch (final Exception e) {
             throw new DOMExceptionImpl(
@@ -106,7 +199,7 @@ public void setCssText(final String cssText, final CSSErrorHandler cssErrorHandl
      * @return the property value
      */
     public String getPropertyValue(final String propertyName) {
-        final Property p = getPropertyDeclaration(propertyName);
+        final Property p = findProperty(propertyName);
         if (p == null || p.getValue() == null) {
             return "";
         }
@@ -118,7 +211,8 @@ public String getPropertyValue(final String propertyName) {
      * @return the property value
      */
     public CSSValueImpl getPropertyCSSValue(final String propertyName) {
-        final Property p = getPropertyDeclaration(propertyName);
+        unshare();
+        final Property p = findProperty(propertyName);
         return (p == null) ? null : p.getValue();
     }
 
@@ -133,6 +227,7 @@ public String removeProperty(final String propertyName) throws DOMException {
         if (null == propertyName) {
             return "";
         }
+        unshare();
         for (int i = 0; i < properties_.size(); i++) {
             final Property p = properties_.get(i);
             if (p != null && propertyName.equalsIgnoreCase(p.getName())) {
@@ -151,7 +246,7 @@ public String removeProperty(final String propertyName) throws DOMException {
      * @return the priority
      */
     public String getPropertyPriority(final String propertyName) {
-        final Property p = getPropertyDeclaration(propertyName);
+        final Property p = findProperty(propertyName);
         if (p == null) {
             return "";
         }
@@ -172,10 +267,10 @@ public void setProperty(
         try {
             CSSValueImpl expr = null;
             if (!value.isEmpty()) {
-                final CSSOMParser parser = new CSSOMParser();
-                expr = parser.parsePropertyValue(value);
+                expr = CSSOMParserPool.getDefault().withParser(parser -> parser.parsePropertyValue(value));
             }
-            Property p = getPropertyDeclaration(propertyName);
+            unshare();
+            Property p = findProperty(propertyName);
             final boolean important = PRIORITY_IMPORTANT.equalsIgnoreCase(priority);
             if (p == null) {
                 p = new Property(propertyName, expr, important);
@@ -216,6 +311,7 @@ public void addProperty(final Property p) {
         if (null == p) {
             return;
         }
+        unshare();
         properties_.add(p);
     }
 
@@ -224,6 +320,11 @@ public void addProperty(final Property p) {
      * @return the property
      */
     public Property getPropertyDeclaration(final String propertyName) {
+        unshare();
+        return findProperty(propertyName);
+    }
+
+    private Property findProperty(final String propertyName) {
         if (null == propertyName) {
             return null;
         }
@@ -19,8 +19,9 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.parser.selector.SelectorListImpl;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -49,6 +50,7 @@ public CSSStyleRuleImpl(final CSSStyleSheetImpl parentStyleSheet,
      * @return all selectors
      */
     public SelectorList getSelectors() {
+        parseLazySource();
         return selectors_;
     }
 
@@ -57,6 +59,7 @@ public SelectorList getSelectors() {
      * @param selectors the new selectors
      */
     public void setSelectors(final SelectorList selectors) {
+        parseLazySource();
         selectors_ = selectors;
     }
 
@@ -65,6 +68,7 @@ public void setSelectors(final SelectorList selectors) {
      */
     @Override
     public String getCssText() {
+        parseLazySource();
         final CSSStyleDeclarationImpl style = getStyle();
         if (null == style) {
             return "";
@@ -86,11 +90,11 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be a style rule
             if (r instanceof CSSStyleRuleImpl) {
+                parseLazySource();
                 selectors_ = ((CSSStyleRuleImpl) r).selectors_;
                 style_ = ((CSSStyleRuleImpl) r).style_;
             }
@@ -118,6 +122,7 @@ public void setCssText(final String cssText) throws DOMException {
      * @return the selector text
      */
     public String getSelectorText() {
+        parseLazySource();
         return selectors_.toString();
     }
 
@@ -128,8 +133,10 @@ public String getSelectorText() {
      */
     public void setSelectorText(final String selectorText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            selectors_ = parser.parseSelectors(selectorText);
+            final SelectorList selectors =
+                    CSSOMParserPool.getDefault().withParser(parser -> parser.parseSelectors(selectorText));
+            parseLazySource();
+            selectors_ = selectors;
         }
         catch (final CSSException e) {
             throw new DOMExceptionImpl(
@@ -149,6 +156,7 @@ public void setSelectorText(final String selectorText) throws DOMException {
      * @return the style
      */
     public CSSStyleDeclarationImpl getStyle() {
+        parseLazySource();
         return style_;
     }
 
@@ -157,9 +165,35 @@ public CSSStyleDeclarationImpl getStyle() {
      * @param style the new style
      */
     public void setStyle(final CSSStyleDeclarationImpl style) {
+        parseLazySource();
         style_ = style;
     }
 
+    @Override
+    protected void adopt(final AbstractCSSRuleImpl rule) {
+        if (rule instanceof CSSStyleRuleImpl) {
+            final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
+            selectors_ = styleRule.selectors_;
+            style_ = CSSStyleDeclarationImpl.adopt(this, styleRule.style_);
+        }
+        else {
+            // an invalid rule matches nothing
+            selectors_ = new SelectorListImpl();
+            style_ = new CSSStyleDeclarationImpl(this);
+        }
+    }
+
+    @Override
+    protected CSSStyleRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSStyleRuleImpl copy = new CSSStyleRuleImpl(parentStyleSheet, parentRule, null);
+        if (initCopy(copy)) {
+            copy.selectors_ = selectors_;
+            copy.style_ = style_ == null ? null : style_.copy(copy);
+        }
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
@@ -181,6 +215,7 @@ public boolean equals(final Object obj) {
 
     @Override
     public int hashCode() {
+        parseLazySource();
         int hash = super.hashCode();
         hash = LangUtils.hashCode(hash, selectors_);
         hash = LangUtils.hashCode(hash, style_);
@@ -25,16 +25,18 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Node;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.parser.media.MediaQuery;
 import com.gargoylesoftware.css.parser.media.MediaQueryList;
 import com.gargoylesoftware.css.parser.selector.ElementSelector;
 import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.util.CssEvents;
 import com.gargoylesoftware.css.util.LangUtils;
 import com.gargoylesoftware.css.util.ThrowCssExceptionErrorHandler;
 
@@ -130,11 +132,30 @@ public CSSRuleListImpl getCssRules() {
      * @throws DOMException in case of error
      */
     public void insertRule(final String rule, final int index) throws DOMException {
+        final Object event = CssEvents.beginInsertRule();
+        if (event == null) {
+            insertRuleInternal(rule, index);
+            return;
+        }
+
+        boolean inserted = false;
+        try {
+            insertRuleInternal(rule, index);
+            inserted = true;
+        }
+        finally {
+            CssEvents.endInsertRule(event, href_, rule == null ? 0 : rule.length(),
+                    getCssRules().getLength(), inserted ? 0 : 1);
+        }
+    }
+
+    private void insertRuleInternal(final String rule, final int index) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            parser.setParentStyleSheet(this);
-            parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
-            final AbstractCSSRuleImpl r = parser.parseRule(rule);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> {
+                parser.setParentStyleSheet(this);
+                parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
+                return parser.parseRule(rule);
+            });
 
             if (r == null) {
                 // this should neven happen because of the ThrowCssExceptionErrorHandler
@@ -266,8 +287,7 @@ public void setMediaText(final String mediaText) {
         }
 
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final MediaQueryList sml = parser.parseMedia(mediaText);
+            final MediaQueryList sml = CSSOMParserPool.getDefault().withParser(parser -> parser.parseMedia(mediaText));
             media_ = new MediaListImpl(sml);
         }
         catch (final IOException e) {
@@ -289,6 +309,19 @@ public void setCssRules(final CSSRuleListImpl rules) {
         cssRules_ = rules;
     }
 
+    /**
+     * Replaces the rules of this style sheet by a deep copy of the given ones,
+     * e.g. the ones cached by a {@link com.gargoylesoftware.css.parser.StyleSheetCache}.
+     * The parent style sheet of the copied rules is this one; changes of the copy
+     * don't affect the given rules and vice versa. Rules not parsed so far (see
+     * {@link AbstractCSSRuleImpl#isLazy()}) stay lazy.
+     *
+     * @param rules the rules to copy
+     */
+    public void copyCssRules(final CSSRuleListImpl rules) {
+        cssRules_ = rules.copy(this, null);
+    }
+
     @Override
     public String toString() {
         return getCssRules().toString();
@@ -360,6 +393,24 @@ public void setRuleIndex(final CSSStyleSheetRuleIndex index) {
         index_ = index;
     }
 
+    /**
+     * Builds a new CSSStyleSheetRuleIndex and sets it; the build is recorded
+     * as rule index build event (see {@link CssEvents}).
+     *
+     * @param builder adds the selectors to the new index
+     * @return the new index
+     */
+    public CSSStyleSheetRuleIndex buildRuleIndex(final Consumer<CSSStyleSheetRuleIndex> builder) {
+        final Object event = CssEvents.beginRuleIndexBuild();
+        final CSSStyleSheetRuleIndex index = new CSSStyleSheetRuleIndex();
+        builder.accept(index);
+        if (event != null) {
+            CssEvents.endRuleIndexBuild(event, href_, index.getEntryCount());
+        }
+        index_ = index;
+        return index;
+    }
+
     /**
      * Clean the index.
      */
@@ -412,6 +463,14 @@ void add(final String key, final SelectorEntry selector) {
                 entry.add(selector);
             }
 
+            int size() {
+                int size = 0;
+                for (final List<SelectorEntry> entries : keyToSelectors_.values()) {
+                    size += entries.size();
+                }
+                return size;
+            }
+
             List<SelectorEntry> get(final String key) {
                 final List<SelectorEntry> entry = keyToSelectors_.get(key);
                 if (entry == null) {
@@ -515,12 +574,32 @@ public List<CSSStyleSheetRuleIndex> getChildren() {
          * @return Iterator of SelectorEntry
          */
         public Iterator<SelectorEntry> getSelectorEntriesIteratorFor(final String elementName, final String[] classes) {
-            return new SelectorEntriesIterator(this, elementName, classes);
+            final Object event = CssEvents.beginRuleIndexLookup();
+            final SelectorEntriesIterator iterator = new SelectorEntriesIterator(this, elementName, classes);
+            if (event != null) {
+                // the lookup only, the iteration is part of the caller's work
+                CssEvents.endRuleIndexLookup(event, elementName, classes == null ? 0 : classes.length,
+                        iterator.entryCount_);
+            }
+            return iterator;
+        }
+
+        /**
+         * @return the number of selector entries, including the ones of the children
+         */
+        int getEntryCount() {
+            int count = elementSelectors_.size() + classSelectors_.size() + otherSelectors_.size();
+            for (final CSSStyleSheetRuleIndex child : children_) {
+                count += child.getEntryCount();
+            }
+            return count;
         }
     }
 
     static final class SelectorEntriesIterator implements Iterator<SelectorEntry> {
         private LinkedList<Iterator<SelectorEntry>> iterators_;
+        // the number of entries found
+        private int entryCount_;
 
         SelectorEntriesIterator(final CSSStyleSheetRuleIndex index,
                 final String elementName,
@@ -530,35 +609,40 @@ static final class SelectorEntriesIterator implements Iterator<SelectorEntry> {
 
             List<SelectorEntry> selectors = index.elementSelectors_.get(null);
             if (!selectors.isEmpty()) {
-                iterators_.add(selectors.iterator());
+                add(selectors);
             }
 
             selectors = index.elementSelectors_.get(elementName);
             if (!selectors.isEmpty()) {
-                iterators_.add(selectors.iterator());
+                add(selectors);
             }
 
             if (classes != null) {
                 for (final String clazz : classes) {
                     selectors = index.classSelectors_.get("." + clazz);
                     if (selectors != null && !selectors.isEmpty()) {
-                        iterators_.add(selectors.iterator());
+                        add(selectors);
                     }
 
                     if (elementName != null) {
                         selectors = index.classSelectors_.get(elementName + "." + clazz);
                         if (selectors != null && !selectors.isEmpty()) {
-                            iterators_.add(selectors.iterator());
+                            add(selectors);
                         }
                     }
                 }
             }
 
             if (index.otherSelectors_ != null && !index.otherSelectors_.isEmpty()) {
-                iterators_.add(index.otherSelectors_.iterator());
+                add(index.otherSelectors_);
             }
         }
 
+        private void add(final List<SelectorEntry> selectors) {
+            iterators_.add(selectors.iterator());
+            entryCount_ += selectors.size();
+        }
+
         @Override
         public SelectorEntry next() {
             if (iterators_.isEmpty()) {
@@ -19,7 +19,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.util.LangUtils;
 
 /**
@@ -62,8 +62,7 @@ public String getCssText() {
     @Override
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final AbstractCSSRuleImpl r = parser.parseRule(cssText);
+            final AbstractCSSRuleImpl r = CSSOMParserPool.getDefault().withParser(parser -> parser.parseRule(cssText));
 
             // The rule must be an unknown rule
             if (r instanceof CSSUnknownRuleImpl) {
@@ -89,6 +88,14 @@ public void setCssText(final String cssText) throws DOMException {
         }
     }
 
+    @Override
+    protected CSSUnknownRuleImpl copy(final CSSStyleSheetImpl parentStyleSheet,
+            final AbstractCSSRuleImpl parentRule) {
+        final CSSUnknownRuleImpl copy = new CSSUnknownRuleImpl(parentStyleSheet, parentRule, text_);
+        initCopy(copy);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getCssText();
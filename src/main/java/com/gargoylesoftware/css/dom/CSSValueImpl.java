@@ -22,7 +22,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.AbstractLocatable;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.parser.LexicalUnit;
 import com.gargoylesoftware.css.parser.LexicalUnit.LexicalUnitType;
 import com.gargoylesoftware.css.parser.LexicalUnitImpl;
@@ -165,9 +165,16 @@ public enum CSSPrimitiveValueType {
     private Object value_;
 
     /**
+     * Returns the value; a {@link LexicalUnitImpl} shared with a
+     * {@link com.gargoylesoftware.css.parser.PropertyValueCache} is replaced
+     * by a private copy first, the caller is free to modify the result.
+     *
      * @return the value
      */
     public Object getValue() {
+        if (value_ instanceof LexicalUnitImpl && ((LexicalUnitImpl) value_).isShared()) {
+            value_ = ((LexicalUnitImpl) value_).copy();
+        }
         return value_;
     }
 
@@ -238,6 +245,52 @@ public CSSValueImpl(final LexicalUnit value) {
         this(value, false);
     }
 
+    /**
+     * Creates a deep copy of the given value; the lexical units are marked as
+     * shared (see {@link LexicalUnitImpl#share()}) and used by both.
+     *
+     * @param value the value to copy or null
+     * @return the copy or null
+     */
+    static CSSValueImpl copy(final CSSValueImpl value) {
+        if (value == null) {
+            return null;
+        }
+
+        final CSSValueImpl copy = new CSSValueImpl(null);
+        copy.setLocator(value.getLocator());
+        final Object v = value.value_;
+        if (v instanceof LexicalUnitImpl) {
+            final LexicalUnitImpl lu = (LexicalUnitImpl) v;
+            if (!lu.isShared()) {
+                lu.share();
+            }
+            copy.value_ = lu;
+        }
+        else if (v instanceof List) {
+            final List<?> list = (List<?>) v;
+            final List<CSSValueImpl> values = new ArrayList<>(list.size());
+            for (final Object o : list) {
+                values.add(copy((CSSValueImpl) o));
+            }
+            copy.value_ = values;
+        }
+        else if (v instanceof RGBColorImpl) {
+            copy.value_ = new RGBColorImpl((RGBColorImpl) v);
+        }
+        else if (v instanceof HSLColorImpl) {
+            copy.value_ = new HSLColorImpl((HSLColorImpl) v);
+        }
+        else if (v instanceof RectImpl) {
+            copy.value_ = new RectImpl((RectImpl) v);
+        }
+        else {
+            // immutable
+            copy.value_ = v;
+        }
+        return copy;
+    }
+
     /**
      * @return the css text
      */
@@ -282,8 +335,8 @@ public String getCssText() {
      */
     public void setCssText(final String cssText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            final CSSValueImpl v2 = parser.parsePropertyValue(cssText);
+            final CSSValueImpl v2 =
+                    CSSOMParserPool.getDefault().withParser(parser -> parser.parsePropertyValue(cssText));
             value_ = v2.value_;
         }
         catch (final Exception e) {
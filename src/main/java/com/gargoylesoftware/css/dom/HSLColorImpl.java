@@ -162,6 +162,19 @@ public HSLColorImpl(final String function, final LexicalUnit lu) throws DOMExcep
         }
     }
 
+    /**
+     * Creates a deep copy of the given color.
+     * @param color the color to copy
+     */
+    HSLColorImpl(final HSLColorImpl color) {
+        function_ = color.function_;
+        commaSeparated_ = color.commaSeparated_;
+        hue_ = CSSValueImpl.copy(color.hue_);
+        saturation_ = CSSValueImpl.copy(color.saturation_);
+        lightness_ = CSSValueImpl.copy(color.lightness_);
+        alpha_ = CSSValueImpl.copy(color.alpha_);
+    }
+
     /**
      * @return the hue part.
      */
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.dom;
+
+/**
+ * The source of a rule whose content is parsed on first access
+ * (see {@link AbstractCSSRuleImpl#setLazySource(LazyRuleSource)}).
+ *
+ * @author Ronald Brill
+ */
+public interface LazyRuleSource {
+
+    /**
+     * Parses the rule. Problems are reported to the error handler of the
+     * parser that created the source.
+     *
+     * @return the parsed rule or null if the source is not a valid rule
+     */
+    AbstractCSSRuleImpl parse();
+
+    /**
+     * @return the length of the source text of the rule
+     */
+    int getLength();
+}
@@ -22,7 +22,7 @@
 import org.w3c.dom.DOMException;
 
 import com.gargoylesoftware.css.parser.AbstractLocatable;
-import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSOMParserPool;
 import com.gargoylesoftware.css.parser.CSSParseException;
 import com.gargoylesoftware.css.parser.media.MediaQuery;
 import com.gargoylesoftware.css.parser.media.MediaQueryList;
@@ -36,21 +36,47 @@
  */
 public class MediaListImpl extends AbstractLocatable implements Serializable {
 
-    private List<MediaQuery> mediaQueries_;
+    private List<MediaQuery> mediaQueries_ = new ArrayList<>();
+    // true if the queries are the ones of an unmodifiable (shared) MediaQueryList
+    private boolean shared_;
 
     /**
-     * Creates new MediaList.
+     * Creates new MediaList. If the given media list is unmodifiable
+     * (see {@link MediaQueryList#makeUnmodifiable()}) the queries are shared
+     * until this list is modified.
      * @param mediaList the media list
      */
     public MediaListImpl(final MediaQueryList mediaList) {
-        mediaQueries_ = new ArrayList<>(10);
-
         setMediaList(mediaList);
         if (mediaList != null) {
             setLocator(mediaList.getLocator());
         }
     }
 
+    /**
+     * Creates a copy of this list; the queries become unmodifiable and are
+     * shared by both lists until one of them is modified.
+     *
+     * @return the copy
+     */
+    MediaListImpl copy() {
+        final MediaListImpl copy = new MediaListImpl(null);
+        copy.setLocator(getLocator());
+        if (shared_) {
+            copy.mediaQueries_ = mediaQueries_;
+            copy.shared_ = true;
+            return copy;
+        }
+
+        final MediaQueryList mediaList = new MediaQueryList();
+        for (final MediaQuery mediaQuery : mediaQueries_) {
+            mediaList.add(mediaQuery);
+        }
+        mediaList.makeUnmodifiable();
+        copy.setMediaList(mediaList);
+        return copy;
+    }
+
     /**
      * @return the media text
      */
@@ -76,9 +102,10 @@ public String getMediaText() {
      */
     public void setMediaText(final String mediaText) throws DOMException {
         try {
-            final CSSOMParser parser = new CSSOMParser();
-            parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
-            final MediaQueryList sml = parser.parseMedia(mediaText);
+            final MediaQueryList sml = CSSOMParserPool.getDefault().withParser(parser -> {
+                parser.setErrorHandler(ThrowCssExceptionErrorHandler.INSTANCE);
+                return parser.parseMedia(mediaText);
+            });
             setMediaList(sml);
         }
         catch (final CSSParseException e) {
@@ -117,20 +144,38 @@ public String toString() {
      * @param media the media queries string to be parsed
      */
     public void setMedia(final List<String> media) {
-        mediaQueries_.clear();
+        mediaQueries_ = new ArrayList<>(media.size());
+        shared_ = false;
         for (final String medium : media) {
             mediaQueries_.add(new MediaQuery(medium));
         }
     }
 
     private void setMediaList(final MediaQueryList mediaList) {
-        if (mediaList != null) {
-            mediaQueries_.addAll(mediaList.getMediaQueries());
+        if (mediaList == null) {
+            return;
+        }
+        if (mediaQueries_.isEmpty() && mediaList.isUnmodifiable()) {
+            mediaQueries_ = mediaList.getMediaQueries();
+            shared_ = true;
+            return;
+        }
+        if (shared_) {
+            mediaQueries_ = new ArrayList<>(mediaQueries_);
+            shared_ = false;
         }
+        mediaQueries_.addAll(mediaList.getMediaQueries());
     }
 
     private boolean equalsMedia(final MediaListImpl ml) {
-        if ((ml == null) || (getLength() != ml.getLength())) {
+        if (ml == null) {
+            return false;
+        }
+        if (shared_ && mediaQueries_ == ml.mediaQueries_) {
+            // the queries of the same canonical list
+            return true;
+        }
+        if (getLength() != ml.getLength()) {
             return false;
         }
 
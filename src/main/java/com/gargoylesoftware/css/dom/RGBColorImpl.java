@@ -163,6 +163,19 @@ public RGBColorImpl(final String function, final LexicalUnit lu) throws DOMExcep
         }
     }
 
+    /**
+     * Creates a deep copy of the given color.
+     * @param color the color to copy
+     */
+    RGBColorImpl(final RGBColorImpl color) {
+        function_ = color.function_;
+        commaSeparated_ = color.commaSeparated_;
+        red_ = CSSValueImpl.copy(color.red_);
+        green_ = CSSValueImpl.copy(color.green_);
+        blue_ = CSSValueImpl.copy(color.blue_);
+        alpha_ = CSSValueImpl.copy(color.alpha_);
+    }
+
     private static CSSValueImpl getPart(final LexicalUnit next) {
         if (LexicalUnitType.PERCENTAGE == next.getLexicalUnitType()
                 || LexicalUnitType.INTEGER == next.getLexicalUnitType()
@@ -115,6 +115,17 @@ public RectImpl(final LexicalUnit lu) throws DOMException {
         }
     }
 
+    /**
+     * Creates a deep copy of the given rect.
+     * @param rect the rect to copy
+     */
+    RectImpl(final RectImpl rect) {
+        top_ = CSSValueImpl.copy(rect.top_);
+        right_ = CSSValueImpl.copy(rect.right_);
+        bottom_ = CSSValueImpl.copy(rect.bottom_);
+        left_ = CSSValueImpl.copy(rect.left_);
+    }
+
     /**
      * @return the top part.
      */
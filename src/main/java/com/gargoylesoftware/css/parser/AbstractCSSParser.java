@@ -15,8 +15,14 @@
 package com.gargoylesoftware.css.parser;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.HashMap;
 
@@ -35,9 +41,30 @@
  * @author Ronald Brill
  */
 public abstract class AbstractCSSParser {
+
+    /** The default max nesting depth of functions and parentheses in a value. */
+    public static final int DEFAULT_MAX_VALUE_NESTING_DEPTH = 128;
+
     private DocumentHandler documentHandler_;
     private CSSErrorHandler errorHandler_;
     private InputSource source_;
+    private boolean positionTracking_ = true;
+    private ParseLimits parseLimits_;
+    // the stream enforcing the limits of the current parse or null
+    private LimitingCharStream limitingStream_;
+    // true if the end handler of the rule exceeding the rule limit has to be skipped
+    private boolean skipEnd_;
+    private int maxValueNestingDepth_ = DEFAULT_MAX_VALUE_NESTING_DEPTH;
+    private int valueNestingDepth_;
+    private int selectorNestingDepth_;
+    private int ruleNestingDepth_;
+    private boolean collectStatistics_;
+    private ParseMetrics parseMetrics_;
+    // the statistics of the current parse or null if no statistics are collected
+    private ParseStatistics statistics_;
+    private StatisticsCharStream statisticsStream_;
+    private long parseStart_;
+    private ParseStatistics lastStatistics_;
 
     private static final HashMap<String, String> parserMessages_ = new HashMap<>();
 
@@ -80,12 +107,22 @@ public abstract class AbstractCSSParser {
         parserMessages_.put("ignoringRule", "Ignoring the whole rule.");
         parserMessages_.put("ignoringFollowingDeclarations", "Ignoring the following declarations in this rule.");
 
+        parserMessages_.put("limitInputLength", "The input is longer than {0} chars.");
+        parserMessages_.put("limitTokens", "The input has more than {0} tokens.");
+        parserMessages_.put("limitRules", "The input has more than {0} rules.");
+        parserMessages_.put("limitNestingDepth", "The nesting depth is greater than {0}.");
+        parserMessages_.put("limitStringLength", "A string or url is longer than {0} chars.");
+        parserMessages_.put("limitTimeout", "The parser did not finish within {0} ms.");
+        parserMessages_.put("limitCancelled", "The parser was cancelled.");
+
+        parserMessages_.put("valueNestingTooDeep", "The nesting depth of the value is greater than {0}.");
+        parserMessages_.put("selectorNestingTooDeep", "The nesting depth of the selector is greater than {0}.");
+        parserMessages_.put("ruleNestingTooDeep", "The nesting depth of the rule is greater than {0}.");
+
         parserMessages_.put("tokenMgrError", "Lexical error.");
         parserMessages_.put("domException", "DOM exception: ''{0}''");
     }
 
-    private static final String NUM_CHARS = "0123456789.";
-
     /**
      * @return the document handler
      */
@@ -145,6 +182,130 @@ public void setErrorHandler(final CSSErrorHandler handler) {
         errorHandler_ = handler;
     }
 
+    /**
+     * @return true if line/column positions are tracked and locators are created
+     */
+    public boolean isPositionTracking() {
+        return positionTracking_;
+    }
+
+    /**
+     * Enables or disables the tracking of line/column positions.
+     *
+     * <p>If disabled, the char stream does not maintain any line/column
+     * information and no locators are created; all the objects
+     * created by the parser will have a null locator and
+     * errors are reported with line and column -1.
+     * This saves time and memory if the positions are never used.</p>
+     *
+     * <p>The default is enabled.</p>
+     *
+     * @param positionTracking the new value
+     */
+    public void setPositionTracking(final boolean positionTracking) {
+        positionTracking_ = positionTracking;
+    }
+
+    /**
+     * @return the limits or null
+     */
+    public ParseLimits getParseLimits() {
+        return parseLimits_;
+    }
+
+    /**
+     * Sets the limits checked while parsing; the parser throws a {@link ParseLimitException}
+     * if one of the limits is exceeded.
+     *
+     * @param parseLimits the limits or null for no limits
+     */
+    public void setParseLimits(final ParseLimits parseLimits) {
+        parseLimits_ = parseLimits;
+    }
+
+    /**
+     * @return the max nesting depth of functions and parentheses in a value, of
+     *         functional pseudo classes in a selector and of nested rules
+     */
+    public int getMaxValueNestingDepth() {
+        return maxValueNestingDepth_;
+    }
+
+    /**
+     * Sets the max nesting depth of functions and parentheses in a value. The values
+     * are parsed recursively; a declaration with a deeper nested value is reported as
+     * error and ignored to keep the stack bounded. The same limit applies to the
+     * functional pseudo classes like <code>:not()</code> of a selector and to nested
+     * rules like <code>@media</code>; the rule containing them is ignored. The default is
+     * {@link #DEFAULT_MAX_VALUE_NESTING_DEPTH}.
+     *
+     * @param maxValueNestingDepth the new value
+     */
+    public void setMaxValueNestingDepth(final int maxValueNestingDepth) {
+        if (maxValueNestingDepth < 1) {
+            throw new IllegalArgumentException("depth must be positive (" + maxValueNestingDepth + ")");
+        }
+        maxValueNestingDepth_ = maxValueNestingDepth;
+    }
+
+    /**
+     * @return true if statistics are collected
+     */
+    public boolean isCollectStatistics() {
+        return collectStatistics_;
+    }
+
+    /**
+     * Enables or disables the collection of {@link ParseStatistics}; the statistics
+     * of the last parse are available from {@link #getStatistics()}. Statistics are
+     * collected also if a {@link ParseMetrics} sink is set.
+     *
+     * <p>The default is disabled; in this case no statistics related wrappers
+     * are used.</p>
+     *
+     * @param collectStatistics the new value
+     */
+    public void setCollectStatistics(final boolean collectStatistics) {
+        collectStatistics_ = collectStatistics;
+    }
+
+    /**
+     * @return the metrics sink or null
+     */
+    public ParseMetrics getParseMetrics() {
+        return parseMetrics_;
+    }
+
+    /**
+     * Sets the sink the statistics are reported to at the end of every parse.
+     *
+     * @param parseMetrics the sink or null
+     */
+    public void setParseMetrics(final ParseMetrics parseMetrics) {
+        parseMetrics_ = parseMetrics;
+    }
+
+    /**
+     * @return the statistics of the last parse or null if no statistics were collected
+     */
+    public ParseStatistics getStatistics() {
+        return lastStatistics_;
+    }
+
+    /**
+     * Drops all references to the last input and its results, e.g. the char
+     * sequence or the mapped bytes of the source; called before an idle parser
+     * is kept for later use.
+     */
+    void releaseInput() {
+        source_ = null;
+        ReInit(null);
+        limitingStream_ = null;
+        statisticsStream_ = null;
+        statistics_ = null;
+        lastStatistics_ = null;
+    }
+
     /**
      * @return the input source
      */
@@ -167,9 +328,12 @@ protected String getParserMessage(final String key) {
     /**
      * Returns a new locator for the given token.
      * @param t the token to generate the locator for
-     * @return a new locator
+     * @return a new locator or null if position tracking is disabled
      */
     protected Locator createLocator(final Token t) {
+        if (!positionTracking_) {
+            return null;
+        }
         return new Locator(getInputSource().getURI(),
             t == null ? 0 : t.beginLine,
             t == null ? 0 : t.beginColumn);
@@ -181,6 +345,10 @@ protected Locator createLocator(final Token t) {
      * @return a new string with the escaped values
      */
     protected String addEscapes(final String str) {
+        return escape(str);
+    }
+
+    private static String escape(final String str) {
         final StringBuilder sb = new StringBuilder();
         char ch;
         for (int i = 0; i < str.length(); i++) {
@@ -227,52 +395,37 @@ protected String addEscapes(final String str) {
     }
 
     /**
+     * The message is created on demand, the exception has no stack trace.
      *
      * @param key the message lookup key
      * @param e the parse exception
      * @return a new CSSParseException
      */
     protected CSSParseException toCSSParseException(final String key, final ParseException e) {
-        final String messagePattern1 = getParserMessage("invalidExpectingOne");
-        final String messagePattern2 = getParserMessage("invalidExpectingMore");
         int maxSize = 0;
-        final StringBuilder expected = new StringBuilder();
-        for (int i = 0; i < e.expectedTokenSequences.length; i++) {
-            if (maxSize < e.expectedTokenSequences[i].length) {
-                maxSize = e.expectedTokenSequences[i].length;
-            }
-            for (int j = 0; j < e.expectedTokenSequences[i].length; j++) {
-                expected.append(e.tokenImage[e.expectedTokenSequences[i][j]]);
-            }
-            if (i < e.expectedTokenSequences.length - 1) {
-                expected.append(", ");
+        for (final int[] sequence : e.expectedTokenSequences) {
+            if (maxSize < sequence.length) {
+                maxSize = sequence.length;
             }
         }
-        final StringBuilder invalid = new StringBuilder();
+        // keep the images only, the tokens reference the rest of the token stream
+        final String[] invalid = new String[maxSize];
         Token tok = e.currentToken.next;
-        for (int i = 0; i < maxSize; i++) {
-            if (i != 0) {
-                invalid.append(" ");
-            }
+        for (int i = 0; i < maxSize && tok != null; i++) {
             if (tok.kind == 0) {
-                invalid.append(e.tokenImage[0]);
+                invalid[i] = e.tokenImage[0];
                 break;
             }
-            invalid.append(addEscapes(tok.image));
+            invalid[i] = tok.image;
             tok = tok.next;
         }
-        final StringBuilder message = new StringBuilder(getParserMessage(key));
-        message.append(" (");
-        if (e.expectedTokenSequences.length == 1) {
-            message.append(MessageFormat.format(messagePattern1, new Object[] {invalid, expected}));
-        }
-        else {
-            message.append(MessageFormat.format(messagePattern2, new Object[] {invalid, expected}));
-        }
-        message.append(")");
-        return new CSSParseException(message.toString(),
-            getInputSource().getURI(), e.currentToken.next.beginLine,
-            e.currentToken.next.beginColumn);
+
+        final String pattern = e.expectedTokenSequences.length == 1
+                ? getParserMessage("invalidExpectingOne")
+                : getParserMessage("invalidExpectingMore");
+        return new ParserProblem(getInputSource().getURI(),
+                e.currentToken.next.beginLine, e.currentToken.next.beginColumn,
+                key, getParserMessage(key), pattern, invalid, e.expectedTokenSequences, e.tokenImage);
     }
 
     /**
@@ -302,8 +455,7 @@ protected CSSParseException toCSSParseException(final TokenMgrError e) {
      */
     protected CSSParseException toCSSParseException(final String messageKey,
             final Object[] msgParams, final Locator locator) {
-        final String messagePattern = getParserMessage(messageKey);
-        return new CSSParseException(MessageFormat.format(messagePattern, msgParams), locator);
+        return new ParserProblem(locator, messageKey, getParserMessage(messageKey), msgParams);
     }
 
     /**
@@ -312,7 +464,8 @@ protected CSSParseException toCSSParseException(final String messageKey,
      * @return a new CSSParseException
      */
     protected CSSParseException createSkipWarning(final String messageKey, final CSSParseException e) {
-        return new CSSParseException(getParserMessage(messageKey), e.getURI(), e.getLineNumber(), e.getColumnNumber());
+        return new ParserProblem(e.getURI(), e.getLineNumber(), e.getColumnNumber(),
+                messageKey, getParserMessage(messageKey), null, null, null, null);
     }
 
     /**
@@ -340,10 +493,23 @@ protected CSSParseException createSkipWarning(final String messageKey, final CSS
      * @see #setErrorHandler
      */
     public void parseStyleSheet(final InputSource source) throws IOException {
+        parseStyleSheetPart(source);
+    }
+
+    /**
+     * Parses a style sheet or a part of a style sheet.
+     *
+     * @param source the source
+     * @return false if the parser gave up before the end of the source
+     * @throws IOException in case of error
+     * @see #parseStyleSheet(InputSource)
+     */
+    boolean parseStyleSheetPart(final InputSource source) throws IOException {
         source_ = source;
         ReInit(getCharStream(source));
         try {
             styleSheet();
+            return true;
         }
         catch (final ParseException e) {
             getErrorHandler().error(toCSSParseException("invalidStyleSheet", e));
@@ -354,6 +520,13 @@ public void parseStyleSheet(final InputSource source) throws IOException {
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
+        return false;
     }
 
     /**
@@ -381,6 +554,12 @@ public void parseStyleDeclaration(final InputSource source) throws IOException {
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
     }
 
     /**
@@ -408,6 +587,12 @@ public void parseRule(final InputSource source) throws IOException {
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
     }
 
     /**
@@ -437,6 +622,12 @@ public SelectorList parseSelectors(final InputSource source) throws IOException
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
         return sl;
     }
 
@@ -457,6 +648,9 @@ public LexicalUnit parsePropertyValue(final InputSource source) throws IOExcepti
         LexicalUnit lu = null;
         try {
             lu = expr();
+            if (statistics_ != null) {
+                statistics_.addLexicalUnits(lu);
+            }
         }
         catch (final ParseException e) {
             getErrorHandler().error(toCSSParseException("invalidExpr", e));
@@ -467,6 +661,12 @@ public LexicalUnit parsePropertyValue(final InputSource source) throws IOExcepti
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
         return lu;
     }
 
@@ -497,6 +697,12 @@ public boolean parsePriority(final InputSource source) throws IOException {
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
         return b;
     }
 
@@ -522,20 +728,237 @@ public MediaQueryList parseMedia(final InputSource source) throws IOException {
         catch (final CSSParseException e) {
             getErrorHandler().error(e);
         }
+        catch (final LimitingCharStream.Exceeded e) {
+            throw toParseLimitException(e);
+        }
+        finally {
+            endParse();
+        }
         return ml;
     }
 
-    private static CharStream getCharStream(final InputSource source) throws IOException {
+    private CharStream getCharStream(final InputSource source) throws IOException {
+        limitingStream_ = null;
+        skipEnd_ = false;
+        valueNestingDepth_ = 0;
+        selectorNestingDepth_ = 0;
+        ruleNestingDepth_ = 0;
+        lastStatistics_ = null;
+        if (errorHandler_ instanceof StatisticsErrorHandler) {
+            errorHandler_ = ((StatisticsErrorHandler) errorHandler_).handler_;
+        }
+
+        ParseStatistics statistics = null;
+        if (collectStatistics_ || parseMetrics_ != null) {
+            parseStart_ = System.nanoTime();
+            statistics = new ParseStatistics();
+        }
+        statistics_ = statistics;
+        statisticsStream_ = null;
+
+        final CharStream stream = createCharStream(source, statistics);
+        if (stream == null) {
+            return null;
+        }
+        stream.setTrackLineColumn(positionTracking_);
+
+        CharStream result = stream;
+        final ParseLimits limits = parseLimits_;
+        if (limits != null) {
+            final long knownLength = source.getCharSequence() == null ? -1 : source.getCharSequenceLength();
+            limitingStream_ = new LimitingCharStream(stream, limits, knownLength);
+            result = limitingStream_;
+        }
+        if (statistics != null) {
+            statisticsStream_ = new StatisticsCharStream(result, stream, statistics);
+            result = statisticsStream_;
+            errorHandler_ = new StatisticsErrorHandler(getErrorHandler(), statistics);
+        }
+        return result;
+    }
+
+    /**
+     * Completes the statistics of the current parse and reports them.
+     */
+    private void endParse() {
+        final ParseStatistics statistics = statistics_;
+        if (statistics == null) {
+            return;
+        }
+        statistics_ = null;
+
+        if (statisticsStream_ != null) {
+            statisticsStream_.finish();
+            statisticsStream_ = null;
+        }
+        if (errorHandler_ instanceof StatisticsErrorHandler) {
+            errorHandler_ = ((StatisticsErrorHandler) errorHandler_).handler_;
+        }
+        statistics.setTotalNanos(System.nanoTime() - parseStart_);
+        lastStatistics_ = statistics;
+
+        final ParseMetrics metrics = parseMetrics_;
+        if (metrics != null) {
+            statistics.reportTo(metrics);
+        }
+    }
+
+    /**
+     * @param type the type of the rule reported or null
+     * @return the start time of the document handler call if statistics are collected
+     */
+    private long startBuild(final ParseFilter.RuleType type) {
+        final ParseStatistics statistics = statistics_;
+        if (statistics == null) {
+            return 0;
+        }
+        if (type != null) {
+            statistics.addRule(type);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * @param start the start time of the document handler call
+     */
+    private void endBuild(final long start) {
+        final ParseStatistics statistics = statistics_;
+        if (statistics != null) {
+            statistics.addBuildNanos(System.nanoTime() - start);
+        }
+    }
+
+    private ParseLimitException toParseLimitException(final LimitingCharStream.Exceeded e) {
+        final String key;
+        switch (e.getLimit()) {
+            case INPUT_LENGTH:
+                key = "limitInputLength";
+                break;
+            case TOKENS:
+                key = "limitTokens";
+                break;
+            case RULES:
+                key = "limitRules";
+                break;
+            case NESTING_DEPTH:
+                key = "limitNestingDepth";
+                break;
+            case STRING_LENGTH:
+                key = "limitStringLength";
+                break;
+            case TIMEOUT:
+                key = "limitTimeout";
+                break;
+            default:
+                key = "limitCancelled";
+                break;
+        }
+        final String message = MessageFormat.format(getParserMessage(key), Long.toString(e.getValue()));
+        final String uri = getInputSource() == null ? null : getInputSource().getURI();
+        return new ParseLimitException(e.getLimit(), message, uri, e.getLine(), e.getColumn());
+    }
+
+    /**
+     * Counts a rule if limits are set.
+     *
+     * @param block true if the rule has an end handler
+     */
+    private void countRule(final boolean block) {
+        final LimitingCharStream stream = limitingStream_;
+        if (stream != null && !stream.rule()) {
+            // the parsers call the end handler of a started rule in any case
+            skipEnd_ = block;
+            throw stream.exceeded(ParseLimits.Limit.RULES);
+        }
+    }
+
+    /**
+     * @return true if the end handler has to be skipped because the rule was not started
+     */
+    private boolean skipEnd() {
+        if (skipEnd_) {
+            skipEnd_ = false;
+            return true;
+        }
+        return false;
+    }
+
+    private static CharStream createCharStream(final InputSource source,
+            final ParseStatistics statistics) throws IOException {
+        if (source.getCharSequence() != null) {
+            return new CssCharSequenceStream(source.getCharSequence(),
+                    source.getCharSequenceOffset(), source.getCharSequenceLength(),
+                    source.getStartLine(), source.getStartColumn());
+        }
         if (source.getReader() != null) {
             return new CssCharStream(source.getReader(), 1, 1);
         }
+        if (source.getBytes() != null) {
+            return createCharStream(source.getBytes().duplicate(), null, source.getEncoding(), statistics);
+        }
+        if (source.getByteStream() != null) {
+            return createCharStream(count(source.getByteStream(), statistics), source.getEncoding());
+        }
+        if (source.getFile() != null) {
+            return createCharStream(ByteBufferReader.map(source.getFile()), source.getCharset(),
+                    source.getEncoding(), statistics);
+        }
         if (source.getURI() != null) {
-            final InputStreamReader reader = new InputStreamReader(new URL(source.getURI()).openStream());
-            return new CssCharStream(reader, 1, 1);
+            return createCharStream(count(new URL(source.getURI()).openStream(), statistics), source.getEncoding());
         }
         return null;
     }
 
+    private static InputStream count(final InputStream stream, final ParseStatistics statistics) {
+        if (statistics == null) {
+            return stream;
+        }
+        return new CountingInputStream(stream, statistics);
+    }
+
+    private static CharStream createCharStream(final ByteBuffer bytes, final Charset charset,
+            final String protocolEncoding, final ParseStatistics statistics) {
+        if (statistics != null) {
+            statistics.addBytesRead(bytes.remaining());
+        }
+
+        Charset cs = charset;
+        if (cs == null) {
+            cs = EncodingSniffer.sniff(bytes, protocolEncoding);
+        }
+        if (StandardCharsets.UTF_8.equals(cs)) {
+            return new CssUtf8Stream(bytes, 1, 1);
+        }
+        return new CssCharStream(new ByteBufferReader(bytes, cs), 1, 1);
+    }
+
+    private static CharStream createCharStream(final InputStream stream,
+            final String protocolEncoding) throws IOException {
+        // sniff the encoding from the first bytes; the prefix is part
+        // of the decoded input afterwards, nothing is read twice
+        final byte[] prefix = new byte[EncodingSniffer.PREFIX_LENGTH];
+        int length = 0;
+        int read = 0;
+        while (length < prefix.length && read != -1) {
+            read = stream.read(prefix, length, prefix.length - length);
+            if (read > 0) {
+                length += read;
+            }
+        }
+
+        final ByteBuffer prefixBytes = ByteBuffer.wrap(prefix, 0, length);
+        if (read == -1) {
+            // the whole input fits into the prefix
+            stream.close();
+            return createCharStream(prefixBytes, null, protocolEncoding, null);
+        }
+
+        final Charset charset = EncodingSniffer.sniff(prefixBytes, protocolEncoding);
+        final InputStream in = new SequenceInputStream(
+                new ByteArrayInputStream(prefix, prefixBytes.position(), prefixBytes.remaining()), stream);
+        return new CssCharStream(new PooledDecoderReader(in, CharsetDecoderPool.acquire(charset)), 1, 1);
+    }
+
     /**
      * @return a string about which CSS language is supported by this
      * parser. For CSS Level 1, it returns "http://www.w3.org/TR/REC-CSS1", for
@@ -609,14 +1032,18 @@ private static CharStream getCharStream(final InputSource source) throws IOExcep
      * start document handler.
      */
     protected void handleStartDocument() {
+        final long start = startBuild(null);
         getDocumentHandler().startDocument(getInputSource());
+        endBuild(start);
     }
 
     /**
      * end document handler.
      */
     protected void handleEndDocument() {
+        final long start = startBuild(null);
         getDocumentHandler().endDocument(getInputSource());
+        endBuild(start);
     }
 
     /**
@@ -626,7 +1053,10 @@ protected void handleEndDocument() {
      * @param locator the locator
      */
     protected void handleIgnorableAtRule(final String s, final Locator locator) {
+        countRule(false);
+        final long start = startBuild(ParseFilter.RuleType.UNKNOWN);
         getDocumentHandler().ignorableAtRule(s, locator);
+        endBuild(start);
     }
 
     /**
@@ -636,7 +1066,10 @@ protected void handleIgnorableAtRule(final String s, final Locator locator) {
      * @param locator the locator
      */
     protected void handleCharset(final String characterEncoding, final Locator locator) {
+        countRule(false);
+        final long start = startBuild(ParseFilter.RuleType.CHARSET);
         getDocumentHandler().charset(characterEncoding, locator);
+        endBuild(start);
     }
 
     /**
@@ -649,7 +1082,10 @@ protected void handleCharset(final String characterEncoding, final Locator locat
      */
     protected void handleImportStyle(final String uri, final MediaQueryList media,
             final String defaultNamespaceURI, final Locator locator) {
+        countRule(false);
+        final long start = startBuild(ParseFilter.RuleType.IMPORT);
         getDocumentHandler().importStyle(uri, media, defaultNamespaceURI, locator);
+        endBuild(start);
     }
 
     /**
@@ -659,7 +1095,10 @@ protected void handleImportStyle(final String uri, final MediaQueryList media,
      * @param locator the locator
      */
     protected void handleStartMedia(final MediaQueryList media, final Locator locator) {
+        countRule(true);
+        final long start = startBuild(ParseFilter.RuleType.MEDIA);
         getDocumentHandler().startMedia(media, locator);
+        endBuild(start);
     }
 
     /**
@@ -668,7 +1107,12 @@ protected void handleStartMedia(final MediaQueryList media, final Locator locato
      * @param media the media query list
      */
     protected void handleEndMedia(final MediaQueryList media) {
+        if (skipEnd()) {
+            return;
+        }
+        final long start = startBuild(null);
         getDocumentHandler().endMedia(media);
+        endBuild(start);
     }
 
     /**
@@ -679,7 +1123,10 @@ protected void handleEndMedia(final MediaQueryList media) {
      * @param locator the locator
      */
     protected void handleStartPage(final String name, final String pseudoPage, final Locator locator) {
+        countRule(true);
+        final long start = startBuild(ParseFilter.RuleType.PAGE);
         getDocumentHandler().startPage(name, pseudoPage, locator);
+        endBuild(start);
     }
 
     /**
@@ -689,7 +1136,12 @@ protected void handleStartPage(final String name, final String pseudoPage, final
      * @param pseudoPage the pseudo page
      */
     protected void handleEndPage(final String name, final String pseudoPage) {
+        if (skipEnd()) {
+            return;
+        }
+        final long start = startBuild(null);
         getDocumentHandler().endPage(name, pseudoPage);
+        endBuild(start);
     }
 
     /**
@@ -698,14 +1150,22 @@ protected void handleEndPage(final String name, final String pseudoPage) {
      * @param locator the locator
      */
     protected void handleStartFontFace(final Locator locator) {
+        countRule(true);
+        final long start = startBuild(ParseFilter.RuleType.FONT_FACE);
         getDocumentHandler().startFontFace(locator);
+        endBuild(start);
     }
 
     /**
      * end font face handler.
      */
     protected void handleEndFontFace() {
+        if (skipEnd()) {
+            return;
+        }
+        final long start = startBuild(null);
         getDocumentHandler().endFontFace();
+        endBuild(start);
     }
 
     /**
@@ -715,7 +1175,13 @@ protected void handleEndFontFace() {
      * @param locator the locator
      */
     protected void handleStartSelector(final SelectorList selectors, final Locator locator) {
+        countRule(true);
+        final long start = startBuild(ParseFilter.RuleType.STYLE);
+        if (statistics_ != null) {
+            statistics_.addSelectors(selectors.size());
+        }
         getDocumentHandler().startSelector(selectors, locator);
+        endBuild(start);
     }
 
     /**
@@ -724,7 +1190,12 @@ protected void handleStartSelector(final SelectorList selectors, final Locator l
      * @param selectors the selector list
      */
     protected void handleEndSelector(final SelectorList selectors) {
+        if (skipEnd()) {
+            return;
+        }
+        final long start = startBuild(null);
         getDocumentHandler().endSelector(selectors);
+        endBuild(start);
     }
 
     /**
@@ -737,7 +1208,78 @@ protected void handleEndSelector(final SelectorList selectors) {
      */
     protected void handleProperty(final String name, final LexicalUnit value,
             final boolean important, final Locator locator) {
+        final long start = startBuild(null);
+        if (statistics_ != null) {
+            statistics_.addDeclaration(value);
+        }
         getDocumentHandler().property(name, value, important, locator);
+        endBuild(start);
+    }
+
+    /**
+     * Called when entering a function or a parenthesized part of a value; has to
+     * be followed by {@link #exitNesting()} in any case.
+     *
+     * @param t the token opening the function or parentheses
+     * @throws CSSParseException if the nesting is deeper than the max value nesting depth
+     */
+    protected void enterNesting(final Token t) {
+        if (valueNestingDepth_ >= maxValueNestingDepth_) {
+            throw toCSSParseException("valueNestingTooDeep",
+                    new Object[] {Integer.toString(maxValueNestingDepth_)}, createLocator(t));
+        }
+        valueNestingDepth_++;
+    }
+
+    /**
+     * Called when leaving a function or a parenthesized part of a value.
+     */
+    protected void exitNesting() {
+        valueNestingDepth_--;
+    }
+
+    /**
+     * Called when entering a functional pseudo class of a selector; has to
+     * be followed by {@link #exitSelectorNesting()} in any case.
+     *
+     * @param t the token opening the function
+     * @throws CSSParseException if the nesting is deeper than the max value nesting depth
+     */
+    protected void enterSelectorNesting(final Token t) {
+        if (selectorNestingDepth_ >= maxValueNestingDepth_) {
+            throw toCSSParseException("selectorNestingTooDeep",
+                    new Object[] {Integer.toString(maxValueNestingDepth_)}, createLocator(t));
+        }
+        selectorNestingDepth_++;
+    }
+
+    /**
+     * Called when leaving a functional pseudo class of a selector.
+     */
+    protected void exitSelectorNesting() {
+        selectorNestingDepth_--;
+    }
+
+    /**
+     * Called when entering a rule that may contain other rules; has to
+     * be followed by {@link #exitRuleNesting()} in any case.
+     *
+     * @param t the token starting the rule
+     * @throws CSSParseException if the nesting is deeper than the max value nesting depth
+     */
+    protected void enterRuleNesting(final Token t) {
+        if (ruleNestingDepth_ >= maxValueNestingDepth_) {
+            throw toCSSParseException("ruleNestingTooDeep",
+                    new Object[] {Integer.toString(maxValueNestingDepth_)}, createLocator(t));
+        }
+        ruleNestingDepth_++;
+    }
+
+    /**
+     * Called when leaving a rule that may contain other rules.
+     */
+    protected void exitRuleNesting() {
+        ruleNestingDepth_--;
     }
 
     /**
@@ -790,76 +1332,103 @@ protected LexicalUnit hslColorInternal(final LexicalUnit prev, final String func
      * @return a new lexical unit
      */
     protected LexicalUnit hexColorInternal(final LexicalUnit prev, final Token t) {
-        // Step past the hash at the beginning
-        final int i = 1;
-        int r = 0;
-        int g = 0;
-        int b = 0;
-        Double a = null;
+        final String image = t.image;
 
-        final int len = t.image.length() - 1;
-        try {
-            if (len == 3) {
-                r = Integer.parseInt(t.image.substring(i + 0, i + 1), 16);
-                g = Integer.parseInt(t.image.substring(i + 1, i + 2), 16);
-                b = Integer.parseInt(t.image.substring(i + 2, i + 3), 16);
-                r = (r << 4) | r;
-                g = (g << 4) | g;
-                b = (b << 4) | b;
-            }
-            else if (len == 4) {
-                r = Integer.parseInt(t.image.substring(i + 0, i + 1), 16);
-                g = Integer.parseInt(t.image.substring(i + 1, i + 2), 16);
-                b = Integer.parseInt(t.image.substring(i + 2, i + 3), 16);
-                int ai = Integer.parseInt(t.image.substring(i + 3, i + 4), 16);
-                r = (r << 4) | r;
-                g = (g << 4) | g;
-                b = (b << 4) | b;
-                ai = (ai << 4) | ai;
-                a = ai / 255d;
-            }
-            else if (len == 6) {
-                r = Integer.parseInt(t.image.substring(i + 0, i + 2), 16);
-                g = Integer.parseInt(t.image.substring(i + 2, i + 4), 16);
-                b = Integer.parseInt(t.image.substring(i + 4, i + 6), 16);
-            }
-            else if (len == 8) {
-                r = Integer.parseInt(t.image.substring(i + 0, i + 2), 16);
-                g = Integer.parseInt(t.image.substring(i + 2, i + 4), 16);
-                b = Integer.parseInt(t.image.substring(i + 4, i + 6), 16);
-                final int ai = Integer.parseInt(t.image.substring(i + 6, i + 8), 16);
-                a = ai / 255d;
+        // Step past the hash at the beginning
+        final int len = image.length() - 1;
+        final int r;
+        final int g;
+        final int b;
+        int a = -1;
+        if (len == 3 || len == 4) {
+            r = hexValue(image, 1, 1) * 0x11;
+            g = hexValue(image, 2, 1) * 0x11;
+            b = hexValue(image, 3, 1) * 0x11;
+            if (len == 4) {
+                a = hexValue(image, 4, 1) * 0x11;
             }
-            else {
-                final String pattern = getParserMessage("invalidColor");
-                throw new CSSParseException(MessageFormat.format(
-                    pattern, new Object[] {t}),
-                    getInputSource().getURI(), t.beginLine,
-                    t.beginColumn);
+        }
+        else if (len == 6 || len == 8) {
+            r = hexValue(image, 1, 2);
+            g = hexValue(image, 3, 2);
+            b = hexValue(image, 5, 2);
+            if (len == 8) {
+                a = hexValue(image, 7, 2);
             }
+        }
+        else {
+            r = -1;
+            g = -1;
+            b = -1;
+        }
 
-            // Turn into an "rgb()"
-            final LexicalUnit lr = LexicalUnitImpl.createNumber(null, r);
-            final LexicalUnit lg = LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lr), g);
-            final LexicalUnit lb = LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lg), b);
+        if (r < 0 || g < 0 || b < 0 || (a < 0 && (len == 4 || len == 8))) {
+            throw new ParserProblem(getInputSource().getURI(), t.beginLine, t.beginColumn,
+                    "invalidColor", null, getParserMessage("invalidColor"), new String[] {t.toString()}, null, null);
+        }
 
-            if (a != null) {
-                a = Math.round(a * 1000d) / 1000d;
-                LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lb), a);
+        // Turn into an "rgb()"
+        final LexicalUnit lr = LexicalUnitImpl.createNumber(null, r);
+        final LexicalUnit lg = LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lr), g);
+        final LexicalUnit lb = LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lg), b);
 
-                return LexicalUnitImpl.createRgbColor(prev, "rgba", lr);
-            }
+        if (a >= 0) {
+            LexicalUnitImpl.createNumber(LexicalUnitImpl.createComma(lb), Math.round(a / 255d * 1000d) / 1000d);
+            return LexicalUnitImpl.createRgbColor(prev, "rgba", lr);
+        }
 
-            return LexicalUnitImpl.createRgbColor(prev, "rgb", lr);
+        return LexicalUnitImpl.createRgbColor(prev, "rgb", lr);
+    }
 
+    /**
+     * @param s the string
+     * @param begin the index of the first hex digit
+     * @param count the number of hex digits (1 or 2)
+     * @return the value or -1 if one of the chars is not a hex digit
+     */
+    private static int hexValue(final String s, final int begin, final int count) {
+        final int high = ParserUtils.hexValue(s.charAt(begin));
+        if (count == 1 || high < 0) {
+            return high;
         }
-        catch (final NumberFormatException ex) {
-            final String pattern = getParserMessage("invalidColor");
-            throw new CSSParseException(MessageFormat.format(
-                pattern, new Object[] {t}),
-                getInputSource().getURI(), t.beginLine,
-                t.beginColumn, ex);
+        final int low = ParserUtils.hexValue(s.charAt(begin + 1));
+        if (low < 0) {
+            return -1;
         }
+        return high << 4 | low;
+    }
+
+    /**
+     * Processes a number; the result is an integer if the number is an
+     * integer in the int range, a real otherwise.
+     *
+     * @param prev the previous lexical unit
+     * @param op the sign char
+     * @param t the token
+     * @return a new lexical unit
+     */
+    protected LexicalUnit numberInternal(final LexicalUnit prev, final char op, final Token t) {
+        if (ParserUtils.isInt(t.image)) {
+            return LexicalUnitImpl.createNumber(prev, intValue(op, t.image));
+        }
+        return LexicalUnitImpl.createNumber(prev, doubleValue(op, t.image));
+    }
+
+    /**
+     * Processes a dimension with an unknown unit.
+     *
+     * @param prev the previous lexical unit
+     * @param op the sign char
+     * @param t the token
+     * @return a new lexical unit
+     */
+    protected LexicalUnit dimensionInternal(final LexicalUnit prev, final char op, final Token t) {
+        final int n = getLastNumPos(t.image);
+        double result = ParserUtils.parseDouble(t.image, 0, n + 1);
+        if (op == '-') {
+            result = -1 * result;
+        }
+        return LexicalUnitImpl.createDimension(prev, result, t.image.substring(n + 1));
     }
 
     /**
@@ -870,7 +1439,7 @@ else if (len == 8) {
      * @return the int value
      */
     protected int intValue(final char op, final String s) {
-        final int result = Integer.parseInt(s);
+        final int result = ParserUtils.parseInt(s, 0, s.length());
         if (op == '-') {
             return -1 * result;
         }
@@ -885,7 +1454,7 @@ protected int intValue(final char op, final String s) {
      * @return the double value
      */
     protected double doubleValue(final char op, final String s) {
-        final double result = Double.parseDouble(s);
+        final double result = ParserUtils.parseDouble(s, 0, s.length());
         if (op == '-') {
             return -1 * result;
         }
@@ -901,7 +1470,8 @@ protected double doubleValue(final char op, final String s) {
     protected int getLastNumPos(final String s) {
         int i = 0;
         for ( ; i < s.length(); i++) {
-            if (NUM_CHARS.indexOf(s.charAt(i)) < 0) {
+            final char c = s.charAt(i);
+            if ((c < '0' || c > '9') && c != '.') {
                 break;
             }
         }
@@ -925,6 +1495,12 @@ public String unescape(final String s, final boolean unescapeDoubleQuotes) {
             return s;
         }
 
+        // most of the strings are free of escapes; indexOf is
+        // way faster than the loops below
+        if (s.indexOf('\\') < 0 && (!unescapeDoubleQuotes || s.indexOf('"') < 0)) {
+            return s;
+        }
+
         // avoid creation of new string if possible
         StringBuilder buf = null;
         int index = -1;
@@ -1086,4 +1662,181 @@ private static int hexval(final char c) {
                 return -1;
         }
     }
+
+    /**
+     * @param e the problem
+     * @return the message key of a problem created by the parser, the simple class name otherwise
+     */
+    static String messageKey(final CSSParseException e) {
+        if (e instanceof ParserProblem) {
+            return ((ParserProblem) e).key_;
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    /**
+     * Counts the problems reported while statistics are collected; installed for the
+     * duration of a parse only.
+     */
+    private static final class StatisticsErrorHandler implements CSSErrorHandler {
+        private final CSSErrorHandler handler_;
+        private final ParseStatistics statistics_;
+
+        StatisticsErrorHandler(final CSSErrorHandler handler, final ParseStatistics statistics) {
+            handler_ = handler;
+            statistics_ = statistics;
+        }
+
+        @Override
+        public void warning(final CSSParseException exception) throws CSSException {
+            statistics_.addWarning(messageKey(exception));
+            handler_.warning(exception);
+        }
+
+        @Override
+        public void error(final CSSParseException exception) throws CSSException {
+            statistics_.addError(messageKey(exception));
+            handler_.error(exception);
+        }
+
+        @Override
+        public void fatalError(final CSSParseException exception) throws CSSException {
+            statistics_.addError(messageKey(exception));
+            handler_.fatalError(exception);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a byte stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final ParseStatistics statistics_;
+
+        CountingInputStream(final InputStream in, final ParseStatistics statistics) {
+            super(in);
+            statistics_ = statistics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                statistics_.addBytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                statistics_.addBytesRead(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            statistics_.addBytesRead(skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * A problem found by the parser. Most style sheets contain some hacks the parser
+     * has to recover from, therefore the problems are cheap to create: there is no
+     * stack trace and the message is formatted when requested.
+     */
+    private static final class ParserProblem extends CSSParseException {
+        private final String key_;
+        private final String keyMessage_;
+        private final String pattern_;
+        private final Object[] params_;
+        private final int[][] expectedTokenSequences_;
+        private final String[] tokenImage_;
+        private String message_;
+
+        ParserProblem(final String uri, final int lineNumber, final int columnNumber,
+                final String key, final String keyMessage, final String pattern, final String[] invalid,
+                final int[][] expectedTokenSequences, final String[] tokenImage) {
+            super(uri, lineNumber, columnNumber);
+            key_ = key;
+            keyMessage_ = keyMessage;
+            pattern_ = pattern;
+            params_ = invalid;
+            expectedTokenSequences_ = expectedTokenSequences;
+            tokenImage_ = tokenImage;
+        }
+
+        ParserProblem(final Locator locator, final String key, final String pattern, final Object[] params) {
+            super(locator == null ? null : locator.getUri(),
+                    locator == null ? -1 : locator.getLineNumber(),
+                    locator == null ? -1 : locator.getColumnNumber());
+            key_ = key;
+            keyMessage_ = null;
+            pattern_ = pattern;
+            params_ = params;
+            expectedTokenSequences_ = null;
+            tokenImage_ = null;
+        }
+
+        @Override
+        public String getMessage() {
+            String message = message_;
+            if (message == null) {
+                message = createMessage();
+                message_ = message;
+            }
+            return message;
+        }
+
+        private String createMessage() {
+            if (expectedTokenSequences_ == null) {
+                if (keyMessage_ != null) {
+                    return keyMessage_;
+                }
+                return MessageFormat.format(pattern_, params_);
+            }
+
+            final StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < expectedTokenSequences_.length; i++) {
+                for (final int kind : expectedTokenSequences_[i]) {
+                    expected.append(tokenImage_[kind]);
+                }
+                if (i < expectedTokenSequences_.length - 1) {
+                    expected.append(", ");
+                }
+            }
+            final StringBuilder invalid = new StringBuilder();
+            for (int i = 0; i < params_.length && params_[i] != null; i++) {
+                if (i != 0) {
+                    invalid.append(" ");
+                }
+                if (params_[i] == tokenImage_[0]) {
+                    invalid.append(params_[i]);
+                    break;
+                }
+                invalid.append(escape((String) params_[i]));
+            }
+
+            final StringBuilder message = new StringBuilder(keyMessage_);
+            message.append(" (");
+            message.append(MessageFormat.format(pattern_, new Object[] {invalid, expected}));
+            message.append(")");
+            return message.toString();
+        }
+
+        @Override
+        public String getProblemKey() {
+            if (params_ == null || params_.length == 0) {
+                return key_;
+            }
+            final StringBuilder key = new StringBuilder(key_);
+            for (final Object param : params_) {
+                key.append('\u0000').append(param);
+            }
+            return key.toString();
+        }
+    }
 }
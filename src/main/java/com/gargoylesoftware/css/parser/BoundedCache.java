@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The thread safe map behind the parse result caches; keyed by the parsed
+ * string, bounded by the total weight of the entries (the number of entries
+ * if all of them weigh 1) and the length of the keys.
+ * If the cache is full, the least recently used entries are evicted first;
+ * approximated by a second chance (clock) queue, lookups don't need any lock.
+ *
+ * @param <V> the type of the cached values
+ *
+ * @author Ronald Brill
+ */
+final class BoundedCache<V> {
+
+    private final long maxWeight_;
+    private final int maxKeyLength_;
+
+    private final ConcurrentMap<String, Node<V>> entries_;
+    private final Queue<String> evictionQueue_ = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size_ = new AtomicInteger();
+    private final AtomicLong weight_ = new AtomicLong();
+
+    private final LongAdder hits_ = new LongAdder();
+    private final LongAdder misses_ = new LongAdder();
+    private final LongAdder evictions_ = new LongAdder();
+
+    /**
+     * @param maxEntries the maximum number of cached values
+     * @param maxKeyLength longer strings are not cached
+     */
+    BoundedCache(final int maxEntries, final int maxKeyLength) {
+        this((long) maxEntries, maxKeyLength);
+    }
+
+    /**
+     * @param maxWeight the maximum total weight of the cached values
+     * @param maxKeyLength longer strings are not cached
+     */
+    BoundedCache(final long maxWeight, final int maxKeyLength) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maximum must be positive (" + maxWeight + ")");
+        }
+        maxWeight_ = maxWeight;
+        maxKeyLength_ = maxKeyLength;
+        entries_ = new ConcurrentHashMap<>((int) Math.min(maxWeight, 1024));
+    }
+
+    boolean isCacheable(final String key) {
+        return key.length() <= maxKeyLength_;
+    }
+
+    V get(final String key) {
+        final Node<V> node = entries_.get(key);
+        if (node == null) {
+            misses_.increment();
+            return null;
+        }
+
+        hits_.increment();
+        if (!node.referenced_) {
+            node.referenced_ = true;
+        }
+        return node.value_;
+    }
+
+    void put(final String key, final V value) {
+        put(key, value, 1);
+    }
+
+    /**
+     * @param key the key
+     * @param value the value
+     * @param weight the weight of the value, heavier values than the maximum are not added
+     */
+    void put(final String key, final V value, final long weight) {
+        if (weight > maxWeight_ || entries_.putIfAbsent(key, new Node<>(value, weight)) != null) {
+            return;
+        }
+
+        evictionQueue_.add(key);
+        final int size = size_.incrementAndGet();
+        long total = weight_.addAndGet(weight);
+        int secondChances = 0;
+        while (total > maxWeight_) {
+            final String eldest = evictionQueue_.poll();
+            if (eldest == null) {
+                break;
+            }
+            final Node<V> node = entries_.get(eldest);
+            if (node == null) {
+                continue;
+            }
+            if (node.referenced_ && secondChances++ < size) {
+                // used since the last round, move it to the end of the queue
+                node.referenced_ = false;
+                evictionQueue_.add(eldest);
+                continue;
+            }
+            if (entries_.remove(eldest, node)) {
+                evictions_.increment();
+                size_.decrementAndGet();
+                total = weight_.addAndGet(-node.weight_);
+            }
+        }
+    }
+
+    void clear() {
+        String key = evictionQueue_.poll();
+        while (key != null) {
+            final Node<V> node = entries_.remove(key);
+            if (node != null) {
+                size_.decrementAndGet();
+                weight_.addAndGet(-node.weight_);
+            }
+            key = evictionQueue_.poll();
+        }
+    }
+
+    int size() {
+        return size_.get();
+    }
+
+    long weight() {
+        return weight_.get();
+    }
+
+    long getHits() {
+        return hits_.sum();
+    }
+
+    long getMisses() {
+        return misses_.sum();
+    }
+
+    long getEvictions() {
+        return evictions_.sum();
+    }
+
+    void resetStatistics() {
+        hits_.reset();
+        misses_.reset();
+        evictions_.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions();
+    }
+
+    private static final class Node<V> {
+        private final V value_;
+        private final long weight_;
+        private volatile boolean referenced_;
+
+        Node(final V value, final long weight) {
+            value_ = value;
+            weight_ = weight;
+        }
+    }
+}
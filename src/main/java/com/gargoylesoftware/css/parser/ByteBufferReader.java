@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A reader that decodes the content of a byte buffer (e.g. a memory-mapped file)
+ * incrementally. The chars are decoded directly into the array passed to
+ * {@link #read(char[], int, int)}; there is no intermediate buffer.
+ *
+ * @author Ronald Brill
+ */
+final class ByteBufferReader extends Reader {
+
+    private ByteBuffer bytes_;
+    private final CharsetDecoder decoder_;
+    private boolean decoded_;
+    private boolean flushed_;
+    private CharBuffer pending_;
+
+    /**
+     * Ctor.
+     * @param bytes the bytes to decode; all bytes from the current position up to the limit are used
+     * @param decoder the decoder to use
+     */
+    ByteBufferReader(final ByteBuffer bytes, final CharsetDecoder decoder) {
+        bytes_ = bytes;
+        decoder_ = decoder
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoder_.reset();
+    }
+
+    /**
+     * Ctor; the reader uses a decoder from the {@link CharsetDecoderPool}
+     * and returns it when closed.
+     * @param bytes the bytes to decode; all bytes from the current position up to the limit are used
+     * @param charset the charset
+     */
+    ByteBufferReader(final ByteBuffer bytes, final Charset charset) {
+        this(bytes, CharsetDecoderPool.acquire(charset));
+    }
+
+    /**
+     * Maps the given file into memory.
+     * The file channel is closed before returning, the mapping stays valid until
+     * the buffer is garbage collected.
+     *
+     * @param file the file
+     * @return the mapped bytes
+     * @throws IOException in case of error
+     */
+    static MappedByteBuffer map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File '" + file + "' is too large (" + size + " bytes).");
+            }
+            return channel.map(MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (bytes_ == null) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        if (pending_ != null && pending_.hasRemaining()) {
+            cbuf[off] = pending_.get();
+            return 1;
+        }
+
+        final int count = decode(CharBuffer.wrap(cbuf, off, len));
+        if (count == 0 && !flushed_) {
+            // not enough space for a surrogate pair; keep the second char for the next call
+            if (pending_ == null) {
+                pending_ = CharBuffer.allocate(2);
+            }
+            pending_.clear();
+            decode(pending_);
+            pending_.flip();
+            if (!pending_.hasRemaining()) {
+                return -1;
+            }
+            cbuf[off] = pending_.get();
+            return 1;
+        }
+        if (count == 0) {
+            return -1;
+        }
+        return count;
+    }
+
+    private int decode(final CharBuffer out) throws IOException {
+        final int start = out.position();
+        if (!decoded_) {
+            // the whole input is available, so this is always the end of the input
+            final CoderResult result = decoder_.decode(bytes_, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            decoded_ = result.isUnderflow();
+        }
+        if (decoded_ && !flushed_ && out.hasRemaining()) {
+            flushed_ = decoder_.flush(out).isUnderflow();
+        }
+
+        return out.position() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (bytes_ != null) {
+            bytes_ = null;
+            CharsetDecoderPool.release(decoder_);
+        }
+    }
+}
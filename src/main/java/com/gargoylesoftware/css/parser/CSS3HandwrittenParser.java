@@ -0,0 +1,2565 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.gargoylesoftware.css.dom.CSSValueImpl;
+import com.gargoylesoftware.css.dom.Property;
+import com.gargoylesoftware.css.parser.LexicalUnit.LexicalUnitType;
+import com.gargoylesoftware.css.parser.condition.AttributeCondition;
+import com.gargoylesoftware.css.parser.condition.BeginHyphenAttributeCondition;
+import com.gargoylesoftware.css.parser.condition.ClassCondition;
+import com.gargoylesoftware.css.parser.condition.Condition;
+import com.gargoylesoftware.css.parser.condition.IdCondition;
+import com.gargoylesoftware.css.parser.condition.LangCondition;
+import com.gargoylesoftware.css.parser.condition.OneOfAttributeCondition;
+import com.gargoylesoftware.css.parser.condition.PrefixAttributeCondition;
+import com.gargoylesoftware.css.parser.condition.PseudoClassCondition;
+import com.gargoylesoftware.css.parser.condition.SubstringAttributeCondition;
+import com.gargoylesoftware.css.parser.condition.SuffixAttributeCondition;
+import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.ParseException;
+import com.gargoylesoftware.css.parser.javacc.Token;
+import com.gargoylesoftware.css.parser.media.MediaQuery;
+import com.gargoylesoftware.css.parser.media.MediaQueryList;
+import com.gargoylesoftware.css.parser.selector.ChildSelector;
+import com.gargoylesoftware.css.parser.selector.DescendantSelector;
+import com.gargoylesoftware.css.parser.selector.DirectAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.ElementSelector;
+import com.gargoylesoftware.css.parser.selector.GeneralAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.PseudoElementSelector;
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.parser.selector.SelectorListImpl;
+import com.gargoylesoftware.css.parser.selector.SimpleSelector;
+
+/**
+ * Hand written implementation of the CSS3 grammar. The parser accepts exactly
+ * the same language as the generated {@link CSS3Parser}, it calls the same
+ * document handler methods, builds the same lexical units and selectors and
+ * reports the same errors and warnings (including the expected tokens of the
+ * messages). Use it by passing an instance to
+ * {@link CSSOMParser#CSSOMParser(AbstractCSSParser)}.
+ *
+ * <p>The tokens are produced by the table driven {@link CSS3Tokenizer}; the
+ * productions are plain switch statements on the kind of the next token.
+ * The single syntactic lookahead of the grammar (is a combinator followed by
+ * another simple selector) is decided by looking at the next two tokens.</p>
+ *
+ * <p>To produce the same error messages, the parser records the tokens
+ * expected at the current position the way the generated parser does;
+ * this is a bit mask per parser position and costs next to nothing.</p>
+ *
+ * @author Ronald Brill
+ */
+public class CSS3HandwrittenParser extends AbstractCSSParser implements CSS3ParserConstants {
+
+    private static final int PROGID = CSS3Tokenizer.PROGID;
+    private static final int KINDS = PROGID + 1;
+    private static final int MAX_ERROR_TOKENS = 100;
+    private static final int MAX_CALLS_BEFORE_CLEANUP = 100;
+
+    private static final long[] S_SET = set(S);
+    private static final long[] S_CDO_CDC_SET = set(S, CDO, CDC);
+    private static final long[] CHARSET_SET = set(CHARSET_SYM);
+    private static final long[] COMMA_SET = set(COMMA);
+    private static final long[] COLON_SET = set(COLON);
+    private static final long[] AND_SET = set(AND);
+    private static final long[] SEMICOLON_SET = set(SEMICOLON);
+    private static final long[] ASTERISK_SET = set(ASTERISK);
+    private static final long[] IMPORTANT_SET = set(IMPORTANT_SYM);
+    private static final long[] UNKNOWN_SET = set(UNKNOWN);
+    private static final long[] STRING_URI_SET = set(STRING, URI);
+    private static final long[] NOT_ONLY_SET = set(NOT, ONLY);
+    private static final long[] IDENT_COLON_SET = set(IDENT, COLON);
+    private static final long[] IDENT_STRING_SET = set(IDENT, STRING);
+    private static final long[] SLASH_COMMA_SET = set(SLASH, COMMA);
+    private static final long[] EQUALS_COMMA_SET = set(EQUALS, COMMA);
+    private static final long[] ASTERISK_SLASH_SET = set(ASTERISK, SLASH);
+    private static final long[] UNARY_SET = set(MINUS, PLUS);
+    private static final long[] COMBINATOR_SET = set(PLUS, GREATER, TILDE);
+    private static final long[] S_COMBINATOR_SET = set(S, PLUS, GREATER, TILDE);
+    private static final long[] PROPERTY_SET = set(IDENT, CUSTOM_PROPERTY_NAME);
+    private static final long[] EOF_RBRACE_SET = set(EOF, RBRACE);
+    private static final long[] MEDIA_QUERY_SET = set(NOT, ONLY, IDENT, LROUND);
+    private static final long[] CONDITION_SET = set(DOT, COLON, LSQUARE, HASH);
+    private static final long[] ELEMENT_NAME_SET = set(IDENT, ASTERISK);
+    private static final long[] SIMPLE_SELECTOR_SET = union(CONDITION_SET, ELEMENT_NAME_SET);
+    private static final long[] MEDIA_RULE_SET = union(SIMPLE_SELECTOR_SET,
+            set(IMPORT_SYM, PAGE_SYM, MEDIA_SYM, ATKEYWORD));
+    private static final long[] RULE_SET = union(SIMPLE_SELECTOR_SET,
+            set(PAGE_SYM, MEDIA_SYM, FONT_FACE_SYM, ATKEYWORD));
+    private static final long[] RULE_OR_IMPORT_SET = union(RULE_SET, set(IMPORT_SYM));
+    private static final long[] SINGLE_RULE_SET = union(RULE_OR_IMPORT_SET, set(CHARSET_SYM));
+    private static final long[] ATTRIB_OPERATOR_SET =
+            set(INCLUDES, DASHMATCH, PREFIXMATCH, SUFFIXMATCH, SUBSTRINGMATCH, EQUALS);
+    private static final long[] PSEUDO_SET = set(IDENT, FUNCTION_NOT, FUNCTION_LANG, FUNCTION);
+    private static final long[] PSEUDO_ARG_SET = set(NUMBER, IDENT, STRING, MINUS, PLUS, DIMENSION);
+    private static final long[] DECLARATION_SET = set(IDENT, ASTERISK, CUSTOM_PROPERTY_NAME);
+    private static final long[] UNIT_SET = range(EMS, RESOLUTION_DPCM);
+    private static final long[] NUMERIC_SET = union(UNIT_SET, set(NUMBER, PERCENTAGE));
+    private static final long[] NUMBER_PERCENTAGE_SET = set(NUMBER, PERCENTAGE);
+    private static final long[] HUE_SET = union(range(ANGLE_DEG, ANGLE_TURN), set(NUMBER));
+    private static final long[] ALPHA_SET = set(NUMBER, SLASH, MINUS, PLUS, COMMA, PERCENTAGE);
+    private static final long[] CALC_NUMBER_VALUE_SET =
+            set(NUMBER, LROUND, MINUS, PLUS, FUNCTION_CALC, FUNCTION_VAR);
+    private static final long[] CALC_VALUE_SET = union(NUMERIC_SET, CALC_NUMBER_VALUE_SET);
+    private static final long[] TERM_SET = union(NUMERIC_SET, set(INHERIT, IDENT, STRING, HASH, DIMENSION,
+            UNICODE_RANGE, URI, FUNCTION_CALC, FUNCTION_VAR, FUNCTION_RGB, FUNCTION_HSL, FUNCTION, PROGID));
+    private static final long[] TERM_OR_UNARY_SET = union(TERM_SET, UNARY_SET);
+    private static final long[] OPERATOR_OR_TERM_SET = union(TERM_OR_UNARY_SET, SLASH_COMMA_SET);
+    private static final long[] FUNCTION_ARG_SET = union(TERM_OR_UNARY_SET, EQUALS_COMMA_SET);
+
+    private static final LookaheadSuccess LOOKAHEAD_SUCCESS = new LookaheadSuccess();
+
+    private final CSS3Tokenizer tokenizer_ = new CSS3Tokenizer();
+
+    /** The last consumed token; the following (already scanned) tokens are linked by next. */
+    private Token token_ = new Token();
+    /** Incremented for every consumed token. */
+    private int gen_;
+    private int consumedSinceCleanup_;
+
+    // the tokens expected at position gen_; see generateParseException()
+    private long expectedLow_;
+    private long expectedHigh_;
+    private int expectedGen_ = -1;
+    private int expectedKind_ = -1;
+
+    // the selector combinator lookahead calls, needed to build the error messages
+    private Call calls_ = new Call();
+    private Token scanPos_;
+    private Token lastPos_;
+    private int lookahead_;
+    private final List<int[]> expectedSequences_ = new ArrayList<>();
+    private final int[] lastTokens_ = new int[MAX_ERROR_TOKENS];
+    private int endPos_;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getParserVersion() {
+        return "http://www.w3.org/Style/CSS/";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void ReInit(final CharStream charStream) {
+        tokenizer_.reset(charStream);
+        token_ = new Token();
+        gen_ = 0;
+        expectedGen_ = -1;
+        calls_ = new Call();
+    }
+
+    //
+    // stylesheet
+    //  : [ CHARSET_SYM STRING ';' ]?
+    //    [S|CDO|CDC]* [ import [S|CDO|CDC]* ]*
+    //    [ [ ruleset | media | page | font_face ] [S|CDO|CDC]* ]*
+    //  ;
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void styleSheet() throws ParseException {
+        try {
+            handleStartDocument();
+            styleSheetRuleList();
+            consume(EOF);
+        }
+        finally {
+            handleEndDocument();
+        }
+    }
+
+    private void styleSheetRuleList() throws ParseException {
+        boolean ruleFound = false;
+        skipSpacesAndCdoCdc();
+        if (kind() == CHARSET_SYM) {
+            charsetRule();
+            skipSpacesAndCdoCdc();
+        }
+        else {
+            expected(CHARSET_SET);
+        }
+
+        while (true) {
+            switch (kind()) {
+                case IMPORT_SYM:
+                    importRule(ruleFound);
+                    break;
+                case IDENT:
+                case DOT:
+                case COLON:
+                case ASTERISK:
+                case LSQUARE:
+                case HASH:
+                    styleRule();
+                    ruleFound = true;
+                    break;
+                case MEDIA_SYM:
+                    mediaRule();
+                    ruleFound = true;
+                    break;
+                case PAGE_SYM:
+                    pageRule();
+                    ruleFound = true;
+                    break;
+                case FONT_FACE_SYM:
+                    fontFaceRule();
+                    ruleFound = true;
+                    break;
+                case ATKEYWORD:
+                    unknownAtRule();
+                    ruleFound = true;
+                    break;
+                default:
+                    expected(RULE_OR_IMPORT_SET);
+                    if (!invalidRule()) {
+                        return;
+                    }
+            }
+            skipSpacesAndCdoCdc();
+        }
+    }
+
+    /**
+     * Reports and skips an invalid (or misplaced charset) rule.
+     * @return false if the end of the input was reached
+     */
+    private boolean invalidRule() {
+        final ParseException e = generateParseException();
+        Token t = nextToken();
+
+        boolean charsetProcessed = false;
+        if (t.kind == CHARSET_SYM) {
+            t = nextToken();
+            if (t.kind == S) {
+                t = nextToken();
+                if (t.kind == STRING) {
+                    t = nextToken();
+                    if (t.kind == SEMICOLON) {
+                        nextToken();
+                        charsetProcessed = true;
+                    }
+                }
+            }
+            final CSSParseException cpe = toCSSParseException("misplacedCharsetRule", e);
+            getErrorHandler().error(cpe);
+            getErrorHandler().warning(createSkipWarning("ignoringRule", cpe));
+        }
+
+        if (!charsetProcessed) {
+            if (t.kind == EOF) {
+                return false;
+            }
+
+            final CSSParseException cpe = toCSSParseException("invalidRule", e);
+            getErrorHandler().error(cpe);
+            getErrorHandler().warning(createSkipWarning("ignoringRule", cpe));
+            while (t.kind != RBRACE && t.kind != EOF) {
+                t = nextToken();
+            }
+            if (t.kind == EOF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //
+    // This is used by ASTStyleSheet.insertRule to parse a single rule
+    //
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void styleSheetRuleSingle() throws ParseException {
+        skipSpaces();
+        switch (kind()) {
+            case CHARSET_SYM:
+                charsetRule();
+                break;
+            case IMPORT_SYM:
+                importRule(false);
+                break;
+            case IDENT:
+            case DOT:
+            case COLON:
+            case ASTERISK:
+            case LSQUARE:
+            case HASH:
+                styleRule();
+                break;
+            case MEDIA_SYM:
+                mediaRule();
+                break;
+            case PAGE_SYM:
+                pageRule();
+                break;
+            case FONT_FACE_SYM:
+                fontFaceRule();
+                break;
+            case ATKEYWORD:
+                unknownAtRule();
+                break;
+            default:
+                throw fail(SINGLE_RULE_SET);
+        }
+        skipSpaces();
+    }
+
+    private void charsetRule() {
+        try {
+            consume(CHARSET_SYM);
+            final Locator locator = createLocator(token_);
+            consume(S);
+            final Token t = consume(STRING);
+            consume(SEMICOLON);
+            handleCharset(t.toString(), locator);
+        }
+        catch (final ParseException e) {
+            getErrorHandler().error(toCSSParseException("invalidCharsetRule", e));
+        }
+    }
+
+    private void unknownAtRule() {
+        try {
+            consume(ATKEYWORD);
+            final Locator locator = createLocator(token_);
+            final String s = skip();
+            handleIgnorableAtRule(s, locator);
+        }
+        catch (final ParseException e) {
+            getErrorHandler().error(toCSSParseException("invalidUnknownRule", generateParseException()));
+        }
+    }
+
+    //
+    // import
+    //  : IMPORT_SYM S*
+    //    [STRING|URI] S* [ medium [ COMMA S* medium]* ]? ';' S*
+    //  ;
+    //
+    private void importRule(final boolean nonImportRuleFoundBefore) {
+        final MediaQueryList ml = new MediaQueryList();
+        try {
+            ParseException pe = null;
+            if (nonImportRuleFoundBefore) {
+                pe = generateParseException();
+            }
+            consume(IMPORT_SYM);
+            final Locator locator = createLocator(token_);
+            skipSpaces();
+            final int kind = kind();
+            if (kind != STRING && kind != URI) {
+                throw fail(STRING_URI_SET);
+            }
+            final Token t = advance();
+            skipSpaces();
+            if (in(MEDIA_QUERY_SET, kind())) {
+                mediaList(ml);
+            }
+            else {
+                expected(MEDIA_QUERY_SET);
+            }
+            consume(SEMICOLON);
+            if (nonImportRuleFoundBefore) {
+                getErrorHandler().error(toCSSParseException("invalidImportRuleIgnored2", pe));
+            }
+            else {
+                handleImportStyle(unescape(t.image, false), ml, null, locator);
+            }
+        }
+        catch (final CSSParseException e) {
+            getErrorHandler().error(e);
+            errorSkipAtRule();
+        }
+        catch (final ParseException e) {
+            getErrorHandler().error(toCSSParseException("invalidImportRule", e));
+            errorSkipAtRule();
+        }
+    }
+
+    //
+    // media
+    //  : MEDIA_SYM S* medium [ COMMA S* medium ]* '{' S* ruleset* '}' S*
+    //  ;
+    //
+    private void mediaRule() {
+        boolean start = false;
+        boolean nested = false;
+        final MediaQueryList ml = new MediaQueryList();
+        try {
+            consume(MEDIA_SYM);
+            final Locator locator = createLocator(token_);
+            enterRuleNesting(token_);
+            nested = true;
+            skipSpaces();
+            mediaList(ml);
+            start = true;
+            handleStartMedia(ml, locator);
+            consume(LBRACE);
+            skipSpaces();
+            if (in(MEDIA_RULE_SET, kind())) {
+                mediaRuleList();
+            }
+            else {
+                expected(MEDIA_RULE_SET);
+            }
+            consume(RBRACE);
+        }
+        catch (final CSSParseException e) {
+            getErrorHandler().error(e);
+            errorSkipBlock("ignoringRule", e);
+        }
+        catch (final ParseException e) {
+            final CSSParseException cpe = toCSSParseException("invalidMediaRule", e);
+            getErrorHandler().error(cpe);
+            errorSkipBlock("ignoringRule", cpe);
+        }
+        finally {
+            if (nested) {
+                exitRuleNesting();
+            }
+            if (start) {
+                handleEndMedia(ml);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void mediaList(final MediaQueryList ml) throws ParseException {
+        try {
+            MediaQuery mq = mediaQuery();
+            ml.setLocator(createLocator(token_));
+            while (kind() == COMMA) {
+                advance();
+                skipSpaces();
+                ml.add(mq);
+                mq = mediaQuery();
+            }
+            expected(COMMA_SET);
+            ml.add(mq);
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidMediaList", e);
+        }
+    }
+
+    //
+    // media_query
+    //   : [ONLY | NOT]? S* media_type S* [ AND S* expression ]*
+    //   | expression [ AND S* expression ]*
+    //   ;
+    //
+    private MediaQuery mediaQuery() throws ParseException {
+        final MediaQuery mq;
+        switch (kind()) {
+            case NOT:
+            case ONLY:
+            case IDENT:
+                boolean only = false;
+                boolean not = false;
+                if (kind() == ONLY) {
+                    advance();
+                    only = true;
+                    skipSpaces();
+                }
+                else if (kind() == NOT) {
+                    advance();
+                    not = true;
+                    skipSpaces();
+                }
+                else {
+                    expected(NOT_ONLY_SET);
+                }
+                mq = new MediaQuery(medium(), only, not);
+                mq.setLocator(createLocator(token_));
+                break;
+            case LROUND:
+                final Property p = mediaExpression();
+                mq = new MediaQuery(null, false, false);
+                mq.setLocator(createLocator(token_));
+                mq.addMediaProperty(p);
+                break;
+            default:
+                throw fail(MEDIA_QUERY_SET);
+        }
+
+        while (kind() == AND) {
+            advance();
+            skipSpaces();
+            mq.addMediaProperty(mediaExpression());
+        }
+        expected(AND_SET);
+        return mq;
+    }
+
+    //
+    // expression
+    //   : '(' S* media_feature S* [ ':' S* expr ]? ')' S*
+    //   ;
+    //
+    private Property mediaExpression() throws ParseException {
+        consume(LROUND);
+        skipSpaces();
+        final String p = property();
+        LexicalUnit e = null;
+        if (kind() == COLON) {
+            advance();
+            skipSpaces();
+            e = expr();
+        }
+        else {
+            expected(COLON_SET);
+        }
+        consume(RROUND);
+        skipSpaces();
+
+        if (e == null) {
+            return new Property(p, null, false);
+        }
+        return new Property(p, new CSSValueImpl(e), false);
+    }
+
+    private void mediaRuleList() throws ParseException {
+        while (true) {
+            switch (kind()) {
+                case IDENT:
+                case DOT:
+                case COLON:
+                case ASTERISK:
+                case LSQUARE:
+                case HASH:
+                    styleRule();
+                    break;
+                case MEDIA_SYM:
+                    mediaRule();
+                    break;
+                case PAGE_SYM:
+                    pageRule();
+                    break;
+                case IMPORT_SYM:
+                    importRule(true);
+                    break;
+                case ATKEYWORD:
+                    unknownAtRule();
+                    break;
+                default:
+                    throw fail(MEDIA_RULE_SET);
+            }
+            skipSpaces();
+            if (!in(MEDIA_RULE_SET, kind())) {
+                expected(MEDIA_RULE_SET);
+                return;
+            }
+        }
+    }
+
+    //
+    // medium
+    //   : IDENT S*
+    //   ;
+    //
+    private String medium() throws ParseException {
+        final Token t = consume(IDENT);
+        skipSpaces();
+        return unescape(t.image, false);
+    }
+
+    //
+    // page
+    //  : PAGE_SYM S* pseudo_page? S*
+    //    '{' S* declaration [ ';' S* declaration ]* '}' S*
+    //  ;
+    //
+    private void pageRule() {
+        String sel = null;
+        boolean start = false;
+        try {
+            consume(PAGE_SYM);
+            final Locator locator = createLocator(token_);
+            skipSpaces();
+            if (kind() == IDENT || kind() == COLON) {
+                sel = pageSelectorList();
+            }
+            else {
+                expected(IDENT_COLON_SET);
+            }
+            consume(LBRACE);
+            skipSpaces();
+            start = true;
+            handleStartPage(null, sel, locator);
+            styleDeclaration();
+            consume(RBRACE);
+        }
+        catch (final CSSParseException e) {
+            getErrorHandler().error(e);
+            errorSkipBlock("ignoringRule", e);
+        }
+        catch (final ParseException e) {
+            final CSSParseException cpe = toCSSParseException("invalidPageRule", e);
+            getErrorHandler().error(cpe);
+            errorSkipBlock("ignoringRule", cpe);
+        }
+        finally {
+            if (start) {
+                handleEndPage(null, sel);
+            }
+        }
+    }
+
+    //
+    // pageSelectorList
+    //   : [ pageSelector S* [ ',' pageSelector S* ]* ]?
+    //   ;
+    //
+    private String pageSelectorList() throws ParseException {
+        final List<String> selectors = new ArrayList<>();
+        selectors.add(pageSelector());
+        while (kind() == COMMA) {
+            advance();
+            skipSpaces();
+            selectors.add(pageSelector());
+        }
+        expected(COMMA_SET);
+        return String.join(", ", selectors);
+    }
+
+    //
+    // pageSelector
+    //   : pseudoPage+ | IDENT pseudoPage*
+    //   ;
+    //
+    private String pageSelector() throws ParseException {
+        final StringBuilder pseudos = new StringBuilder();
+        switch (kind()) {
+            case COLON:
+                pseudos.append(pseudoPage());
+                break;
+            case IDENT:
+                pseudos.append(unescape(advance().image, false));
+                break;
+            default:
+                throw fail(IDENT_COLON_SET);
+        }
+        while (kind() == COLON) {
+            pseudos.append(pseudoPage());
+        }
+        expected(COLON_SET);
+        skipSpaces();
+        return pseudos.toString();
+    }
+
+    //
+    // pseudoPage
+    //   : ':' IDENT
+    //   ;
+    //
+    private String pseudoPage() throws ParseException {
+        consume(COLON);
+        final Token t = consume(IDENT);
+        return ":" + unescape(t.image, false);
+    }
+
+    //
+    // font_face
+    //  : FONT_FACE_SYM S*
+    //    '{' S* declaration [ ';' S* declaration ]* '}' S*
+    //  ;
+    //
+    private void fontFaceRule() {
+        boolean start = false;
+        try {
+            consume(FONT_FACE_SYM);
+            final Locator locator = createLocator(token_);
+            skipSpaces();
+            consume(LBRACE);
+            skipSpaces();
+            start = true;
+            handleStartFontFace(locator);
+            styleDeclaration();
+            consume(RBRACE);
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidFontFaceRule", e);
+        }
+        finally {
+            if (start) {
+                handleEndFontFace();
+            }
+        }
+    }
+
+    //
+    // operator
+    //  : '/' S* | COMMA S* | /* empty */
+    //  ;
+    //
+    private LexicalUnit operator(final LexicalUnit prev) throws ParseException {
+        switch (kind()) {
+            case SLASH:
+                advance();
+                skipSpaces();
+                return new LexicalUnitImpl(prev, LexicalUnitType.OPERATOR_SLASH);
+            case COMMA:
+                advance();
+                skipSpaces();
+                return LexicalUnitImpl.createComma(prev);
+            default:
+                throw fail(SLASH_COMMA_SET);
+        }
+    }
+
+    //
+    // combinator
+    //  : PLUS S*
+    //  | GREATER S*
+    //  | S
+    //  ;
+    //
+    private char combinator() throws ParseException {
+        switch (kind()) {
+            case PLUS:
+            case GREATER:
+            case TILDE:
+                return combinatorChar();
+            case S:
+                advance();
+                if (in(COMBINATOR_SET, kind())) {
+                    return combinatorChar();
+                }
+                expected(COMBINATOR_SET);
+                return ' ';
+            default:
+                throw fail(S_COMBINATOR_SET);
+        }
+    }
+
+    private char combinatorChar() {
+        final int kind = advance().kind;
+        skipSpaces();
+        if (kind == PLUS) {
+            return '+';
+        }
+        if (kind == GREATER) {
+            return '>';
+        }
+        return '~';
+    }
+
+    //
+    // unary_operator
+    //  : '-' | PLUS
+    //  ;
+    //
+    private char unaryOperator() throws ParseException {
+        switch (kind()) {
+            case MINUS:
+                advance();
+                return '-';
+            case PLUS:
+                advance();
+                return '+';
+            default:
+                throw fail(UNARY_SET);
+        }
+    }
+
+    private char optionalUnaryOperator() throws ParseException {
+        final int kind = kind();
+        if (kind == MINUS || kind == PLUS) {
+            return unaryOperator();
+        }
+        expected(UNARY_SET);
+        return ' ';
+    }
+
+    //
+    // property
+    //   : IDENT S*
+    //   ;
+    //
+    private String property() throws ParseException {
+        final int kind = kind();
+        if (kind != IDENT && kind != CUSTOM_PROPERTY_NAME) {
+            throw fail(PROPERTY_SET);
+        }
+        final Token t = advance();
+        skipSpaces();
+        return unescape(t.image, false);
+    }
+
+    //
+    // ruleset
+    //  : selector [ COMMA S* selector ]*
+    //    '{' S* declaration [ ';' S* declaration ]* '}' S*
+    //  ;
+    //
+    private void styleRule() {
+        SelectorList selList = null;
+        boolean start = false;
+        try {
+            final Token t = token_;
+            selList = selectorList();
+            consume(LBRACE);
+            skipSpaces();
+            start = true;
+            handleStartSelector(selList, createLocator(t.next));
+            styleDeclaration();
+            final int kind = kind();
+            if (kind != RBRACE && kind != EOF) {
+                throw fail(EOF_RBRACE_SET);
+            }
+            advance();
+        }
+        catch (final CSSParseException e) {
+            getErrorHandler().error(e);
+            errorSkipBlock("ignoringRule", e);
+        }
+        catch (final ParseException e) {
+            final CSSParseException cpe = toCSSParseException("invalidStyleRule", e);
+            getErrorHandler().error(cpe);
+            errorSkipBlock("ignoringFollowingDeclarations", cpe);
+        }
+        finally {
+            if (start) {
+                handleEndSelector(selList);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected SelectorList parseSelectorsInternal() throws ParseException {
+        skipSpaces();
+        final SelectorList selectors = selectorList();
+        consume(EOF);
+        return selectors;
+    }
+
+    private SelectorList selectorList() throws ParseException {
+        final SelectorListImpl selList = new SelectorListImpl();
+        Selector sel = selector();
+        selList.setLocator(sel.getLocator());
+        while (kind() == COMMA) {
+            advance();
+            skipSpaces();
+            selList.add(sel);
+            sel = selector();
+            selList.setLocator(sel.getLocator());
+        }
+        expected(COMMA_SET);
+        selList.add(sel);
+        return selList;
+    }
+
+    //
+    // selector
+    //   : simple_selector_sequence [ combinator simple_selector_sequence ]*
+    //   ;
+    //
+    private Selector selector() {
+        try {
+            Selector sel = simpleSelector(null, ' ');
+            while (combinatorFollows()) {
+                final char comb = combinator();
+                sel = simpleSelector(sel, comb);
+            }
+            skipSpaces();
+            return sel;
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidSelector", e);
+        }
+    }
+
+    //
+    // simple_selector
+    //  : element_name [ HASH | class | attrib | pseudo ]*
+    //  | [ HASH | class | attrib | pseudo ]+
+    //  ;
+    //
+    private Selector simpleSelector(final Selector sel, final char comb) {
+        try {
+            final ElementSelector elemSel;
+            SimpleSelector pseudoElementSel = null;
+            switch (kind()) {
+                case IDENT:
+                case ASTERISK:
+                    elemSel = elementName();
+                    while (in(CONDITION_SET, kind())) {
+                        pseudoElementSel = condition(elemSel, pseudoElementSel);
+                    }
+                    expected(CONDITION_SET);
+                    break;
+                case DOT:
+                case COLON:
+                case LSQUARE:
+                case HASH:
+                    elemSel = new ElementSelector(null, createLocator(token_));
+                    do {
+                        pseudoElementSel = condition(elemSel, pseudoElementSel);
+                    }
+                    while (in(CONDITION_SET, kind()));
+                    expected(CONDITION_SET);
+                    break;
+                default:
+                    throw fail(SIMPLE_SELECTOR_SET);
+            }
+
+            Selector result = elemSel;
+            if (sel != null) {
+                switch (comb) {
+                    case ' ':
+                        result = new DescendantSelector(sel, elemSel);
+                        break;
+                    case '+':
+                        result = new DirectAdjacentSelector(sel, elemSel);
+                        break;
+                    case '>':
+                        result = new ChildSelector(sel, elemSel);
+                        break;
+                    case '~':
+                        result = new GeneralAdjacentSelector(sel, elemSel);
+                        break;
+                    default:
+                        result = sel;
+                }
+            }
+            if (pseudoElementSel != null) {
+                result = new DescendantSelector(result, pseudoElementSel);
+            }
+            return result;
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidSimpleSelector", e);
+        }
+    }
+
+    /**
+     * Parses one hash, class, attrib or pseudo condition.
+     * @return the pseudo element selector
+     */
+    private SimpleSelector condition(final ElementSelector elemSel, final SimpleSelector pseudoElementSel)
+            throws ParseException {
+        final boolean pseudoElementFound = pseudoElementSel != null;
+        switch (kind()) {
+            case HASH:
+                elemSel.addCondition(hash(pseudoElementFound));
+                return pseudoElementSel;
+            case DOT:
+                elemSel.addCondition(cssClass(pseudoElementFound));
+                return pseudoElementSel;
+            case LSQUARE:
+                elemSel.addCondition(attrib(pseudoElementFound));
+                return pseudoElementSel;
+            case COLON:
+                final Object o = pseudo(pseudoElementFound);
+                if (o instanceof Condition) {
+                    elemSel.addCondition((Condition) o);
+                    return pseudoElementSel;
+                }
+                return (SimpleSelector) o;
+            default:
+                throw fail(CONDITION_SET);
+        }
+    }
+
+    //
+    // class
+    //   : '.' IDENT
+    //   ;
+    //
+    private Condition cssClass(final boolean pseudoElementFound) {
+        try {
+            ParseException pe = null;
+            if (pseudoElementFound) {
+                pe = generateParseException();
+            }
+            consume(DOT);
+            final Locator locator = createLocator(token_);
+            final Token t = consume(IDENT);
+            if (pseudoElementFound) {
+                throw pe;
+            }
+            return new ClassCondition(unescape(t.image, false), locator);
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidClassSelector", e);
+        }
+    }
+
+    //
+    // element_name
+    //   : IDENT | '*'
+    //   ;
+    //
+    private ElementSelector elementName() {
+        try {
+            switch (kind()) {
+                case IDENT:
+                    final Token t = advance();
+                    return new ElementSelector(unescape(t.image, false), createLocator(t));
+                case ASTERISK:
+                    advance();
+                    return new ElementSelector(null, createLocator(token_));
+                default:
+                    throw fail(ELEMENT_NAME_SET);
+            }
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidElementName", e);
+        }
+    }
+
+    //
+    // attrib
+    //   : '[' S* IDENT S* [ [ '=' | INCLUDES | DASHMATCH | PREFIXMATCH | SUFFIXMATCH | SUBSTRINGMATCH ] S*
+    //     [ IDENT | STRING ] S* ]? ']'
+    //   ;
+    //
+    private Condition attrib(final boolean pseudoElementFound) {
+        try {
+            consume(LSQUARE);
+            final Locator locator = createLocator(token_);
+            skipSpaces();
+            if (pseudoElementFound) {
+                throw generateParseException();
+            }
+            final String name = unescape(consume(IDENT).image, false);
+            skipSpaces();
+
+            final int type = kind();
+            String value = null;
+            if (in(ATTRIB_OPERATOR_SET, type)) {
+                advance();
+                skipSpaces();
+                final int kind = kind();
+                if (kind != IDENT && kind != STRING) {
+                    throw fail(IDENT_STRING_SET);
+                }
+                value = unescape(advance().image, false);
+                skipSpaces();
+            }
+            else {
+                expected(ATTRIB_OPERATOR_SET);
+            }
+            consume(RSQUARE);
+
+            final Condition c;
+            switch (type) {
+                case EQUALS:
+                    c = new AttributeCondition(name, value);
+                    break;
+                case INCLUDES:
+                    c = new OneOfAttributeCondition(name, value);
+                    break;
+                case DASHMATCH:
+                    c = new BeginHyphenAttributeCondition(name, value);
+                    break;
+                case PREFIXMATCH:
+                    c = new PrefixAttributeCondition(name, value);
+                    break;
+                case SUFFIXMATCH:
+                    c = new SuffixAttributeCondition(name, value);
+                    break;
+                case SUBSTRINGMATCH:
+                    c = new SubstringAttributeCondition(name, value);
+                    break;
+                default:
+                    c = new AttributeCondition(name, null);
+            }
+            c.setLocator(locator);
+            return c;
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidAttrib", e);
+        }
+    }
+
+    //
+    // pseudo
+    //  : ':' (':')?
+    //        [ IDENT
+    //          | FUNCTION_NOT S* selector() S* ')'
+    //          | FUNCTION_LANG S* IDENT S* ')'
+    //          | FUNCTION S* ((PLUS | MINUS | DIMENSION | NUMBER | STRING | IDENT)? S*)+ ')'
+    //        ]
+    //  ;
+    //
+    private Object pseudo(final boolean pseudoElementFound) {
+        try {
+            consume(COLON);
+            final Locator locator = createLocator(token_);
+            boolean doubleColon = false;
+            if (kind() == COLON) {
+                advance();
+                doubleColon = true;
+            }
+            else {
+                expected(COLON_SET);
+            }
+
+            final int kind = kind();
+            if (kind == IDENT) {
+                final String s = unescape(advance().image, false);
+                if (pseudoElementFound) {
+                    throw toCSSParseException("duplicatePseudo", new String[] {s}, locator);
+                }
+                if ("first-line".equals(s)
+                        || "first-letter".equals(s)
+                        || "before".equals(s)
+                        || "after".equals(s)) {
+                    return new PseudoElementSelector(s, locator, doubleColon);
+                }
+                return new PseudoClassCondition(s, locator, doubleColon);
+            }
+
+            if (kind == FUNCTION_NOT) {
+                final Token t = advance();
+                final String function = unescape(t.image, false);
+                enterSelectorNesting(t);
+                String arg;
+                try {
+                    skipSpaces();
+                    arg = negationArg();
+                    if ("".equals(arg)) {
+                        arg = "*";
+                    }
+                    skipSpaces();
+                    consume(RROUND);
+                }
+                finally {
+                    exitSelectorNesting();
+                }
+                if (pseudoElementFound) {
+                    throw toCSSParseException("duplicatePseudo", new String[] {function + arg + ")"}, locator);
+                }
+                return new PseudoClassCondition(function + arg + ")", locator, doubleColon);
+            }
+
+            if (kind == FUNCTION_LANG) {
+                advance();
+                skipSpaces();
+                final String lang = unescape(consume(IDENT).image, false);
+                skipSpaces();
+                consume(RROUND);
+                if (pseudoElementFound) {
+                    throw toCSSParseException("duplicatePseudo", new String[] {"lang(" + lang + ")"}, locator);
+                }
+                return new LangCondition(lang, locator);
+            }
+
+            if (kind == FUNCTION) {
+                final String function = unescape(advance().image, false);
+                final StringBuilder args = new StringBuilder();
+                skipSpaces();
+                do {
+                    if (!in(PSEUDO_ARG_SET, kind())) {
+                        throw fail(PSEUDO_ARG_SET);
+                    }
+                    args.append(unescape(advance().image, false));
+                    while (kind() == S) {
+                        args.append(unescape(advance().image, false));
+                    }
+                    expected(S_SET);
+                }
+                while (in(PSEUDO_ARG_SET, kind()));
+                expected(PSEUDO_ARG_SET);
+                consume(RROUND);
+
+                final String pseudo = function + args.toString().trim() + ")";
+                if (pseudoElementFound) {
+                    throw toCSSParseException("duplicatePseudo", new String[] {pseudo}, locator);
+                }
+                return new PseudoClassCondition(pseudo, locator, doubleColon);
+            }
+
+            throw fail(PSEUDO_SET);
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidPseudo", e);
+        }
+    }
+
+    private Condition hash(final boolean pseudoElementFound) {
+        try {
+            ParseException pe = null;
+            if (pseudoElementFound) {
+                pe = generateParseException();
+            }
+            final Token t = consume(HASH);
+            if (pseudoElementFound) {
+                throw pe;
+            }
+            return new IdCondition(unescape(t.image.substring(1), false), createLocator(t));
+        }
+        catch (final ParseException e) {
+            throw toCSSParseException("invalidHash", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void styleDeclaration() throws ParseException {
+        if (in(DECLARATION_SET, kind())) {
+            declaration();
+        }
+        else {
+            expected(DECLARATION_SET);
+        }
+        while (kind() == SEMICOLON) {
+            advance();
+            skipSpaces();
+            if (in(DECLARATION_SET, kind())) {
+                declaration();
+            }
+            else {
+                expected(DECLARATION_SET);
+            }
+        }
+        expected(SEMICOLON_SET);
+    }
+
+    //
+    // declaration
+    //   : property ':' S* expr prio?
+    //   |
+    //   ;
+    //
+    private void declaration() {
+        try {
+            Locator starHack = null;
+            if (kind() == ASTERISK) {
+                advance();
+                starHack = createLocator(token_);
+            }
+            else {
+                expected(ASTERISK_SET);
+            }
+            final String p = property();
+            Locator locator = createLocator(token_);
+            consume(COLON);
+            skipSpaces();
+            final LexicalUnit e = expr();
+
+            boolean priority = false;
+            if (kind() == IMPORTANT_SYM) {
+                priority = prio();
+            }
+            else {
+                expected(IMPORTANT_SET);
+            }
+
+            if (kind() == UNKNOWN) {
+                final Token t = advance();
+                locator = createLocator(t);
+                final CSSParseException cpe =
+                        toCSSParseException("invalidDeclarationInvalidChar", new String[] {t.image}, locator);
+                getErrorHandler().error(cpe);
+                errorSkipDecl();
+            }
+            else {
+                expected(UNKNOWN_SET);
+            }
+
+            if (starHack != null) {
+                final CSSParseException cpe =
+                        toCSSParseException("invalidDeclarationStarHack", new Object[0], starHack);
+                getErrorHandler().error(cpe);
+                return;
+            }
+            handleProperty(p, e, priority, locator);
+        }
+        catch (final CSSParseException ex) {
+            getErrorHandler().error(ex);
+            errorSkipDecl();
+        }
+        catch (final ParseException ex) {
+            final CSSParseException cpe = toCSSParseException("invalidDeclaration", ex);
+            getErrorHandler().error(cpe);
+            errorSkipDecl();
+        }
+    }
+
+    //
+    // prio
+    //   : IMPORTANT_SYM S*
+    //   ;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean prio() throws ParseException {
+        consume(IMPORTANT_SYM);
+        skipSpaces();
+        return true;
+    }
+
+    //
+    // expr
+    //   : term [ operator term ]*
+    //   ;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected LexicalUnit expr() {
+        try {
+            final LexicalUnit head = term(null);
+            LexicalUnit body = head;
+            while (in(OPERATOR_OR_TERM_SET, kind())) {
+                final int kind = kind();
+                if (kind == SLASH || kind == COMMA) {
+                    body = operator(body);
+                }
+                else {
+                    expected(SLASH_COMMA_SET);
+                }
+                body = term(body);
+            }
+            expected(OPERATOR_OR_TERM_SET);
+            return head;
+        }
+        catch (final ParseException ex) {
+            throw toCSSParseException("invalidExpr", ex);
+        }
+    }
+
+    //
+    // term
+    //  : unary_operator?
+    //    [ NUMBER | PERCENTAGE | LENGTH | EMS | REM | EXS | ANGLE | TIME | FREQ | function ]
+    //  | STRING | IDENT | URI | hexcolor | DIMENSION
+    //  S*
+    //  ;
+    //
+    private LexicalUnit term(final LexicalUnit prev) throws ParseException {
+        final char op = optionalUnaryOperator();
+        Locator locator = null;
+        if (op != ' ') {
+            locator = createLocator(token_);
+        }
+
+        final LexicalUnit value;
+        switch (kind()) {
+            case NUMBER:
+                value = number(prev, op);
+                break;
+            case EMS:
+            case REM:
+            case EXS:
+            case CH:
+            case VW:
+            case VH:
+            case VMIN:
+            case VMAX:
+            case LENGTH_PX:
+            case LENGTH_CM:
+            case LENGTH_MM:
+            case LENGTH_IN:
+            case LENGTH_PT:
+            case LENGTH_PC:
+            case LENGTH_Q:
+            case ANGLE_DEG:
+            case ANGLE_RAD:
+            case ANGLE_GRAD:
+            case ANGLE_TURN:
+            case TIME_MS:
+            case TIME_S:
+            case FREQ_HZ:
+            case FREQ_KHZ:
+            case RESOLUTION_DPI:
+            case RESOLUTION_DPCM:
+                value = dimension(prev, op);
+                break;
+            case PERCENTAGE:
+                value = percentage(prev, op);
+                break;
+            case FUNCTION:
+                value = function(prev);
+                break;
+            case FUNCTION_RGB:
+                value = rgbColor(prev);
+                break;
+            case FUNCTION_HSL:
+                value = hslColor(prev);
+                break;
+            case FUNCTION_CALC:
+                value = calc(prev);
+                break;
+            case FUNCTION_VAR:
+                value = var(prev);
+                break;
+            case STRING:
+                value = LexicalUnitImpl.createString(prev, unescape(advance().image, false));
+                break;
+            case PROGID:
+                advance();
+                value = LexicalUnitImpl.createIdent(prev, skipUnit().trim());
+                break;
+            case IDENT:
+                value = identifier(prev);
+                break;
+            case URI:
+                value = LexicalUnitImpl.createURI(prev, unescape(advance().image, true));
+                break;
+            case UNICODE_RANGE:
+                value = unicodeRange(prev);
+                break;
+            case HASH:
+                value = hexcolor(prev);
+                break;
+            case DIMENSION:
+                value = dimensionInternal(prev, op, advance());
+                break;
+            case INHERIT:
+                value = new LexicalUnitImpl(prev, LexicalUnitType.INHERIT, advance().image);
+                break;
+            default:
+                throw fail(TERM_SET);
+        }
+
+        if (locator == null) {
+            locator = createLocator(token_);
+        }
+        skipSpaces();
+        if (value != null) {
+            value.setLocator(locator);
+        }
+        return value;
+    }
+
+    private LexicalUnit identifier(final LexicalUnit prev) throws ParseException {
+        final Token t = advance();
+        if (kind() == COLON) {
+            advance();
+            throw toCSSParseException("invalidExprColon", new String[] {unescape(t.image, false)}, createLocator(t));
+        }
+        expected(COLON_SET);
+        return LexicalUnitImpl.createIdent(prev, unescape(t.image, false));
+    }
+
+    //
+    // function
+    //   : FUNCTION S* ((EQUALS | COMMA | (unaryOperator? NUMBER) | STRING | IDENT | URI)? S*)+ ')' S*
+    //   ;
+    //
+    private LexicalUnit function(final LexicalUnit prev) throws ParseException {
+        final Token t = consume(FUNCTION);
+        final String funct = unescape(t.image, false);
+        enterNesting(t);
+        LexicalUnit param = null;
+        try {
+            skipSpaces();
+            if (in(TERM_OR_UNARY_SET, kind())) {
+                param = term(null);
+                LexicalUnit body = param;
+                while (in(FUNCTION_ARG_SET, kind())) {
+                    final int kind = kind();
+                    if (kind == COMMA) {
+                        advance();
+                        body = LexicalUnitImpl.createComma(body);
+                        skipSpaces();
+                    }
+                    else if (kind == EQUALS) {
+                        body = LexicalUnitImpl.createIdent(body, advance().image);
+                        skipSpaces();
+                    }
+                    else {
+                        expected(EQUALS_COMMA_SET);
+                    }
+                    body = term(body);
+                }
+                expected(FUNCTION_ARG_SET);
+            }
+            else {
+                expected(TERM_OR_UNARY_SET);
+            }
+            consume(RROUND);
+        }
+        finally {
+            exitNesting();
+        }
+        return functionInternal(prev, funct, param);
+    }
+
+    //
+    // calc()
+    // https://www.w3.org/TR/css3-values/#calc-syntax
+    // <calc()> = calc( <calc-sum> )
+    //
+    private LexicalUnit calc(final LexicalUnit prev) throws ParseException {
+        final LexicalUnit head = LexicalUnitImpl.createIdent(null, "");
+        final Token t = consume(FUNCTION_CALC);
+        final String funct = unescape(t.image, false);
+        enterNesting(t);
+        try {
+            skipSpaces();
+            calcSum(head);
+            consume(RROUND);
+        }
+        finally {
+            exitNesting();
+        }
+        return functionInternal(prev, funct, head.getNextLexicalUnit());
+    }
+
+    //
+    // calcSum()
+    // <calc-sum> = <calc-product> [ [ '+' | '-' ] <calc-product> ]*
+    //
+    private LexicalUnit calcSum(final LexicalUnit prev) throws ParseException {
+        LexicalUnit value = calcProduct(prev);
+        while (kind() == MINUS || kind() == PLUS) {
+            if (advance().kind == PLUS) {
+                value = LexicalUnitImpl.createPlus(value);
+            }
+            else {
+                value = LexicalUnitImpl.createMinus(value);
+            }
+            skipSpaces();
+            value = calcProduct(value);
+        }
+        expected(UNARY_SET);
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    //
+    // calcProduct()
+    // <calc-product> = <calc-value> [ '*' <calc-value> | '/' <calc-number-value> ]*
+    //
+    private LexicalUnit calcProduct(final LexicalUnit prev) throws ParseException {
+        LexicalUnit value = calcValue(prev);
+        while (kind() == ASTERISK || kind() == SLASH) {
+            if (advance().kind == ASTERISK) {
+                value = LexicalUnitImpl.createMultiply(value);
+                skipSpaces();
+                value = calcValue(value);
+            }
+            else {
+                value = LexicalUnitImpl.createDivide(value);
+                skipSpaces();
+                value = calcNumberValue(value);
+            }
+        }
+        expected(ASTERISK_SLASH_SET);
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    //
+    // calcValue()
+    // <calc-value> = <number> | <dimension> | <percentage> | ( <calc-sum> )
+    //
+    private LexicalUnit calcValue(final LexicalUnit prev) throws ParseException {
+        final LexicalUnit head = LexicalUnitImpl.createIdent(null, "");
+        final LexicalUnit value;
+        switch (kind()) {
+            case FUNCTION_VAR:
+                value = var(prev);
+                break;
+            case LROUND:
+            case FUNCTION_CALC:
+                enterNesting(advance());
+                try {
+                    calcSum(head);
+                    consume(RROUND);
+                }
+                finally {
+                    exitNesting();
+                }
+                // use an empty function as block scope
+                value = functionInternal(prev, "(", head.getNextLexicalUnit());
+                break;
+            default:
+                if (!in(CALC_VALUE_SET, kind())) {
+                    throw fail(CALC_VALUE_SET);
+                }
+                final char op = optionalUnaryOperator();
+                switch (kind()) {
+                    case NUMBER:
+                        value = number(prev, op);
+                        break;
+                    case PERCENTAGE:
+                        value = percentage(prev, op);
+                        break;
+                    default:
+                        if (!in(UNIT_SET, kind())) {
+                            throw fail(NUMERIC_SET);
+                        }
+                        value = dimension(prev, op);
+                }
+        }
+        skipSpaces();
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    //
+    // calcNumberSum()
+    // <calc-number-sum> = <calc-number-product> [ [ '+' | '-' ] <calc-number-product> ]*
+    //
+    private LexicalUnit calcNumberSum(final LexicalUnit prev) throws ParseException {
+        LexicalUnit value = calcNumberProduct(prev);
+        while (kind() == MINUS || kind() == PLUS) {
+            if (advance().kind == PLUS) {
+                value = LexicalUnitImpl.createPlus(value);
+            }
+            else {
+                value = LexicalUnitImpl.createMinus(value);
+            }
+            skipSpaces();
+            value = calcNumberProduct(value);
+        }
+        expected(UNARY_SET);
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    //
+    // calcNumberProduct()
+    // <calc-number-product> = <calc-number-value> [ '*' <calc-number-value> | '/' <calc-number-value> ]*
+    //
+    private LexicalUnit calcNumberProduct(final LexicalUnit prev) throws ParseException {
+        LexicalUnit value = calcNumberValue(prev);
+        while (kind() == ASTERISK || kind() == SLASH) {
+            if (advance().kind == ASTERISK) {
+                value = LexicalUnitImpl.createMultiply(value);
+            }
+            else {
+                value = LexicalUnitImpl.createDivide(value);
+            }
+            skipSpaces();
+            value = calcNumberValue(value);
+        }
+        expected(ASTERISK_SLASH_SET);
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    //
+    // calcNumberValue()
+    // <calc-number-value> = <number> | ( <calc-number-sum> )
+    //
+    private LexicalUnit calcNumberValue(final LexicalUnit prev) throws ParseException {
+        final LexicalUnit head = LexicalUnitImpl.createIdent(null, "");
+        final LexicalUnit value;
+        switch (kind()) {
+            case NUMBER:
+            case MINUS:
+            case PLUS:
+                value = number(prev, optionalUnaryOperator());
+                break;
+            case FUNCTION_VAR:
+                value = var(prev);
+                break;
+            case LROUND:
+            case FUNCTION_CALC:
+                final Token t = advance();
+                final String funct = unescape(t.image, false);
+                enterNesting(t);
+                try {
+                    calcNumberSum(head);
+                    consume(RROUND);
+                }
+                finally {
+                    exitNesting();
+                }
+                // use an empty function as block scope
+                value = functionInternal(prev, funct, head.getNextLexicalUnit());
+                break;
+            default:
+                throw fail(CALC_NUMBER_VALUE_SET);
+        }
+        skipSpaces();
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    // var()
+    // https://developer.mozilla.org/en-US/docs/Web/CSS/var
+    // var( <custom-property-name> , <declaration-value>? )
+    //
+    private LexicalUnit var(final LexicalUnit prev) throws ParseException {
+        final Token function = consume(FUNCTION_VAR);
+        final String funct = unescape(function.image, false);
+        enterNesting(function);
+        final LexicalUnit propertyName;
+        try {
+            skipSpaces();
+            final Token t = consume(CUSTOM_PROPERTY_NAME);
+            propertyName = LexicalUnitImpl.createIdent(prev, unescape(t.image, false));
+            LexicalUnit current = propertyName;
+            skipSpaces();
+            while (kind() == COMMA) {
+                advance();
+                current = LexicalUnitImpl.createComma(current);
+                skipSpaces();
+                if (in(TERM_OR_UNARY_SET, kind())) {
+                    current = term(current);
+                }
+                else {
+                    expected(TERM_OR_UNARY_SET);
+                }
+            }
+            expected(COMMA_SET);
+            consume(RROUND);
+        }
+        finally {
+            exitNesting();
+        }
+        return functionInternal(prev, funct, propertyName);
+    }
+
+    // rgb() / rgba()
+    //
+    private LexicalUnit rgbColor(final LexicalUnit prev) throws ParseException {
+        final Token t = consume(FUNCTION_RGB);
+        final String funct = unescape(t.image.substring(0, t.image.length() - 1), false);
+        skipSpaces();
+        final LexicalUnit param = numberOrPercentage(null);
+        skipSpaces();
+        LexicalUnit next = optionalComma(param);
+        next = numberOrPercentage(next);
+        skipSpaces();
+        next = optionalComma(next);
+        next = numberOrPercentage(next);
+        skipSpaces();
+        alpha(next);
+        consume(RROUND);
+        return rgbColorInternal(prev, funct, param);
+    }
+
+    // hsl() / hsla()
+    //
+    private LexicalUnit hslColor(final LexicalUnit prev) throws ParseException {
+        final Token t = consume(FUNCTION_HSL);
+        final String funct = unescape(t.image.substring(0, t.image.length() - 1), false);
+        skipSpaces();
+
+        final char op = optionalUnaryOperator();
+        final LexicalUnit param;
+        switch (kind()) {
+            case NUMBER:
+                param = number(null, op);
+                break;
+            case ANGLE_DEG:
+                param = LexicalUnitImpl.createDegree(null, doubleValue(op, advance().image));
+                break;
+            case ANGLE_RAD:
+                param = LexicalUnitImpl.createRadian(null, doubleValue(op, advance().image));
+                break;
+            case ANGLE_GRAD:
+                param = LexicalUnitImpl.createGradian(null, doubleValue(op, advance().image));
+                break;
+            case ANGLE_TURN:
+                param = LexicalUnitImpl.createTurn(null, doubleValue(op, advance().image));
+                break;
+            default:
+                throw fail(HUE_SET);
+        }
+        skipSpaces();
+        LexicalUnit next = optionalComma(param);
+        next = percentage(next, optionalUnaryOperator());
+        skipSpaces();
+        next = optionalComma(next);
+        next = percentage(next, optionalUnaryOperator());
+        skipSpaces();
+        alpha(next);
+        consume(RROUND);
+        return hslColorInternal(prev, funct, param);
+    }
+
+    private LexicalUnit optionalComma(final LexicalUnit prev) {
+        if (kind() == COMMA) {
+            advance();
+            final LexicalUnit next = LexicalUnitImpl.createComma(prev);
+            skipSpaces();
+            return next;
+        }
+        expected(COMMA_SET);
+        return prev;
+    }
+
+    private LexicalUnit numberOrPercentage(final LexicalUnit prev) throws ParseException {
+        final char op = optionalUnaryOperator();
+        switch (kind()) {
+            case NUMBER:
+                return number(prev, op);
+            case PERCENTAGE:
+                return percentage(prev, op);
+            default:
+                throw fail(NUMBER_PERCENTAGE_SET);
+        }
+    }
+
+    /**
+     * The optional alpha value of rgb() and hsl().
+     */
+    private void alpha(final LexicalUnit prev) throws ParseException {
+        if (!in(ALPHA_SET, kind())) {
+            expected(ALPHA_SET);
+            return;
+        }
+
+        LexicalUnit next = prev;
+        switch (kind()) {
+            case COMMA:
+                advance();
+                next = LexicalUnitImpl.createComma(next);
+                skipSpaces();
+                break;
+            case SLASH:
+                advance();
+                next = LexicalUnitImpl.createSlash(next);
+                skipSpaces();
+                break;
+            default:
+                expected(SLASH_COMMA_SET);
+        }
+        numberOrPercentage(next);
+        skipSpaces();
+    }
+
+    //
+    // negation_arg
+    //   : type_selector | universal | HASH | class | attrib | pseudo
+    //   ;
+    //
+    private String negationArg() throws ParseException {
+        switch (kind()) {
+            case IDENT:
+            case ASTERISK:
+                return elementName().toString();
+            case HASH:
+                return hash(false).toString();
+            case DOT:
+                return cssClass(false).toString();
+            case LSQUARE:
+                return attrib(false).toString();
+            case COLON:
+                final Object o = pseudo(false);
+                if (o instanceof Condition) {
+                    return o.toString();
+                }
+                return new DescendantSelector(null, (SimpleSelector) o).toString();
+            default:
+                throw fail(SIMPLE_SELECTOR_SET);
+        }
+    }
+
+    private LexicalUnit number(final LexicalUnit prev, final char op) throws ParseException {
+        final Token t = consume(NUMBER);
+        final LexicalUnit value = numberInternal(prev, op, t);
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    private LexicalUnit percentage(final LexicalUnit prev, final char op) throws ParseException {
+        final Token t = consume(PERCENTAGE);
+        final LexicalUnit value = LexicalUnitImpl.createPercentage(prev, doubleValue(op, t.image));
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    private LexicalUnit dimension(final LexicalUnit prev, final char op) throws ParseException {
+        final int kind = kind();
+        if (!in(UNIT_SET, kind)) {
+            throw fail(UNIT_SET);
+        }
+
+        final double d = doubleValue(op, advance().image);
+        final LexicalUnit value;
+        switch (kind) {
+            case LENGTH_PX:
+                value = LexicalUnitImpl.createPixel(prev, d);
+                break;
+            case LENGTH_CM:
+                value = LexicalUnitImpl.createCentimeter(prev, d);
+                break;
+            case LENGTH_MM:
+                value = LexicalUnitImpl.createMillimeter(prev, d);
+                break;
+            case LENGTH_IN:
+                value = LexicalUnitImpl.createInch(prev, d);
+                break;
+            case LENGTH_PT:
+                value = LexicalUnitImpl.createPoint(prev, d);
+                break;
+            case LENGTH_PC:
+                value = LexicalUnitImpl.createPica(prev, d);
+                break;
+            case LENGTH_Q:
+                value = LexicalUnitImpl.createQuater(prev, d);
+                break;
+            case EMS:
+                value = LexicalUnitImpl.createEm(prev, d);
+                break;
+            case REM:
+                value = LexicalUnitImpl.createRem(prev, d);
+                break;
+            case EXS:
+                value = LexicalUnitImpl.createEx(prev, d);
+                break;
+            case CH:
+                value = LexicalUnitImpl.createCh(prev, d);
+                break;
+            case VW:
+                value = LexicalUnitImpl.createVw(prev, d);
+                break;
+            case VH:
+                value = LexicalUnitImpl.createVh(prev, d);
+                break;
+            case VMIN:
+                value = LexicalUnitImpl.createVMin(prev, d);
+                break;
+            case VMAX:
+                value = LexicalUnitImpl.createVMax(prev, d);
+                break;
+            case ANGLE_DEG:
+                value = LexicalUnitImpl.createDegree(prev, d);
+                break;
+            case ANGLE_RAD:
+                value = LexicalUnitImpl.createRadian(prev, d);
+                break;
+            case ANGLE_GRAD:
+                value = LexicalUnitImpl.createGradian(prev, d);
+                break;
+            case ANGLE_TURN:
+                value = LexicalUnitImpl.createTurn(prev, d);
+                break;
+            case TIME_MS:
+                value = LexicalUnitImpl.createMillisecond(prev, d);
+                break;
+            case TIME_S:
+                value = LexicalUnitImpl.createSecond(prev, d);
+                break;
+            case FREQ_HZ:
+                value = LexicalUnitImpl.createHertz(prev, d);
+                break;
+            case FREQ_KHZ:
+                value = LexicalUnitImpl.createKiloHertz(prev, d);
+                break;
+            case RESOLUTION_DPI:
+                value = LexicalUnitImpl.createDimension(prev, d, "dpi");
+                break;
+            default:
+                value = LexicalUnitImpl.createDimension(prev, d, "dpcm");
+        }
+        if (value != null) {
+            value.setLocator(createLocator(token_));
+        }
+        return value;
+    }
+
+    private LexicalUnit unicodeRange(final LexicalUnit prev) throws ParseException {
+        final Token t = consume(UNICODE_RANGE);
+        return LexicalUnitImpl.createIdent(prev, unescape(t.image, false).toUpperCase(Locale.ROOT));
+    }
+
+    //
+    // hexcolor
+    //   : HASH S*
+    //   ;
+    //
+    private LexicalUnit hexcolor(final LexicalUnit prev) throws ParseException {
+        return hexColorInternal(prev, consume(HASH));
+    }
+
+    private String skip() {
+        final StringBuilder sb = new StringBuilder();
+        int nesting = 0;
+        Token t = token_;
+        if (t.image != null) {
+            sb.append(t.image);
+        }
+
+        do {
+            t = nextToken();
+            if (t.kind == EOF) {
+                break;
+            }
+            sb.append(t.image);
+            appendUnit(t, sb);
+
+            if (t.kind == LBRACE) {
+                nesting++;
+            }
+            else if (t.kind == RBRACE) {
+                nesting--;
+            }
+        }
+        while ((t.kind != RBRACE && t.kind != SEMICOLON) || nesting > 0);
+
+        return sb.toString();
+    }
+
+    private String skipUnit() {
+        final StringBuilder sb = new StringBuilder();
+
+        Token t = token_;
+        Token oldToken = null;
+        while (t.kind != SEMICOLON && t.kind != RBRACE && t.kind != EOF) {
+            oldToken = t;
+            sb.append(oldToken.image);
+            appendUnit(t, sb);
+
+            t = nextToken();
+        }
+        if (t.kind != EOF) {
+            token_ = oldToken;
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendUnit(final Token t, final StringBuilder sb) {
+        switch (t.kind) {
+            case EMS:
+                sb.append("ems");
+                break;
+            case REM:
+                sb.append("rem");
+                break;
+            case EXS:
+                sb.append("ex");
+                break;
+            case CH:
+                sb.append("ch");
+                break;
+            case VW:
+                sb.append("vw");
+                break;
+            case VH:
+                sb.append("vh");
+                break;
+            case VMIN:
+                sb.append("vmin");
+                break;
+            case VMAX:
+                sb.append("vmax");
+                break;
+            case LENGTH_PX:
+                sb.append("px");
+                break;
+            case LENGTH_CM:
+                sb.append("cm");
+                break;
+            case LENGTH_MM:
+                sb.append("mm");
+                break;
+            case LENGTH_IN:
+                sb.append("in");
+                break;
+            case LENGTH_PT:
+                sb.append("pt");
+                break;
+            case LENGTH_PC:
+                sb.append("pc");
+                break;
+            case LENGTH_Q:
+                sb.append('Q');
+                break;
+            case ANGLE_DEG:
+                sb.append("deg");
+                break;
+            case ANGLE_RAD:
+                sb.append("rad");
+                break;
+            case ANGLE_GRAD:
+                sb.append("grad");
+                break;
+            case ANGLE_TURN:
+                sb.append("turn");
+                break;
+            case TIME_MS:
+                sb.append("ms");
+                break;
+            case TIME_S:
+                sb.append('s');
+                break;
+            case FREQ_HZ:
+                sb.append("hz");
+                break;
+            case FREQ_KHZ:
+                sb.append("khz");
+                break;
+            case RESOLUTION_DPI:
+                sb.append("dpi");
+                break;
+            case RESOLUTION_DPCM:
+                sb.append("dpcm");
+                break;
+            case PERCENTAGE:
+                sb.append('%');
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void errorSkipBlock(final String msgKey, final CSSParseException e) {
+        if (msgKey != null) {
+            getErrorHandler().warning(createSkipWarning(msgKey, e));
+        }
+
+        Token t;
+        int nesting = 0;
+        do {
+            t = nextToken();
+            if (t.kind == LBRACE) {
+                nesting++;
+            }
+            else if (t.kind == RBRACE) {
+                nesting--;
+            }
+        }
+        while (t.kind != EOF && (t.kind != RBRACE || nesting > 0));
+    }
+
+    private void errorSkipDecl() {
+        Token t = getToken(1);
+        if (t.kind == LBRACE) {
+            errorSkipBlock(null, null);
+            return;
+        }
+        if (t.kind == RBRACE) {
+            // next will be RBRACE so we are finished
+            return;
+        }
+
+        Token oldToken = token_;
+        while (t.kind != SEMICOLON && t.kind != RBRACE && t.kind != EOF) {
+            oldToken = t;
+            t = nextToken();
+        }
+        if (t.kind != EOF) {
+            token_ = oldToken;
+        }
+    }
+
+    private void errorSkipAtRule() {
+        Token t;
+        do {
+            t = nextToken();
+        }
+        while (t.kind != SEMICOLON && t.kind != EOF);
+    }
+
+    // token handling
+
+    /**
+     * @return the kind of the next token (the token is scanned if required)
+     */
+    private int kind() {
+        Token next = token_.next;
+        if (next == null) {
+            next = tokenizer_.next();
+            token_.next = next;
+        }
+        return next.kind;
+    }
+
+    /**
+     * Consumes the next token; the token has to be scanned already.
+     * @return the consumed token
+     */
+    private Token advance() {
+        token_ = token_.next;
+        gen_++;
+        consumedSinceCleanup_++;
+        if (consumedSinceCleanup_ > MAX_CALLS_BEFORE_CLEANUP) {
+            consumedSinceCleanup_ = 0;
+            for (Call c = calls_; c != null; c = c.next_) {
+                if (c.gen_ < gen_) {
+                    c.first_ = null;
+                }
+            }
+        }
+        return token_;
+    }
+
+    private Token consume(final int kind) throws ParseException {
+        if (kind() == kind) {
+            return advance();
+        }
+        expectedKind_ = kind;
+        throw generateParseException();
+    }
+
+    /**
+     * Records the tokens allowed at the current position for the error messages.
+     */
+    private void expected(final long[] set) {
+        if (expectedGen_ == gen_) {
+            expectedLow_ |= set[0];
+            expectedHigh_ |= set[1];
+        }
+        else {
+            expectedGen_ = gen_;
+            expectedLow_ = set[0];
+            expectedHigh_ = set[1];
+        }
+    }
+
+    /**
+     * The next token is none of the given ones.
+     * @return the exception to throw
+     */
+    private ParseException fail(final long[] set) {
+        expected(set);
+        return generateParseException();
+    }
+
+    /** S* */
+    private void skipSpaces() {
+        while (kind() == S) {
+            advance();
+        }
+        expected(S_SET);
+    }
+
+    /** [S|CDO|CDC]* */
+    private void skipSpacesAndCdoCdc() {
+        while (in(S_CDO_CDC_SET, kind())) {
+            advance();
+        }
+        expected(S_CDO_CDC_SET);
+    }
+
+    private Token nextToken() {
+        kind();
+        token_ = token_.next;
+        gen_++;
+        return token_;
+    }
+
+    private Token getToken(final int index) {
+        Token t = token_;
+        for (int i = 0; i < index; i++) {
+            if (t.next == null) {
+                t.next = tokenizer_.next();
+            }
+            t = t.next;
+        }
+        return t;
+    }
+
+    /**
+     * The lookahead of the selector production: is the next token a
+     * combinator followed by the start of another simple selector.
+     */
+    private boolean combinatorFollows() {
+        final boolean follows;
+        int scanned = 2;
+        switch (kind()) {
+            case PLUS:
+            case GREATER:
+            case TILDE:
+                final int next = getToken(2).kind;
+                follows = next == S || in(SIMPLE_SELECTOR_SET, next);
+                break;
+            case S:
+                final int afterSpace = getToken(2).kind;
+                follows = in(COMBINATOR_SET, afterSpace) || in(SIMPLE_SELECTOR_SET, afterSpace);
+                break;
+            default:
+                follows = false;
+                scanned = 1;
+        }
+
+        // remember the call, rescan() has to replay it if an error occurs
+        Call call = calls_;
+        while (call.gen_ > gen_) {
+            if (call.next_ == null) {
+                call.next_ = new Call();
+                call = call.next_;
+                break;
+            }
+            call = call.next_;
+        }
+        call.gen_ = gen_ + scanned;
+        call.first_ = token_;
+        return follows;
+    }
+
+    // error messages; this follows the logic of the generated parser to report
+    // exactly the same expected token sequences
+
+    private ParseException generateParseException() {
+        expectedSequences_.clear();
+        final boolean[] expected = new boolean[KINDS];
+        if (expectedKind_ >= 0) {
+            expected[expectedKind_] = true;
+            expectedKind_ = -1;
+        }
+        if (expectedGen_ == gen_) {
+            for (int i = 0; i < KINDS; i++) {
+                if (in(expectedLow_, expectedHigh_, i)) {
+                    expected[i] = true;
+                }
+            }
+        }
+        for (int i = 0; i < KINDS; i++) {
+            if (expected[i]) {
+                expectedSequences_.add(new int[] {i});
+            }
+        }
+        endPos_ = 0;
+        rescan();
+        addErrorToken(0, 0);
+        return new ParseException(token_, expectedSequences_.toArray(new int[0][]), tokenImage);
+    }
+
+    private void rescan() {
+        try {
+            Call call = calls_;
+            do {
+                if (call.gen_ > gen_) {
+                    lookahead_ = 2;
+                    scanPos_ = call.first_;
+                    lastPos_ = call.first_;
+                    if (!scanCombinator()) {
+                        scanSimpleSelector();
+                    }
+                }
+                call = call.next_;
+            }
+            while (call != null);
+        }
+        catch (final LookaheadSuccess e) {
+            // the scan reached the end of the lookahead
+        }
+    }
+
+    /**
+     * @return true if the scan failed
+     */
+    private boolean scanCombinator() {
+        final Token xsp = scanPos_;
+        if (!scanToken(PLUS) || restore(xsp) && !scanToken(GREATER) || restore(xsp) && !scanToken(TILDE)) {
+            scanSpaces();
+            return false;
+        }
+        scanPos_ = xsp;
+        if (scanToken(S)) {
+            return true;
+        }
+        final Token xsp2 = scanPos_;
+        if (scanToken(PLUS) && restore(xsp2) && scanToken(GREATER) && restore(xsp2) && scanToken(TILDE)) {
+            scanPos_ = xsp2;
+        }
+        return false;
+    }
+
+    private void scanSpaces() {
+        while (true) {
+            final Token xsp = scanPos_;
+            if (scanToken(S)) {
+                scanPos_ = xsp;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the scan failed
+     */
+    private boolean scanSimpleSelector() {
+        final Token xsp = scanPos_;
+        if (!scanToken(IDENT) || restore(xsp) && !scanToken(ASTERISK)) {
+            return false;
+        }
+        scanPos_ = xsp;
+        if (scanCondition()) {
+            return true;
+        }
+        while (true) {
+            final Token xsp2 = scanPos_;
+            if (scanCondition()) {
+                scanPos_ = xsp2;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return true if the scan failed
+     */
+    private boolean scanCondition() {
+        final Token xsp = scanPos_;
+        return scanToken(HASH) && restore(xsp) && scanToken(DOT)
+                && restore(xsp) && scanToken(LSQUARE) && restore(xsp) && scanToken(COLON);
+    }
+
+    private boolean restore(final Token pos) {
+        scanPos_ = pos;
+        return true;
+    }
+
+    /**
+     * @return true if the token at the scan position is not of the given kind
+     */
+    private boolean scanToken(final int kind) {
+        if (scanPos_ == lastPos_) {
+            lookahead_--;
+            if (scanPos_.next == null) {
+                scanPos_.next = tokenizer_.next();
+            }
+            scanPos_ = scanPos_.next;
+            lastPos_ = scanPos_;
+        }
+        else {
+            scanPos_ = scanPos_.next;
+        }
+
+        int i = 0;
+        Token tok = token_;
+        while (tok != null && tok != scanPos_) {
+            i++;
+            tok = tok.next;
+        }
+        if (tok != null) {
+            addErrorToken(kind, i);
+        }
+
+        if (scanPos_.kind != kind) {
+            return true;
+        }
+        if (lookahead_ == 0 && scanPos_ == lastPos_) {
+            throw LOOKAHEAD_SUCCESS;
+        }
+        return false;
+    }
+
+    private void addErrorToken(final int kind, final int pos) {
+        if (pos >= MAX_ERROR_TOKENS) {
+            return;
+        }
+
+        if (pos == endPos_ + 1) {
+            lastTokens_[endPos_++] = kind;
+        }
+        else if (endPos_ != 0) {
+            final int[] sequence = new int[endPos_];
+            System.arraycopy(lastTokens_, 0, sequence, 0, endPos_);
+
+            for (final int[] old : expectedSequences_) {
+                if (old.length == sequence.length) {
+                    boolean matches = true;
+                    for (int i = 0; i < sequence.length; i++) {
+                        if (old[i] != sequence[i]) {
+                            matches = false;
+                            break;
+                        }
+                    }
+                    if (matches) {
+                        expectedSequences_.add(sequence);
+                        break;
+                    }
+                }
+            }
+
+            if (pos != 0) {
+                endPos_ = pos;
+                lastTokens_[pos - 1] = kind;
+            }
+        }
+    }
+
+    private static boolean in(final long[] set, final int kind) {
+        return (set[kind >>> 6] & (1L << kind)) != 0;
+    }
+
+    private static boolean in(final long low, final long high, final int kind) {
+        return ((kind < 64 ? low : high) & (1L << kind)) != 0;
+    }
+
+    private static long[] set(final int... kinds) {
+        final long[] set = new long[2];
+        for (final int kind : kinds) {
+            set[kind >>> 6] |= 1L << kind;
+        }
+        return set;
+    }
+
+    private static long[] range(final int from, final int to) {
+        final long[] set = new long[2];
+        for (int kind = from; kind <= to; kind++) {
+            set[kind >>> 6] |= 1L << kind;
+        }
+        return set;
+    }
+
+    private static long[] union(final long[] set1, final long[] set2) {
+        return new long[] {set1[0] | set2[0], set1[1] | set2[1]};
+    }
+
+    /**
+     * A lookahead call of the selector production.
+     */
+    private static final class Call {
+        private int gen_;
+        private Token first_;
+        private Call next_;
+    }
+
+    /**
+     * Stops the scan as soon as the lookahead is satisfied.
+     */
+    private static final class LookaheadSuccess extends Error {
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
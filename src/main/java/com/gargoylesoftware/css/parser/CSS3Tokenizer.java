@@ -0,0 +1,1018 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserTokenManager;
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.Token;
+import com.gargoylesoftware.css.parser.javacc.TokenMgrError;
+
+/**
+ * Hand written tokenizer producing exactly the same tokens (kinds, images
+ * and positions) as the generated {@link CSS3ParserTokenManager}.
+ * The first char of a token is dispatched using a switch, the char classes
+ * used by the token patterns are looked up in a table. The chars of the
+ * current token are buffered, patterns needing more than one char of
+ * lookahead are matched against this buffer and the stream is backed up
+ * to the end of the longest match at the end.
+ *
+ * @author Ronald Brill
+ */
+final class CSS3Tokenizer implements CSS3ParserConstants {
+
+    /** The kind of the unnamed "progid:" token. */
+    static final int PROGID = 116;
+
+    private static final int WS = 1;
+    private static final int DIGIT = 1 << 1;
+    private static final int HEX = 1 << 2;
+    private static final int NMSTART = 1 << 3;
+    private static final int NMCHAR = 1 << 4;
+    private static final int DIMCHAR = 1 << 5;
+    private static final int URLCHAR = 1 << 6;
+
+    /** The classes of all chars above 0x7f. */
+    private static final int NON_ASCII = NMSTART | NMCHAR | DIMCHAR | URLCHAR;
+
+    private static final int[] CLASSES = new int[128];
+
+    /** The length of the unit suffix trimmed from the image of the unit tokens. */
+    private static final int[] UNIT_LENGTH = new int[PERCENTAGE + 1];
+
+    private static final int INITIAL_BUFFER_SIZE = 64;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4096;
+
+    static {
+        for (int c = 0; c < CLASSES.length; c++) {
+            int classes = 0;
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+                classes |= WS;
+            }
+            final boolean letter = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+            final boolean digit = c >= '0' && c <= '9';
+            if (digit) {
+                classes |= DIGIT;
+            }
+            if (digit || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') {
+                classes |= HEX;
+            }
+            if (letter || c == '_') {
+                classes |= NMSTART | NMCHAR;
+            }
+            if (digit || c == '-') {
+                classes |= NMCHAR;
+            }
+            if (letter || digit) {
+                classes |= DIMCHAR;
+            }
+            if (c == '!' || c == '#' || c == '$' || c == '%' || c == '&'
+                    || c >= '*' && c <= '[' || c >= ']' && c <= '~') {
+                classes |= URLCHAR;
+            }
+            CLASSES[c] = classes;
+        }
+
+        UNIT_LENGTH[EMS] = 2;
+        UNIT_LENGTH[REM] = 3;
+        UNIT_LENGTH[EXS] = 2;
+        UNIT_LENGTH[CH] = 2;
+        UNIT_LENGTH[VW] = 2;
+        UNIT_LENGTH[VH] = 2;
+        UNIT_LENGTH[VMIN] = 4;
+        UNIT_LENGTH[VMAX] = 4;
+        UNIT_LENGTH[LENGTH_PX] = 2;
+        UNIT_LENGTH[LENGTH_CM] = 2;
+        UNIT_LENGTH[LENGTH_MM] = 2;
+        UNIT_LENGTH[LENGTH_IN] = 2;
+        UNIT_LENGTH[LENGTH_PT] = 2;
+        UNIT_LENGTH[LENGTH_PC] = 2;
+        UNIT_LENGTH[LENGTH_Q] = 1;
+        UNIT_LENGTH[ANGLE_DEG] = 3;
+        UNIT_LENGTH[ANGLE_RAD] = 3;
+        UNIT_LENGTH[ANGLE_GRAD] = 4;
+        UNIT_LENGTH[ANGLE_TURN] = 4;
+        UNIT_LENGTH[TIME_MS] = 2;
+        UNIT_LENGTH[TIME_S] = 1;
+        UNIT_LENGTH[FREQ_HZ] = 2;
+        UNIT_LENGTH[FREQ_KHZ] = 3;
+        UNIT_LENGTH[RESOLUTION_DPI] = 3;
+        UNIT_LENGTH[RESOLUTION_DPCM] = 4;
+        UNIT_LENGTH[PERCENTAGE] = 1;
+    }
+
+    private CharStream stream_;
+
+    private char[] chars_ = new char[INITIAL_BUFFER_SIZE];
+    private int length_;
+    private boolean eof_;
+
+    private int kind_;
+    private int end_;
+
+    /**
+     * The generated token manager uses the image of the last token with a
+     * lexical action (or of the last skipped comment) for the eof token;
+     * we do the same.
+     */
+    private String eofImage_ = "";
+
+    /**
+     * @param stream the stream to read from
+     */
+    void reset(final CharStream stream) {
+        stream_ = stream;
+    }
+
+    /**
+     * @return the next token
+     */
+    Token next() {
+        while (true) {
+            final char first;
+            try {
+                first = stream_.BeginToken();
+            }
+            catch (final IOException e) {
+                final Token t = new Token(EOF, eofImage_);
+                t.beginLine = stream_.getEndLine();
+                t.endLine = t.beginLine;
+                t.beginColumn = stream_.getEndColumn();
+                t.endColumn = t.beginColumn;
+                return t;
+            }
+
+            chars_[0] = first;
+            length_ = 1;
+            eof_ = false;
+            eofImage_ = "";
+
+            if (first == '/' && ch(1) == '*') {
+                end_ = 2;
+                backup();
+                eofImage_ = "/*";
+                skipComment();
+                continue;
+            }
+
+            match(first);
+            backup();
+            return newToken();
+        }
+    }
+
+    private void backup() {
+        if (length_ > end_) {
+            stream_.backup(length_ - end_);
+        }
+        if (chars_.length > MAX_RETAINED_BUFFER_SIZE) {
+            chars_ = new char[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    private void skipComment() {
+        try {
+            if (stream_ instanceof CommentSkippingCharStream) {
+                ((CommentSkippingCharStream) stream_).skipComment();
+                return;
+            }
+
+            char prev = 0;
+            while (true) {
+                final char c = stream_.readChar();
+                if (prev == '*' && c == '/') {
+                    return;
+                }
+                prev = c;
+            }
+        }
+        catch (final IOException e) {
+            throw new TokenMgrError(true, DEFAULT, stream_.getEndLine(), stream_.getEndColumn(),
+                    "/*", 0, TokenMgrError.LEXICAL_ERROR);
+        }
+    }
+
+    private Token newToken() {
+        final int kind = kind_;
+        final String literal = CSS3ParserTokenManager.jjstrLiteralImages[kind];
+        String image = literal == null ? stream_.GetImage() : literal;
+
+        if (kind == STRING) {
+            image = ParserUtils.trimBy(image, 1, 1);
+        }
+        else if (kind == URI) {
+            image = ParserUtils.trimUrl(image);
+        }
+        else if (kind >= EMS && kind <= PERCENTAGE) {
+            eofImage_ = image;
+            image = ParserUtils.trimBy(image, 0, UNIT_LENGTH[kind]);
+        }
+
+        final Token t = new Token(kind, image);
+        t.beginLine = stream_.getBeginLine();
+        t.beginColumn = stream_.getBeginColumn();
+        t.endLine = stream_.getEndLine();
+        t.endColumn = stream_.getEndColumn();
+
+        if (stream_ instanceof TokenObservingCharStream) {
+            ((TokenObservingCharStream) stream_).tokenMatched(t);
+        }
+        return t;
+    }
+
+    /**
+     * Matches the longest token starting with the given char;
+     * sets kind_ and end_.
+     */
+    private void match(final char first) {
+        switch (first) {
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+            case '\f':
+                whitespace();
+                return;
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                number();
+                return;
+            case '.':
+                if (is(ch(1), DIGIT)) {
+                    number();
+                    return;
+                }
+                token(DOT, 1);
+                return;
+            case '-':
+                minus();
+                return;
+            case '#':
+                final int name = nmchars(1);
+                token(name > 1 ? HASH : UNKNOWN, name > 1 ? name : 1);
+                return;
+            case '@':
+                atKeyword();
+                return;
+            case '!':
+                important();
+                return;
+            case '"':
+            case '\'':
+                final int string = string(0);
+                token(string > 0 ? STRING : UNKNOWN, string > 0 ? string : 1);
+                return;
+            case '<':
+                if (ch(1) == '!' && ch(2) == '-' && ch(3) == '-') {
+                    token(CDO, 4);
+                    return;
+                }
+                token(UNKNOWN, 1);
+                return;
+            case '~':
+                operator(INCLUDES, TILDE);
+                return;
+            case '|':
+                operator(DASHMATCH, UNKNOWN);
+                return;
+            case '^':
+                operator(PREFIXMATCH, UNKNOWN);
+                return;
+            case '$':
+                operator(SUFFIXMATCH, UNKNOWN);
+                return;
+            case '*':
+                operator(SUBSTRINGMATCH, ASTERISK);
+                return;
+            case '/':
+                token(SLASH, 1);
+                return;
+            case '{':
+                token(LBRACE, 1);
+                return;
+            case '}':
+                token(RBRACE, 1);
+                return;
+            case '(':
+                token(LROUND, 1);
+                return;
+            case ')':
+                token(RROUND, 1);
+                return;
+            case ';':
+                token(SEMICOLON, 1);
+                return;
+            case ':':
+                token(COLON, 1);
+                return;
+            case '=':
+                token(EQUALS, 1);
+                return;
+            case '[':
+                token(LSQUARE, 1);
+                return;
+            case ']':
+                token(RSQUARE, 1);
+                return;
+            case '+':
+                token(PLUS, 1);
+                return;
+            case '>':
+                token(GREATER, 1);
+                return;
+            case ',':
+                token(COMMA, 1);
+                return;
+            default:
+                if (first == '\\' || is(first, NMSTART)) {
+                    identifier();
+                    return;
+                }
+                token(UNKNOWN, 1);
+        }
+    }
+
+    private void token(final int kind, final int end) {
+        kind_ = kind;
+        end_ = end;
+    }
+
+    /**
+     * Records the given match if it is longer than the current one
+     * (or has the same length and a lower kind).
+     */
+    private void candidate(final int kind, final int end) {
+        if (end > end_ || end == end_ && kind < kind_) {
+            kind_ = kind;
+            end_ = end;
+        }
+    }
+
+    private void operator(final int withEquals, final int single) {
+        if (ch(1) == '=') {
+            token(withEquals, 2);
+            return;
+        }
+        token(single, 1);
+    }
+
+    private void whitespace() {
+        int i = 1;
+        while (is(ch(i), WS)) {
+            i++;
+        }
+
+        switch (ch(i)) {
+            case '{':
+                token(LBRACE, i + 1);
+                return;
+            case '+':
+                token(PLUS, i + 1);
+                return;
+            case '>':
+                token(GREATER, i + 1);
+                return;
+            case ',':
+                token(COMMA, i + 1);
+                return;
+            default:
+                token(S, i);
+        }
+    }
+
+    private void minus() {
+        if (ch(1) == '-') {
+            if (ch(2) == '>') {
+                token(CDC, 3);
+                return;
+            }
+            final int start = nmstart(2);
+            if (start > 0) {
+                token(CUSTOM_PROPERTY_NAME, nmchars(start));
+                return;
+            }
+            token(MINUS, 1);
+            return;
+        }
+
+        final int start = nmstart(1);
+        if (start < 0) {
+            token(MINUS, 1);
+            return;
+        }
+        final int end = nmchars(start);
+        if (ch(end) == '(') {
+            token(FUNCTION, end + 1);
+            return;
+        }
+        token(IDENT, end);
+    }
+
+    private void identifier() {
+        final int start = nmstart(0);
+        if (start < 0) {
+            token(UNKNOWN, 1);
+            return;
+        }
+        final int end = nmchars(start);
+
+        final int next = ch(end);
+        if (next == '(') {
+            if (raw("url", end)) {
+                final int uri = uri(4);
+                if (uri > 0) {
+                    token(URI, uri);
+                    return;
+                }
+            }
+            token(functionKind(end), end + 1);
+            return;
+        }
+
+        if (end == 1 && next == '+' && (chars_[0] | 0x20) == 'u') {
+            final int range = unicodeRange();
+            if (range > 0) {
+                token(UNICODE_RANGE, range);
+                return;
+            }
+        }
+
+        if (next == ':' && raw("progid", end)) {
+            token(PROGID, end + 1);
+            return;
+        }
+
+        token(keywordKind(end), end);
+    }
+
+    private int keywordKind(final int end) {
+        switch (end) {
+            case 3:
+                if (raw("and", end)) {
+                    return AND;
+                }
+                if (raw("not", end)) {
+                    return NOT;
+                }
+                return IDENT;
+            case 4:
+                return raw("only", end) ? ONLY : IDENT;
+            case 7:
+                return raw("inherit", end) ? INHERIT : IDENT;
+            default:
+                return IDENT;
+        }
+    }
+
+    private int functionKind(final int end) {
+        switch (end) {
+            case 3:
+                if (raw("not", end)) {
+                    return FUNCTION_NOT;
+                }
+                if (raw("var", end)) {
+                    return FUNCTION_VAR;
+                }
+                if (raw("rgb", end)) {
+                    return FUNCTION_RGB;
+                }
+                if (raw("hsl", end)) {
+                    return FUNCTION_HSL;
+                }
+                return FUNCTION;
+            case 4:
+                if (raw("lang", end)) {
+                    return FUNCTION_LANG;
+                }
+                if (raw("calc", end)) {
+                    return FUNCTION_CALC;
+                }
+                if (raw("rgba", end)) {
+                    return FUNCTION_RGB;
+                }
+                if (raw("hsla", end)) {
+                    return FUNCTION_HSL;
+                }
+                return FUNCTION;
+            default:
+                return FUNCTION;
+        }
+    }
+
+    /**
+     * @return true if the buffered chars from the beginning up to the given end
+     * are the given (lower case letters only) literal ignoring case
+     */
+    private boolean raw(final String literal, final int end) {
+        if (end != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if ((chars_[i] | 0x20) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches the given (lower case letters only) literal ignoring case.
+     * @return the end of the match or -1
+     */
+    private int literal(final int pos, final String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if ((ch(pos + i) | 0x20) != literal.charAt(i)) {
+                return -1;
+            }
+        }
+        return pos + literal.length();
+    }
+
+    private int unicodeRange() {
+        final int first = placeholders(2);
+        if (first < 0) {
+            return -1;
+        }
+        if (ch(first) == '-') {
+            final int second = placeholders(first + 1);
+            if (second > 0) {
+                return second;
+            }
+        }
+        return first;
+    }
+
+    private int placeholders(final int pos) {
+        int i = pos;
+        while (i < pos + 6) {
+            final int c = ch(i);
+            if (c != '?' && !is(c, HEX)) {
+                break;
+            }
+            i++;
+        }
+        return i == pos ? -1 : i;
+    }
+
+    private int uri(final int pos) {
+        int i = skipWhitespace(pos);
+
+        final int c = ch(i);
+        if (c == '"' || c == '\'') {
+            i = string(i);
+            if (i < 0) {
+                return -1;
+            }
+        }
+        else {
+            while (true) {
+                final int u = ch(i);
+                if (is(u, URLCHAR)) {
+                    i++;
+                }
+                else if (u == '\\') {
+                    final int escape = escape(i);
+                    if (escape < 0) {
+                        break;
+                    }
+                    i = escape;
+                }
+                else {
+                    break;
+                }
+            }
+        }
+
+        i = skipWhitespace(i);
+        return ch(i) == ')' ? i + 1 : -1;
+    }
+
+    private int skipWhitespace(final int pos) {
+        int i = pos;
+        while (is(ch(i), WS)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Matches a string starting with the quote at the given position.
+     * @return the end of the match or -1
+     */
+    private int string(final int pos) {
+        final int quote = ch(pos);
+        int i = pos + 1;
+        while (true) {
+            final int c = ch(i);
+            if (c == quote) {
+                return i + 1;
+            }
+            if (c < 0 || c == '\n' || c == '\r' || c == '\f') {
+                return -1;
+            }
+            if (c == '\\') {
+                final int n = ch(i + 1);
+                if (n == '\n' || n == '\f') {
+                    i += 2;
+                }
+                else if (n == '\r') {
+                    i += ch(i + 2) == '\n' ? 3 : 2;
+                }
+                else {
+                    i = escape(i);
+                    if (i < 0) {
+                        return -1;
+                    }
+                }
+            }
+            else {
+                i++;
+            }
+        }
+    }
+
+    private void atKeyword() {
+        token(UNKNOWN, 1);
+
+        final int ident = ident(1);
+        if (ident > 0) {
+            candidate(ATKEYWORD, ident);
+        }
+        candidate(IMPORT_SYM, letters(1, "import"));
+        candidate(PAGE_SYM, letters(1, "page"));
+        candidate(MEDIA_SYM, letters(1, "media"));
+        candidate(CHARSET_SYM, letters(1, "charset"));
+
+        final int font = letters(1, "font");
+        if (font > 0 && ch(font) == '-') {
+            candidate(FONT_FACE_SYM, letters(font + 1, "face"));
+        }
+    }
+
+    private void important() {
+        int i = 1;
+        while (true) {
+            final int c = ch(i);
+            if (is(c, WS)) {
+                i++;
+            }
+            else if (c == '/' && ch(i + 1) == '*') {
+                final int comment = commentEnd(i + 2);
+                if (comment < 0) {
+                    break;
+                }
+                i = comment;
+            }
+            else {
+                break;
+            }
+        }
+
+        final int end = letters(i, "important");
+        if (end > 0) {
+            token(IMPORTANT_SYM, end);
+            return;
+        }
+        token(UNKNOWN, 1);
+    }
+
+    private int commentEnd(final int pos) {
+        int i = pos;
+        while (true) {
+            final int c = ch(i);
+            if (c < 0) {
+                return -1;
+            }
+            i++;
+            if (c == '*' && ch(i) == '/') {
+                return i + 1;
+            }
+        }
+    }
+
+    private void number() {
+        int i = 0;
+        while (is(ch(i), DIGIT)) {
+            i++;
+        }
+        if (ch(i) == '.' && is(ch(i + 1), DIGIT)) {
+            i += 2;
+            while (is(ch(i), DIGIT)) {
+                i++;
+            }
+        }
+        final int mantissa = i;
+
+        int exponent = -1;
+        final int e = ch(i);
+        if (e == 'e' || e == 'E') {
+            int j = i + 1;
+            final int sign = ch(j);
+            if (sign == '+' || sign == '-') {
+                j++;
+            }
+            if (is(ch(j), DIGIT)) {
+                while (is(ch(j), DIGIT)) {
+                    j++;
+                }
+                exponent = j;
+            }
+        }
+
+        token(NUMBER, mantissa);
+        unit(mantissa);
+        if (exponent > 0) {
+            candidate(NUMBER, exponent);
+            unit(exponent);
+        }
+    }
+
+    /**
+     * Records all unit tokens matching after the number ending at the given position.
+     */
+    private void unit(final int pos) {
+        final int c = ch(pos);
+        if (c == '%') {
+            candidate(PERCENTAGE, pos + 1);
+            return;
+        }
+
+        if (c == '\\') {
+            candidate(EMS, letters(pos, "em"));
+            candidate(EXS, letters(pos, "ex"));
+            candidate(TIME_MS, letters(pos, "ms"));
+            candidate(TIME_S, letters(pos, "s"));
+            candidate(FREQ_HZ, letters(pos, "hz"));
+            candidate(FREQ_KHZ, letters(pos, "khz"));
+        }
+        else {
+            switch (c | 0x20) {
+                case 'e':
+                    candidate(EMS, letters(pos, "em"));
+                    candidate(EXS, letters(pos, "ex"));
+                    break;
+                case 'r':
+                    candidate(REM, literal(pos, "rem"));
+                    candidate(ANGLE_RAD, literal(pos, "rad"));
+                    break;
+                case 'c':
+                    candidate(CH, literal(pos, "ch"));
+                    candidate(LENGTH_CM, literal(pos, "cm"));
+                    break;
+                case 'v':
+                    candidate(VW, literal(pos, "vw"));
+                    candidate(VH, literal(pos, "vh"));
+                    candidate(VMIN, literal(pos, "vmin"));
+                    candidate(VMAX, literal(pos, "vmax"));
+                    break;
+                case 'p':
+                    candidate(LENGTH_PX, literal(pos, "px"));
+                    candidate(LENGTH_PT, literal(pos, "pt"));
+                    candidate(LENGTH_PC, literal(pos, "pc"));
+                    break;
+                case 'm':
+                    candidate(LENGTH_MM, literal(pos, "mm"));
+                    candidate(TIME_MS, letters(pos, "ms"));
+                    break;
+                case 'i':
+                    candidate(LENGTH_IN, literal(pos, "in"));
+                    break;
+                case 'q':
+                    candidate(LENGTH_Q, pos + 1);
+                    break;
+                case 'd':
+                    candidate(ANGLE_DEG, literal(pos, "deg"));
+                    candidate(RESOLUTION_DPI, literal(pos, "dpi"));
+                    candidate(RESOLUTION_DPCM, literal(pos, "dpcm"));
+                    break;
+                case 'g':
+                    candidate(ANGLE_GRAD, literal(pos, "grad"));
+                    break;
+                case 't':
+                    candidate(ANGLE_TURN, literal(pos, "turn"));
+                    break;
+                case 's':
+                    candidate(TIME_S, letters(pos, "s"));
+                    break;
+                case 'h':
+                    candidate(FREQ_HZ, letters(pos, "hz"));
+                    break;
+                case 'k':
+                    candidate(FREQ_KHZ, letters(pos, "khz"));
+                    break;
+                default:
+            }
+        }
+
+        final int start = nmstart(pos);
+        if (start > 0) {
+            int i = start;
+            while (true) {
+                final int d = ch(i);
+                if (is(d, DIMCHAR)) {
+                    i++;
+                }
+                else if (d == '\\') {
+                    final int escape = escape(i);
+                    if (escape < 0) {
+                        break;
+                    }
+                    i = escape;
+                }
+                else {
+                    break;
+                }
+            }
+            candidate(DIMENSION, i);
+        }
+    }
+
+    /**
+     * Matches a sequence of letters; every letter may be written as
+     * (the lower or upper case) char, as an escaped hex code or - if the letter is not
+     * a hex digit - as an escaped char.
+     * @return the end of the match or -1
+     */
+    private int letters(final int pos, final String letters) {
+        int i = pos;
+        for (int l = 0; l < letters.length(); l++) {
+            i = letter(i, letters.charAt(l));
+            if (i < 0) {
+                return -1;
+            }
+        }
+        return i;
+    }
+
+    private int letter(final int pos, final char letter) {
+        final int c = ch(pos);
+        if ((c | 0x20) == letter) {
+            return pos + 1;
+        }
+        if (c != '\\') {
+            return -1;
+        }
+
+        if (letter > 'f' && (ch(pos + 1) | 0x20) == letter) {
+            return pos + 2;
+        }
+
+        int i = pos + 1;
+        while (i < pos + 5 && ch(i) == '0') {
+            i++;
+        }
+        final int high = ParserUtils.hexValue((char) ch(i));
+        final int low = ParserUtils.hexValue((char) ch(i + 1));
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        // the grammar uses 51/71 for the letter 'o'
+        final int code = letter == 'o' ? 0x51 : letter - 0x20;
+        final int value = high * 16 + low;
+        if (value != code && value != code + 0x20) {
+            return -1;
+        }
+
+        i += 2;
+        final int n = ch(i);
+        if (n == '\r' && ch(i + 1) == '\n') {
+            return i + 2;
+        }
+        if (is(n, WS)) {
+            return i + 1;
+        }
+        return i;
+    }
+
+    private int ident(final int pos) {
+        int i = pos;
+        if (ch(i) == '-') {
+            i++;
+        }
+        final int start = nmstart(i);
+        if (start < 0) {
+            return -1;
+        }
+        return nmchars(start);
+    }
+
+    private int nmstart(final int pos) {
+        final int c = ch(pos);
+        if (c == '\\') {
+            return escape(pos);
+        }
+        return is(c, NMSTART) ? pos + 1 : -1;
+    }
+
+    private int nmchars(final int pos) {
+        int i = pos;
+        while (true) {
+            final int c = ch(i);
+            if (is(c, NMCHAR)) {
+                i++;
+            }
+            else if (c == '\\') {
+                final int escape = escape(i);
+                if (escape < 0) {
+                    return i;
+                }
+                i = escape;
+            }
+            else {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Matches an escape starting with the backslash at the given position.
+     * @return the end of the match or -1
+     */
+    private int escape(final int pos) {
+        final int c = ch(pos + 1);
+        if (c < 0 || c == '\r' || c == '\n' || c == '\f') {
+            return -1;
+        }
+        if (!is(c, HEX)) {
+            return pos + 2;
+        }
+
+        int i = pos + 2;
+        while (i < pos + 7 && is(ch(i), HEX)) {
+            i++;
+        }
+        final int n = ch(i);
+        if (n == '\r' && ch(i + 1) == '\n') {
+            return i + 2;
+        }
+        if (is(n, WS)) {
+            return i + 1;
+        }
+        return i;
+    }
+
+    private static boolean is(final int c, final int classes) {
+        if (c < 0) {
+            return false;
+        }
+        if (c < 128) {
+            return (CLASSES[c] & classes) != 0;
+        }
+        return (NON_ASCII & classes) != 0;
+    }
+
+    /**
+     * @return the char at the given position of the current token or -1 at the end of the input
+     */
+    private int ch(final int pos) {
+        if (pos < length_) {
+            return chars_[pos];
+        }
+        return fill(pos);
+    }
+
+    private int fill(final int pos) {
+        while (length_ <= pos) {
+            if (eof_) {
+                return -1;
+            }
+            final char c;
+            try {
+                c = stream_.readChar();
+            }
+            catch (final IOException e) {
+                eof_ = true;
+                return -1;
+            }
+            if (length_ == chars_.length) {
+                final char[] chars = new char[chars_.length * 2];
+                System.arraycopy(chars_, 0, chars, 0, length_);
+                chars_ = chars;
+            }
+            chars_[length_++] = c;
+        }
+        return chars_[pos];
+    }
+}
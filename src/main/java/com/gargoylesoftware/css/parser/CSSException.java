@@ -77,6 +77,21 @@ public CSSException(final ErrorCode code, final String message, final Exception
         initCause(e);
     }
 
+    /**
+     * Creates a new CSSException with an embeded exception and a specified
+     * message; the stack trace is only filled in if writable.
+     * @param code the specified code
+     * @param message the message
+     * @param e the embeded exception
+     * @param writableStackTrace whether or not the stack trace should be writable
+     */
+    protected CSSException(final ErrorCode code, final String message, final Exception e,
+            final boolean writableStackTrace) {
+        super(null, e, false, writableStackTrace);
+        code_ = code;
+        message_ = message;
+    }
+
     /**
      * Returns the detail message of this throwable object.
      *
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Parses many independent style sheets asynchronously. The style sheets are
+ * parsed by the given executor, at most {@code maxConcurrency} at the same
+ * time; the others wait in a queue without blocking the caller or a thread of
+ * the executor. Every worker borrows a parser from a {@link CSSOMParserPool}
+ * for every style sheet, the parsers of the default pool share a
+ * {@link StringInterner} and a {@link MediaQueryCache}.
+ *
+ * <p>Every style sheet gets its own future; the future of a style sheet that
+ * can't be read (or makes the parser fail) completes exceptionally, all other
+ * style sheets are not affected. The problems found by the parser are reported
+ * to the error handler passed with the style sheet; a handler used for many
+ * style sheets has to be thread safe.</p>
+ *
+ * <p>The input sources are closed after parsing.</p>
+ *
+ * @author Ronald Brill
+ */
+public class CSSOMBatchParser {
+
+    private final Executor executor_;
+    private final int maxConcurrency_;
+    private final CSSOMParserPool parserPool_;
+
+    private final Queue<Task> queue_ = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running_ = new AtomicInteger();
+    // number of dispatch requests; only the thread raising it from zero dispatches
+    private final AtomicInteger dispatchRequests_ = new AtomicInteger();
+
+    /**
+     * Creates a new batch parser using a pool of default parsers.
+     *
+     * @param executor the executor running the parsers
+     * @param maxConcurrency the maximum number of style sheets parsed at the same time
+     */
+    public CSSOMBatchParser(final Executor executor, final int maxConcurrency) {
+        this(executor, maxConcurrency, createParserPool(maxConcurrency));
+    }
+
+    /**
+     * Creates a new batch parser.
+     *
+     * @param executor the executor running the parsers
+     * @param maxConcurrency the maximum number of style sheets parsed at the same time
+     * @param parserPool the pool providing the parsers
+     */
+    public CSSOMBatchParser(final Executor executor, final int maxConcurrency, final CSSOMParserPool parserPool) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive (" + maxConcurrency + ")");
+        }
+        if (parserPool == null) {
+            throw new IllegalArgumentException("parserPool must not be null");
+        }
+        executor_ = executor;
+        maxConcurrency_ = maxConcurrency;
+        parserPool_ = parserPool;
+    }
+
+    private static CSSOMParserPool createParserPool(final int maxConcurrency) {
+        final StringInterner interner = new StringInterner();
+        final MediaQueryCache mediaQueryCache = new MediaQueryCache();
+        return new CSSOMParserPool(Math.max(1, Math.min(maxConcurrency, 256)), () -> {
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setStringInterner(interner);
+            parser.setMediaQueryCache(mediaQueryCache);
+            return parser;
+        });
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task if the
+     * runtime supports virtual threads (Java 21 and later). The caller is
+     * responsible for shutting the executor down.
+     *
+     * @return the executor or null if virtual threads are not supported
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the pool providing the parsers
+     */
+    public CSSOMParserPool getParserPool() {
+        return parserPool_;
+    }
+
+    /**
+     * @return the maximum number of style sheets parsed at the same time
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency_;
+    }
+
+    /**
+     * @return the number of style sheets being parsed
+     */
+    public int getRunning() {
+        return running_.get();
+    }
+
+    /**
+     * @return the number of style sheets waiting to be parsed
+     */
+    public int getQueued() {
+        return queue_.size();
+    }
+
+    /**
+     * Parses a style sheet asynchronously.
+     *
+     * @param source the source; closed after parsing
+     * @param href the href of the style sheet
+     * @param errorHandler the error handler or null to use the default one
+     * @return the future of the style sheet
+     * @see CSSOMParser#parseStyleSheet(InputSource, String)
+     */
+    public CompletableFuture<CSSStyleSheetImpl> parseStyleSheet(final InputSource source, final String href,
+            final CSSErrorHandler errorHandler) {
+        final Task task = new Task(source, href, errorHandler);
+        queue_.add(task);
+        dispatch();
+        return task.future_;
+    }
+
+    /**
+     * Parses many style sheets asynchronously; the uri of every source
+     * is used as href.
+     *
+     * @param sources the sources; closed after parsing
+     * @param errorHandler the error handler used for all style sheets or null to use the default one
+     * @return the futures of the style sheets in the order of the sources
+     */
+    public List<CompletableFuture<CSSStyleSheetImpl>> parseStyleSheets(final List<InputSource> sources,
+            final CSSErrorHandler errorHandler) {
+        final List<CompletableFuture<CSSStyleSheetImpl>> result = new ArrayList<>(sources.size());
+        for (final InputSource source : sources) {
+            final Task task = new Task(source, source.getURI(), errorHandler);
+            queue_.add(task);
+            result.add(task.future_);
+        }
+        dispatch();
+        return result;
+    }
+
+    /**
+     * Hands queued tasks over to the executor as long as less than
+     * {@code maxConcurrency} tasks are running.
+     *
+     * <p>Only one thread dispatches at a time; a call made while another one is
+     * dispatching (on another thread or from a task run by the executor in the
+     * dispatching thread) just makes that one check the queue again. This keeps
+     * the stack flat for executors running the tasks in the calling thread.</p>
+     */
+    private void dispatch() {
+        if (dispatchRequests_.getAndIncrement() != 0) {
+            return;
+        }
+
+        int requests = 1;
+        do {
+            dispatchQueued();
+            requests = dispatchRequests_.addAndGet(-requests);
+        }
+        while (requests != 0);
+    }
+
+    private void dispatchQueued() {
+        while (!queue_.isEmpty()) {
+            final int running = running_.get();
+            if (running >= maxConcurrency_) {
+                // the next finished task dispatches again
+                return;
+            }
+            if (!running_.compareAndSet(running, running + 1)) {
+                continue;
+            }
+
+            final Task task = queue_.poll();
+            if (task == null) {
+                // taken by another thread, check the queue again
+                running_.decrementAndGet();
+                continue;
+            }
+            try {
+                executor_.execute(task);
+            }
+            catch (final RejectedExecutionException e) {
+                running_.decrementAndGet();
+                task.future_.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CSSOMBatchParser[maxConcurrency=" + maxConcurrency_ + ", running=" + getRunning()
+                + ", queued=" + getQueued() + "]";
+    }
+
+    private final class Task implements Runnable {
+        private final InputSource source_;
+        private final String href_;
+        private final CSSErrorHandler errorHandler_;
+        private final CompletableFuture<CSSStyleSheetImpl> future_ = new CompletableFuture<>();
+
+        Task(final InputSource source, final String href, final CSSErrorHandler errorHandler) {
+            source_ = source;
+            href_ = href;
+            errorHandler_ = errorHandler;
+        }
+
+        @Override
+        public void run() {
+            CSSStyleSheetImpl styleSheet = null;
+            Throwable failure = null;
+            try {
+                if (future_.isDone()) {
+                    // cancelled
+                    source_.close();
+                }
+                else {
+                    styleSheet = parse();
+                }
+            }
+            catch (final Throwable e) {
+                failure = e;
+            }
+
+            // no longer running when the caller gets the result
+            running_.decrementAndGet();
+            if (failure == null) {
+                future_.complete(styleSheet);
+            }
+            else {
+                future_.completeExceptionally(failure);
+            }
+            dispatch();
+
+            if (failure instanceof Error && !(failure instanceof StackOverflowError)) {
+                throw (Error) failure;
+            }
+        }
+
+        private CSSStyleSheetImpl parse() throws IOException {
+            try (InputSource source = source_) {
+                final CSSOMParser parser = parserPool_.acquire();
+                try {
+                    if (errorHandler_ != null) {
+                        parser.setErrorHandler(errorHandler_);
+                    }
+                    return parser.parseStyleSheet(source, href_);
+                }
+                finally {
+                    parserPool_.release(parser);
+                }
+            }
+        }
+    }
+}
@@ -15,8 +15,13 @@
 package com.gargoylesoftware.css.parser;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.util.Stack;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 import org.w3c.dom.DOMException;
 
@@ -37,14 +42,27 @@
 import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
 import com.gargoylesoftware.css.parser.media.MediaQueryList;
 import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.util.CssEvents;
 
 /**
  * @author Ronald Brill
  */
 public class CSSOMParser {
 
+    /** Style sheets are parsed in parallel in parts of at least this number of chars. */
+    static final int PARALLEL_MIN_PART_LENGTH = 32 * 1024;
+
     private AbstractCSSParser parser_;
     private CSSStyleSheetImpl parentStyleSheet_;
+    private PropertyValueCache propertyValueCache_;
+    private StyleDeclarationCache styleDeclarationCache_;
+    private SelectorCache selectorCache_;
+    private MediaQueryCache mediaQueryCache_;
+    private StyleSheetCache styleSheetCache_;
+    private StringInterner stringInterner_;
+    private ForkJoinPool forkJoinPool_;
+    private boolean lazyParsing_;
+    private ParseFilter filter_;
 
     /**
      * Creates new CSSOMParser.
@@ -68,8 +86,260 @@ public void setErrorHandler(final CSSErrorHandler eh) {
         parser_.setErrorHandler(eh);
     }
 
+    /**
+     * Enables or disables the tracking of line/column positions.
+     * If disabled, the created CSSOM carries no locators.
+     *
+     * @param positionTracking the new value
+     * @see AbstractCSSParser#setPositionTracking(boolean)
+     */
+    public void setPositionTracking(final boolean positionTracking) {
+        parser_.setPositionTracking(positionTracking);
+    }
+
+    /**
+     * @param maxValueNestingDepth the max nesting depth of functions and parentheses in a value
+     * @see AbstractCSSParser#setMaxValueNestingDepth(int)
+     */
+    public void setMaxValueNestingDepth(final int maxValueNestingDepth) {
+        parser_.setMaxValueNestingDepth(maxValueNestingDepth);
+    }
+
+    /**
+     * Enables or disables the collection of {@link ParseStatistics}. The lazy and
+     * the parallel parsing are not used while statistics are collected, the statistics
+     * always cover the whole input. Results taken from a cache are not parsed at all.
+     *
+     * @param collectStatistics the new value
+     * @see AbstractCSSParser#setCollectStatistics(boolean)
+     */
+    public void setCollectStatistics(final boolean collectStatistics) {
+        parser_.setCollectStatistics(collectStatistics);
+    }
+
+    /**
+     * @return the statistics of the last parse done by the underlying parser or null
+     * @see AbstractCSSParser#getStatistics()
+     */
+    public ParseStatistics getStatistics() {
+        return parser_.getStatistics();
+    }
+
+    /**
+     * Sets the sink the statistics of every parse are reported to. The parsers
+     * of a parallel parse and of the lazily parsed rules report to the same sink.
+     *
+     * @param metrics the sink or null
+     * @see AbstractCSSParser#setParseMetrics(ParseMetrics)
+     */
+    public void setParseMetrics(final ParseMetrics metrics) {
+        parser_.setParseMetrics(metrics);
+    }
+
+    /**
+     * Sets the cache used by {@link #parsePropertyValue(String)};
+     * the same cache can be used by many parsers.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public void setPropertyValueCache(final PropertyValueCache cache) {
+        propertyValueCache_ = cache;
+    }
+
+    /**
+     * @return the cache used by {@link #parsePropertyValue(String)} or null
+     */
+    public PropertyValueCache getPropertyValueCache() {
+        return propertyValueCache_;
+    }
+
+    /**
+     * Sets the cache used by {@link #parseStyleDeclaration(CSSStyleDeclarationImpl, String)};
+     * the same cache can be used by many parsers.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public void setStyleDeclarationCache(final StyleDeclarationCache cache) {
+        styleDeclarationCache_ = cache;
+    }
+
+    /**
+     * @return the cache used by {@link #parseStyleDeclaration(CSSStyleDeclarationImpl, String)} or null
+     */
+    public StyleDeclarationCache getStyleDeclarationCache() {
+        return styleDeclarationCache_;
+    }
+
+    /**
+     * Sets the cache used by {@link #parseSelectors(String)};
+     * the same cache can be used by many parsers.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public void setSelectorCache(final SelectorCache cache) {
+        selectorCache_ = cache;
+    }
+
+    /**
+     * @return the cache used by {@link #parseSelectors(String)} or null
+     */
+    public SelectorCache getSelectorCache() {
+        return selectorCache_;
+    }
+
+    /**
+     * Sets the cache used by {@link #parseMedia(String)} and for the media lists
+     * of the parsed style sheets; the same cache can be used by many parsers.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public void setMediaQueryCache(final MediaQueryCache cache) {
+        mediaQueryCache_ = cache;
+    }
+
+    /**
+     * @return the cache used for media lists or null
+     */
+    public MediaQueryCache getMediaQueryCache() {
+        return mediaQueryCache_;
+    }
+
+    /**
+     * Sets the cache used by {@link #parseStyleSheet(InputSource, String)};
+     * the same cache can be used by many parsers.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public void setStyleSheetCache(final StyleSheetCache cache) {
+        styleSheetCache_ = cache;
+    }
+
+    /**
+     * @return the cache used by {@link #parseStyleSheet(InputSource, String)} or null
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache_;
+    }
+
+    /**
+     * Sets the interner used for the property names of the parsed style sheets
+     * and declarations; the same interner can be used by many parsers.
+     *
+     * @param interner the interner or null to keep the names as parsed
+     */
+    public void setStringInterner(final StringInterner interner) {
+        stringInterner_ = interner;
+    }
+
+    /**
+     * @return the interner used for property names or null
+     */
+    public StringInterner getStringInterner() {
+        return stringInterner_;
+    }
+
+    /**
+     * Enables the lazy parsing of style sheets backed by a char sequence. The parser
+     * only scans the rule boundaries of the style sheet; the selectors and declarations
+     * of style rules and the declarations of font face and page rules are parsed on
+     * first access (see {@link AbstractCSSRuleImpl#isLazy()}) from the retained text;
+     * char sequences other than strings (e.g. char arrays or string builders) are
+     * copied, the caller may change them after parsing.
+     * Other rules (and style sheets the scan can't handle) are parsed at once.
+     *
+     * <p>The problems found in a lazy rule are reported to the error handler of this
+     * parser when the rule is parsed; a style or page rule that turns out to be invalid
+     * has an empty selector and declaration instead of being dropped.</p>
+     *
+     * <p>Style sheets cached by the {@link StyleSheetCache} are always parsed at once;
+     * copies of the cached rules are handed to many callers, each of them gets the
+     * problems reported by the parse.</p>
+     *
+     * @param lazyParsing the new value
+     */
+    public void setLazyParsing(final boolean lazyParsing) {
+        lazyParsing_ = lazyParsing;
+    }
+
+    /**
+     * @return true if style sheets are parsed lazily
+     */
+    public boolean isLazyParsing() {
+        return lazyParsing_;
+    }
+
+    /**
+     * Sets the filter deciding which rules and properties are added to the CSSOM;
+     * the same filter can be used by many parsers. The style sheet and style
+     * declaration caches and the lazy parsing are not used as long as a filter is set.
+     *
+     * @param filter the filter or null to keep everything
+     */
+    public void setFilter(final ParseFilter filter) {
+        filter_ = filter;
+    }
+
+    /**
+     * @return the filter or null
+     */
+    public ParseFilter getFilter() {
+        return filter_;
+    }
+
+    /**
+     * Sets the limits for parsing untrusted input; the parse methods throw a
+     * {@link ParseLimitException} if one of the limits is exceeded (see
+     * {@link ParseLimits#setKeepPartialResult(boolean)} for style sheets).
+     * The caches, the lazy parsing and the parallel parsing are not used as
+     * long as limits are set; the cached results might be created by parsers
+     * without limits.
+     *
+     * @param limits the limits or null for no limits
+     */
+    public void setParseLimits(final ParseLimits limits) {
+        parser_.setParseLimits(limits);
+    }
+
+    /**
+     * @return the limits or null
+     */
+    public ParseLimits getParseLimits() {
+        return parser_.getParseLimits();
+    }
+
+    /**
+     * @return true if a filter or limits are set; the results of the parser
+     * can't be cached or deferred in this case
+     */
+    private boolean isRestricted() {
+        return filter_ != null || parser_.getParseLimits() != null;
+    }
+
+    /**
+     * Sets the pool used to parse large style sheets in parallel. The style sheets
+     * (only the ones backed by a char sequence) are split at top level rules and the
+     * parts are parsed by new parsers of the same type; the result (including the
+     * reported problems) is the same as the one of a sequential parse.
+     * Style sheets that can't be split safely are parsed sequentially.
+     *
+     * @param pool the pool or null to parse sequentially
+     */
+    public void setForkJoinPool(final ForkJoinPool pool) {
+        forkJoinPool_ = pool;
+    }
+
+    /**
+     * @return the pool used to parse large style sheets in parallel or null
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool_;
+    }
+
     /**
      * Parses a SAC input source into a CSSOM style sheet.
+     * If a {@link StyleSheetCache} is set, the rules of the style sheet
+     * might be copied from the ones of an identical style sheet parsed before
+     * (see {@link CSSStyleSheetImpl#copyCssRules(CSSRuleListImpl)}).
      *
      * @param source the SAC input source
      * @param href the href
@@ -77,10 +347,107 @@ public void setErrorHandler(final CSSErrorHandler eh) {
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public CSSStyleSheetImpl parseStyleSheet(final InputSource source, final String href) throws IOException {
+        final Object event = CssEvents.beginParse();
+        if (event == null) {
+            return parseStyleSheetCached(source, href);
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder errors = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(errors);
+        CSSStyleSheetImpl styleSheet = null;
+        try {
+            styleSheet = parseStyleSheetCached(source, href);
+            return styleSheet;
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+            CssEvents.endParse(event, "styleSheet", href, inputLength(source),
+                    styleSheet == null ? 0 : styleSheet.getCssRules().getLength(), errors.getErrorCount());
+        }
+    }
+
+    /**
+     * @param source the input source
+     * @return the length of the input if known without reading it, otherwise -1
+     */
+    private static long inputLength(final InputSource source) {
+        if (source.getCharSequence() != null) {
+            return source.getCharSequenceLength();
+        }
+        if (source.getBytes() != null) {
+            return source.getBytes().remaining();
+        }
+        return -1;
+    }
+
+    private CSSStyleSheetImpl parseStyleSheetCached(final InputSource source, final String href)
+            throws IOException {
+        final StyleSheetCache cache = styleSheetCache_;
+        final String key = cache == null || isRestricted() ? null : cache.key(source);
+        if (key == null) {
+            return parseStyleSheetUncached(source, href, lazyParsing_);
+        }
+
+        StyleSheetCache.Entry entry = cache.get(key);
+        if (entry == null) {
+            // record the problems, they are reported below (and for every cache hit);
+            // not lazily, the problems of the cached rules have to be known now
+            final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+            final ErrorRecorder recorder = new ErrorRecorder(null);
+            parser_.setErrorHandler(recorder);
+            final CSSStyleSheetImpl styleSheet;
+            try {
+                styleSheet = parseStyleSheetUncached(source, null, false);
+            }
+            finally {
+                parser_.setErrorHandler(errorHandler);
+            }
+            if (styleSheet == null) {
+                recorder.replay(errorHandler);
+                return null;
+            }
+            entry = cache.put(key, styleSheet, recorder);
+        }
+        final CSSStyleSheetImpl styleSheet = entry.apply(source, href, parser_.getErrorHandler());
+        setParentStyleSheet(styleSheet);
+        return styleSheet;
+    }
+
+    private CSSStyleSheetImpl parseStyleSheetUncached(final InputSource source, final String href,
+            final boolean lazyParsing) throws IOException {
+        if (lazyParsing && !isRestricted() && !parser_.isCollectStatistics()
+                && source.getCharSequence() != null) {
+            final CSSStyleSheetImpl styleSheet = parseStyleSheetLazy(source, href);
+            if (styleSheet != null) {
+                return styleSheet;
+            }
+        }
+
+        final ForkJoinPool pool = forkJoinPool_;
+        if (pool != null && pool.getParallelism() > 1 && parser_.getParseLimits() == null
+                && !parser_.isCollectStatistics()
+                && source.getCharSequence() != null
+                && source.getCharSequenceLength() >= 2 * PARALLEL_MIN_PART_LENGTH) {
+            final CSSStyleSheetImpl styleSheet = parseStyleSheetParallel(source, href, pool, PARALLEL_MIN_PART_LENGTH);
+            if (styleSheet != null) {
+                return styleSheet;
+            }
+        }
+
         final CSSOMHandler handler = new CSSOMHandler();
         handler.setHref(href);
         parser_.setDocumentHandler(handler);
-        parser_.parseStyleSheet(source);
+        try {
+            parser_.parseStyleSheet(source);
+        }
+        catch (final ParseLimitException e) {
+            final ParseLimits limits = parser_.getParseLimits();
+            if (limits == null || !limits.isKeepPartialResult()) {
+                throw e;
+            }
+            parser_.getErrorHandler().error(e);
+        }
         final Object o = handler.getRoot();
         if (o instanceof CSSStyleSheetImpl) {
             return (CSSStyleSheetImpl) o;
@@ -88,6 +455,339 @@ public CSSStyleSheetImpl parseStyleSheet(final InputSource source, final String
         return null;
     }
 
+    /**
+     * Parses the parts of the style sheet in parallel.
+     *
+     * @return the style sheet or null if the style sheet can't be split
+     */
+    CSSStyleSheetImpl parseStyleSheetParallel(final InputSource source, final String href,
+            final ForkJoinPool pool, final int minPartLength) throws IOException {
+        final List<StyleSheetSplitter.Part> parts = StyleSheetSplitter.split(source.getCharSequence(),
+                source.getCharSequenceOffset(), source.getCharSequenceLength(),
+                4 * pool.getParallelism(), minPartLength);
+        if (parts == null || parts.size() < 2) {
+            return null;
+        }
+
+        final int count = parts.size();
+        final CSSOMParser[] parsers = new CSSOMParser[count];
+        final CSSRuleListImpl[] partRules = new CSSRuleListImpl[count];
+        final ErrorRecorder[] errors = new ErrorRecorder[count];
+        for (int i = 0; i < count; i++) {
+            parsers[i] = createPartParser();
+            if (parsers[i] == null) {
+                return null;
+            }
+            partRules[i] = new CSSRuleListImpl();
+            errors[i] = new ErrorRecorder(null);
+        }
+
+        final CSSStyleSheetImpl styleSheet = createStyleSheet(source, href);
+        final CSSRuleListImpl rules = styleSheet.getCssRules();
+
+        final List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(count);
+        try {
+            for (int i = 1; i < count; i++) {
+                final int part = i;
+                tasks.add(pool.submit(
+                    () -> parsers[part].parsePart(source, parts.get(part), styleSheet, partRules[part], errors[part])));
+            }
+
+            // the first part is parsed by the calling thread
+            final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+            boolean complete = parsers[0].parsePart(source, parts.get(0), styleSheet, partRules[0], errors[0]);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    complete = join(tasks.get(i - 1));
+                }
+                errors[i].replay(errorHandler);
+                rules.getRules().addAll(partRules[i].getRules());
+                if (!complete) {
+                    // the parser gave up, the same happens when parsing sequentially
+                    break;
+                }
+            }
+        }
+        finally {
+            for (final ForkJoinTask<Boolean> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return styleSheet;
+    }
+
+    /**
+     * The same as CSSOMHandler.startDocument().
+     */
+    private CSSStyleSheetImpl createStyleSheet(final InputSource source, final String href) {
+        final CSSStyleSheetImpl styleSheet = new CSSStyleSheetImpl();
+        setParentStyleSheet(styleSheet);
+        styleSheet.setHref(href);
+        styleSheet.setMediaText(source.getMedia());
+        styleSheet.setTitle(source.getTitle());
+        styleSheet.setCssRules(new CSSRuleListImpl());
+        return styleSheet;
+    }
+
+    private CSSOMParser createPartParser() {
+        return createParserFactory().get();
+    }
+
+    /**
+     * @return a factory creating parsers with the settings of this one; the
+     * factory returns null if the parser can't be created
+     */
+    private Supplier<CSSOMParser> createParserFactory() {
+        final Class<? extends AbstractCSSParser> parserClass = parser_.getClass();
+        final boolean positionTracking = parser_.isPositionTracking();
+        final int maxValueNestingDepth = parser_.getMaxValueNestingDepth();
+        final MediaQueryCache mediaQueryCache = mediaQueryCache_;
+        final StringInterner stringInterner = stringInterner_;
+        final ParseFilter filter = filter_;
+        final ParseLimits limits = parser_.getParseLimits();
+        final ParseMetrics metrics = parser_.getParseMetrics();
+        return () -> {
+            final AbstractCSSParser parser;
+            try {
+                parser = parserClass.getDeclaredConstructor().newInstance();
+            }
+            catch (final ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+            parser.setPositionTracking(positionTracking);
+            parser.setMaxValueNestingDepth(maxValueNestingDepth);
+            parser.setParseLimits(limits);
+            parser.setParseMetrics(metrics);
+
+            final CSSOMParser partParser = new CSSOMParser(parser);
+            partParser.mediaQueryCache_ = mediaQueryCache;
+            partParser.stringInterner_ = stringInterner;
+            partParser.filter_ = filter;
+            return partParser;
+        };
+    }
+
+    private boolean parsePart(final InputSource source, final StyleSheetSplitter.Part part,
+            final CSSStyleSheetImpl styleSheet, final CSSRuleListImpl rules, final CSSErrorHandler errors)
+                    throws IOException {
+        final InputSource partSource = new InputSource(source.getCharSequence(), part.getOffset(), part.getLength());
+        partSource.setURI(source.getURI());
+        partSource.setStartPosition(part.getLine(), part.getColumn());
+
+        final List<Object> nodeStack = new ArrayList<>();
+        nodeStack.add(styleSheet);
+        nodeStack.add(rules);
+        setParentStyleSheet(styleSheet);
+        parser_.setDocumentHandler(new CSSOMHandler(nodeStack));
+        parser_.setErrorHandler(errors);
+        return parser_.parseStyleSheetPart(partSource);
+    }
+
+    private static boolean join(final ForkJoinTask<Boolean> task) throws IOException {
+        try {
+            return task.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Creates the skeleton of the style sheet; the statements the scan can't
+     * handle are parsed at once.
+     *
+     * @return the style sheet or null if the style sheet can't be scanned
+     */
+    private CSSStyleSheetImpl parseStyleSheetLazy(final InputSource source, final String href) throws IOException {
+        final CharSequence chars = source.getCharSequence();
+        final List<StyleSheetSplitter.Statement> statements = StyleSheetSplitter.statements(chars,
+                source.getCharSequenceOffset(), source.getCharSequenceLength());
+        if (statements == null) {
+            return null;
+        }
+        final Supplier<CSSOMParser> parserFactory = createParserFactory();
+        final CSSOMParser ruleParser = parserFactory.get();
+        if (ruleParser == null) {
+            return null;
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final StyleSheetSkeleton skeleton =
+                new StyleSheetSkeleton(chars, source.getCharSequenceOffset(), source.getCharSequenceLength(),
+                        source.getURI(), errorHandler, parserFactory);
+        final CSSStyleSheetImpl styleSheet = createStyleSheet(source, href);
+        final List<AbstractCSSRuleImpl> rules = styleSheet.getCssRules().getRules();
+
+        // the first statement of a run of statements parsed at once
+        int first = -1;
+        for (int i = 0; i < statements.size(); i++) {
+            final StyleSheetSplitter.Statement statement = statements.get(i);
+            final AbstractCSSRuleImpl rule = createLazyRule(source, statement, styleSheet, null, skeleton);
+            if (rule == null) {
+                if (first < 0) {
+                    first = i;
+                    if (i > 0 && !StyleSheetSplitter.isRuleStart(chars, statement.getOffset(),
+                            statement.getOffset() + statement.getLength())) {
+                        // the parser reports an invalid first token differently at the
+                        // start of a style sheet; start at the previous rule instead
+                        rules.remove(rules.size() - 1);
+                        first = i - 1;
+                    }
+                }
+                continue;
+            }
+
+            if (first >= 0) {
+                if (!parseStatements(source, statements, first, i, styleSheet, errorHandler)) {
+                    return styleSheet;
+                }
+                first = -1;
+            }
+            rules.add(rule);
+        }
+        if (first >= 0) {
+            parseStatements(source, statements, first, statements.size(), styleSheet, errorHandler);
+        }
+        return styleSheet;
+    }
+
+    /**
+     * @return the rule or null if the statement has to be parsed at once
+     */
+    private AbstractCSSRuleImpl createLazyRule(final InputSource source, final StyleSheetSplitter.Statement statement,
+            final CSSStyleSheetImpl styleSheet, final AbstractCSSRuleImpl parentRule,
+            final StyleSheetSkeleton skeleton) throws IOException {
+        final AbstractCSSRuleImpl rule;
+        switch (statement.getKind()) {
+            case StyleSheetSplitter.Statement.STYLE:
+                if (!hasValidSelectors(source, statement)) {
+                    return null;
+                }
+                rule = new CSSStyleRuleImpl(styleSheet, parentRule, null);
+                break;
+            case StyleSheetSplitter.Statement.FONT_FACE:
+                rule = new CSSFontFaceRuleImpl(styleSheet, parentRule);
+                break;
+            case StyleSheetSplitter.Statement.PAGE:
+                rule = new CSSPageRuleImpl(styleSheet, parentRule, null);
+                break;
+            case StyleSheetSplitter.Statement.MEDIA:
+                return createLazyMediaRule(source, statement, styleSheet, parentRule, skeleton);
+            default:
+                return null;
+        }
+        if (parser_.isPositionTracking()) {
+            rule.setLocator(new Locator(source.getURI(), statement.getLine(), statement.getColumn()));
+        }
+        rule.setLazySource(skeleton.source(statement));
+        return rule;
+    }
+
+    /**
+     * The parser ignores a style rule with invalid selectors; such a rule is parsed
+     * at once to get the same rules (and errors) as without the lazy parsing.
+     *
+     * @return true if the selectors of the style rule are valid
+     */
+    private boolean hasValidSelectors(final InputSource source, final StyleSheetSplitter.Statement statement)
+            throws IOException {
+        final String selectors = source.getCharSequence()
+                .subSequence(statement.getOffset(), statement.getBlockStart()).toString();
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder recorder = new ErrorRecorder(null);
+        parser_.setErrorHandler(recorder);
+        try {
+            return parseSelectorsCached(selectors) != null && !recorder.hasReports();
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+        }
+    }
+
+    /**
+     * The media list is parsed at once, the rules of the media rule lazily.
+     *
+     * @return the rule or null if the media list or one of the rules has to be parsed at once
+     */
+    private AbstractCSSRuleImpl createLazyMediaRule(final InputSource source,
+            final StyleSheetSplitter.Statement statement, final CSSStyleSheetImpl styleSheet,
+            final AbstractCSSRuleImpl parentRule, final StyleSheetSkeleton skeleton) throws IOException {
+        final CharSequence chars = source.getCharSequence();
+        final String header = new StringBuilder(statement.getBlockStart() + 2 - statement.getOffset())
+                .append(chars, statement.getOffset(), statement.getBlockStart() + 1)
+                .append('}')
+                .toString();
+        final InputSource headerSource = new InputSource(header);
+        headerSource.setURI(source.getURI());
+        headerSource.setStartPosition(statement.getLine(), statement.getColumn());
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder recorder = new ErrorRecorder(null);
+        final AbstractCSSRuleImpl rule;
+        parser_.setErrorHandler(recorder);
+        try {
+            rule = parseRule(headerSource);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+        }
+        if (!(rule instanceof CSSMediaRuleImpl) || recorder.hasReports()) {
+            return null;
+        }
+
+        final CSSMediaRuleImpl mediaRule = (CSSMediaRuleImpl) rule;
+        mediaRule.setParentStyleSheet(styleSheet);
+        mediaRule.setParentRule(parentRule);
+        for (final StyleSheetSplitter.Statement child : statement.getChildren()) {
+            final AbstractCSSRuleImpl childRule = createLazyRule(source, child, styleSheet, mediaRule, skeleton);
+            if (childRule == null) {
+                // the whole media rule is parsed at once
+                return null;
+            }
+            mediaRule.getCssRules().add(childRule);
+        }
+        return mediaRule;
+    }
+
+    /**
+     * Parses the statements [from, to) at once.
+     *
+     * @return false if the parser gave up
+     */
+    private boolean parseStatements(final InputSource source, final List<StyleSheetSplitter.Statement> statements,
+            final int from, final int to, final CSSStyleSheetImpl styleSheet, final CSSErrorHandler errorHandler)
+                    throws IOException {
+        final StyleSheetSplitter.Statement last = statements.get(to - 1);
+        final int end = last.getOffset() + last.getLength();
+        final StyleSheetSplitter.Part part;
+        if (from == 0) {
+            // including the leading whitespace and comments
+            final int offset = source.getCharSequenceOffset();
+            part = new StyleSheetSplitter.Part(offset, end - offset, 1, 1);
+        }
+        else {
+            final StyleSheetSplitter.Statement statement = statements.get(from);
+            part = new StyleSheetSplitter.Part(statement.getOffset(), end - statement.getOffset(),
+                    statement.getLine(), statement.getColumn());
+        }
+        return parsePart(source, part, styleSheet, styleSheet.getCssRules(), errorHandler);
+    }
+
     /**
      * Parses a input string into a CSSOM style declaration.
      *
@@ -103,16 +803,70 @@ public CSSStyleDeclarationImpl parseStyleDeclaration(final String styleDecl) thr
 
     /**
      * Parses a input string into a CSSOM style declaration.
+     * If a {@link StyleDeclarationCache} is set and the declaration is empty,
+     * the properties might be shared with other declarations
+     * (see {@link CSSStyleDeclarationImpl#setSharedProperties(List, List)}).
      *
      * @param styleDecl the input string
      * @param sd the CSSOM style declaration
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public void parseStyleDeclaration(final CSSStyleDeclarationImpl sd, final String styleDecl) throws IOException {
-        try (InputSource source = new InputSource(new StringReader(styleDecl))) {
-            final Stack<Object> nodeStack = new Stack<>();
-            nodeStack.push(sd);
+        final Object event = CssEvents.beginParse();
+        if (event == null) {
+            parseStyleDeclarationCached(sd, styleDecl);
+            return;
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder errors = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(errors);
+        try {
+            parseStyleDeclarationCached(sd, styleDecl);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+            CssEvents.endParse(event, "styleDeclaration", null, styleDecl == null ? -1 : styleDecl.length(),
+                    sd.getLength(), errors.getErrorCount());
+        }
+    }
+
+    private void parseStyleDeclarationCached(final CSSStyleDeclarationImpl sd, final String styleDecl)
+            throws IOException {
+        final StyleDeclarationCache cache = styleDeclarationCache_;
+        if (cache == null || isRestricted() || styleDecl == null || sd.getLength() > 0
+                || !cache.isCacheable(styleDecl)) {
+            parseStyleDeclaration(sd, styleDecl, null);
+            return;
+        }
+
+        if (cache.apply(styleDecl, sd)) {
+            return;
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder recorder = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(recorder);
+        final List<LexicalUnit> values = new ArrayList<>();
+        try {
+            parseStyleDeclaration(sd, styleDecl, values);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+        }
+        if (!recorder.hasReports()) {
+            // the error handler has to see the problems of every parse, don't cache them
+            cache.put(styleDecl, sd, values);
+        }
+    }
+
+    private void parseStyleDeclaration(final CSSStyleDeclarationImpl sd, final String styleDecl,
+            final List<LexicalUnit> values) throws IOException {
+        try (InputSource source = new InputSource(styleDecl)) {
+            final List<Object> nodeStack = new ArrayList<>();
+            nodeStack.add(sd);
             final CSSOMHandler handler = new CSSOMHandler(nodeStack);
+            handler.values_ = values;
             parser_.setDocumentHandler(handler);
             parser_.parseStyleDeclaration(source);
         }
@@ -120,21 +874,74 @@ public void parseStyleDeclaration(final CSSStyleDeclarationImpl sd, final String
 
     /**
      * Parses a input string into a CSSValue.
+     * If a {@link PropertyValueCache} is set, the lexical units of the value
+     * might be shared with other callers (see {@link CSSValueImpl#getValue()}).
      *
      * @param propertyValue the input string
      * @return the css value
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public CSSValueImpl parsePropertyValue(final String propertyValue) throws IOException {
-        try (InputSource source = new InputSource(new StringReader(propertyValue))) {
-            final CSSOMHandler handler = new CSSOMHandler();
-            parser_.setDocumentHandler(handler);
-            final LexicalUnit lu = parser_.parsePropertyValue(source);
+        final Object event = CssEvents.beginParse();
+        if (event == null) {
+            return parsePropertyValueCached(propertyValue);
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder errors = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(errors);
+        try {
+            return parsePropertyValueCached(propertyValue);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+            CssEvents.endParse(event, "propertyValue", null, propertyValue == null ? -1 : propertyValue.length(),
+                    0, errors.getErrorCount());
+        }
+    }
+
+    private CSSValueImpl parsePropertyValueCached(final String propertyValue) throws IOException {
+        final PropertyValueCache cache = propertyValueCache_;
+        if (cache == null || parser_.getParseLimits() != null
+                || propertyValue == null || !cache.isCacheable(propertyValue)) {
+            final LexicalUnit lu = parsePropertyValueUnits(propertyValue);
             if (null == lu) {
                 return null;
             }
             return new CSSValueImpl(lu);
         }
+
+        final LexicalUnit cached = cache.get(propertyValue);
+        if (cached != null) {
+            return new CSSValueImpl(cached);
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder recorder = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(recorder);
+        final LexicalUnit lu;
+        try {
+            lu = parsePropertyValueUnits(propertyValue);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+        }
+        if (null == lu) {
+            return null;
+        }
+        if (!recorder.hasReports()) {
+            // the error handler has to see the problems of every parse, don't cache them
+            cache.put(propertyValue, lu);
+        }
+        return new CSSValueImpl(lu);
+    }
+
+    private LexicalUnit parsePropertyValueUnits(final String propertyValue) throws IOException {
+        try (InputSource source = new InputSource(propertyValue)) {
+            final CSSOMHandler handler = new CSSOMHandler();
+            parser_.setDocumentHandler(handler);
+            return parser_.parsePropertyValue(source);
+        }
     }
 
     /**
@@ -145,23 +952,75 @@ public CSSValueImpl parsePropertyValue(final String propertyValue) throws IOExce
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public AbstractCSSRuleImpl parseRule(final String rule) throws IOException {
-        try (InputSource source = new InputSource(new StringReader(rule))) {
-            final CSSOMHandler handler = new CSSOMHandler();
-            parser_.setDocumentHandler(handler);
-            parser_.parseRule(source);
-            return (AbstractCSSRuleImpl) handler.getRoot();
+        try (InputSource source = new InputSource(rule)) {
+            return parseRule(source);
         }
     }
 
+    AbstractCSSRuleImpl parseRule(final InputSource source) throws IOException {
+        final CSSOMHandler handler = new CSSOMHandler();
+        parser_.setDocumentHandler(handler);
+        parser_.parseRule(source);
+        return (AbstractCSSRuleImpl) handler.getRoot();
+    }
+
     /**
      * Parses a string into a CSSSelectorList.
+     * If a {@link SelectorCache} is set, the result might be shared with other
+     * callers and is unmodifiable.
      *
      * @param selectors the input string
      * @return the css selector list
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public SelectorList parseSelectors(final String selectors) throws IOException {
-        try (InputSource source = new InputSource(new StringReader(selectors))) {
+        final Object event = CssEvents.beginParse();
+        if (event == null) {
+            return parseSelectorsCached(selectors);
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder errors = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(errors);
+        SelectorList selectorList = null;
+        try {
+            selectorList = parseSelectorsCached(selectors);
+            return selectorList;
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+            CssEvents.endParse(event, "selectors", null, selectors == null ? -1 : selectors.length(),
+                    selectorList == null ? 0 : selectorList.size(), errors.getErrorCount());
+        }
+    }
+
+    private SelectorList parseSelectorsCached(final String selectors) throws IOException {
+        final SelectorCache cache = selectorCache_;
+        if (cache == null || parser_.getParseLimits() != null
+                || selectors == null || !cache.isCacheable(selectors)) {
+            return parseSelectorsUncached(selectors);
+        }
+
+        SelectorCache.Entry entry = cache.get(selectors);
+        if (entry == null) {
+            // record the problems, they are reported below (and for every cache hit)
+            final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+            final ErrorRecorder recorder = new ErrorRecorder(null);
+            parser_.setErrorHandler(recorder);
+            final SelectorList selectorList;
+            try {
+                selectorList = parseSelectorsUncached(selectors);
+            }
+            finally {
+                parser_.setErrorHandler(errorHandler);
+            }
+            entry = cache.put(selectors, selectorList, recorder);
+        }
+        return entry.apply(parser_.getErrorHandler());
+    }
+
+    private SelectorList parseSelectorsUncached(final String selectors) throws IOException {
+        try (InputSource source = new InputSource(selectors)) {
             final HandlerBase handler = new HandlerBase();
             parser_.setDocumentHandler(handler);
             return parser_.parseSelectors(source);
@@ -170,13 +1029,47 @@ public SelectorList parseSelectors(final String selectors) throws IOException {
 
     /**
      * Parses a string into a MediaQueryList.
+     * If a {@link MediaQueryCache} is set, the result might be shared with other
+     * callers and is unmodifiable.
      *
      * @param media the input string
      * @return the css media query list
      * @throws IOException if the underlying SAC parser throws an IOException
      */
     public MediaQueryList parseMedia(final String media) throws IOException {
-        try (InputSource source = new InputSource(new StringReader(media))) {
+        final MediaQueryCache cache = mediaQueryCache_;
+        if (cache == null || parser_.getParseLimits() != null || media == null) {
+            return parseMediaUncached(media);
+        }
+        final String key = MediaQueryCache.canonicalize(media);
+        if (!cache.isCacheable(key)) {
+            return parseMediaUncached(media);
+        }
+
+        final MediaQueryList cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CSSErrorHandler errorHandler = parser_.getErrorHandler();
+        final ErrorRecorder recorder = new ErrorRecorder(errorHandler);
+        parser_.setErrorHandler(recorder);
+        final MediaQueryList mediaList;
+        try {
+            mediaList = parseMediaUncached(media);
+        }
+        finally {
+            parser_.setErrorHandler(errorHandler);
+        }
+        if (mediaList != null && !recorder.hasReports()) {
+            // the error handler has to see the problems of every parse, don't cache them
+            cache.put(key, mediaList);
+        }
+        return mediaList;
+    }
+
+    private MediaQueryList parseMediaUncached(final String media) throws IOException {
+        try (InputSource source = new InputSource(media)) {
             final HandlerBase handler = new HandlerBase();
             parser_.setDocumentHandler(handler);
             return parser_.parseMedia(source);
@@ -197,10 +1090,27 @@ protected CSSStyleSheetImpl getParentStyleSheet() {
         return parentStyleSheet_;
     }
 
+    /**
+     * Forgets the handlers, the parent style sheet and the input of the last use;
+     * called before the parser is returned to a {@link CSSOMParserPool}.
+     */
+    void reset() {
+        parser_.setDocumentHandler(null);
+        parser_.setErrorHandler(null);
+        parser_.releaseInput();
+        parentStyleSheet_ = null;
+    }
+
+    /** Marks the rules dropped by the filter in the node stack. */
+    private static final Object DISCARDED = new Object();
+
     class CSSOMHandler implements DocumentHandler {
-        private Stack<Object> nodeStack_;
+        // a plain list is enough, the handler is confined to the parsing thread
+        private final List<Object> nodeStack_;
         private Object root_;
         private String href_;
+        // collects the values of the properties if not null
+        private List<LexicalUnit> values_;
 
         private String getHref() {
             return href_;
@@ -210,12 +1120,12 @@ private void setHref(final String href) {
             href_ = href;
         }
 
-        CSSOMHandler(final Stack<Object> nodeStack) {
+        CSSOMHandler(final List<Object> nodeStack) {
             nodeStack_ = nodeStack;
         }
 
         CSSOMHandler() {
-            nodeStack_ = new Stack<>();
+            nodeStack_ = new ArrayList<>();
         }
 
         Object getRoot() {
@@ -224,7 +1134,7 @@ Object getRoot() {
 
         @Override
         public void startDocument(final InputSource source) throws CSSException {
-            if (nodeStack_.empty()) {
+            if (nodeStack_.isEmpty()) {
                 final CSSStyleSheetImpl ss = new CSSStyleSheetImpl();
                 CSSOMParser.this.setParentStyleSheet(ss);
                 ss.setHref(getHref());
@@ -233,28 +1143,31 @@ public void startDocument(final InputSource source) throws CSSException {
                 // Create the rule list
                 final CSSRuleListImpl rules = new CSSRuleListImpl();
                 ss.setCssRules(rules);
-                nodeStack_.push(ss);
-                nodeStack_.push(rules);
+                push(ss);
+                push(rules);
             }
         }
 
         @Override
         public void endDocument(final InputSource source) throws CSSException {
             // Pop the rule list and style sheet nodes
-            nodeStack_.pop();
-            root_ = nodeStack_.pop();
+            pop();
+            root_ = pop();
         }
 
         @Override
         public void ignorableAtRule(final String atRule, final Locator locator) throws CSSException {
+            if (isDiscarded() || !accept(ParseFilter.RuleType.UNKNOWN)) {
+                return;
+            }
             // Create the unknown rule and add it to the rule list
             final CSSUnknownRuleImpl ir = new CSSUnknownRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule(),
                 atRule);
             ir.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(ir);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(ir);
             }
             else {
                 root_ = ir;
@@ -264,13 +1177,16 @@ public void ignorableAtRule(final String atRule, final Locator locator) throws C
         @Override
         public void charset(final String characterEncoding, final Locator locator)
             throws CSSException {
+            if (isDiscarded() || !accept(ParseFilter.RuleType.CHARSET)) {
+                return;
+            }
             final CSSCharsetRuleImpl cr = new CSSCharsetRuleImpl(
                     CSSOMParser.this.getParentStyleSheet(),
                     getParentRule(),
                     characterEncoding);
             cr.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(cr);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(cr);
             }
             else {
                 root_ = cr;
@@ -280,15 +1196,19 @@ public void charset(final String characterEncoding, final Locator locator)
         @Override
         public void importStyle(final String uri, final MediaQueryList media,
             final String defaultNamespaceURI, final Locator locator) throws CSSException {
+            final ParseFilter filter = filter_;
+            if (isDiscarded() || filter != null && !filter.acceptMedia(ParseFilter.RuleType.IMPORT, media)) {
+                return;
+            }
             // Create the import rule and add it to the rule list
             final CSSImportRuleImpl ir = new CSSImportRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule(),
                 uri,
-                new MediaListImpl(media));
+                createMediaList(media));
             ir.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(ir);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(ir);
             }
             else {
                 root_ = ir;
@@ -297,124 +1217,197 @@ public void importStyle(final String uri, final MediaQueryList media,
 
         @Override
         public void startMedia(final MediaQueryList media, final Locator locator) throws CSSException {
-            final MediaListImpl ml = new MediaListImpl(media);
+            final ParseFilter filter = filter_;
+            if (isDiscarded() || filter != null && !filter.acceptMedia(ParseFilter.RuleType.MEDIA, media)) {
+                discard();
+                return;
+            }
+            final MediaListImpl ml = createMediaList(media);
             // Create the media rule and add it to the rule list
             final CSSMediaRuleImpl mr = new CSSMediaRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule(),
                 ml);
             mr.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(mr);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(mr);
             }
 
             // Create the rule list
             final CSSRuleListImpl rules = new CSSRuleListImpl();
             mr.setRuleList(rules);
-            nodeStack_.push(mr);
-            nodeStack_.push(rules);
+            push(mr);
+            push(rules);
         }
 
         @Override
         public void endMedia(final MediaQueryList media) throws CSSException {
             // Pop the rule list and media rule nodes
-            nodeStack_.pop();
-            root_ = nodeStack_.pop();
+            endRule();
         }
 
         @Override
         public void startPage(final String name, final String pseudoPage, final Locator locator)
             throws CSSException {
+            if (isDiscarded() || !accept(ParseFilter.RuleType.PAGE)) {
+                discard();
+                return;
+            }
             // Create the page rule and add it to the rule list
             final CSSPageRuleImpl pr = new CSSPageRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule(), pseudoPage);
             pr.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(pr);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(pr);
             }
 
             // Create the style declaration
             final CSSStyleDeclarationImpl decl = new CSSStyleDeclarationImpl(pr);
             pr.setStyle(decl);
-            nodeStack_.push(pr);
-            nodeStack_.push(decl);
+            push(pr);
+            push(decl);
         }
 
         @Override
         public void endPage(final String name, final String pseudoPage) throws CSSException {
             // Pop both the style declaration and the page rule nodes
-            nodeStack_.pop();
-            root_ = nodeStack_.pop();
+            endRule();
         }
 
         @Override
         public void startFontFace(final Locator locator) throws CSSException {
+            if (isDiscarded() || !accept(ParseFilter.RuleType.FONT_FACE)) {
+                discard();
+                return;
+            }
             // Create the font face rule and add it to the rule list
             final CSSFontFaceRuleImpl ffr = new CSSFontFaceRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule());
             ffr.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                ((CSSRuleListImpl) nodeStack_.peek()).add(ffr);
+            if (!nodeStack_.isEmpty()) {
+                ((CSSRuleListImpl) peek()).add(ffr);
             }
 
             // Create the style declaration
             final CSSStyleDeclarationImpl decl = new CSSStyleDeclarationImpl(ffr);
             ffr.setStyle(decl);
-            nodeStack_.push(ffr);
-            nodeStack_.push(decl);
+            push(ffr);
+            push(decl);
         }
 
         @Override
         public void endFontFace() throws CSSException {
             // Pop both the style declaration and the font face rule nodes
-            nodeStack_.pop();
-            root_ = nodeStack_.pop();
+            endRule();
         }
 
         @Override
         public void startSelector(final SelectorList selectors, final Locator locator) throws CSSException {
+            final ParseFilter filter = filter_;
+            if (isDiscarded() || filter != null && !filter.acceptSelectors(selectors)) {
+                discard();
+                return;
+            }
             // Create the style rule and add it to the rule list
             final CSSStyleRuleImpl sr = new CSSStyleRuleImpl(
                 CSSOMParser.this.getParentStyleSheet(),
                 getParentRule(), selectors);
             sr.setLocator(locator);
-            if (!nodeStack_.empty()) {
-                final Object o = nodeStack_.peek();
+            if (!nodeStack_.isEmpty()) {
+                final Object o = peek();
                 ((CSSRuleListImpl) o).add(sr);
             }
 
             // Create the style declaration
             final CSSStyleDeclarationImpl decl = new CSSStyleDeclarationImpl(sr);
             sr.setStyle(decl);
-            nodeStack_.push(sr);
-            nodeStack_.push(decl);
+            push(sr);
+            push(decl);
         }
 
         @Override
         public void endSelector(final SelectorList selectors) throws CSSException {
             // Pop both the style declaration and the style rule nodes
-            nodeStack_.pop();
-            root_ = nodeStack_.pop();
+            endRule();
         }
 
         @Override
         public void property(final String name, final LexicalUnit value, final boolean important,
                                 final Locator locator) {
-            final CSSStyleDeclarationImpl decl = (CSSStyleDeclarationImpl) nodeStack_.peek();
+            final Object node = peek();
+            final ParseFilter filter = filter_;
+            if (node == DISCARDED || filter != null && !filter.acceptProperty(name)) {
+                return;
+            }
+            final CSSStyleDeclarationImpl decl = (CSSStyleDeclarationImpl) node;
             try {
-                final Property property = new Property(name, new CSSValueImpl(value), important);
+                final StringInterner interner = stringInterner_;
+                final Property property = new Property(interner == null ? name : interner.intern(name),
+                        new CSSValueImpl(value), important);
                 property.setLocator(locator);
                 decl.addProperty(property);
+                if (values_ != null) {
+                    values_.add(value);
+                }
             }
             catch (final DOMException e) {
                 parser_.getErrorHandler().error(parser_.toCSSParseException(e));
             }
         }
 
+        private MediaListImpl createMediaList(final MediaQueryList media) {
+            final MediaQueryCache cache = mediaQueryCache_;
+            if (cache == null || media == null) {
+                return new MediaListImpl(media);
+            }
+            final MediaListImpl ml = new MediaListImpl(cache.intern(media));
+            // the shared list carries the locator of its first occurrence
+            ml.setLocator(media.getLocator());
+            return ml;
+        }
+
+        private boolean accept(final ParseFilter.RuleType type) {
+            final ParseFilter filter = filter_;
+            return filter == null || filter.acceptRule(type);
+        }
+
+        /**
+         * @return true if the current rule is dropped
+         */
+        private boolean isDiscarded() {
+            return !nodeStack_.isEmpty() && peek() == DISCARDED;
+        }
+
+        /**
+         * Drops the rule started; the nested rules and properties are dropped too.
+         */
+        private void discard() {
+            push(DISCARDED);
+            push(DISCARDED);
+        }
+
+        private void endRule() {
+            pop();
+            final Object rule = pop();
+            root_ = rule == DISCARDED ? null : rule;
+        }
+
+        private void push(final Object node) {
+            nodeStack_.add(node);
+        }
+
+        private Object pop() {
+            return nodeStack_.remove(nodeStack_.size() - 1);
+        }
+
+        private Object peek() {
+            return nodeStack_.get(nodeStack_.size() - 1);
+        }
+
         private AbstractCSSRuleImpl getParentRule() {
-            if (!nodeStack_.empty() && nodeStack_.size() > 1) {
+            if (!nodeStack_.isEmpty() && nodeStack_.size() > 1) {
                 final Object node = nodeStack_.get(nodeStack_.size() - 2);
                 if (node instanceof AbstractCSSRuleImpl) {
                     return (AbstractCSSRuleImpl) node;
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A thread safe pool of {@link CSSOMParser}s. The setters of the CSSOM
+ * (e.g. {@code CSSStyleDeclarationImpl.setProperty()}) parse small strings
+ * very often; borrowing a parser from the pool saves the setup of a new
+ * parser for every call.
+ *
+ * <p>A parser returned by {@link #acquire()} is confined to the calling thread
+ * until it is handed back by {@link #release(CSSOMParser)}; the pool itself
+ * can be shared by any number of threads. Usage:</p>
+ * <pre>
+ * return pool.withParser(parser -&gt; {
+ *     parser.setErrorHandler(...);
+ *     return parser.parsePropertyValue(value);
+ * });
+ * </pre>
+ * <p>The error handler, the document handler and the parent style sheet are
+ * reset on release; other settings (like the position tracking) are kept,
+ * borrowers must not change them.</p>
+ *
+ * @author Ronald Brill
+ */
+public class CSSOMParserPool {
+
+    /** The default maximum number of idle parsers. */
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private static volatile CSSOMParserPool Default_ = new CSSOMParserPool();
+
+    private final Supplier<CSSOMParser> factory_;
+    private final BlockingQueue<CSSOMParser> idle_;
+    private final AtomicInteger borrowed_ = new AtomicInteger();
+
+    private final LongAdder hits_ = new LongAdder();
+    private final LongAdder misses_ = new LongAdder();
+    private final LongAdder contentions_ = new LongAdder();
+    private final LongAdder discards_ = new LongAdder();
+
+    /**
+     * Creates a pool of default {@link CSSOMParser}s keeping at most
+     * {@link #DEFAULT_MAX_IDLE} idle parsers.
+     */
+    public CSSOMParserPool() {
+        this(DEFAULT_MAX_IDLE, CSSOMParser::new);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maxIdle the maximum number of idle parsers kept by the pool
+     * @param factory creates the parsers
+     */
+    public CSSOMParserPool(final int maxIdle, final Supplier<CSSOMParser> factory) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle must be positive (" + maxIdle + ")");
+        }
+        factory_ = factory;
+        idle_ = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * @return the pool used by the CSSOM setters
+     */
+    public static CSSOMParserPool getDefault() {
+        return Default_;
+    }
+
+    /**
+     * Replaces the pool used by the CSSOM setters, e.g. to use another parser
+     * implementation or a bigger pool.
+     *
+     * @param pool the new pool
+     */
+    public static void setDefault(final CSSOMParserPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        Default_ = pool;
+    }
+
+    /**
+     * Borrows a parser, applies the given function to it and gives the parser back.
+     *
+     * @param <T> the type of the result
+     * @param function the function using the parser
+     * @return the result of the function
+     * @throws IOException if the function throws an IOException
+     */
+    public <T> T withParser(final ParserFunction<T> function) throws IOException {
+        final CSSOMParser parser = acquire();
+        try {
+            return function.apply(parser);
+        }
+        finally {
+            release(parser);
+        }
+    }
+
+    /**
+     * Borrows a parser; an idle one if available, a new one otherwise.
+     * The parser has to be given back using {@link #release(CSSOMParser)}.
+     *
+     * @return the parser
+     */
+    public CSSOMParser acquire() {
+        final int borrowed = borrowed_.getAndIncrement();
+        final CSSOMParser parser = idle_.poll();
+        if (parser != null) {
+            hits_.increment();
+            return parser;
+        }
+
+        misses_.increment();
+        if (borrowed > 0) {
+            // all idle parsers are in use by other callers
+            contentions_.increment();
+        }
+        return factory_.get();
+    }
+
+    /**
+     * Gives a parser back; the caller must not use the parser afterwards.
+     *
+     * @param parser the parser borrowed by {@link #acquire()}
+     */
+    public void release(final CSSOMParser parser) {
+        borrowed_.decrementAndGet();
+        parser.reset();
+        if (!idle_.offer(parser)) {
+            discards_.increment();
+        }
+    }
+
+    /**
+     * @return the number of {@link #acquire()} calls served by an idle parser
+     */
+    public long getHits() {
+        return hits_.sum();
+    }
+
+    /**
+     * @return the number of {@link #acquire()} calls that had to create a parser
+     */
+    public long getMisses() {
+        return misses_.sum();
+    }
+
+    /**
+     * @return the number of misses caused by other parsers of this
+     * pool being in use at the same time
+     */
+    public long getContentions() {
+        return contentions_.sum();
+    }
+
+    /**
+     * @return the number of released parsers dropped because the pool was full
+     */
+    public long getDiscards() {
+        return discards_.sum();
+    }
+
+    /**
+     * @return the number of parsers currently borrowed
+     */
+    public int getBorrowed() {
+        return borrowed_.get();
+    }
+
+    /**
+     * @return the number of idle parsers
+     */
+    public int getIdle() {
+        return idle_.size();
+    }
+
+    /**
+     * Resets the hit, miss, contention and discard counters.
+     */
+    public void resetStatistics() {
+        hits_.reset();
+        misses_.reset();
+        contentions_.reset();
+        discards_.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CSSOMParserPool[hits=" + getHits() + ", misses=" + getMisses()
+                + ", contentions=" + getContentions() + ", discards=" + getDiscards()
+                + ", borrowed=" + getBorrowed() + ", idle=" + getIdle() + "]";
+    }
+
+    /**
+     * A function using a borrowed parser (see {@link CSSOMParserPool#withParser(ParserFunction)}).
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface ParserFunction<T> {
+
+        /**
+         * @param parser the borrowed parser; must not be used after returning
+         * @return the result
+         * @throws IOException if parsing fails
+         */
+        T apply(CSSOMParser parser) throws IOException;
+    }
+}
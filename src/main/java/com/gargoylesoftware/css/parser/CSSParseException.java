@@ -56,7 +56,10 @@ public CSSParseException(final String message, final Locator locator) {
      * @see Locator
      */
     public CSSParseException(final String message, final Locator locator, final Exception e) {
-        this(message, locator.getUri(), locator.getLineNumber(), locator.getColumnNumber(), e);
+        this(message,
+                locator == null ? null : locator.getUri(),
+                locator == null ? -1 : locator.getLineNumber(),
+                locator == null ? -1 : locator.getColumnNumber(), e);
     }
 
     /**
@@ -105,6 +108,34 @@ public CSSParseException(final String message, final String uri,
         columnNumber_ = columnNumber;
     }
 
+    /**
+     * Create a new CSSParseException without stack trace and message; for subclasses
+     * creating the message on demand (see {@link #getMessage()}).
+     *
+     * @param uri The URI of the document that generated the error or warning.
+     * @param lineNumber The line number of the end of the text that
+     *                   caused the error or warning.
+     * @param columnNumber The column number of the end of the text that
+     *                     cause the error or warning.
+     */
+    protected CSSParseException(final String uri, final int lineNumber, final int columnNumber) {
+        super(ErrorCode.SYNTAX_ERR, null, null, false);
+        uri_ = uri;
+        lineNumber_ = lineNumber;
+        columnNumber_ = columnNumber;
+    }
+
+    /**
+     * Returns a key identifying the problem independent of its position; two problems
+     * with the same key are reported with the same message. The problems reported by
+     * the parser create the key without formatting the message.
+     *
+     * @return the key, the message by default
+     */
+    public String getProblemKey() {
+        return getMessage();
+    }
+
     /**
      * Get the URI of the document where the exception occurred.
      *
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A small pool of {@link CharsetDecoder}s; creating a decoder is not cheap
+ * for many charsets. The decoders are configured to replace malformed and
+ * unmappable input, like {@link java.io.InputStreamReader} does.
+ *
+ * @author Ronald Brill
+ */
+final class CharsetDecoderPool {
+
+    private static final int MAX_IDLE_PER_CHARSET = 8;
+
+    private static final ConcurrentMap<Charset, BlockingQueue<CharsetDecoder>> POOL = new ConcurrentHashMap<>();
+
+    private CharsetDecoderPool() {
+    }
+
+    /**
+     * @param charset the charset
+     * @return a decoder for the given charset, ready to use
+     */
+    static CharsetDecoder acquire(final Charset charset) {
+        final BlockingQueue<CharsetDecoder> idle = POOL.get(charset);
+        if (idle != null) {
+            final CharsetDecoder decoder = idle.poll();
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Returns the decoder to the pool; the decoder must not be used afterwards.
+     * @param decoder the decoder
+     */
+    static void release(final CharsetDecoder decoder) {
+        BlockingQueue<CharsetDecoder> idle = POOL.get(decoder.charset());
+        if (idle == null) {
+            idle = POOL.computeIfAbsent(decoder.charset(), k -> new ArrayBlockingQueue<>(MAX_IDLE_PER_CHARSET));
+        }
+        decoder.reset();
+        idle.offer(decoder);
+    }
+}
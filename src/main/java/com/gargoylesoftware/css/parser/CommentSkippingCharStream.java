@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+
+/**
+ * A CharStream that is able to skip the body of a comment in one go.
+ * The token manager uses this if available; for all other streams the
+ * comment is read char by char.
+ *
+ * @author Ronald Brill
+ */
+public interface CommentSkippingCharStream extends CharStream {
+
+    /**
+     * Skips all chars up to and including the next "*&#47;".
+     * The skipped chars are not part of any token image but the
+     * line and column numbers are maintained as usual.
+     *
+     * @throws IOException if the end of the input is reached before the end of the comment
+     */
+    void skipComment() throws IOException;
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * An implementation of interface CharStream that reads directly from
+ * a {@link CharSequence} (or a slice of it) without copying the input
+ * into an intermediate buffer.
+ * The whole input is always available, so there is no buffer refill and
+ * backup is a simple index operation. Line and column numbers are
+ * calculated on demand from a table of line start offsets that is filled
+ * while reading; the results are the same as the ones from {@link CssCharStream}.
+ * If line/column tracking is disabled, no line table is maintained and all
+ * line and column numbers are reported as -1.
+ *
+ * @author Ronald Brill
+ */
+public final class CssCharSequenceStream implements CommentSkippingCharStream {
+
+    private static final int NO_TOKEN = Integer.MIN_VALUE;
+
+    private final CharSequence sequence_;
+    private final char[] chars_;
+    private final int charsOffset_;
+
+    private final int begin_;
+    private final int end_;
+
+    private int pos_;
+    private int maxPos_;
+    private int tokenBegin_;
+
+    private final LineTable lines_;
+    private final TokenImageCache images_ = new TokenImageCache();
+
+    private int tabSize_ = 1;
+    private boolean trackLineColumn_ = true;
+
+    /**
+     * Ctor.
+     * @param sequence the char sequence to read from
+     * @param offset the index of the first char to read
+     * @param length the number of chars to read
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    public CssCharSequenceStream(final CharSequence sequence, final int offset, final int length,
+            final int startLine, final int startColumn) {
+        if (offset < 0 || length < 0 || offset + length > sequence.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + ", sequence length " + sequence.length());
+        }
+
+        sequence_ = sequence;
+        if (sequence instanceof CharBuffer && ((CharBuffer) sequence).hasArray()) {
+            final CharBuffer buffer = (CharBuffer) sequence;
+            chars_ = buffer.array();
+            charsOffset_ = buffer.arrayOffset() + buffer.position();
+        }
+        else {
+            chars_ = null;
+            charsOffset_ = 0;
+        }
+
+        begin_ = offset;
+        end_ = offset + length;
+
+        pos_ = offset - 1;
+        maxPos_ = pos_;
+        tokenBegin_ = pos_;
+
+        lines_ = new LineTable(offset, startLine, startColumn);
+    }
+
+    /**
+     * Ctor.
+     * @param sequence the char sequence to read from
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    public CssCharSequenceStream(final CharSequence sequence, final int startLine, final int startColumn) {
+        this(sequence, 0, sequence.length(), startLine, startColumn);
+    }
+
+    private char charAt(final int index) {
+        if (chars_ != null) {
+            return chars_[charsOffset_ + index];
+        }
+        return sequence_.charAt(index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char BeginToken() throws IOException {
+        tokenBegin_ = NO_TOKEN;
+        final char c = readChar();
+        tokenBegin_ = pos_;
+        return c;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char readChar() throws IOException {
+        if (pos_ < maxPos_) {
+            return charAt(++pos_);
+        }
+
+        final int next = pos_ + 1;
+        if (next >= end_) {
+            if (tokenBegin_ == NO_TOKEN) {
+                tokenBegin_ = pos_;
+            }
+            throw new IOException();
+        }
+
+        final char c = charAt(next);
+        if (trackLineColumn_ && next > begin_) {
+            lines_.update(charAt(next - 1), c, next);
+        }
+        pos_ = next;
+        maxPos_ = next;
+        return c;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void skipComment() throws IOException {
+        char prev = 0;
+
+        // chars already seen (after a backup)
+        while (pos_ < maxPos_) {
+            final char c = charAt(++pos_);
+            if (prev == '*' && c == '/') {
+                return;
+            }
+            prev = c;
+        }
+
+        final boolean track = trackLineColumn_;
+        char last = pos_ >= begin_ ? charAt(pos_) : 0;
+        for (int i = pos_ + 1; i < end_; i++) {
+            final char c = charAt(i);
+            if (track && i > begin_) {
+                lines_.update(last, c, i);
+            }
+            if (prev == '*' && c == '/') {
+                pos_ = i;
+                maxPos_ = i;
+                return;
+            }
+            prev = c;
+            last = c;
+        }
+
+        pos_ = end_ - 1;
+        maxPos_ = pos_;
+        throw new IOException();
+    }
+
+    private int line(final int index) {
+        if (!trackLineColumn_) {
+            return -1;
+        }
+        return lines_.line(index);
+    }
+
+    private int column(final int index) {
+        if (!trackLineColumn_) {
+            return -1;
+        }
+        return lines_.column(index);
+    }
+
+    /**
+     * @deprecated
+     * @see #getEndColumn
+     */
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    /**
+     * @deprecated
+     * @see #getEndLine
+     */
+    @Override
+    @Deprecated
+    public int getLine() {
+        return getEndLine();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndColumn() {
+        return column(pos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndLine() {
+        return line(pos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBeginColumn() {
+        return column(tokenBegin_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBeginLine() {
+        return line(tokenBegin_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void backup(final int amount) {
+        pos_ -= amount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String GetImage() {
+        if (chars_ != null) {
+            return images_.get(chars_, charsOffset_ + tokenBegin_, pos_ - tokenBegin_ + 1);
+        }
+        return images_.get(sequence_, tokenBegin_, pos_ + 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char[] GetSuffix(final int len) {
+        final char[] ret = new char[len];
+        final int start = pos_ - len + 1;
+        if (chars_ != null) {
+            System.arraycopy(chars_, charsOffset_ + start, ret, 0, len);
+        }
+        else if (sequence_ instanceof String) {
+            ((String) sequence_).getChars(start, pos_ + 1, ret, 0);
+        }
+        else {
+            for (int i = 0; i < len; i++) {
+                ret[i] = sequence_.charAt(start + i);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of chars read so far
+     */
+    long getCharsRead() {
+        return maxPos_ - begin_ + 1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void Done() {
+        // nothing to release, the input is owned by the caller
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTabSize(final int i) {
+        tabSize_ = i;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getTabSize() {
+        return tabSize_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean getTrackLineColumn() {
+        return trackLineColumn_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTrackLineColumn(final boolean trackLineColumn) {
+        trackLineColumn_ = trackLineColumn;
+    }
+}
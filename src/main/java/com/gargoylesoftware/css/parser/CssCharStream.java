@@ -2,8 +2,6 @@
 /* JavaCCOptions:STATIC=false,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
 package com.gargoylesoftware.css.parser;
 
-import com.gargoylesoftware.css.parser.javacc.CharStream;
-
 /**
  * An implementation of interface CharStream.
  * There is no processing of escaping in this class because the escaping is
@@ -11,7 +9,7 @@
  * unicode escapes in this class is too early.
  */
 @SuppressWarnings("all")
-public final class CssCharStream implements CharStream
+public final class CssCharStream implements CommentSkippingCharStream
 {
   /** Whether parser is static. */
   public static final boolean staticFlag = false;
@@ -35,17 +33,34 @@ public final class CssCharStream implements CharStream
   private java.io.Reader inputStream;
 
   private char[] buffer;
+  private final TokenImageCache images = new TokenImageCache();
   private int maxNextCharInd = 0;
   private int inBuf = 0;
 
   private int tabSize = 1;
   private boolean trackLineColumn = true;
 
+  private long charsRead = 0;
+  private int bufferExpansions = 0;
+
+  /** @return the number of chars read from the reader */
+  long getCharsRead() {
+    return charsRead;
+  }
+
+  /** @return the number of times the buffer was expanded */
+  int getBufferExpansions() {
+    return bufferExpansions;
+  }
+
   private void ExpandBuff(boolean wrapAround)
   {
-    char[] newbuffer = new char[bufsize + BUFFER_SIZE];
-    int newbufline[] = new int[bufsize + BUFFER_SIZE];
-    int newbufcolumn[] = new int[bufsize + BUFFER_SIZE];
+    // grow geometrically; huge tokens (e.g. data urls) would otherwise
+    // require a full copy of the buffer for every BUFFER_SIZE chars
+    int newsize = bufsize + Math.max(BUFFER_SIZE, bufsize >> 1);
+    char[] newbuffer = new char[newsize];
+    int newbufline[] = trackLineColumn ? new int[newsize] : null;
+    int newbufcolumn[] = trackLineColumn ? new int[newsize] : null;
 
     try
     {
@@ -55,13 +70,16 @@ private void ExpandBuff(boolean wrapAround)
         System.arraycopy(buffer, 0, newbuffer, bufsize - tokenBegin, bufpos);
         buffer = newbuffer;
 
-        System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-        System.arraycopy(bufline, 0, newbufline, bufsize - tokenBegin, bufpos);
-        bufline = newbufline;
+        if (trackLineColumn)
+        {
+          System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
+          System.arraycopy(bufline, 0, newbufline, bufsize - tokenBegin, bufpos);
+          bufline = newbufline;
 
-        System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-        System.arraycopy(bufcolumn, 0, newbufcolumn, bufsize - tokenBegin, bufpos);
-        bufcolumn = newbufcolumn;
+          System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
+          System.arraycopy(bufcolumn, 0, newbufcolumn, bufsize - tokenBegin, bufpos);
+          bufcolumn = newbufcolumn;
+        }
 
         maxNextCharInd = (bufpos += (bufsize - tokenBegin));
       }
@@ -70,11 +88,14 @@ private void ExpandBuff(boolean wrapAround)
         System.arraycopy(buffer, tokenBegin, newbuffer, 0, bufsize - tokenBegin);
         buffer = newbuffer;
 
-        System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-        bufline = newbufline;
+        if (trackLineColumn)
+        {
+          System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
+          bufline = newbufline;
 
-        System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-        bufcolumn = newbufcolumn;
+          System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
+          bufcolumn = newbufcolumn;
+        }
 
         maxNextCharInd = (bufpos -= tokenBegin);
       }
@@ -84,9 +105,10 @@ private void ExpandBuff(boolean wrapAround)
       throw new Error(t.getMessage());
     }
 
-    bufsize += BUFFER_SIZE;
+    bufsize = newsize;
     available = bufsize;
     tokenBegin = 0;
+    bufferExpansions++;
   }
 
   private final void FillBuff() throws java.io.IOException
@@ -122,6 +144,7 @@ else if ((tokenBegin - available) < BUFFER_SIZE)
       }
 
       maxNextCharInd += i;
+      charsRead += i;
       return;
     }
     catch(java.io.IOException e) {
@@ -144,6 +167,21 @@ public final char BeginToken() throws java.io.IOException
     return c;
   }
 
+  /** Skips the rest of a comment. */
+  @Override
+public void skipComment() throws java.io.IOException
+  {
+    char prev = 0;
+    while (true)
+    {
+      // moving the token begin allows the reuse of the buffer for long comments
+      char c = BeginToken();
+      if (prev == '*' && c == '/')
+        return;
+      prev = c;
+    }
+  }
+
   private final void UpdateLineColumn(char c)
   {
     column++;
@@ -203,7 +241,8 @@ public final char readChar() throws java.io.IOException
 
     char c = buffer[bufpos];
 
-    UpdateLineColumn(c);
+    if (trackLineColumn)
+      UpdateLineColumn(c);
     return c;
   }
 
@@ -214,6 +253,8 @@ public final char readChar() throws java.io.IOException
    * @see #getEndColumn
    */
   public final int getColumn() {
+    if (!trackLineColumn)
+      return -1;
     return bufcolumn[bufpos];
   }
 
@@ -224,30 +265,40 @@ public final int getColumn() {
    * @see #getEndLine
    */
   public final int getLine() {
+    if (!trackLineColumn)
+      return -1;
     return bufline[bufpos];
   }
 
   /** Get token end column number. */
   @Override
 public final int getEndColumn() {
+    if (!trackLineColumn)
+      return -1;
     return bufcolumn[bufpos];
   }
 
   /** Get token end line number. */
   @Override
 public final int getEndLine() {
+    if (!trackLineColumn)
+      return -1;
     return bufline[bufpos];
   }
 
   /** Get token beginning column number. */
   @Override
 public final int getBeginColumn() {
+    if (!trackLineColumn)
+      return -1;
     return bufcolumn[tokenBegin];
   }
 
   /** Get token beginning line number. */
   @Override
 public final int getBeginLine() {
+    if (!trackLineColumn)
+      return -1;
     return bufline[tokenBegin];
   }
 
@@ -294,8 +345,11 @@ public CssCharStream(java.io.Reader dstream, int startline, int startcolumn)
 public final String GetImage()
   {
     if (bufpos >= tokenBegin)
-      return new String(buffer, tokenBegin, bufpos - tokenBegin + 1);
-    return new String(buffer, tokenBegin, bufsize - tokenBegin) + new String(buffer, 0, bufpos + 1);
+      return images.get(buffer, tokenBegin, bufpos - tokenBegin + 1);
+    char[] image = new char[bufsize - tokenBegin + bufpos + 1];
+    System.arraycopy(buffer, tokenBegin, image, 0, bufsize - tokenBegin);
+    System.arraycopy(buffer, 0, image, bufsize - tokenBegin, bufpos + 1);
+    return new String(image);
   }
 
   /** Get the suffix. */
@@ -331,6 +385,9 @@ public void Done()
    */
   public void adjustBeginLineColumn(int newLine, int newCol)
   {
+    if (!trackLineColumn)
+      return;
+
     int start = tokenBegin;
     int len;
 
@@ -391,5 +448,16 @@ public boolean getTrackLineColumn() {
   @Override
 public void setTrackLineColumn(boolean tlc) {
       trackLineColumn = tlc;
+      if (!tlc)
+      {
+        // the line and column arrays are not needed at all
+        bufline = null;
+        bufcolumn = null;
+      }
+      else if (bufline == null)
+      {
+        bufline = new int[bufsize];
+        bufcolumn = new int[bufsize];
+      }
   }
 }
\ No newline at end of file
@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+
+/**
+ * An implementation of interface CharStream that reads UTF-8 encoded
+ * bytes directly from a {@link ByteBuffer} (or a byte array).
+ * ASCII bytes are passed to the token manager as they are; multi-byte
+ * sequences are decoded only where they occur. Chars outside the BMP are
+ * delivered as surrogate pairs, the same as with a decoding reader.
+ * The token images are created from the bytes in one step.
+ *
+ * <p>Malformed input is replaced by U+FFFD (one replacement char
+ * for every byte that is not part of a valid sequence).</p>
+ *
+ * @author Ronald Brill
+ */
+public final class CssUtf8Stream implements CharStream {
+
+    private static final int NO_TOKEN = Integer.MIN_VALUE;
+
+    private final byte[] array_;
+    private final int arrayOffset_;
+    private final ByteBuffer buffer_;
+
+    private final int begin_;
+    private final int end_;
+
+    // the current char is the one decoded from the sequence starting at pos_ with
+    // the length len_; for sequences encoding a supplementary code point
+    // second_ signals that the current char is the low surrogate
+    private int pos_;
+    private int len_;
+    private boolean second_;
+    private char low_;
+    private int charPos_;
+
+    private int maxCharPos_;
+    private char lastChar_;
+    private int decodedLen_;
+    private boolean malformed_;
+
+    private int tokenBeginPos_;
+    private boolean tokenBeginSecond_;
+    private int tokenBeginCharPos_;
+
+    private final LineTable lines_;
+    private final TokenImageCache images_ = new TokenImageCache();
+
+    private int tabSize_ = 1;
+    private boolean trackLineColumn_ = true;
+
+    /**
+     * Ctor.
+     * @param bytes the UTF-8 encoded bytes; all bytes from the current position up to the limit are read
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    public CssUtf8Stream(final ByteBuffer bytes, final int startLine, final int startColumn) {
+        if (bytes.hasArray()) {
+            array_ = bytes.array();
+            arrayOffset_ = bytes.arrayOffset();
+            buffer_ = null;
+        }
+        else {
+            array_ = null;
+            arrayOffset_ = 0;
+            buffer_ = bytes;
+        }
+
+        begin_ = bytes.position();
+        end_ = bytes.limit();
+
+        pos_ = begin_;
+        len_ = 0;
+        charPos_ = -1;
+        maxCharPos_ = -1;
+
+        tokenBeginPos_ = begin_;
+        tokenBeginCharPos_ = -1;
+
+        lines_ = new LineTable(0, startLine, startColumn);
+    }
+
+    /**
+     * Ctor.
+     * @param bytes the UTF-8 encoded bytes
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    public CssUtf8Stream(final byte[] bytes, final int offset, final int length,
+            final int startLine, final int startColumn) {
+        this(ByteBuffer.wrap(bytes, offset, length), startLine, startColumn);
+    }
+
+    private int byteAt(final int index) {
+        if (array_ != null) {
+            return array_[arrayOffset_ + index];
+        }
+        return buffer_.get(index);
+    }
+
+    private static boolean isContinuation(final int b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    /**
+     * Decodes the sequence starting at the given index.
+     * The length of the sequence is stored in decodedLen_.
+     * @param index the index of the first byte
+     * @return the code point or -1 if the sequence is malformed (length 1 in this case)
+     */
+    private int decode(final int index) {
+        final int b0 = byteAt(index);
+        decodedLen_ = 1;
+        if (b0 >= 0) {
+            return b0;
+        }
+
+        final int lead = b0 & 0xff;
+        if (lead < 0xc2 || lead > 0xf4) {
+            return -1;
+        }
+
+        if (lead < 0xe0) {
+            if (index + 1 < end_) {
+                final int b1 = byteAt(index + 1);
+                if (isContinuation(b1)) {
+                    decodedLen_ = 2;
+                    return (lead & 0x1f) << 6 | b1 & 0x3f;
+                }
+            }
+            return -1;
+        }
+
+        if (lead < 0xf0) {
+            if (index + 2 < end_) {
+                final int b1 = byteAt(index + 1) & 0xff;
+                final int b2 = byteAt(index + 2);
+                final int min = lead == 0xe0 ? 0xa0 : 0x80;
+                final int max = lead == 0xed ? 0x9f : 0xbf;
+                if (b1 >= min && b1 <= max && isContinuation(b2)) {
+                    decodedLen_ = 3;
+                    return (lead & 0x0f) << 12 | (b1 & 0x3f) << 6 | b2 & 0x3f;
+                }
+            }
+            return -1;
+        }
+
+        if (index + 3 < end_) {
+            final int b1 = byteAt(index + 1) & 0xff;
+            final int b2 = byteAt(index + 2);
+            final int b3 = byteAt(index + 3);
+            final int min = lead == 0xf0 ? 0x90 : 0x80;
+            final int max = lead == 0xf4 ? 0x8f : 0xbf;
+            if (b1 >= min && b1 <= max && isContinuation(b2) && isContinuation(b3)) {
+                decodedLen_ = 4;
+                return (lead & 0x07) << 18 | (b1 & 0x3f) << 12 | (b2 & 0x3f) << 6 | b3 & 0x3f;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasNext() {
+        return len_ == 4 && !second_ || pos_ + len_ < end_;
+    }
+
+    /**
+     * Moves to the next char; hasNext() has to be checked before.
+     * @return the next char
+     */
+    private char next() {
+        charPos_++;
+        if (len_ == 4 && !second_) {
+            second_ = true;
+            return low_;
+        }
+
+        pos_ += len_;
+        final int b = byteAt(pos_);
+        if (b >= 0) {
+            len_ = 1;
+            second_ = false;
+            return (char) b;
+        }
+
+        int cp = decode(pos_);
+        len_ = decodedLen_;
+        second_ = false;
+        if (cp < 0) {
+            malformed_ = true;
+            cp = 0xfffd;
+        }
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            low_ = Character.lowSurrogate(cp);
+            return Character.highSurrogate(cp);
+        }
+        return (char) cp;
+    }
+
+    /**
+     * @return the current char
+     */
+    private char current() {
+        if (second_) {
+            return low_;
+        }
+        int cp = decode(pos_);
+        if (cp < 0) {
+            cp = 0xfffd;
+        }
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            low_ = Character.lowSurrogate(cp);
+            return Character.highSurrogate(cp);
+        }
+        return (char) cp;
+    }
+
+    /**
+     * Moves the position to the given sequence.
+     * @param index the index of the first byte of the sequence
+     * @param second true if the low surrogate of the sequence should be the current char
+     *        (ignored if the sequence does not encode a supplementary code point)
+     * @param charPos the char index
+     */
+    private void moveTo(final int index, final boolean second, final int charPos) {
+        charPos_ = charPos;
+        pos_ = index;
+        if (charPos < 0) {
+            len_ = 0;
+            second_ = false;
+            return;
+        }
+
+        final int cp = decode(index);
+        len_ = decodedLen_;
+        second_ = second && len_ == 4;
+        if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            low_ = Character.lowSurrogate(cp);
+        }
+    }
+
+    /**
+     * @param index the index of the first byte of a sequence
+     * @return the index of the first byte of the previous sequence
+     */
+    private int previousStart(final int index) {
+        final int prev = index - 1;
+        if (byteAt(prev) >= 0) {
+            return prev;
+        }
+
+        // a valid sequence ending here always wins; the forward
+        // decoding never steps into the middle of a valid sequence
+        for (int len = 4; len > 1; len--) {
+            final int start = index - len;
+            if (start >= begin_ && decode(start) >= 0 && decodedLen_ == len) {
+                return start;
+            }
+        }
+        return prev;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char BeginToken() throws IOException {
+        tokenBeginCharPos_ = NO_TOKEN;
+        final char c = readChar();
+        markTokenBegin();
+        return c;
+    }
+
+    private void markTokenBegin() {
+        tokenBeginPos_ = pos_;
+        tokenBeginSecond_ = second_;
+        tokenBeginCharPos_ = charPos_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char readChar() throws IOException {
+        if (charPos_ < maxCharPos_) {
+            return next();
+        }
+
+        if (!hasNext()) {
+            if (tokenBeginCharPos_ == NO_TOKEN) {
+                markTokenBegin();
+            }
+            throw new IOException();
+        }
+
+        final char c = next();
+        maxCharPos_ = charPos_;
+        if (trackLineColumn_ && charPos_ > 0) {
+            lines_.update(lastChar_, c, charPos_);
+        }
+        lastChar_ = c;
+        return c;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void backup(final int amount) {
+        for (int i = 0; i < amount; i++) {
+            if (second_) {
+                second_ = false;
+                charPos_--;
+            }
+            else if (charPos_ == 0) {
+                moveTo(begin_, false, -1);
+            }
+            else {
+                final int start = previousStart(pos_);
+                moveTo(start, true, charPos_ - 1);
+            }
+        }
+    }
+
+    private int line(final int charPos) {
+        if (!trackLineColumn_) {
+            return -1;
+        }
+        return lines_.line(charPos);
+    }
+
+    private int column(final int charPos) {
+        if (!trackLineColumn_) {
+            return -1;
+        }
+        return lines_.column(charPos);
+    }
+
+    /**
+     * @deprecated
+     * @see #getEndColumn
+     */
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    /**
+     * @deprecated
+     * @see #getEndLine
+     */
+    @Override
+    @Deprecated
+    public int getLine() {
+        return getEndLine();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndColumn() {
+        return column(charPos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEndLine() {
+        return line(charPos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBeginColumn() {
+        return column(tokenBeginCharPos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBeginLine() {
+        return line(tokenBeginCharPos_);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String GetImage() {
+        final int charCount = charPos_ - tokenBeginCharPos_ + 1;
+        if (tokenBeginCharPos_ < 0 || charCount <= 0) {
+            return "";
+        }
+
+        final boolean endsInSequence = len_ == 4 && !second_;
+        if (array_ != null && !malformed_ && !tokenBeginSecond_ && !endsInSequence) {
+            final int byteCount = pos_ + len_ - tokenBeginPos_;
+            final String image = images_.getAscii(array_, arrayOffset_ + tokenBeginPos_, byteCount);
+            if (image != null) {
+                return image;
+            }
+            return new String(array_, arrayOffset_ + tokenBeginPos_, byteCount, StandardCharsets.UTF_8);
+        }
+
+        final int savedPos = pos_;
+        final boolean savedSecond = second_;
+        final int savedCharPos = charPos_;
+
+        moveTo(tokenBeginPos_, tokenBeginSecond_, tokenBeginCharPos_);
+        final char[] chars = new char[charCount];
+        chars[0] = current();
+        for (int i = 1; i < charCount; i++) {
+            chars[i] = next();
+        }
+
+        moveTo(savedPos, savedSecond, savedCharPos);
+        return new String(chars);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public char[] GetSuffix(final int len) {
+        final char[] ret = new char[len];
+        if (len == 0) {
+            return ret;
+        }
+
+        final int savedPos = pos_;
+        final boolean savedSecond = second_;
+        final int savedCharPos = charPos_;
+
+        backup(len - 1);
+        ret[0] = current();
+        for (int i = 1; i < len; i++) {
+            ret[i] = next();
+        }
+
+        moveTo(savedPos, savedSecond, savedCharPos);
+        return ret;
+    }
+
+    /**
+     * @return the number of chars read so far
+     */
+    long getCharsRead() {
+        return maxCharPos_ + 1L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void Done() {
+        // nothing to release, the input is owned by the caller
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTabSize(final int i) {
+        tabSize_ = i;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getTabSize() {
+        return tabSize_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean getTrackLineColumn() {
+        return trackLineColumn_;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTrackLineColumn(final boolean trackLineColumn) {
+        trackLineColumn_ = trackLineColumn;
+    }
+}
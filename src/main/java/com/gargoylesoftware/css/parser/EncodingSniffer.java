@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Determines the encoding of a style sheet from its first bytes as described in
+ * <a href="https://www.w3.org/TR/css-syntax-3/#input-byte-stream">CSS Syntax Level 3</a>:
+ * <ol>
+ * <li>a byte order mark</li>
+ * <li>the protocol encoding (e.g. the charset parameter of the Content-Type header)</li>
+ * <li>a leading <code>@charset "...";</code> rule</li>
+ * <li>UTF-8</li>
+ * </ol>
+ *
+ * @author Ronald Brill
+ */
+final class EncodingSniffer {
+
+    /** The number of bytes inspected when looking for a @charset rule. */
+    static final int PREFIX_LENGTH = 1024;
+
+    private static final byte[] CHARSET_START = {'@', 'c', 'h', 'a', 'r', 's', 'e', 't', ' ', '"'};
+
+    private static final Charset WINDOWS_1252 = forName("windows-1252");
+
+    // labels where the encoding standard differs from the java names
+    private static final Map<String, Charset> LABELS = new HashMap<>();
+
+    static {
+        if (WINDOWS_1252 != null) {
+            for (final String label : new String[] {"ascii", "us-ascii", "iso-8859-1", "iso8859-1", "iso_8859-1",
+                "latin1", "l1", "cp1252", "windows-1252", "x-cp1252", "ansi_x3.4-1968", "cp819", "ibm819"}) {
+                LABELS.put(label, WINDOWS_1252);
+            }
+        }
+        LABELS.put("unicode-1-1-utf-8", StandardCharsets.UTF_8);
+        LABELS.put("utf8", StandardCharsets.UTF_8);
+    }
+
+    private EncodingSniffer() {
+    }
+
+    /**
+     * Determines the encoding. If the bytes start with a byte order mark, the
+     * position of the buffer is moved behind the byte order mark.
+     *
+     * @param bytes the bytes; only the first {@link #PREFIX_LENGTH} bytes from the current position are used
+     * @param protocolEncoding the protocol encoding label, may be null
+     * @return the charset
+     */
+    static Charset sniff(final ByteBuffer bytes, final String protocolEncoding) {
+        final int pos = bytes.position();
+        final int remaining = bytes.remaining();
+
+        if (remaining >= 3
+                && bytes.get(pos) == (byte) 0xef && bytes.get(pos + 1) == (byte) 0xbb
+                && bytes.get(pos + 2) == (byte) 0xbf) {
+            bytes.position(pos + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (remaining >= 2) {
+            if (bytes.get(pos) == (byte) 0xfe && bytes.get(pos + 1) == (byte) 0xff) {
+                bytes.position(pos + 2);
+                return StandardCharsets.UTF_16BE;
+            }
+            if (bytes.get(pos) == (byte) 0xff && bytes.get(pos + 1) == (byte) 0xfe) {
+                bytes.position(pos + 2);
+                return StandardCharsets.UTF_16LE;
+            }
+        }
+
+        if (protocolEncoding != null) {
+            final Charset charset = forLabel(protocolEncoding);
+            if (charset != null) {
+                return charset;
+            }
+        }
+
+        final String label = charsetRuleLabel(bytes);
+        if (label != null) {
+            final Charset charset = forLabel(label);
+            if (charset != null && charset.name().startsWith("UTF-16")) {
+                // the rule was readable as ascii, so the bytes can't be utf-16
+                return StandardCharsets.UTF_8;
+            }
+            if (charset != null) {
+                return charset;
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * @param bytes the bytes
+     * @return the label of a leading @charset rule or null
+     */
+    private static String charsetRuleLabel(final ByteBuffer bytes) {
+        final int pos = bytes.position();
+        final int end = pos + Math.min(bytes.remaining(), PREFIX_LENGTH);
+        if (end - pos < CHARSET_START.length + 2) {
+            return null;
+        }
+
+        for (int i = 0; i < CHARSET_START.length; i++) {
+            if (bytes.get(pos + i) != CHARSET_START[i]) {
+                return null;
+            }
+        }
+
+        final StringBuilder label = new StringBuilder();
+        for (int i = pos + CHARSET_START.length; i < end - 1; i++) {
+            final byte b = bytes.get(i);
+            if (b == '"') {
+                if (bytes.get(i + 1) == ';') {
+                    return label.toString();
+                }
+                return null;
+            }
+            if (b < 0) {
+                return null;
+            }
+            label.append((char) b);
+        }
+        return null;
+    }
+
+    /**
+     * @param label the encoding label
+     * @return the charset for the label or null if not supported
+     */
+    static Charset forLabel(final String label) {
+        final String name = label.trim().toLowerCase(Locale.ROOT);
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        final Charset charset = LABELS.get(name);
+        if (charset != null) {
+            return charset;
+        }
+        return forName(name);
+    }
+
+    private static Charset forName(final String name) {
+        try {
+            return Charset.forName(name);
+        }
+        catch (final IllegalArgumentException e) {
+            // illegal or unsupported name
+            return null;
+        }
+    }
+}
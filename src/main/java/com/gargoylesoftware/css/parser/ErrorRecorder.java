@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards all reports to another error handler (if any) and records them
+ * in order, to be able to report them again later
+ * (see {@link #replay(CSSErrorHandler)}). Serializable to be able to store
+ * the reports together with a parsed style sheet (see {@link StyleSheetCache}).
+ *
+ * @author Ronald Brill
+ */
+final class ErrorRecorder implements CSSErrorHandler, Serializable {
+
+    private static final int WARNING = 0;
+    private static final int ERROR = 1;
+    private static final int FATAL = 2;
+
+    private final transient CSSErrorHandler delegate_;
+
+    // created on the first report, most parses don't report anything
+    private List<CSSParseException> exceptions_;
+    private List<Integer> severities_;
+
+    /**
+     * @param delegate the error handler to forward to, null to only record the reports
+     */
+    ErrorRecorder(final CSSErrorHandler delegate) {
+        delegate_ = delegate;
+    }
+
+    @Override
+    public void warning(final CSSParseException exception) throws CSSException {
+        record(WARNING, exception);
+        if (delegate_ != null) {
+            delegate_.warning(exception);
+        }
+    }
+
+    @Override
+    public void error(final CSSParseException exception) throws CSSException {
+        record(ERROR, exception);
+        if (delegate_ != null) {
+            delegate_.error(exception);
+        }
+    }
+
+    @Override
+    public void fatalError(final CSSParseException exception) throws CSSException {
+        record(FATAL, exception);
+        if (delegate_ != null) {
+            delegate_.fatalError(exception);
+        }
+    }
+
+    private void record(final int severity, final CSSParseException exception) {
+        if (exceptions_ == null) {
+            exceptions_ = new ArrayList<>();
+            severities_ = new ArrayList<>();
+        }
+        exceptions_.add(exception);
+        severities_.add(severity);
+    }
+
+    /**
+     * @return true if anything was reported
+     */
+    boolean hasReports() {
+        return exceptions_ != null;
+    }
+
+    /**
+     * @return the number of errors and fatal errors reported
+     */
+    int getErrorCount() {
+        int count = 0;
+        if (severities_ != null) {
+            for (final Integer severity : severities_) {
+                if (severity != WARNING) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reports all the recorded problems again, in the original order.
+     *
+     * @param handler the handler to report to
+     */
+    void replay(final CSSErrorHandler handler) {
+        if (exceptions_ == null) {
+            return;
+        }
+        for (int i = 0; i < exceptions_.size(); i++) {
+            final CSSParseException exception = exceptions_.get(i);
+            switch (severities_.get(i)) {
+                case WARNING:
+                    handler.warning(exception);
+                    break;
+                case ERROR:
+                    handler.error(exception);
+                    break;
+                default:
+                    handler.fatalError(exception);
+                    break;
+            }
+        }
+    }
+}
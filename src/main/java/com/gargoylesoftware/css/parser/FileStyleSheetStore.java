@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link StyleSheetStore} keeping every entry in a file of a local directory.
+ * The entries survive restarts; the directory can be shared by many processes,
+ * the files are written to a temporary file first and moved into place.
+ * Nothing is ever removed from the directory.
+ *
+ * @author Ronald Brill
+ */
+public class FileStyleSheetStore implements StyleSheetStore {
+
+    private static final String SUFFIX = ".csscache";
+
+    private final Path directory_;
+
+    /**
+     * Creates a new store; the directory is created if it doesn't exist.
+     *
+     * @param directory the directory
+     * @throws IOException if the directory can't be created
+     */
+    public FileStyleSheetStore(final Path directory) throws IOException {
+        directory_ = Files.createDirectories(directory);
+    }
+
+    /**
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory_;
+    }
+
+    @Override
+    public byte[] load(final String key) throws IOException {
+        try {
+            return Files.readAllBytes(directory_.resolve(key + SUFFIX));
+        }
+        catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void store(final String key, final byte[] data) throws IOException {
+        final Path temp = Files.createTempFile(directory_, key, ".tmp");
+        try {
+            Files.write(temp, data);
+            final Path file = directory_.resolve(key + SUFFIX);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
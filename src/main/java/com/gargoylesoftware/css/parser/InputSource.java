@@ -16,7 +16,12 @@
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 /**
  * The input supported by the parser.
@@ -26,8 +31,18 @@
 public class InputSource implements Closeable {
     private String uri_;
     private Reader reader_;
+    private CharSequence charSequence_;
+    private int charSequenceOffset_;
+    private int charSequenceLength_;
+    private ByteBuffer bytes_;
+    private InputStream byteStream_;
+    private String encoding_;
+    private Path file_;
+    private Charset charset_;
     private String media_;
     private String title_;
+    private int startLine_ = 1;
+    private int startColumn_ = 1;
 
     /**
      * Create a new input source backed by a reader.
@@ -37,6 +52,105 @@ public InputSource(final Reader reader) {
         reader_ = reader;
     }
 
+    /**
+     * Create a new input source backed by a char sequence (e.g. a String).
+     * The content is read directly from the char sequence without any copying;
+     * the char sequence must not be changed while parsing.
+     * @param charSequence the char sequence
+     */
+    public InputSource(final CharSequence charSequence) {
+        this(charSequence, 0, charSequence.length());
+    }
+
+    /**
+     * Create a new input source backed by a slice of a char sequence.
+     * The content is read directly from the char sequence without any copying;
+     * the char sequence must not be changed while parsing.
+     * @param charSequence the char sequence
+     * @param offset the index of the first char
+     * @param length the number of chars
+     */
+    public InputSource(final CharSequence charSequence, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > charSequence.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + ", sequence length " + charSequence.length());
+        }
+        charSequence_ = charSequence;
+        charSequenceOffset_ = offset;
+        charSequenceLength_ = length;
+    }
+
+    /**
+     * Create a new input source backed by a slice of a char array.
+     * The content is read directly from the array without any copying;
+     * the array must not be changed while parsing.
+     * @param chars the char array
+     * @param offset the index of the first char
+     * @param length the number of chars
+     */
+    public InputSource(final char[] chars, final int offset, final int length) {
+        this(CharBuffer.wrap(chars), offset, length);
+    }
+
+    /**
+     * Create a new input source backed by bytes.
+     * The encoding is determined from a byte order mark, the protocol encoding
+     * (see {@link #setEncoding(String)}) or a leading @charset rule; the default
+     * is UTF-8. UTF-8 encoded bytes are passed to the parser without decoding them
+     * into a char buffer first; multi-byte sequences are decoded only where they occur.
+     * All bytes from the current position up to the limit are read; the
+     * buffer must not be changed while parsing.
+     * @param bytes the bytes
+     */
+    public InputSource(final ByteBuffer bytes) {
+        bytes_ = bytes.duplicate();
+    }
+
+    /**
+     * Create a new input source backed by a slice of a byte array.
+     * @param bytes the bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @see #InputSource(ByteBuffer)
+     */
+    public InputSource(final byte[] bytes, final int offset, final int length) {
+        this(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Create a new input source backed by a byte stream.
+     * The encoding is determined from the first bytes of the stream, see
+     * {@link #InputSource(ByteBuffer)}; the bytes are decoded only once.
+     * @param byteStream the byte stream
+     */
+    public InputSource(final InputStream byteStream) {
+        byteStream_ = byteStream;
+    }
+
+    /**
+     * Create a new input source backed by a file.
+     * The file is mapped into memory (see {@link java.nio.channels.FileChannel#map});
+     * the encoding is determined from the first bytes of the file, see
+     * {@link #InputSource(ByteBuffer)}.
+     * @param file the file
+     */
+    public InputSource(final Path file) {
+        file_ = file;
+    }
+
+    /**
+     * Create a new input source backed by a file.
+     * The file is mapped into memory (see {@link java.nio.channels.FileChannel#map})
+     * and decoded incrementally while parsing; the content is never
+     * copied to the heap as a whole.
+     * @param file the file
+     * @param charset the charset used to decode the file
+     */
+    public InputSource(final Path file, final Charset charset) {
+        file_ = file;
+        charset_ = charset;
+    }
+
     /**
      * @return the reader if defined
      */
@@ -44,6 +158,72 @@ public Reader getReader() {
         return reader_;
     }
 
+    /**
+     * @return the char sequence if defined
+     */
+    public CharSequence getCharSequence() {
+        return charSequence_;
+    }
+
+    /**
+     * @return the index of the first char to be read from the char sequence
+     */
+    public int getCharSequenceOffset() {
+        return charSequenceOffset_;
+    }
+
+    /**
+     * @return the number of chars to be read from the char sequence
+     */
+    public int getCharSequenceLength() {
+        return charSequenceLength_;
+    }
+
+    /**
+     * @return the bytes if defined
+     */
+    public ByteBuffer getBytes() {
+        return bytes_;
+    }
+
+    /**
+     * @return the byte stream if defined
+     */
+    public InputStream getByteStream() {
+        return byteStream_;
+    }
+
+    /**
+     * @return the protocol encoding if set
+     */
+    public String getEncoding() {
+        return encoding_;
+    }
+
+    /**
+     * Sets the protocol encoding (e.g. the charset parameter of the
+     * Content-Type header) for byte based input. This takes precedence
+     * over a @charset rule but not over a byte order mark.
+     * @param encoding the encoding label
+     */
+    public void setEncoding(final String encoding) {
+        encoding_ = encoding;
+    }
+
+    /**
+     * @return the file if defined
+     */
+    public Path getFile() {
+        return file_;
+    }
+
+    /**
+     * @return the charset used to decode the file, null if the charset is detected from the content
+     */
+    public Charset getCharset() {
+        return charset_;
+    }
+
     /**
      * @return the uri if set
      */
@@ -89,8 +269,39 @@ public void setTitle(final String title) {
         title_ = title;
     }
 
+    /**
+     * Sets the position of the first char of a char sequence, used for parts
+     * of a larger input (see {@link StyleSheetSplitter}).
+     *
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    void setStartPosition(final int startLine, final int startColumn) {
+        startLine_ = startLine;
+        startColumn_ = startColumn;
+    }
+
+    /**
+     * @return the line number of the first char of a char sequence
+     */
+    int getStartLine() {
+        return startLine_;
+    }
+
+    /**
+     * @return the column number of the first char of a char sequence
+     */
+    int getStartColumn() {
+        return startColumn_;
+    }
+
     @Override
     public void close() throws IOException {
-        reader_.close();
+        if (reader_ != null) {
+            reader_.close();
+        }
+        if (byteStream_ != null) {
+            byteStream_.close();
+        }
     }
 }
@@ -17,6 +17,10 @@
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -38,10 +42,14 @@ public class LexicalUnitImpl extends AbstractLocatable implements LexicalUnit, S
     /** cache */
     private transient String toString_;
 
+    /** true if the unit is part of a chain shared by a {@link PropertyValueCache}. */
+    private transient boolean shared_;
+
     /**
      * @param next next LexicalUnit
      */
     public void setNextLexicalUnit(final LexicalUnit next) {
+        checkNotShared();
         nextLexicalUnit_ = next;
     }
 
@@ -49,6 +57,7 @@ public void setNextLexicalUnit(final LexicalUnit next) {
      * @param prev previous LexicalUnit
      */
     public void setPreviousLexicalUnit(final LexicalUnit prev) {
+        checkNotShared();
         previousLexicalUnit_ = prev;
     }
 
@@ -56,6 +65,7 @@ public void setPreviousLexicalUnit(final LexicalUnit prev) {
      * @param doubleVal the double value
      */
     public void setDoubleValue(final double doubleVal) {
+        checkNotShared();
         doubleValue_ = doubleVal;
         toString_ = null;
     }
@@ -71,6 +81,7 @@ public String getDimension() {
      * @param dimension the new dimension
      */
     public void setDimension(final String dimension) {
+        checkNotShared();
         dimension_ = dimension;
         toString_ = null;
     }
@@ -79,6 +90,7 @@ public void setDimension(final String dimension) {
      * @param function the function name
      */
     public void setFunctionName(final String function) {
+        checkNotShared();
         functionName_ = function;
         toString_ = null;
     }
@@ -87,6 +99,7 @@ public void setFunctionName(final String function) {
      * @param params the parameter LexicalUnit
      */
     public void setParameters(final LexicalUnit params) {
+        checkNotShared();
         parameters_ = params;
         toString_ = null;
     }
@@ -95,6 +108,7 @@ public void setParameters(final LexicalUnit params) {
      * @param stringVal the string value
      */
     public void setStringValue(final String stringVal) {
+        checkNotShared();
         stringValue_ = stringVal;
         toString_ = null;
     }
@@ -109,6 +123,7 @@ public LexicalUnitImpl(final LexicalUnit previous, final LexicalUnitType type) {
         lexicalUnitType_ = type;
         previousLexicalUnit_ = previous;
         if (previousLexicalUnit_ != null) {
+            ((LexicalUnitImpl) previousLexicalUnit_).checkNotShared();
             ((LexicalUnitImpl) previousLexicalUnit_).nextLexicalUnit_ = this;
         }
     }
@@ -197,6 +212,100 @@ protected LexicalUnitImpl(final LexicalUnit previous, final LexicalUnitType type
         stringValue_ = stringValue;
     }
 
+    @Override
+    public void setLocator(final Locator locator) {
+        checkNotShared();
+        super.setLocator(locator);
+    }
+
+    /**
+     * @return true if this unit is shared by a {@link PropertyValueCache};
+     * shared units are immutable, use {@link #copy()} to get a modifiable one
+     */
+    public boolean isShared() {
+        return shared_;
+    }
+
+    /**
+     * Marks this unit, all following units and all the parameters as shared;
+     * shared units are immutable.
+     */
+    public void share() {
+        for (LexicalUnit lu = this; lu instanceof LexicalUnitImpl; lu = lu.getNextLexicalUnit()) {
+            final LexicalUnitImpl unit = (LexicalUnitImpl) lu;
+            unit.shared_ = true;
+            if (unit.parameters_ instanceof LexicalUnitImpl) {
+                ((LexicalUnitImpl) unit.parameters_).share();
+            }
+        }
+    }
+
+    /**
+     * Creates a deep copy of the whole chain this unit belongs to;
+     * the copy is not shared.
+     *
+     * @return the copy of this unit
+     */
+    public LexicalUnitImpl copy() {
+        LexicalUnit head = this;
+        int index = 0;
+        while (head.getPreviousLexicalUnit() != null) {
+            head = head.getPreviousLexicalUnit();
+            index++;
+        }
+
+        LexicalUnit copy = copyChain(head);
+        for (int i = 0; i < index; i++) {
+            copy = copy.getNextLexicalUnit();
+        }
+        return (LexicalUnitImpl) copy;
+    }
+
+    private static LexicalUnitImpl copyChain(final LexicalUnit head) {
+        // the parameters are copied without recursion, values can be nested deeply
+        final Deque<LexicalUnitImpl[]> pending = new ArrayDeque<>();
+        final LexicalUnitImpl first = copyUnits(head, pending);
+        while (!pending.isEmpty()) {
+            final LexicalUnitImpl[] unitAndCopy = pending.pop();
+            unitAndCopy[1].parameters_ = copyUnits(unitAndCopy[0].parameters_, pending);
+        }
+        return first;
+    }
+
+    /**
+     * Copies the chain without the parameters; the units with parameters are
+     * added to the pending ones.
+     */
+    private static LexicalUnitImpl copyUnits(final LexicalUnit head, final Deque<LexicalUnitImpl[]> pending) {
+        LexicalUnitImpl first = null;
+        LexicalUnitImpl previous = null;
+        for (LexicalUnit lu = head; lu != null; lu = lu.getNextLexicalUnit()) {
+            final LexicalUnitImpl unit = (LexicalUnitImpl) lu;
+            final LexicalUnitImpl copy = new LexicalUnitImpl(previous, unit.lexicalUnitType_);
+            copy.doubleValue_ = unit.doubleValue_;
+            copy.dimension_ = unit.dimension_;
+            copy.functionName_ = unit.functionName_;
+            copy.stringValue_ = unit.stringValue_;
+            if (unit.parameters_ != null) {
+                pending.push(new LexicalUnitImpl[] {unit, copy});
+            }
+            copy.toString_ = unit.toString_;
+            copy.setLocator(unit.getLocator());
+
+            if (first == null) {
+                first = copy;
+            }
+            previous = copy;
+        }
+        return first;
+    }
+
+    private void checkNotShared() {
+        if (shared_) {
+            throw new UnsupportedOperationException("The lexical unit is shared and immutable, use copy().");
+        }
+    }
+
     @Override
     public LexicalUnitType getLexicalUnitType() {
         return lexicalUnitType_;
@@ -307,8 +416,101 @@ public String getCssText() {
         if (null != toString_) {
             return toString_;
         }
-
         final StringBuilder sb = new StringBuilder();
+        appendCssText(sb);
+        toString_ = sb.toString();
+        return toString_;
+    }
+
+    /**
+     * Appends the css text of this unit. The parameters are processed using an
+     * explicit stack instead of recursion, values can be nested deeply.
+     */
+    private void appendCssText(final StringBuilder sb) {
+        final String ownClose = appendOwnText(sb);
+        if (ownClose == null) {
+            return;
+        }
+        if (parameters_ == null) {
+            sb.append(ownClose);
+            return;
+        }
+
+        final Deque<Object> pending = new ArrayDeque<>();
+        pending.push(ownClose);
+        pushParams(parameters_, pending);
+        while (!pending.isEmpty()) {
+            final Object o = pending.pop();
+            if (!(o instanceof LexicalUnitImpl)) {
+                sb.append(o);
+                continue;
+            }
+
+            final LexicalUnitImpl unit = (LexicalUnitImpl) o;
+            if (unit.toString_ != null) {
+                sb.append(unit.toString_);
+                continue;
+            }
+
+            final String close = unit.appendOwnText(sb);
+            if (close != null) {
+                pending.push(close);
+                pushParams(unit.parameters_, pending);
+            }
+        }
+    }
+
+    /**
+     * Pushes the parameters and the separators in reverse order.
+     */
+    private static void pushParams(final LexicalUnit params, final Deque<Object> pending) {
+        final List<LexicalUnit> units = new ArrayList<>();
+        for (LexicalUnit l = params; l != null; l = l.getNextLexicalUnit()) {
+            units.add(l);
+        }
+        for (int i = units.size() - 1; i >= 0; i--) {
+            final LexicalUnit l = units.get(i);
+            pending.push(l instanceof LexicalUnitImpl ? l : l.toString());
+            if (i > 0 && separate(units.get(i - 1), l)) {
+                pending.push(" ");
+            }
+        }
+    }
+
+    private static boolean separate(final LexicalUnit last, final LexicalUnit l) {
+        return l.getLexicalUnitType() != LexicalUnitType.OPERATOR_COMMA
+                && !isEqualsSign(l)
+                && !isEqualsSign(last);
+    }
+
+    /**
+     * @return true if the text of the unit is "="
+     */
+    private static boolean isEqualsSign(final LexicalUnit l) {
+        if (!(l instanceof LexicalUnitImpl)) {
+            return "=".equals(l.toString());
+        }
+
+        final LexicalUnitImpl unit = (LexicalUnitImpl) l;
+        if (unit.toString_ != null) {
+            return "=".equals(unit.toString_);
+        }
+        switch (unit.lexicalUnitType_) {
+            case IDENT:
+            case UNICODERANGE:
+            case SUB_EXPRESSION:
+                return "=".equals(unit.stringValue_);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Appends the text of this unit without the parameters.
+     *
+     * @return the text closing the parameters or null if the parameters are not part of the text
+     */
+    private String appendOwnText(final StringBuilder sb) {
         switch (lexicalUnitType_) {
             case OPERATOR_COMMA:
                 sb.append(",");
@@ -391,24 +593,16 @@ public String getCssText() {
                 break;
             case COUNTER_FUNCTION:
                 sb.append("counter(");
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             case COUNTERS_FUNCTION:
                 sb.append("counters(");
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             case RGBCOLOR:
                 sb.append("rgb(");
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             case HSLCOLOR:
                 sb.append("hsl(");
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             case IDENT:
                 sb.append(getStringValue());
                 break;
@@ -429,9 +623,7 @@ public String getCssText() {
                 break;
             case RECT_FUNCTION:
                 sb.append("rect(");
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             case UNICODERANGE:
                 final String range = getStringValue();
                 if (null != range) {
@@ -451,14 +643,11 @@ public String getCssText() {
                     sb.append(functName);
                 }
                 sb.append('(');
-                appendParams(sb);
-                sb.append(")");
-                break;
+                return ")";
             default:
                 break;
         }
-        toString_ = sb.toString();
-        return toString_;
+        return null;
     }
 
     @Override
@@ -752,9 +941,7 @@ private void appendParams(final StringBuilder sb) {
             LexicalUnit last = l;
             l = l.getNextLexicalUnit();
             while (l != null) {
-                if (l.getLexicalUnitType() != LexicalUnitType.OPERATOR_COMMA
-                        && !"=".equals(l.toString())
-                        && !"=".equals(last.toString())) {
+                if (separate(last, l)) {
                     sb.append(" ");
                 }
                 sb.append(l.toString());
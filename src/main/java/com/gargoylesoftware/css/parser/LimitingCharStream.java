@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.Token;
+
+/**
+ * Wraps the char stream of a parser to enforce the {@link ParseLimits}.
+ *
+ * <p>The generated token manager treats every exception thrown while starting a
+ * token as end of input and the parsers recover from the parse exceptions; therefore
+ * a limit violation is signaled by the {@link Exceeded} error, the parser converts it
+ * into a {@link ParseLimitException} when unwinding. The stream doesn't support
+ * skipping comments in one go, the chars of the comments are counted too.</p>
+ *
+ * @author Ronald Brill
+ */
+final class LimitingCharStream implements TokenObservingCharStream {
+
+    // the clock and the cancellation token are checked every CHECK_INTERVAL chars
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharStream stream_;
+    private final ParseLimits limits_;
+    private final long deadline_;
+
+    // the length of the input if known in advance, otherwise -1
+    private long knownLength_;
+    private long position_;
+    private int untilCheck_;
+
+    private long tokens_;
+    private int rules_;
+    private int depth_;
+
+    /**
+     * Ctor.
+     * @param stream the stream to read from
+     * @param limits the limits
+     * @param knownLength the length of the input if known in advance, otherwise -1
+     */
+    LimitingCharStream(final CharStream stream, final ParseLimits limits, final long knownLength) {
+        stream_ = stream;
+        limits_ = limits;
+        knownLength_ = knownLength;
+
+        final long timeout = limits.getTimeoutNanos();
+        deadline_ = timeout > 0 ? System.nanoTime() + timeout : 0;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        final char c = stream_.readChar();
+        advance();
+        return c;
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        if (knownLength_ > limits_.getMaxInputLength()) {
+            knownLength_ = -1;
+            throw exceeded(ParseLimits.Limit.INPUT_LENGTH);
+        }
+        final char c = stream_.BeginToken();
+        advance();
+        return c;
+    }
+
+    private void advance() {
+        if (++position_ > limits_.getMaxInputLength()) {
+            throw exceeded(ParseLimits.Limit.INPUT_LENGTH);
+        }
+        if (--untilCheck_ <= 0) {
+            untilCheck_ = CHECK_INTERVAL;
+            checkCancellation();
+        }
+    }
+
+    private void checkCancellation() {
+        final ParseLimits.CancellationToken token = limits_.getCancellationToken();
+        if (token != null && token.isCancelled()) {
+            throw exceeded(ParseLimits.Limit.CANCELLED);
+        }
+        if (deadline_ != 0 && System.nanoTime() - deadline_ > 0) {
+            throw exceeded(ParseLimits.Limit.TIMEOUT);
+        }
+    }
+
+    @Override
+    public void backup(final int amount) {
+        stream_.backup(amount);
+        position_ -= amount;
+    }
+
+    @Override
+    public void tokenMatched(final Token token) {
+        if (++tokens_ > limits_.getMaxTokens()) {
+            throw exceeded(ParseLimits.Limit.TOKENS);
+        }
+
+        switch (token.kind) {
+            case CSS3ParserConstants.STRING:
+            case CSS3ParserConstants.URI:
+                if (token.image.length() > limits_.getMaxStringLength()) {
+                    throw exceeded(ParseLimits.Limit.STRING_LENGTH);
+                }
+                break;
+            case CSS3ParserConstants.LROUND:
+            case CSS3ParserConstants.LBRACE:
+            case CSS3ParserConstants.LSQUARE:
+            case CSS3ParserConstants.FUNCTION_NOT:
+            case CSS3ParserConstants.FUNCTION_LANG:
+            case CSS3ParserConstants.FUNCTION_CALC:
+            case CSS3ParserConstants.FUNCTION_VAR:
+            case CSS3ParserConstants.FUNCTION_RGB:
+            case CSS3ParserConstants.FUNCTION_HSL:
+            case CSS3ParserConstants.FUNCTION:
+                if (++depth_ > limits_.getMaxNestingDepth()) {
+                    throw exceeded(ParseLimits.Limit.NESTING_DEPTH);
+                }
+                break;
+            case CSS3ParserConstants.RROUND:
+            case CSS3ParserConstants.RBRACE:
+            case CSS3ParserConstants.RSQUARE:
+                if (depth_ > 0) {
+                    depth_--;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Counts a rule.
+     *
+     * @return false if the rule exceeds the limit
+     */
+    boolean rule() {
+        return ++rules_ <= limits_.getMaxRules();
+    }
+
+    /**
+     * @param limit the limit exceeded
+     * @return the error to throw
+     */
+    Exceeded exceeded(final ParseLimits.Limit limit) {
+        final long value;
+        switch (limit) {
+            case INPUT_LENGTH:
+                value = limits_.getMaxInputLength();
+                break;
+            case TOKENS:
+                value = limits_.getMaxTokens();
+                break;
+            case RULES:
+                value = limits_.getMaxRules();
+                break;
+            case NESTING_DEPTH:
+                value = limits_.getMaxNestingDepth();
+                break;
+            case STRING_LENGTH:
+                value = limits_.getMaxStringLength();
+                break;
+            case TIMEOUT:
+                value = limits_.getTimeoutNanos() / 1000000L;
+                break;
+            default:
+                value = 0;
+                break;
+        }
+        if (position_ == 0) {
+            // nothing read so far
+            return new Exceeded(limit, value, -1, -1);
+        }
+        return new Exceeded(limit, value, stream_.getEndLine(), stream_.getEndColumn());
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return stream_.getColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return stream_.getLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        return stream_.getEndColumn();
+    }
+
+    @Override
+    public int getEndLine() {
+        return stream_.getEndLine();
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return stream_.getBeginColumn();
+    }
+
+    @Override
+    public int getBeginLine() {
+        return stream_.getBeginLine();
+    }
+
+    @Override
+    public String GetImage() {
+        return stream_.GetImage();
+    }
+
+    @Override
+    public char[] GetSuffix(final int len) {
+        return stream_.GetSuffix(len);
+    }
+
+    @Override
+    public void Done() {
+        stream_.Done();
+    }
+
+    @Override
+    public void setTabSize(final int i) {
+        stream_.setTabSize(i);
+    }
+
+    @Override
+    public int getTabSize() {
+        return stream_.getTabSize();
+    }
+
+    @Override
+    public boolean getTrackLineColumn() {
+        return stream_.getTrackLineColumn();
+    }
+
+    @Override
+    public void setTrackLineColumn(final boolean trackLineColumn) {
+        stream_.setTrackLineColumn(trackLineColumn);
+    }
+
+    /**
+     * Signals a limit violation; passes all the catch blocks of the parsers.
+     */
+    static final class Exceeded extends Error {
+        private final ParseLimits.Limit limit_;
+        private final long value_;
+        private final int line_;
+        private final int column_;
+
+        Exceeded(final ParseLimits.Limit limit, final long value, final int line, final int column) {
+            super(null, null, false, false);
+            limit_ = limit;
+            value_ = value;
+            line_ = line;
+            column_ = column;
+        }
+
+        ParseLimits.Limit getLimit() {
+            return limit_;
+        }
+
+        long getValue() {
+            return value_;
+        }
+
+        int getLine() {
+            return line_;
+        }
+
+        int getColumn() {
+            return column_;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+/**
+ * Maps char indexes to line and column numbers.
+ * The char streams add the index of every char that starts a new line
+ * while reading; line and column numbers are calculated on demand.
+ * The rules are the same as in {@link CssCharStream}: a new line starts
+ * after a LF or after a CR that is not followed by a LF.
+ *
+ * @author Ronald Brill
+ */
+final class LineTable {
+
+    private final int begin_;
+    private final int startLine_;
+    private final int startColumn_;
+
+    private int[] lineStarts_;
+    private int lineCount_;
+    private int lastLineIdx_;
+
+    /**
+     * Ctor.
+     * @param begin the index of the first char
+     * @param startLine the line number of the first char
+     * @param startColumn the column number of the first char
+     */
+    LineTable(final int begin, final int startLine, final int startColumn) {
+        begin_ = begin;
+        startLine_ = startLine;
+        startColumn_ = startColumn;
+
+        lineStarts_ = new int[16];
+        lineStarts_[0] = begin;
+        lineCount_ = 1;
+    }
+
+    /**
+     * Has to be called for every char (in order) the first time it is read.
+     * @param prev the previous char
+     * @param c the char
+     * @param index the index of the char
+     */
+    void update(final char prev, final char c, final int index) {
+        if (prev == '\n' || prev == '\r' && c != '\n') {
+            if (lineCount_ == lineStarts_.length) {
+                final int[] newLineStarts = new int[lineCount_ * 2];
+                System.arraycopy(lineStarts_, 0, newLineStarts, 0, lineCount_);
+                lineStarts_ = newLineStarts;
+            }
+            lineStarts_[lineCount_++] = index;
+        }
+    }
+
+    private int lineIndex(final int index) {
+        // most lookups are for the current or the previous line
+        int idx = lastLineIdx_;
+        if (lineStarts_[idx] <= index && (idx + 1 == lineCount_ || lineStarts_[idx + 1] > index)) {
+            return idx;
+        }
+
+        int low = 0;
+        int high = lineCount_ - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (lineStarts_[mid] <= index) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        idx = low;
+        lastLineIdx_ = idx;
+        return idx;
+    }
+
+    /**
+     * @param index the char index
+     * @return the line number of the char
+     */
+    int line(final int index) {
+        if (index < begin_) {
+            return 0;
+        }
+        return startLine_ + lineIndex(index);
+    }
+
+    /**
+     * @param index the char index
+     * @return the column number of the char
+     */
+    int column(final int index) {
+        if (index < begin_) {
+            return 0;
+        }
+        final int idx = lineIndex(index);
+        if (idx == 0) {
+            return index - begin_ + startColumn_;
+        }
+        return index - lineStarts_[idx] + 1;
+    }
+}
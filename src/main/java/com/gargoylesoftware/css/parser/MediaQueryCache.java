@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import com.gargoylesoftware.css.parser.media.MediaQuery;
+import com.gargoylesoftware.css.parser.media.MediaQueryList;
+
+/**
+ * A bounded, thread safe cache of canonical {@link MediaQueryList}s. Style sheets
+ * use the same few media lists ({@code screen}, {@code print},
+ * {@code (max-width: 767px)}) over and over again.
+ *
+ * <p>The cache is used for the results of {@link CSSOMParser#parseMedia(String)}
+ * (keyed by the media text with collapsed white space) and for the media lists of
+ * the {@code @media} and {@code @import} rules of parsed style sheets (keyed by the
+ * serialized queries). All equal media lists seen by the parsers using the cache are
+ * the same, unmodifiable {@link MediaQueryList} instance; media lists can be
+ * compared by identity. The locators of a shared list and its queries are the ones
+ * of its first occurrence; the media lists of the rules keep their own locator.
+ * Only media lists parsed without any error or warning are cached.</p>
+ *
+ * <p>The cache can be shared by any number of parsers (see
+ * {@link CSSOMParser#setMediaQueryCache(MediaQueryCache)}), as long as all
+ * of them use the same parser implementation and position tracking setting.</p>
+ *
+ * @author Ronald Brill
+ */
+public class MediaQueryCache {
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    /** The default maximum length of a cached media text. */
+    public static final int DEFAULT_MAX_MEDIA_LENGTH = 256;
+
+    private final BoundedCache<MediaQueryList> cache_;
+
+    /**
+     * Creates a cache using {@link #DEFAULT_MAX_ENTRIES} and
+     * {@link #DEFAULT_MAX_MEDIA_LENGTH}.
+     */
+    public MediaQueryCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_MEDIA_LENGTH);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached media lists
+     * @param maxMediaLength longer media texts are not cached
+     */
+    public MediaQueryCache(final int maxEntries, final int maxMediaLength) {
+        cache_ = new BoundedCache<>(maxEntries, maxMediaLength);
+    }
+
+    /**
+     * Returns the canonical form of the given media text used as key; white space
+     * is trimmed and collapsed. Texts containing anything that might be sensitive
+     * to white space (strings, escapes, comments) are returned unchanged.
+     *
+     * @param media the media text
+     * @return the key
+     */
+    static String canonicalize(final String media) {
+        final int length = media.length();
+        boolean changed = false;
+        boolean space = true;
+        for (int i = 0; i < length; i++) {
+            final char c = media.charAt(i);
+            if (c == '"' || c == '\'' || c == '\\' || c == '/') {
+                return media;
+            }
+            if (isSpace(c)) {
+                if (space || c != ' ' || i + 1 == length || isSpace(media.charAt(i + 1))) {
+                    changed = true;
+                }
+                space = true;
+            }
+            else {
+                space = false;
+            }
+        }
+        if (!changed) {
+            return media;
+        }
+
+        final StringBuilder sb = new StringBuilder(length);
+        space = false;
+        for (int i = 0; i < length; i++) {
+            final char c = media.charAt(i);
+            if (isSpace(c)) {
+                space = true;
+            }
+            else {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                space = false;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSpace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * @param key the key
+     * @return true if a key of this length is cached at all
+     */
+    boolean isCacheable(final String key) {
+        return cache_.isCacheable(key);
+    }
+
+    /**
+     * @param key the canonical media text
+     * @return the shared list or null
+     */
+    MediaQueryList get(final String key) {
+        return cache_.get(key);
+    }
+
+    /**
+     * Adds a freshly parsed list; the list is unmodifiable afterwards.
+     *
+     * @param key the canonical media text
+     * @param media the parsed list
+     */
+    void put(final String key, final MediaQueryList media) {
+        media.makeUnmodifiable();
+        cache_.put(key, media);
+    }
+
+    /**
+     * Returns the canonical instance of the given (valid) media list.
+     *
+     * @param media the parsed media list
+     * @return the shared list equal to the given one; the given one if it
+     * is the first of its kind or if the list is too long to be cached
+     */
+    MediaQueryList intern(final MediaQueryList media) {
+        final String key = key(media);
+        if (!cache_.isCacheable(key)) {
+            return media;
+        }
+        final MediaQueryList shared = cache_.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        put(key, media);
+        return media;
+    }
+
+    // MediaQueryList.toString() contains only the media types
+    private static String key(final MediaQueryList media) {
+        final StringBuilder sb = new StringBuilder();
+        for (final MediaQuery mediaQuery : media.getMediaQueries()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(mediaQuery.toString());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache_.clear();
+    }
+
+    /**
+     * @return the number of cached media lists
+     */
+    public int size() {
+        return cache_.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return cache_.getHits();
+    }
+
+    /**
+     * @return the number of lookups that had to parse (or add) the media list
+     */
+    public long getMisses() {
+        return cache_.getMisses();
+    }
+
+    /**
+     * @return the number of media lists removed to make room for newer ones
+     */
+    public long getEvictions() {
+        return cache_.getEvictions();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        cache_.resetStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return "MediaQueryCache[" + cache_ + "]";
+    }
+}
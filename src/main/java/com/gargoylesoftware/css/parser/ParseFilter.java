@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import com.gargoylesoftware.css.parser.media.MediaQueryList;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+
+/**
+ * Decides which rules and properties a {@link CSSOMParser} adds to the CSSOM
+ * (see {@link CSSOMParser#setFilter(ParseFilter)}). The filter is applied while
+ * parsing; no CSSOM objects are created for the rejected constructs, the rules
+ * inside a rejected rule are dropped together with the rule.
+ *
+ * <ul>
+ * <li>rule types: rules of a rejected type are dropped</li>
+ * <li>media: media and import rules with a media list not accepted by the media filter
+ * are dropped; rules without media list (all media) are kept</li>
+ * <li>selectors: style rules with a selector list not accepted by the selector filter
+ * are dropped</li>
+ * <li>properties: if allowed properties are set, all other properties are dropped;
+ * denied properties and properties starting with a denied prefix are dropped too
+ * (the names are compared case insensitive)</li>
+ * </ul>
+ *
+ * <p>The filter only counts the dropped rules and properties; the same filter can
+ * be used by many parsers, but it should not be changed while in use.</p>
+ *
+ * @author Ronald Brill
+ */
+public class ParseFilter {
+
+    /**
+     * The types of rules.
+     */
+    public enum RuleType {
+        /** Style rules. */
+        STYLE,
+        /** Media rules. */
+        MEDIA,
+        /** Page rules. */
+        PAGE,
+        /** Font face rules. */
+        FONT_FACE,
+        /** Import rules. */
+        IMPORT,
+        /** Charset rules. */
+        CHARSET,
+        /** Unknown at rules. */
+        UNKNOWN
+    }
+
+    private final Set<RuleType> rejectedRuleTypes_ = EnumSet.noneOf(RuleType.class);
+    private Predicate<MediaQueryList> mediaFilter_;
+    private Predicate<SelectorList> selectorFilter_;
+    private Set<String> allowedProperties_;
+    private final Set<String> deniedProperties_ = new HashSet<>();
+    private final List<String> deniedPropertyPrefixes_ = new ArrayList<>();
+
+    private final LongAdder[] droppedRules_ = new LongAdder[RuleType.values().length];
+    private final LongAdder droppedProperties_ = new LongAdder();
+
+    /**
+     * Creates a new filter accepting everything.
+     */
+    public ParseFilter() {
+        for (int i = 0; i < droppedRules_.length; i++) {
+            droppedRules_[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param types the types of rules to drop
+     */
+    public void rejectRuleTypes(final RuleType... types) {
+        Collections.addAll(rejectedRuleTypes_, types);
+    }
+
+    /**
+     * @param type the rule type
+     * @return true if rules of this type are dropped
+     */
+    public boolean isRejected(final RuleType type) {
+        return rejectedRuleTypes_.contains(type);
+    }
+
+    /**
+     * @param mediaFilter accepts the media lists of the media and import rules to keep;
+     * null to keep all
+     */
+    public void setMediaFilter(final Predicate<MediaQueryList> mediaFilter) {
+        mediaFilter_ = mediaFilter;
+    }
+
+    /**
+     * @return the media filter or null
+     */
+    public Predicate<MediaQueryList> getMediaFilter() {
+        return mediaFilter_;
+    }
+
+    /**
+     * @param selectorFilter accepts the selector lists of the style rules to keep;
+     * null to keep all
+     */
+    public void setSelectorFilter(final Predicate<SelectorList> selectorFilter) {
+        selectorFilter_ = selectorFilter;
+    }
+
+    /**
+     * @return the selector filter or null
+     */
+    public Predicate<SelectorList> getSelectorFilter() {
+        return selectorFilter_;
+    }
+
+    /**
+     * @param names the names of the properties to keep; null to keep all
+     * properties not denied
+     */
+    public void setAllowedProperties(final Collection<String> names) {
+        if (names == null) {
+            allowedProperties_ = null;
+            return;
+        }
+        allowedProperties_ = new HashSet<>();
+        for (final String name : names) {
+            allowedProperties_.add(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @param names the names of the properties to drop
+     */
+    public void denyProperties(final String... names) {
+        for (final String name : names) {
+            deniedProperties_.add(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @param prefixes the prefixes of the properties to drop, e.g. "-webkit-"
+     */
+    public void denyPropertyPrefixes(final String... prefixes) {
+        for (final String prefix : prefixes) {
+            deniedPropertyPrefixes_.add(prefix.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @param type the type of the rule
+     * @return true if the rule is kept, otherwise the rule is counted as dropped
+     */
+    boolean acceptRule(final RuleType type) {
+        if (rejectedRuleTypes_.contains(type)) {
+            droppedRules_[type.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param type the type of the rule (media or import)
+     * @param media the media list
+     * @return true if the rule is kept, otherwise the rule is counted as dropped
+     */
+    boolean acceptMedia(final RuleType type, final MediaQueryList media) {
+        if (!acceptRule(type)) {
+            return false;
+        }
+        final Predicate<MediaQueryList> mediaFilter = mediaFilter_;
+        if (mediaFilter != null && media != null && media.getLength() > 0 && !mediaFilter.test(media)) {
+            droppedRules_[type.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param selectors the selectors of the style rule
+     * @return true if the rule is kept, otherwise the rule is counted as dropped
+     */
+    boolean acceptSelectors(final SelectorList selectors) {
+        if (!acceptRule(RuleType.STYLE)) {
+            return false;
+        }
+        final Predicate<SelectorList> selectorFilter = selectorFilter_;
+        if (selectorFilter != null && !selectorFilter.test(selectors)) {
+            droppedRules_[RuleType.STYLE.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return true if the property is kept, otherwise the property is counted as dropped
+     */
+    boolean acceptProperty(final String name) {
+        if (allowedProperties_ == null && deniedProperties_.isEmpty() && deniedPropertyPrefixes_.isEmpty()) {
+            return true;
+        }
+
+        final String lowerName = name.toLowerCase(Locale.ROOT);
+        boolean accept = allowedProperties_ == null || allowedProperties_.contains(lowerName);
+        if (accept && deniedProperties_.contains(lowerName)) {
+            accept = false;
+        }
+        for (int i = 0; accept && i < deniedPropertyPrefixes_.size(); i++) {
+            if (lowerName.startsWith(deniedPropertyPrefixes_.get(i))) {
+                accept = false;
+            }
+        }
+        if (!accept) {
+            droppedProperties_.increment();
+        }
+        return accept;
+    }
+
+    /**
+     * @param type the rule type
+     * @return the number of dropped rules of this type (not counting the rules
+     * inside dropped rules)
+     */
+    public long getDroppedRules(final RuleType type) {
+        return droppedRules_[type.ordinal()].sum();
+    }
+
+    /**
+     * @return the number of dropped rules (not counting the rules inside dropped rules)
+     */
+    public long getDroppedRules() {
+        long sum = 0;
+        for (final LongAdder dropped : droppedRules_) {
+            sum += dropped.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of dropped properties (not counting the properties of dropped rules)
+     */
+    public long getDroppedProperties() {
+        return droppedProperties_.sum();
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        for (final LongAdder dropped : droppedRules_) {
+            dropped.reset();
+        }
+        droppedProperties_.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ParseFilter[droppedRules=" + getDroppedRules() + ", droppedProperties=" + getDroppedProperties() + "]";
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+/**
+ * Thrown by the parser if one of the {@link ParseLimits} is exceeded.
+ *
+ * @author Ronald Brill
+ */
+public class ParseLimitException extends CSSParseException {
+
+    private final ParseLimits.Limit limit_;
+
+    /**
+     * Creates a new ParseLimitException.
+     *
+     * @param limit the limit exceeded
+     * @param message the message
+     * @param uri the uri of the style sheet
+     * @param lineNumber the line number of the position the parser stopped
+     * @param columnNumber the column number of the position the parser stopped
+     */
+    public ParseLimitException(final ParseLimits.Limit limit, final String message,
+            final String uri, final int lineNumber, final int columnNumber) {
+        super(message, uri, lineNumber, columnNumber);
+        limit_ = limit;
+    }
+
+    /**
+     * @return the limit exceeded
+     */
+    public ParseLimits.Limit getLimit() {
+        return limit_;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits for parsing untrusted style sheets (see {@link CSSOMParser#setParseLimits(ParseLimits)}).
+ * The parser stops at the first limit exceeded and throws a {@link ParseLimitException};
+ * nothing is read from the input after that.
+ *
+ * <ul>
+ * <li>input length: the number of chars read</li>
+ * <li>tokens: the number of tokens (including white space)</li>
+ * <li>rules: the number of rules, including the rules inside of media rules</li>
+ * <li>nesting depth: the number of open parentheses, brackets, braces and functions</li>
+ * <li>string length: the length of a string or url</li>
+ * <li>timeout: the time a single parse may take</li>
+ * <li>cancellation: a {@link CancellationToken} another thread can use to stop the parser</li>
+ * </ul>
+ *
+ * <p>The limits are checked while the chars are read; the checks are done by a
+ * wrapper around the char stream that is only used if limits are set. The limits
+ * can be shared by many parsers, they should not be changed while in use.</p>
+ *
+ * @author Ronald Brill
+ */
+public class ParseLimits {
+
+    /**
+     * The limits.
+     */
+    public enum Limit {
+        /** The number of chars. */
+        INPUT_LENGTH,
+        /** The number of tokens. */
+        TOKENS,
+        /** The number of rules. */
+        RULES,
+        /** The nesting depth. */
+        NESTING_DEPTH,
+        /** The length of a string or url. */
+        STRING_LENGTH,
+        /** The time. */
+        TIMEOUT,
+        /** The cancellation token. */
+        CANCELLED
+    }
+
+    /**
+     * Stops the parsers using it; the parsers check the token from
+     * time to time while reading the input.
+     */
+    public static final class CancellationToken {
+        private volatile boolean cancelled_;
+
+        /**
+         * Cancels the parsers using this token.
+         */
+        public void cancel() {
+            cancelled_ = true;
+        }
+
+        /**
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled_;
+        }
+    }
+
+    private long maxInputLength_ = Long.MAX_VALUE;
+    private long maxTokens_ = Long.MAX_VALUE;
+    private int maxRules_ = Integer.MAX_VALUE;
+    private int maxNestingDepth_ = Integer.MAX_VALUE;
+    private int maxStringLength_ = Integer.MAX_VALUE;
+    private long timeoutNanos_;
+    private CancellationToken cancellationToken_;
+    private boolean keepPartialResult_;
+
+    /**
+     * @return the max number of chars
+     */
+    public long getMaxInputLength() {
+        return maxInputLength_;
+    }
+
+    /**
+     * @param maxInputLength the max number of chars
+     */
+    public void setMaxInputLength(final long maxInputLength) {
+        maxInputLength_ = checkPositive(maxInputLength);
+    }
+
+    /**
+     * @return the max number of tokens
+     */
+    public long getMaxTokens() {
+        return maxTokens_;
+    }
+
+    /**
+     * @param maxTokens the max number of tokens
+     */
+    public void setMaxTokens(final long maxTokens) {
+        maxTokens_ = checkPositive(maxTokens);
+    }
+
+    /**
+     * @return the max number of rules
+     */
+    public int getMaxRules() {
+        return maxRules_;
+    }
+
+    /**
+     * @param maxRules the max number of rules
+     */
+    public void setMaxRules(final int maxRules) {
+        maxRules_ = (int) checkPositive(maxRules);
+    }
+
+    /**
+     * @return the max nesting depth
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth_;
+    }
+
+    /**
+     * @param maxNestingDepth the max number of open parentheses, brackets, braces and functions
+     */
+    public void setMaxNestingDepth(final int maxNestingDepth) {
+        maxNestingDepth_ = (int) checkPositive(maxNestingDepth);
+    }
+
+    /**
+     * @return the max length of a string or url
+     */
+    public int getMaxStringLength() {
+        return maxStringLength_;
+    }
+
+    /**
+     * @param maxStringLength the max length of a string or url (without quotes)
+     */
+    public void setMaxStringLength(final int maxStringLength) {
+        maxStringLength_ = (int) checkPositive(maxStringLength);
+    }
+
+    /**
+     * @return the timeout in nanoseconds, 0 if there is no timeout
+     */
+    public long getTimeoutNanos() {
+        return timeoutNanos_;
+    }
+
+    /**
+     * @param timeout the time a single parse may take; 0 for no timeout
+     * @param unit the unit of the timeout
+     */
+    public void setTimeout(final long timeout, final TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative (" + timeout + ")");
+        }
+        timeoutNanos_ = unit.toNanos(timeout);
+    }
+
+    /**
+     * @return the cancellation token or null
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken_;
+    }
+
+    /**
+     * @param cancellationToken the cancellation token or null
+     */
+    public void setCancellationToken(final CancellationToken cancellationToken) {
+        cancellationToken_ = cancellationToken;
+    }
+
+    /**
+     * @return true if the partial style sheet is returned if a limit is exceeded
+     */
+    public boolean isKeepPartialResult() {
+        return keepPartialResult_;
+    }
+
+    /**
+     * If set, {@link CSSOMParser#parseStyleSheet(InputSource, String)} doesn't throw
+     * the {@link ParseLimitException} but reports it as error and returns the
+     * style sheet with the rules parsed so far. All other parse methods always throw.
+     *
+     * @param keepPartialResult the new value
+     */
+    public void setKeepPartialResult(final boolean keepPartialResult) {
+        keepPartialResult_ = keepPartialResult;
+    }
+
+    private static long checkPositive(final long value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("limit must be positive (" + value + ")");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseLimits[maxInputLength=" + maxInputLength_ + ", maxTokens=" + maxTokens_
+                + ", maxRules=" + maxRules_ + ", maxNestingDepth=" + maxNestingDepth_
+                + ", maxStringLength=" + maxStringLength_ + ", timeoutNanos=" + timeoutNanos_ + "]";
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+/**
+ * A sink for the statistics of the parser (see {@link CSSOMParser#setParseMetrics(ParseMetrics)}).
+ * This is a minimal bridge to any metrics library; the parser calls the sink once per
+ * counter and timer at the end of every parse, counters with a value of zero are omitted.
+ *
+ * <p>The names are dot separated and start with "css.parse.", e.g. "css.parse.tokens",
+ * "css.parse.rules.style", "css.parse.errors.invalidDeclaration" or "css.parse.time.lexing".
+ * The sink is called by the thread doing the parse; a sink shared by many parsers
+ * has to be thread safe.</p>
+ *
+ * @author Ronald Brill
+ */
+public interface ParseMetrics {
+
+    /**
+     * Adds the given value to a counter.
+     *
+     * @param name the name of the counter
+     * @param value the value to add
+     */
+    void count(String name, long value);
+
+    /**
+     * Records a time.
+     *
+     * @param name the name of the timer
+     * @param nanos the time in nanoseconds
+     */
+    void time(String name, long nanos);
+}
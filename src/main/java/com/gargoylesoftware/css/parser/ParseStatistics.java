@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+
+/**
+ * The statistics of a single parse (see {@link CSSOMParser#setCollectStatistics(boolean)}).
+ *
+ * <ul>
+ * <li>bytes and chars: the bytes of a byte source and the chars read by the token managers</li>
+ * <li>tokens: the tokens by kind, including white space and comments skipped</li>
+ * <li>rules, selectors, declarations and lexical units reported to the document handler</li>
+ * <li>errors and warnings: by message key; problems not created by the parser are
+ * counted by the simple name of the exception class</li>
+ * <li>buffer expansions: the number of times the buffer of a reader based stream had to grow</li>
+ * <li>times: the time spent lexing, parsing and building the object model</li>
+ * </ul>
+ *
+ * <p>The time spent in the token managers is measured per token, the time spent
+ * in the document handler per event; the rest is attributed to parsing. The statistics
+ * are collected by the thread doing the parse, the object is not thread safe.</p>
+ *
+ * @author Ronald Brill
+ */
+public class ParseStatistics {
+
+    private static final String PREFIX = "css.parse.";
+    private static final String[] TOKEN_NAMES = tokenNames();
+
+    private long bytesRead_;
+    private long charsRead_;
+    private long bufferExpansions_;
+    private long tokens_;
+    private final long[] tokensByKind_ = new long[TOKEN_NAMES.length];
+    private final long[] rules_ = new long[ParseFilter.RuleType.values().length];
+    private long selectors_;
+    private long declarations_;
+    private long lexicalUnits_;
+    private final Map<String, Long> errors_ = new TreeMap<>();
+    private final Map<String, Long> warnings_ = new TreeMap<>();
+
+    private long totalNanos_;
+    private long lexingNanos_;
+    private long buildNanos_;
+
+    private static String[] tokenNames() {
+        final String[] names = new String[CSS3ParserConstants.tokenImage.length];
+        for (int i = 0; i < names.length; i++) {
+            final String image = CSS3ParserConstants.tokenImage[i];
+            if (image.length() > 1
+                    && (image.charAt(0) == '<' || image.charAt(0) == '"')) {
+                names[i] = image.substring(1, image.length() - 1);
+            }
+            else {
+                names[i] = image;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the number of bytes read from a byte source, 0 for char sources
+     */
+    public long getBytesRead() {
+        return bytesRead_;
+    }
+
+    /**
+     * @return the number of chars read
+     */
+    public long getCharsRead() {
+        return charsRead_;
+    }
+
+    /**
+     * @return the number of times the buffer of the char stream was expanded
+     */
+    public long getBufferExpansions() {
+        return bufferExpansions_;
+    }
+
+    /**
+     * @return the number of tokens
+     */
+    public long getTokens() {
+        return tokens_;
+    }
+
+    /**
+     * @param kind the token kind (see {@link CSS3ParserConstants})
+     * @return the number of tokens of the given kind
+     */
+    public long getTokens(final int kind) {
+        if (kind < 0 || kind >= tokensByKind_.length) {
+            return 0;
+        }
+        return tokensByKind_[kind];
+    }
+
+    /**
+     * @return the number of tokens by token name, only the kinds found
+     */
+    public Map<String, Long> getTokensByKind() {
+        final Map<String, Long> tokens = new LinkedHashMap<>();
+        for (int i = 0; i < tokensByKind_.length; i++) {
+            if (tokensByKind_[i] != 0) {
+                tokens.put(TOKEN_NAMES[i], tokensByKind_[i]);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the number of rules
+     */
+    public long getRules() {
+        long rules = 0;
+        for (final long count : rules_) {
+            rules += count;
+        }
+        return rules;
+    }
+
+    /**
+     * @param type the rule type
+     * @return the number of rules of the given type
+     */
+    public long getRules(final ParseFilter.RuleType type) {
+        return rules_[type.ordinal()];
+    }
+
+    /**
+     * @return the number of selectors of the style rules
+     */
+    public long getSelectors() {
+        return selectors_;
+    }
+
+    /**
+     * @return the number of declarations
+     */
+    public long getDeclarations() {
+        return declarations_;
+    }
+
+    /**
+     * @return the number of lexical units of the declaration values, including the parameters of functions
+     */
+    public long getLexicalUnits() {
+        return lexicalUnits_;
+    }
+
+    /**
+     * @return the number of errors, including the fatal ones
+     */
+    public long getErrors() {
+        return sum(errors_);
+    }
+
+    /**
+     * @return the number of errors by message key
+     */
+    public Map<String, Long> getErrorsByKey() {
+        return Collections.unmodifiableMap(errors_);
+    }
+
+    /**
+     * @return the number of warnings
+     */
+    public long getWarnings() {
+        return sum(warnings_);
+    }
+
+    /**
+     * @return the number of warnings by message key
+     */
+    public Map<String, Long> getWarningsByKey() {
+        return Collections.unmodifiableMap(warnings_);
+    }
+
+    private static long sum(final Map<String, Long> counts) {
+        long sum = 0;
+        for (final Long count : counts.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the time of the whole parse in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos_;
+    }
+
+    /**
+     * @return the time spent in the token manager in nanoseconds
+     */
+    public long getLexingNanos() {
+        return lexingNanos_;
+    }
+
+    /**
+     * @return the time spent in the parser in nanoseconds
+     */
+    public long getParsingNanos() {
+        return Math.max(0, totalNanos_ - lexingNanos_ - buildNanos_);
+    }
+
+    /**
+     * @return the time spent in the document handler building the object model in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos_;
+    }
+
+    /**
+     * Reports all values to the given sink.
+     *
+     * @param metrics the sink
+     */
+    public void reportTo(final ParseMetrics metrics) {
+        metrics.count(PREFIX + "count", 1);
+        report(metrics, "bytes", bytesRead_);
+        report(metrics, "chars", charsRead_);
+        report(metrics, "bufferExpansions", bufferExpansions_);
+        report(metrics, "tokens", tokens_);
+        for (int i = 0; i < tokensByKind_.length; i++) {
+            report(metrics, "tokens." + TOKEN_NAMES[i], tokensByKind_[i]);
+        }
+        for (final ParseFilter.RuleType type : ParseFilter.RuleType.values()) {
+            report(metrics, "rules." + type.name().toLowerCase(Locale.ROOT), rules_[type.ordinal()]);
+        }
+        report(metrics, "selectors", selectors_);
+        report(metrics, "declarations", declarations_);
+        report(metrics, "lexicalUnits", lexicalUnits_);
+        for (final Map.Entry<String, Long> entry : errors_.entrySet()) {
+            report(metrics, "errors." + entry.getKey(), entry.getValue());
+        }
+        for (final Map.Entry<String, Long> entry : warnings_.entrySet()) {
+            report(metrics, "warnings." + entry.getKey(), entry.getValue());
+        }
+
+        metrics.time(PREFIX + "time.total", totalNanos_);
+        metrics.time(PREFIX + "time.lexing", lexingNanos_);
+        metrics.time(PREFIX + "time.parsing", getParsingNanos());
+        metrics.time(PREFIX + "time.build", buildNanos_);
+    }
+
+    private static void report(final ParseMetrics metrics, final String name, final long value) {
+        if (value != 0) {
+            metrics.count(PREFIX + name, value);
+        }
+    }
+
+    void addBytesRead(final long bytes) {
+        bytesRead_ += bytes;
+    }
+
+    void addCharsRead(final long chars) {
+        charsRead_ += chars;
+    }
+
+    void addBufferExpansions(final long expansions) {
+        bufferExpansions_ += expansions;
+    }
+
+    void addToken(final int kind, final long nanos) {
+        tokens_++;
+        if (kind >= 0 && kind < tokensByKind_.length) {
+            tokensByKind_[kind]++;
+        }
+        lexingNanos_ += nanos;
+    }
+
+    void addLexingNanos(final long nanos) {
+        lexingNanos_ += nanos;
+    }
+
+    void addRule(final ParseFilter.RuleType type) {
+        rules_[type.ordinal()]++;
+    }
+
+    void addSelectors(final int selectors) {
+        selectors_ += selectors;
+    }
+
+    void addDeclaration(final LexicalUnit value) {
+        declarations_++;
+        addLexicalUnits(value);
+    }
+
+    void addLexicalUnits(final LexicalUnit value) {
+        if (value == null) {
+            return;
+        }
+        // iterative, the values may be nested deeply
+        final Deque<LexicalUnit> pending = new ArrayDeque<>();
+        pending.push(value);
+        while (!pending.isEmpty()) {
+            LexicalUnit unit = pending.pop();
+            while (unit != null) {
+                lexicalUnits_++;
+                if (unit.getParameters() != null) {
+                    pending.push(unit.getParameters());
+                }
+                unit = unit.getNextLexicalUnit();
+            }
+        }
+    }
+
+    void addError(final String key) {
+        errors_.merge(key, 1L, Long::sum);
+    }
+
+    void addWarning(final String key) {
+        warnings_.merge(key, 1L, Long::sum);
+    }
+
+    void addBuildNanos(final long nanos) {
+        buildNanos_ += nanos;
+    }
+
+    void setTotalNanos(final long nanos) {
+        totalNanos_ = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseStatistics[bytes=" + bytesRead_ + ", chars=" + charsRead_
+                + ", bufferExpansions=" + bufferExpansions_ + ", tokens=" + tokens_
+                + ", rules=" + getRules() + ", selectors=" + selectors_
+                + ", declarations=" + declarations_ + ", lexicalUnits=" + lexicalUnits_
+                + ", errors=" + getErrors() + ", warnings=" + getWarnings()
+                + ", totalNanos=" + totalNanos_ + ", lexingNanos=" + lexingNanos_
+                + ", parsingNanos=" + getParsingNanos() + ", buildNanos=" + buildNanos_ + "]";
+    }
+}
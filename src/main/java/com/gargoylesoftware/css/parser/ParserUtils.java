@@ -37,6 +37,19 @@ public static String trimBy(final StringBuilder s, final int left, final int rig
         return s.substring(left, s.length() - right);
     }
 
+    /**
+     * Remove the given number of chars from start and end.
+     * There is no parameter checking, the caller has to take care of this.
+     *
+     * @param s the string
+     * @param left no of chars to be removed from start
+     * @param right no of chars to be removed from end
+     * @return the trimmed string
+     */
+    public static String trimBy(final String s, final int left, final int right) {
+        return s.substring(left, s.length() - right);
+    }
+
     /**
      * Helper that removes the leading "url(", the trailing ")"
      * and surrounding quotes from the given string builder.
@@ -44,19 +57,219 @@ public static String trimBy(final StringBuilder s, final int left, final int rig
      * @return the trimmed string
      */
     public static String trimUrl(final StringBuilder s) {
-        final String s1 = trimBy(s, 4, 1).trim();
-        if (s1.length() == 0) {
-            return s1;
+        return trimUrl((CharSequence) s);
+    }
+
+    /**
+     * Helper that removes the leading "url(", the trailing ")"
+     * and surrounding quotes from the given string.
+     * @param s the string
+     * @return the trimmed string
+     */
+    public static String trimUrl(final String s) {
+        return trimUrl((CharSequence) s);
+    }
+
+    private static String trimUrl(final CharSequence s) {
+        // url tokens might be huge (data urls), calculate the bounds
+        // first to copy the content only once
+        int start = 4;
+        int end = s.length() - 1;
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
         }
 
-        final int end = s1.length() - 1;
-        final char c0 = s1.charAt(0);
-        if ((c0 == '"' && s1.charAt(end) == '"')
-            || (c0 == '\'' && s1.charAt(end) == '\'')) {
-            return s1.substring(1, end);
+        if (end - start >= 2) {
+            final char c0 = s.charAt(start);
+            if ((c0 == '"' || c0 == '\'') && s.charAt(end - 1) == c0) {
+                start++;
+                end--;
+            }
         }
 
-        return s1;
+        return s.subSequence(start, end).toString();
     }
 
+    // the powers of ten that are exactly representable as double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    /**
+     * Parses the given part of the string into a double. The result is
+     * always the same as the one of {@link Double#parseDouble(String)} for
+     * this part of the string.
+     * Numbers in the css syntax (digits, an optional fraction and an optional
+     * exponent) having not more than 15 significant digits are converted without
+     * any allocation; this is exact because the mantissa and the power of ten are
+     * both exactly representable and IEEE 754 division/multiplication is correctly
+     * rounded. Everything else is delegated to {@link Double#parseDouble(String)}.
+     *
+     * @param s the string
+     * @param begin the index of the first char
+     * @param end the index after the last char
+     * @return the double value
+     * @throws NumberFormatException if the string does not contain a parsable number
+     */
+    static double parseDouble(final String s, final int begin, final int end) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean anyDigit = false;
+
+        int i = begin;
+        for ( ; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            anyDigit = true;
+            if (mantissa != 0 || c != '0') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+            }
+        }
+        if (i < end && s.charAt(i) == '.') {
+            i++;
+            final int start = i;
+            for ( ; i < end; i++) {
+                final char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (mantissa != 0 || c != '0') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                }
+                scale++;
+            }
+            anyDigit |= i > start;
+        }
+
+        int exponent = 0;
+        if (anyDigit && i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negative = false;
+            if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                negative = s.charAt(i) == '-';
+                i++;
+            }
+            final int start = i;
+            for ( ; i < end && i - start < 4; i++) {
+                final char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                exponent = exponent * 10 + (c - '0');
+            }
+            if (i == start) {
+                anyDigit = false;
+            }
+            if (negative) {
+                exponent = -exponent;
+            }
+        }
+
+        if (anyDigit && i == end && digits <= 15) {
+            final int pow = exponent - scale;
+            if (mantissa == 0) {
+                return 0d;
+            }
+            if (pow >= 0 && pow < POWERS_OF_TEN.length) {
+                return mantissa * POWERS_OF_TEN[pow];
+            }
+            if (pow < 0 && -pow < POWERS_OF_TEN.length) {
+                return mantissa / POWERS_OF_TEN[-pow];
+            }
+        }
+
+        return Double.parseDouble(s.substring(begin, end));
+    }
+
+    /**
+     * Parses the given part of the string into an int; same as
+     * {@link Integer#parseInt(String)} for this part of the string.
+     *
+     * @param s the string
+     * @param begin the index of the first char
+     * @param end the index after the last char
+     * @return the int value
+     * @throws NumberFormatException if the string does not contain a parsable int
+     */
+    static int parseInt(final String s, final int begin, final int end) {
+        // up to 9 digits always fit
+        if (end > begin && end - begin < 10) {
+            int result = 0;
+            int i = begin;
+            for ( ; i < end; i++) {
+                final char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                result = result * 10 + (c - '0');
+            }
+            if (i == end) {
+                return result;
+            }
+        }
+        return Integer.parseInt(s.substring(begin, end));
+    }
+
+    /**
+     * @param s the string
+     * @return true if the string is a (positive) number in the int range
+     */
+    static boolean isInt(final String s) {
+        final int len = s.length();
+        if (len == 0) {
+            return false;
+        }
+
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            if (c == '0' && start == i && i < len - 1) {
+                start++;
+            }
+        }
+
+        final int digits = len - start;
+        if (digits != 10) {
+            return digits < 10;
+        }
+
+        final String max = Integer.toString(Integer.MAX_VALUE);
+        for (int i = 0; i < digits; i++) {
+            final char c = s.charAt(start + i);
+            if (c != max.charAt(i)) {
+                return c < max.charAt(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param c the char
+     * @return the value of the hex digit or -1 if the char is not a hex digit
+     */
+    static int hexValue(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.CharsetDecoder;
+
+/**
+ * An {@link InputStreamReader} using a decoder from the {@link CharsetDecoderPool};
+ * the decoder is returned to the pool when the reader is closed.
+ *
+ * @author Ronald Brill
+ */
+final class PooledDecoderReader extends InputStreamReader {
+
+    private CharsetDecoder decoder_;
+
+    /**
+     * Ctor.
+     * @param in the input stream
+     * @param decoder the decoder from the pool
+     */
+    PooledDecoderReader(final InputStream in, final CharsetDecoder decoder) {
+        super(in, decoder);
+        decoder_ = decoder;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (decoder_ != null) {
+            CharsetDecoderPool.release(decoder_);
+            decoder_ = null;
+        }
+    }
+}
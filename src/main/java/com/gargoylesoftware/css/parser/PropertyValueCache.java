@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+/**
+ * A bounded, thread safe cache for the results of
+ * {@link CSSOMParser#parsePropertyValue(String)}, keyed by the value string.
+ * Real world style sheets and scripts set the same few values
+ * ({@code 0}, {@code none}, {@code 1px solid #ccc}, ...) over and over again.
+ *
+ * <p>The cached {@link LexicalUnit} chains are shared by all the parsers using
+ * the cache and are therefore immutable (see {@link LexicalUnitImpl#isShared()});
+ * {@link com.gargoylesoftware.css.dom.CSSValueImpl#getValue()} hands out a
+ * private copy. Only values parsed without any error or warning are cached.
+ * The least recently used entries are evicted first if the cache is full.</p>
+ *
+ * <p>The cache can be shared by any number of parsers (see
+ * {@link CSSOMParser#setPropertyValueCache(PropertyValueCache)}), as long as all
+ * of them use the same parser implementation and position tracking setting.</p>
+ *
+ * @author Ronald Brill
+ */
+public class PropertyValueCache {
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /** The default maximum length of a cached value string. */
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 256;
+
+    private final BoundedCache<LexicalUnit> cache_;
+
+    /**
+     * Creates a cache using {@link #DEFAULT_MAX_ENTRIES} and
+     * {@link #DEFAULT_MAX_VALUE_LENGTH}.
+     */
+    public PropertyValueCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached values
+     * @param maxValueLength longer value strings are not cached
+     */
+    public PropertyValueCache(final int maxEntries, final int maxValueLength) {
+        cache_ = new BoundedCache<>(maxEntries, maxValueLength);
+    }
+
+    /**
+     * @param value the value string
+     * @return true if a value of this length is cached at all
+     */
+    boolean isCacheable(final String value) {
+        return cache_.isCacheable(value);
+    }
+
+    /**
+     * @param value the value string
+     * @return the shared chain or null
+     */
+    LexicalUnit get(final String value) {
+        return cache_.get(value);
+    }
+
+    /**
+     * Adds a freshly parsed chain; the chain is shared (and immutable) afterwards.
+     *
+     * @param value the value string
+     * @param lu the parsed chain
+     */
+    void put(final String value, final LexicalUnit lu) {
+        if (lu instanceof LexicalUnitImpl) {
+            ((LexicalUnitImpl) lu).share();
+        }
+        cache_.put(value, lu);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache_.clear();
+    }
+
+    /**
+     * @return the number of cached values
+     */
+    public int size() {
+        return cache_.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return cache_.getHits();
+    }
+
+    /**
+     * @return the number of lookups that had to parse the value
+     */
+    public long getMisses() {
+        return cache_.getMisses();
+    }
+
+    /**
+     * @return the number of values removed to make room for newer ones
+     */
+    public long getEvictions() {
+        return cache_.getEvictions();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        cache_.resetStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyValueCache[" + cache_ + "]";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.parser.selector.SelectorListImpl;
+
+/**
+ * A bounded, thread safe LRU cache for the results of
+ * {@link CSSOMParser#parseSelectors(String)}, keyed by the selector text.
+ * Scripts calling {@code querySelector()} / {@code querySelectorAll()} parse
+ * the same few selectors over and over again.
+ *
+ * <p>All the callers get the same, unmodifiable {@link SelectorList}; the
+ * selectors of the list must not be changed. Invalid selectors are cached
+ * too, together with the reported problems; the problems are reported
+ * again to the error handler of the parser for every lookup.</p>
+ *
+ * <p>The cache can be shared by any number of parsers (see
+ * {@link CSSOMParser#setSelectorCache(SelectorCache)}), as long as all
+ * of them use the same parser implementation and position tracking setting.</p>
+ *
+ * @author Ronald Brill
+ */
+public class SelectorCache {
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /** The default maximum length of a cached selector text. */
+    public static final int DEFAULT_MAX_SELECTOR_LENGTH = 512;
+
+    private final BoundedCache<Entry> cache_;
+    private final LongAdder invalidHits_ = new LongAdder();
+
+    /**
+     * Creates a cache using {@link #DEFAULT_MAX_ENTRIES} and
+     * {@link #DEFAULT_MAX_SELECTOR_LENGTH}.
+     */
+    public SelectorCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SELECTOR_LENGTH);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached selector lists
+     * @param maxSelectorLength longer selector texts are not cached
+     */
+    public SelectorCache(final int maxEntries, final int maxSelectorLength) {
+        cache_ = new BoundedCache<>(maxEntries, maxSelectorLength);
+    }
+
+    /**
+     * @param text the selector text
+     * @return true if a text of this length is cached at all
+     */
+    boolean isCacheable(final String text) {
+        return cache_.isCacheable(text);
+    }
+
+    /**
+     * @param text the selector text
+     * @return the cached entry or null
+     */
+    Entry get(final String text) {
+        final Entry entry = cache_.get(text);
+        if (entry != null && entry.errors_.hasReports()) {
+            invalidHits_.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a freshly parsed selector list.
+     *
+     * @param text the selector text
+     * @param selectors the parsed list, null if the text is invalid
+     * @param errors the problems reported while parsing
+     * @return the new entry
+     */
+    Entry put(final String text, final SelectorList selectors, final ErrorRecorder errors) {
+        if (selectors instanceof SelectorListImpl) {
+            ((SelectorListImpl) selectors).makeUnmodifiable();
+        }
+        final Entry entry = new Entry(selectors, errors);
+        cache_.put(text, entry);
+        return entry;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache_.clear();
+    }
+
+    /**
+     * @return the number of cached selector lists
+     */
+    public int size() {
+        return cache_.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return cache_.getHits();
+    }
+
+    /**
+     * @return the number of lookups answered by the cache with the problems of an invalid selector
+     */
+    public long getInvalidHits() {
+        return invalidHits_.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to parse the selector
+     */
+    public long getMisses() {
+        return cache_.getMisses();
+    }
+
+    /**
+     * @return the number of selector lists removed to make room for newer ones
+     */
+    public long getEvictions() {
+        return cache_.getEvictions();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        cache_.resetStatistics();
+        invalidHits_.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "SelectorCache[" + cache_ + ", invalidHits=" + getInvalidHits() + "]";
+    }
+
+    /**
+     * A parsed selector list together with the reported problems.
+     */
+    static final class Entry {
+        private final SelectorList selectors_;
+        private final ErrorRecorder errors_;
+
+        Entry(final SelectorList selectors, final ErrorRecorder errors) {
+            selectors_ = selectors;
+            errors_ = errors;
+        }
+
+        /**
+         * Reports the problems to the given handler.
+         *
+         * @param errorHandler the error handler
+         * @return the selector list
+         */
+        SelectorList apply(final CSSErrorHandler errorHandler) {
+            errors_.replay(errorHandler);
+            return selectors_;
+        }
+    }
+}
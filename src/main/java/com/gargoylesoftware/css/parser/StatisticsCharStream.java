@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.Token;
+
+/**
+ * Wraps the char stream of a parser to collect the {@link ParseStatistics}.
+ *
+ * <p>The time between the start of a token and the notification about the
+ * matched token is counted as lexing time; skipped white space and comments are
+ * part of the next token. The chars and buffer expansions are taken from the
+ * underlying source stream when the parse is done.</p>
+ *
+ * @author Ronald Brill
+ */
+final class StatisticsCharStream implements TokenObservingCharStream, CommentSkippingCharStream {
+
+    private final CharStream stream_;
+    private final CharStream source_;
+    private final ParseStatistics statistics_;
+
+    // the start of the current token or 0 if no token was started
+    private long tokenStart_;
+
+    /**
+     * Ctor.
+     * @param stream the stream to read from
+     * @param source the stream reading the source, the chars read are taken from this one
+     * @param statistics the statistics to fill
+     */
+    StatisticsCharStream(final CharStream stream, final CharStream source, final ParseStatistics statistics) {
+        stream_ = stream;
+        source_ = source;
+        statistics_ = statistics;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return stream_.readChar();
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        final long now = System.nanoTime();
+        if (tokenStart_ != 0) {
+            // skipped chars
+            statistics_.addLexingNanos(now - tokenStart_);
+        }
+        tokenStart_ = now;
+        return stream_.BeginToken();
+    }
+
+    @Override
+    public void skipComment() throws IOException {
+        if (stream_ instanceof CommentSkippingCharStream) {
+            ((CommentSkippingCharStream) stream_).skipComment();
+            return;
+        }
+
+        char prev = 0;
+        while (true) {
+            final char c = stream_.readChar();
+            if (prev == '*' && c == '/') {
+                return;
+            }
+            prev = c;
+        }
+    }
+
+    @Override
+    public void tokenMatched(final Token token) {
+        long nanos = 0;
+        if (tokenStart_ != 0) {
+            nanos = System.nanoTime() - tokenStart_;
+            tokenStart_ = 0;
+        }
+        statistics_.addToken(token.kind, nanos);
+
+        if (stream_ instanceof TokenObservingCharStream) {
+            ((TokenObservingCharStream) stream_).tokenMatched(token);
+        }
+    }
+
+    /**
+     * Adds the chars read and the buffer expansions of the source stream to the statistics.
+     */
+    void finish() {
+        if (tokenStart_ != 0) {
+            statistics_.addLexingNanos(System.nanoTime() - tokenStart_);
+            tokenStart_ = 0;
+        }
+
+        if (source_ instanceof CssCharStream) {
+            final CssCharStream stream = (CssCharStream) source_;
+            statistics_.addCharsRead(stream.getCharsRead());
+            statistics_.addBufferExpansions(stream.getBufferExpansions());
+        }
+        else if (source_ instanceof CssCharSequenceStream) {
+            statistics_.addCharsRead(((CssCharSequenceStream) source_).getCharsRead());
+        }
+        else if (source_ instanceof CssUtf8Stream) {
+            statistics_.addCharsRead(((CssUtf8Stream) source_).getCharsRead());
+        }
+    }
+
+    @Override
+    public void backup(final int amount) {
+        stream_.backup(amount);
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return stream_.getColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return stream_.getLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        return stream_.getEndColumn();
+    }
+
+    @Override
+    public int getEndLine() {
+        return stream_.getEndLine();
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return stream_.getBeginColumn();
+    }
+
+    @Override
+    public int getBeginLine() {
+        return stream_.getBeginLine();
+    }
+
+    @Override
+    public String GetImage() {
+        return stream_.GetImage();
+    }
+
+    @Override
+    public char[] GetSuffix(final int len) {
+        return stream_.GetSuffix(len);
+    }
+
+    @Override
+    public void Done() {
+        stream_.Done();
+    }
+
+    @Override
+    public void setTabSize(final int i) {
+        stream_.setTabSize(i);
+    }
+
+    @Override
+    public int getTabSize() {
+        return stream_.getTabSize();
+    }
+
+    @Override
+    public boolean getTrackLineColumn() {
+        return stream_.getTrackLineColumn();
+    }
+
+    @Override
+    public void setTrackLineColumn(final boolean trackLineColumn) {
+        stream_.setTrackLineColumn(trackLineColumn);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread safe interner for the property names of the parsed style
+ * sheets. Every style sheet uses the same few hundred property names; sharing
+ * one interner between parsers keeps a single copy of every name, no matter
+ * how many style sheets are parsed.
+ *
+ * <p>Like the token images (see {@link TokenImageCache}) the strings are kept in
+ * a direct mapped table without any locking; the last string wins in case of
+ * a collision.</p>
+ *
+ * @author Ronald Brill
+ */
+public class StringInterner {
+
+    /** The default number of table slots. */
+    public static final int DEFAULT_SIZE = 2048;
+
+    /** The default maximum length of interned strings. */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final AtomicReferenceArray<String> strings_;
+    private final int mask_;
+    private final int maxLength_;
+
+    private final LongAdder hits_ = new LongAdder();
+    private final LongAdder misses_ = new LongAdder();
+
+    /**
+     * Creates a new interner with {@link #DEFAULT_SIZE} slots.
+     */
+    public StringInterner() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a new interner.
+     *
+     * @param size the number of table slots, rounded up to a power of two
+     * @param maxLength longer strings are not interned
+     */
+    public StringInterner(final int size, final int maxLength) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive (" + size + ")");
+        }
+        final int slots = Integer.highestOneBit(Math.min(size, 1 << 30) * 2 - 1);
+        strings_ = new AtomicReferenceArray<>(slots);
+        mask_ = slots - 1;
+        maxLength_ = maxLength;
+    }
+
+    /**
+     * @param string the string
+     * @return an equal string, the same instance for all equal strings
+     * as long as it was not replaced in the table
+     */
+    public String intern(final String string) {
+        if (string == null || string.length() > maxLength_) {
+            return string;
+        }
+
+        final int hash = string.hashCode();
+        final int idx = (hash ^ (hash >>> 16)) & mask_;
+        final String cached = strings_.get(idx);
+        if (string.equals(cached)) {
+            hits_.increment();
+            return cached;
+        }
+
+        misses_.increment();
+        strings_.lazySet(idx, string);
+        return string;
+    }
+
+    /**
+     * @return the number of strings replaced by an interned one
+     */
+    public long getHits() {
+        return hits_.sum();
+    }
+
+    /**
+     * @return the number of strings added to the table
+     */
+    public long getMisses() {
+        return misses_.sum();
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetStatistics() {
+        hits_.reset();
+        misses_.reset();
+    }
+
+    /**
+     * Removes all strings.
+     */
+    public void clear() {
+        for (int i = 0; i < strings_.length(); i++) {
+            strings_.set(i, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StringInterner[slots=" + strings_.length() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
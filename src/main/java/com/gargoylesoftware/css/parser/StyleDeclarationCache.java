@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
+import com.gargoylesoftware.css.dom.Property;
+
+/**
+ * A bounded, thread safe cache for the results of
+ * {@link CSSOMParser#parseStyleDeclaration(CSSStyleDeclarationImpl, String)},
+ * keyed by the declaration text. Template generated pages often carry thousands
+ * of elements with the very same {@code style} attribute.
+ *
+ * <p>All the declarations created from the same text share one immutable list of
+ * properties (see {@link CSSStyleDeclarationImpl#setSharedProperties(List, List)});
+ * a declaration creates its private copy only when it is modified or when one of
+ * the property objects is requested. Only declarations parsed without any error or
+ * warning are cached. The least recently used entries are evicted first if the
+ * cache is full.</p>
+ *
+ * <p>The cache can be shared by any number of parsers (see
+ * {@link CSSOMParser#setStyleDeclarationCache(StyleDeclarationCache)}), as long as all
+ * of them use the same parser implementation and position tracking setting.</p>
+ *
+ * @author Ronald Brill
+ */
+public class StyleDeclarationCache {
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 2048;
+
+    /** The default maximum length of a cached declaration text. */
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 1024;
+
+    private final BoundedCache<Entry> cache_;
+
+    /**
+     * Creates a cache using {@link #DEFAULT_MAX_ENTRIES} and
+     * {@link #DEFAULT_MAX_TEXT_LENGTH}.
+     */
+    public StyleDeclarationCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_TEXT_LENGTH);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached declarations
+     * @param maxTextLength longer declaration texts are not cached
+     */
+    public StyleDeclarationCache(final int maxEntries, final int maxTextLength) {
+        cache_ = new BoundedCache<>(maxEntries, maxTextLength);
+    }
+
+    /**
+     * @param text the declaration text
+     * @return true if a text of this length is cached at all
+     */
+    boolean isCacheable(final String text) {
+        return cache_.isCacheable(text);
+    }
+
+    /**
+     * Lets the given declaration share the cached properties.
+     *
+     * @param text the declaration text
+     * @param sd the (empty) declaration
+     * @return false if the text is not cached
+     */
+    boolean apply(final String text, final CSSStyleDeclarationImpl sd) {
+        final Entry entry = cache_.get(text);
+        if (entry == null) {
+            return false;
+        }
+        sd.setSharedProperties(entry.properties_, entry.values_);
+        return true;
+    }
+
+    /**
+     * Adds a freshly parsed declaration; the declaration shares its
+     * properties with the cache afterwards.
+     *
+     * @param text the declaration text
+     * @param sd the parsed declaration
+     * @param values the lexical units of the properties of the declaration
+     */
+    void put(final String text, final CSSStyleDeclarationImpl sd, final List<LexicalUnit> values) {
+        for (final LexicalUnit value : values) {
+            if (value instanceof LexicalUnitImpl) {
+                ((LexicalUnitImpl) value).share();
+            }
+        }
+        final Entry entry = new Entry(
+                Collections.unmodifiableList(new ArrayList<>(sd.getProperties())),
+                Collections.unmodifiableList(values));
+        sd.setSharedProperties(entry.properties_, entry.values_);
+        cache_.put(text, entry);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache_.clear();
+    }
+
+    /**
+     * @return the number of cached declarations
+     */
+    public int size() {
+        return cache_.size();
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return cache_.getHits();
+    }
+
+    /**
+     * @return the number of lookups that had to parse the declaration
+     */
+    public long getMisses() {
+        return cache_.getMisses();
+    }
+
+    /**
+     * @return the number of declarations removed to make room for newer ones
+     */
+    public long getEvictions() {
+        return cache_.getEvictions();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        cache_.resetStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return "StyleDeclarationCache[" + cache_ + "]";
+    }
+
+    private static final class Entry {
+        private final List<Property> properties_;
+        private final List<LexicalUnit> values_;
+
+        Entry(final List<Property> properties, final List<LexicalUnit> values) {
+            properties_ = properties;
+            values_ = values;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSRuleListImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * A bounded, thread safe cache for the results of
+ * {@link CSSOMParser#parseStyleSheet(InputSource, String)}, keyed by a hash
+ * of the content. Crawlers and browsers parse the same framework style sheets
+ * (bootstrap, normalize, ...) for every page.
+ *
+ * <p>Only sources backed by a char sequence or by bytes are cached; the key is the
+ * SHA-256 digest of the content (and the encoding of bytes) together with its length,
+ * crafting a colliding style sheet is not feasible. The cache is bounded by the estimated memory retained
+ * by the cached style sheets; the least recently used ones are evicted first.</p>
+ *
+ * <p>Every caller gets a new {@link CSSStyleSheetImpl} with its own href, owner
+ * node, media and title and its own copy of the cached rules (see
+ * {@link CSSStyleSheetImpl#copyCssRules(CSSRuleListImpl)}); copying is much cheaper
+ * than parsing. The cached rules are never handed out. The problems reported while
+ * parsing are cached too; they are reported again to the error handler of the parser
+ * for every lookup.</p>
+ *
+ * <p>An optional second tier (see {@link StyleSheetStore}) keeps the serialized
+ * style sheets, e.g. on disk; style sheets not found in memory are loaded
+ * from there, new ones are written to both tiers. The style sheets passing
+ * through the cache are always parsed at once, also by parsers using the lazy
+ * parsing (see {@link CSSOMParser#setLazyParsing(boolean)}); storing them never
+ * parses (or reports the problems of) rules afterwards. The locators of the rules
+ * are not stored; only the classes of the CSSOM and the few java classes
+ * they use are read back. Failures of the second tier are counted and otherwise
+ * ignored.</p>
+ *
+ * <p>The cache can be shared by any number of parsers (see
+ * {@link CSSOMParser#setStyleSheetCache(StyleSheetCache)}), as long as all
+ * of them use the same parser implementation and position tracking setting.</p>
+ *
+ * @author Ronald Brill
+ */
+public class StyleSheetCache {
+
+    /** The default maximum of the estimated memory retained by the cached style sheets. */
+    public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    /** The default maximum length (chars or bytes) of a cached style sheet. */
+    public static final int DEFAULT_MAX_SOURCE_LENGTH = 4 * 1024 * 1024;
+
+    // rough numbers measured with a bunch of real world style sheets
+    private static final int RULE_WEIGHT = 250;
+    private static final int PROPERTY_WEIGHT = 600;
+    // for rules not parsed so far
+    private static final int CHARS_PER_PROPERTY = 40;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final BoundedCache<Entry> cache_;
+    private final int maxSourceLength_;
+    private final StyleSheetStore secondTier_;
+
+    private final LongAdder secondTierHits_ = new LongAdder();
+    private final LongAdder secondTierFailures_ = new LongAdder();
+
+    /**
+     * Creates a cache using {@link #DEFAULT_MAX_WEIGHT} and
+     * {@link #DEFAULT_MAX_SOURCE_LENGTH} without a second tier.
+     */
+    public StyleSheetCache() {
+        this(DEFAULT_MAX_WEIGHT, DEFAULT_MAX_SOURCE_LENGTH, null);
+    }
+
+    /**
+     * Creates a new cache without a second tier.
+     *
+     * @param maxWeight the maximum of the estimated memory (in bytes) retained by the cached style sheets
+     * @param maxSourceLength longer style sheets are not cached
+     */
+    public StyleSheetCache(final long maxWeight, final int maxSourceLength) {
+        this(maxWeight, maxSourceLength, null);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxWeight the maximum of the estimated memory (in bytes) retained by the cached style sheets
+     * @param maxSourceLength longer style sheets are not cached
+     * @param secondTier the second tier or null
+     */
+    public StyleSheetCache(final long maxWeight, final int maxSourceLength, final StyleSheetStore secondTier) {
+        cache_ = new BoundedCache<>(maxWeight, Integer.MAX_VALUE);
+        maxSourceLength_ = maxSourceLength;
+        secondTier_ = secondTier;
+    }
+
+    /**
+     * @return the second tier or null
+     */
+    public StyleSheetStore getSecondTier() {
+        return secondTier_;
+    }
+
+    /**
+     * Returns the key for the content of the given source.
+     *
+     * @param source the source
+     * @return the key or null if the source is not cacheable
+     */
+    String key(final InputSource source) {
+        final CharSequence chars = source.getCharSequence();
+        if (chars != null) {
+            final int length = source.getCharSequenceLength();
+            if (length > maxSourceLength_) {
+                return null;
+            }
+            final Hasher hasher = new Hasher();
+            hasher.chars(chars, source.getCharSequenceOffset(), length);
+            return hasher.key('c', length);
+        }
+
+        final ByteBuffer bytes = source.getBytes();
+        if (bytes != null) {
+            final int length = bytes.remaining();
+            if (length > maxSourceLength_) {
+                return null;
+            }
+            // the encoding changes the result
+            final Charset charset = source.getCharset();
+            final String encoding = source.getEncoding() + "|" + (charset == null ? null : charset.name());
+            final Hasher hasher = new Hasher();
+            hasher.chars(encoding, 0, encoding.length());
+            hasher.bytes(bytes);
+            return hasher.key('b', length);
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached entry or null
+     */
+    Entry get(final String key) {
+        final Entry entry = cache_.get(key);
+        if (entry != null || secondTier_ == null) {
+            return entry;
+        }
+
+        try {
+            final byte[] data = secondTier_.load(key);
+            if (data == null) {
+                return null;
+            }
+            final Entry loaded = deserialize(data);
+            cache_.put(key, loaded, estimateSize(loaded.styleSheet_));
+            secondTierHits_.increment();
+            return loaded;
+        }
+        catch (final IOException | ClassNotFoundException | RuntimeException e) {
+            secondTierFailures_.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Adds a freshly parsed style sheet to both tiers.
+     *
+     * @param key the key
+     * @param styleSheet the parsed style sheet
+     * @param errors the problems reported while parsing
+     * @return the new entry
+     */
+    Entry put(final String key, final CSSStyleSheetImpl styleSheet, final ErrorRecorder errors) {
+        final Entry entry = new Entry(styleSheet, errors);
+        cache_.put(key, entry, estimateSize(styleSheet));
+
+        if (secondTier_ != null) {
+            try {
+                secondTier_.store(key, serialize(entry));
+            }
+            catch (final IOException | RuntimeException e) {
+                secondTierFailures_.increment();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * The properties of a lazily parsed rule are estimated from the length
+     * of its source; the rule stays lazy.
+     *
+     * @param styleSheet the style sheet
+     * @return a rough estimation of the memory retained by the style sheet
+     */
+    static long estimateSize(final CSSStyleSheetImpl styleSheet) {
+        return estimateSize(styleSheet.getCssRules());
+    }
+
+    private static long estimateSize(final CSSRuleListImpl rules) {
+        long size = 0;
+        for (final AbstractCSSRuleImpl rule : rules.getRules()) {
+            size += RULE_WEIGHT;
+            if (rule.isLazy()) {
+                size += (long) PROPERTY_WEIGHT * (rule.getLazySourceLength() / CHARS_PER_PROPERTY);
+            }
+            else if (rule instanceof CSSStyleRuleImpl) {
+                size += (long) PROPERTY_WEIGHT * ((CSSStyleRuleImpl) rule).getStyle().getLength();
+            }
+            else if (rule instanceof CSSMediaRuleImpl) {
+                size += estimateSize(((CSSMediaRuleImpl) rule).getCssRules());
+            }
+        }
+        return size;
+    }
+
+    private static byte[] serialize(final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeObject(entry.styleSheet_);
+            out.writeObject(entry.errors_);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new CssObjectInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported format");
+            }
+            final CSSStyleSheetImpl styleSheet = (CSSStyleSheetImpl) in.readObject();
+            final ErrorRecorder errors = (ErrorRecorder) in.readObject();
+            return new Entry(styleSheet, errors);
+        }
+    }
+
+    /**
+     * Removes all entries from memory; the second tier is not changed.
+     */
+    public void clear() {
+        cache_.clear();
+    }
+
+    /**
+     * @return the number of style sheets in memory
+     */
+    public int size() {
+        return cache_.size();
+    }
+
+    /**
+     * @return the estimated memory retained by the style sheets in memory
+     */
+    public long getWeight() {
+        return cache_.weight();
+    }
+
+    /**
+     * @return the number of lookups answered from memory
+     */
+    public long getHits() {
+        return cache_.getHits();
+    }
+
+    /**
+     * @return the number of lookups answered by the second tier
+     */
+    public long getSecondTierHits() {
+        return secondTierHits_.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to parse the style sheet
+     */
+    public long getMisses() {
+        return cache_.getMisses() - secondTierHits_.sum();
+    }
+
+    /**
+     * @return the number of style sheets removed from memory to make room for newer ones
+     */
+    public long getEvictions() {
+        return cache_.getEvictions();
+    }
+
+    /**
+     * @return the number of failed loads from or stores to the second tier
+     */
+    public long getSecondTierFailures() {
+        return secondTierFailures_.sum();
+    }
+
+    /**
+     * Resets the hit, miss, eviction and failure counters.
+     */
+    public void resetStatistics() {
+        cache_.resetStatistics();
+        secondTierHits_.reset();
+        secondTierFailures_.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "StyleSheetCache[" + cache_ + ", weight=" + getWeight()
+                + ", secondTierHits=" + getSecondTierHits() + ", secondTierFailures=" + getSecondTierFailures() + "]";
+    }
+
+    /**
+     * A parsed style sheet together with the reported problems.
+     */
+    static final class Entry {
+        private final CSSStyleSheetImpl styleSheet_;
+        private final ErrorRecorder errors_;
+
+        Entry(final CSSStyleSheetImpl styleSheet, final ErrorRecorder errors) {
+            // a private copy, the given style sheet might be used by the caller
+            styleSheet_ = new CSSStyleSheetImpl();
+            styleSheet_.copyCssRules(styleSheet.getCssRules());
+            errors_ = errors;
+        }
+
+        /**
+         * Reports the problems to the given handler and creates a new
+         * style sheet with a copy of the cached rules.
+         *
+         * @param source the source
+         * @param href the href of the new style sheet
+         * @param errorHandler the error handler
+         * @return the new style sheet
+         */
+        CSSStyleSheetImpl apply(final InputSource source, final String href, final CSSErrorHandler errorHandler) {
+            errors_.replay(errorHandler);
+
+            final CSSStyleSheetImpl styleSheet = new CSSStyleSheetImpl();
+            styleSheet.setHref(href);
+            styleSheet.setMediaText(source.getMedia());
+            styleSheet.setTitle(source.getTitle());
+            styleSheet.copyCssRules(styleSheet_.getCssRules());
+            return styleSheet;
+        }
+    }
+
+    /**
+     * A SHA-256 digest of the content; chars are fed as UTF-16LE.
+     */
+    private static final class Hasher {
+        private static final int CHUNK = 4096;
+
+        private final MessageDigest digest_;
+        private byte[] chunk_;
+
+        Hasher() {
+            try {
+                digest_ = MessageDigest.getInstance("SHA-256");
+            }
+            catch (final NoSuchAlgorithmException e) {
+                // every java platform has to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void chars(final CharSequence chars, final int offset, final int length) {
+            if (chunk_ == null) {
+                chunk_ = new byte[CHUNK];
+            }
+            final int end = offset + length;
+            int pos = 0;
+            for (int i = offset; i < end; i++) {
+                final char c = chars.charAt(i);
+                chunk_[pos++] = (byte) c;
+                chunk_[pos++] = (byte) (c >>> 8);
+                if (pos == CHUNK) {
+                    digest_.update(chunk_, 0, pos);
+                    pos = 0;
+                }
+            }
+            digest_.update(chunk_, 0, pos);
+        }
+
+        void bytes(final ByteBuffer buffer) {
+            // the position of the source is not changed
+            digest_.update(buffer.duplicate());
+        }
+
+        String key(final char prefix, final int length) {
+            final StringBuilder key = new StringBuilder(80).append(prefix);
+            for (final byte b : digest_.digest()) {
+                key.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.append(Integer.toHexString(length)).toString();
+        }
+    }
+
+    /**
+     * Deserializes only the classes written by {@link StyleSheetCache#serialize(Entry)}.
+     */
+    private static final class CssObjectInputStream extends ObjectInputStream {
+
+        private static final Set<String> ALLOWED = new HashSet<>(Arrays.asList(
+                // the CSSOM
+                "com.gargoylesoftware.css.dom.AbstractCSSRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSCharsetRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSFontFaceRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSImportRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSMediaRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSPageRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSRuleListImpl",
+                "com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl",
+                "com.gargoylesoftware.css.dom.CSSStyleRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSStyleSheetImpl",
+                "com.gargoylesoftware.css.dom.CSSUnknownRuleImpl",
+                "com.gargoylesoftware.css.dom.CSSValueImpl",
+                "com.gargoylesoftware.css.dom.CounterImpl",
+                "com.gargoylesoftware.css.dom.HSLColorImpl",
+                "com.gargoylesoftware.css.dom.MediaListImpl",
+                "com.gargoylesoftware.css.dom.Property",
+                "com.gargoylesoftware.css.dom.RGBColorImpl",
+                "com.gargoylesoftware.css.dom.RectImpl",
+                "com.gargoylesoftware.css.parser.LexicalUnit$LexicalUnitType",
+                "com.gargoylesoftware.css.parser.LexicalUnitImpl",
+                "com.gargoylesoftware.css.parser.condition.AttributeCondition",
+                "com.gargoylesoftware.css.parser.condition.BeginHyphenAttributeCondition",
+                "com.gargoylesoftware.css.parser.condition.ClassCondition",
+                "com.gargoylesoftware.css.parser.condition.IdCondition",
+                "com.gargoylesoftware.css.parser.condition.LangCondition",
+                "com.gargoylesoftware.css.parser.condition.OneOfAttributeCondition",
+                "com.gargoylesoftware.css.parser.condition.PrefixAttributeCondition",
+                "com.gargoylesoftware.css.parser.condition.PseudoClassCondition",
+                "com.gargoylesoftware.css.parser.condition.SubstringAttributeCondition",
+                "com.gargoylesoftware.css.parser.condition.SuffixAttributeCondition",
+                "com.gargoylesoftware.css.parser.media.MediaQuery",
+                "com.gargoylesoftware.css.parser.selector.AbstractSelector",
+                "com.gargoylesoftware.css.parser.selector.ChildSelector",
+                "com.gargoylesoftware.css.parser.selector.DescendantSelector",
+                "com.gargoylesoftware.css.parser.selector.DirectAdjacentSelector",
+                "com.gargoylesoftware.css.parser.selector.ElementSelector",
+                "com.gargoylesoftware.css.parser.selector.GeneralAdjacentSelector",
+                "com.gargoylesoftware.css.parser.selector.PseudoElementSelector",
+                "com.gargoylesoftware.css.parser.selector.SelectorListImpl",
+
+                // the reported problems
+                "com.gargoylesoftware.css.parser.AbstractCSSParser$ParserProblem",
+                "com.gargoylesoftware.css.parser.CSSException",
+                "com.gargoylesoftware.css.parser.CSSException$ErrorCode",
+                "com.gargoylesoftware.css.parser.CSSParseException",
+                "com.gargoylesoftware.css.parser.ErrorRecorder",
+                "java.lang.Exception",
+                "java.lang.RuntimeException",
+                "java.lang.StackTraceElement",
+                "[Ljava.lang.StackTraceElement;",
+                "java.lang.Throwable",
+
+                // the java classes used by both
+                "java.lang.Enum",
+                "java.lang.Integer",
+                "java.lang.Number",
+                "[Ljava.lang.Object;",
+                "[Ljava.lang.String;",
+                "[I",
+                "[[I",
+                "java.util.ArrayList",
+                "java.util.Collections$EmptyList",
+                "java.util.Collections$UnmodifiableCollection",
+                "java.util.Collections$UnmodifiableList",
+                "java.util.Collections$UnmodifiableRandomAccessList"));
+
+        CssObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!ALLOWED.contains(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Unexpected class");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+            throw new InvalidClassException("Unexpected proxy class");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.LazyRuleSource;
+
+/**
+ * The source of the lazily parsed rules of a style sheet (see
+ * {@link CSSOMParser#setLazyParsing(boolean)}). Keeps the text of the
+ * style sheet (a copy if the text is not a string; the caller might change it
+ * after parsing) and the parsers for the rules; the rules are parsed
+ * with the start position of their text, the locators are the same
+ * as the ones of a style sheet parsed at once.
+ *
+ * @author Ronald Brill
+ */
+final class StyleSheetSkeleton {
+
+    private final CharSequence chars_;
+    // the offset of chars_ in the text of the input source
+    private final int base_;
+    private final String uri_;
+    private final CSSErrorHandler errorHandler_;
+    private final CSSOMParserPool parsers_;
+
+    /**
+     * @param chars the text of the input source
+     * @param offset the offset of the style sheet in the text
+     * @param length the length of the style sheet
+     * @param uri the uri of the style sheet
+     * @param errorHandler receives the problems found when parsing the rules
+     * @param parserFactory creates the parsers for the rules
+     */
+    StyleSheetSkeleton(final CharSequence chars, final int offset, final int length, final String uri,
+            final CSSErrorHandler errorHandler, final Supplier<CSSOMParser> parserFactory) {
+        if (chars instanceof String) {
+            chars_ = chars;
+            base_ = 0;
+        }
+        else {
+            chars_ = chars.subSequence(offset, offset + length).toString();
+            base_ = offset;
+        }
+        uri_ = uri;
+        errorHandler_ = errorHandler;
+        parsers_ = new CSSOMParserPool(1, parserFactory);
+    }
+
+    /**
+     * @param statement the statement
+     * @return the source of the rule
+     */
+    LazyRuleSource source(final StyleSheetSplitter.Statement statement) {
+        return new Source(this, statement.getOffset(), statement.getLength(),
+                statement.getLine(), statement.getColumn());
+    }
+
+    AbstractCSSRuleImpl parse(final int offset, final int length, final int line, final int column) {
+        final InputSource source = new InputSource(chars_, offset - base_, length);
+        source.setURI(uri_);
+        source.setStartPosition(line, column);
+
+        final CSSOMParser parser = parsers_.acquire();
+        try {
+            parser.setErrorHandler(errorHandler_);
+            return parser.parseRule(source);
+        }
+        catch (final IOException e) {
+            // not thrown for char sequences
+            return null;
+        }
+        finally {
+            parsers_.release(parser);
+        }
+    }
+
+    /**
+     * The source of a single rule.
+     */
+    private static final class Source implements LazyRuleSource {
+        private final StyleSheetSkeleton skeleton_;
+        private final int offset_;
+        private final int length_;
+        private final int line_;
+        private final int column_;
+
+        Source(final StyleSheetSkeleton skeleton, final int offset, final int length,
+                final int line, final int column) {
+            skeleton_ = skeleton;
+            offset_ = offset;
+            length_ = length;
+            line_ = line;
+            column_ = column;
+        }
+
+        @Override
+        public AbstractCSSRuleImpl parse() {
+            return skeleton_.parse(offset_, length_, line_, column_);
+        }
+
+        @Override
+        public int getLength() {
+            return length_;
+        }
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a style sheet into parts of top level rules that can be parsed
+ * independently (see {@link CSSOMParser#setForkJoinPool(java.util.concurrent.ForkJoinPool)}).
+ * A part ends after the closing brace of a top level block if the next rule
+ * starts with a valid token; strings, comments, escapes and unquoted urls are
+ * skipped like the tokenizer does.
+ *
+ * <p>Style sheets that might be parsed differently in parts are not split at all:
+ * a closing brace without an opening one, a {@code @charset} or {@code @import}
+ * rule after the first block or a {@code @charset} or {@code @import} rule
+ * containing a block.</p>
+ *
+ * @author Ronald Brill
+ */
+final class StyleSheetSplitter {
+
+    private StyleSheetSplitter() {
+    }
+
+    /**
+     * @param chars the style sheet
+     * @param offset the index of the first char
+     * @param length the number of chars
+     * @param maxParts the maximum number of parts
+     * @param minPartLength the minimum length of a part
+     * @return the parts in source order or null if the style sheet can't be split
+     */
+    static List<Part> split(final CharSequence chars, final int offset, final int length,
+                final int maxParts, final int minPartLength) {
+        final int end = offset + length;
+        final int partLength = Math.max(minPartLength, length / Math.max(1, maxParts));
+
+        final List<Part> parts = new ArrayList<>();
+        int partStart = offset;
+        int partLine = 1;
+        int partColumn = 1;
+
+        final Lines lines = new Lines(chars, offset, end);
+        int depth = 0;
+        boolean blockFound = false;
+        boolean statementStart = true;
+        boolean importOrCharset = false;
+
+        int i = offset;
+        while (i < end) {
+            final char c = chars.charAt(i);
+            if (isWhitespace(c)) {
+                i = lines.skip(i, i + 1);
+                continue;
+            }
+
+            if (c == '/' && i + 1 < end && chars.charAt(i + 1) == '*') {
+                int commentEnd = i + 2;
+                while (commentEnd < end
+                        && !(chars.charAt(commentEnd) == '*' && commentEnd + 1 < end
+                                && chars.charAt(commentEnd + 1) == '/')) {
+                    commentEnd++;
+                }
+                i = lines.skip(i, Math.min(end, commentEnd + 2));
+                continue;
+            }
+
+            final boolean wasStatementStart = statementStart;
+            statementStart = false;
+
+            if (c == '"' || c == '\'') {
+                final int stringEnd = skipString(chars, i, end);
+                if (stringEnd < 0) {
+                    // not a string token, the tokenizer goes its own way
+                    return null;
+                }
+                i = lines.skip(i, stringEnd);
+                continue;
+            }
+
+            if (c == '\\') {
+                i = lines.skip(i, Math.min(end, i + 2));
+                continue;
+            }
+
+            if ((c == 'u' || c == 'U') && isUrl(chars, i, offset, end)) {
+                final int urlEnd = skipUnquotedUrl(chars, i + 4, end);
+                // a quoted url or a function otherwise
+                i = lines.skip(i, urlEnd < 0 ? i + 4 : urlEnd);
+                continue;
+            }
+
+            if (c == '@' && depth == 0 && wasStatementStart) {
+                if (startsWithIgnoreCase(chars, i + 1, end, "import")
+                        || startsWithIgnoreCase(chars, i + 1, end, "charset")) {
+                    if (blockFound) {
+                        // misplaced, ignored by the parser
+                        return null;
+                    }
+                    importOrCharset = true;
+                }
+            }
+            else if (c == '{') {
+                if (depth == 0 && importOrCharset) {
+                    return null;
+                }
+                depth++;
+            }
+            else if (c == '}') {
+                if (depth == 0) {
+                    return null;
+                }
+                depth--;
+                if (depth == 0) {
+                    blockFound = true;
+                    statementStart = true;
+
+                    final int next = i + 1;
+                    if (next - partStart >= partLength && end - next >= minPartLength
+                            && isRuleStart(chars, next, end)) {
+                        parts.add(new Part(partStart, next - partStart, partLine, partColumn));
+                        partStart = next;
+                        partLine = lines.line_;
+                        partColumn = lines.column(next);
+                    }
+                }
+            }
+            else if (c == ';' && depth == 0) {
+                importOrCharset = false;
+                statementStart = true;
+            }
+            i++;
+        }
+
+        parts.add(new Part(partStart, end - partStart, partLine, partColumn));
+        return parts;
+    }
+
+    /**
+     * Scans the top level statements of a style sheet for a skeleton parse (see
+     * {@link CSSOMParser#setLazyParsing(boolean)}). Style sheets whose statements might
+     * be delimited differently by the parser are not scanned at all: the cases not
+     * split by {@link #split(CharSequence, int, int, int, int)}, SGML comment
+     * delimiters and blocks that are not closed.
+     *
+     * @param chars the style sheet
+     * @param offset the index of the first char
+     * @param length the number of chars
+     * @return the statements in source order or null
+     */
+    static List<Statement> statements(final CharSequence chars, final int offset, final int length) {
+        final Scanner scanner = new Scanner(chars, offset, offset + length);
+        final List<Statement> statements = scanner.statements(true);
+        if (statements == null || scanner.pos_ < offset + length) {
+            return null;
+        }
+        return statements;
+    }
+
+    /**
+     * A part must not start with an error; the parser reports it with other
+     * expected tokens than the parser of the whole style sheet.
+     *
+     * @return true if the next token after whitespace and comments surely starts a rule
+     */
+    static boolean isRuleStart(final CharSequence chars, final int start, final int end) {
+        int i = start;
+        while (i < end) {
+            final char c = chars.charAt(i);
+            if (isWhitespace(c)) {
+                i++;
+            }
+            else if (c == '/' && i + 1 < end && chars.charAt(i + 1) == '*') {
+                i += 2;
+                while (i < end && !(chars.charAt(i) == '*' && i + 1 < end && chars.charAt(i + 1) == '/')) {
+                    i++;
+                }
+                i += 2;
+            }
+            else {
+                break;
+            }
+        }
+        if (i >= end) {
+            return true;
+        }
+
+        final char c = chars.charAt(i);
+        if (isNameStart(c) || c == '.' || c == '#' || c == '*' || c == '[' || c == ':') {
+            return true;
+        }
+        if (i + 1 < end) {
+            final char next = chars.charAt(i + 1);
+            return c == '@' && isNameStart(next)
+                    || c == '-' && (isNameStart(next) || next == '-');
+        }
+        return false;
+    }
+
+    private static boolean isNameStart(final char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c > 127;
+    }
+
+    /**
+     * @return the index after the string or -1 if there is no valid string token
+     */
+    private static int skipString(final CharSequence chars, final int start, final int end) {
+        final char quote = chars.charAt(start);
+        int i = start + 1;
+        while (i < end) {
+            final char c = chars.charAt(i);
+            if (c == quote) {
+                return i + 1;
+            }
+            if (c == '\\') {
+                i++;
+                if (i < end && chars.charAt(i) == '\r' && i + 1 < end && chars.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+            else if (c == '\n' || c == '\r' || c == '\f') {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the closing parenthesis of an unquoted url token or -1
+     */
+    private static int skipUnquotedUrl(final CharSequence chars, final int start, final int end) {
+        int i = start;
+        while (i < end && isWhitespace(chars.charAt(i))) {
+            i++;
+        }
+        if (i == end || chars.charAt(i) == '"' || chars.charAt(i) == '\'') {
+            return -1;
+        }
+        while (i < end) {
+            final char c = chars.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == end || chars.charAt(i + 1) == '\n' || chars.charAt(i + 1) == '\r'
+                        || chars.charAt(i + 1) == '\f') {
+                    return -1;
+                }
+                i += 2;
+            }
+            else if (c > 127 || c >= '*' && c <= '[' || c >= ']' && c <= '~'
+                    || c == '!' || c == '#' || c == '$' || c == '%' || c == '&') {
+                i++;
+            }
+            else {
+                break;
+            }
+        }
+        while (i < end && isWhitespace(chars.charAt(i))) {
+            i++;
+        }
+        if (i < end && chars.charAt(i) == ')') {
+            return i + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isUrl(final CharSequence chars, final int i, final int offset, final int end) {
+        if (i + 4 > end || chars.charAt(i + 3) != '('
+                || !startsWithIgnoreCase(chars, i, end, "url")) {
+            return false;
+        }
+        if (i == offset) {
+            return true;
+        }
+        final char prev = chars.charAt(i - 1);
+        return !(Character.isLetterOrDigit(prev) || prev == '-' || prev == '_' || prev == '\\' || prev > 127);
+    }
+
+    private static boolean startsWithIgnoreCase(final CharSequence chars, final int start, final int end,
+                final String lowerCase) {
+        if (start + lowerCase.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(chars.charAt(start + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(final char c) {
+        return isNameStart(c) || c >= '0' && c <= '9' || c == '-' || c == '\\';
+    }
+
+    /**
+     * Tracks the line numbers like the char streams do: a new line
+     * starts after a LF or after a CR that is not followed by a LF.
+     */
+    private static final class Lines {
+        private final CharSequence chars_;
+        private final int end_;
+        private int line_ = 1;
+        private int lineStart_;
+
+        Lines(final CharSequence chars, final int offset, final int end) {
+            chars_ = chars;
+            end_ = end;
+            lineStart_ = offset;
+        }
+
+        /**
+         * @return the index to continue at
+         */
+        int skip(final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                final char c = chars_.charAt(i);
+                if (c == '\n' || c == '\r' && (i + 1 == end_ || chars_.charAt(i + 1) != '\n')) {
+                    line_++;
+                    lineStart_ = i + 1;
+                }
+            }
+            return to;
+        }
+
+        int column(final int index) {
+            return index - lineStart_ + 1;
+        }
+    }
+
+    /**
+     * Scans the statements of a style sheet or of the block of a media rule.
+     */
+    private static final class Scanner {
+        private final CharSequence chars_;
+        private final int offset_;
+        private final int end_;
+        private final Lines lines_;
+        private int pos_;
+        private boolean ruleFound_;
+
+        Scanner(final CharSequence chars, final int offset, final int end) {
+            chars_ = chars;
+            offset_ = offset;
+            end_ = end;
+            lines_ = new Lines(chars, offset, end);
+            pos_ = offset;
+        }
+
+        /**
+         * @param topLevel false if scanning the block of a media rule; the scan stops
+         *        at the closing brace of the block
+         * @return the statements or null if the style sheet is not supported
+         */
+        List<Statement> statements(final boolean topLevel) {
+            final List<Statement> statements = new ArrayList<>();
+            while (true) {
+                if (!skipWhitespaceAndComments()) {
+                    return null;
+                }
+                if (pos_ == end_) {
+                    // a media rule has to be closed
+                    return topLevel ? statements : null;
+                }
+
+                final char c = chars_.charAt(pos_);
+                if (c == '}') {
+                    // a stray brace or the end of the media block
+                    return topLevel ? null : statements;
+                }
+                if (startsWithIgnoreCase(chars_, pos_, end_, "<!--")
+                        || startsWithIgnoreCase(chars_, pos_, end_, "-->")) {
+                    return null;
+                }
+
+                final Statement statement = statement(topLevel);
+                if (statement == null) {
+                    return null;
+                }
+                statements.add(statement);
+            }
+        }
+
+        private Statement statement(final boolean topLevel) {
+            final int start = pos_;
+            final int line = lines_.line_;
+            final int column = lines_.column(start);
+
+            int kind = kind();
+            final boolean invalid = kind == Statement.OTHER;
+            if (kind == Statement.IMPORT) {
+                if (ruleFound_ || !topLevel) {
+                    // misplaced, ignored by the parser
+                    return null;
+                }
+                if (startsWithIgnoreCase(chars_, pos_, end_, "@charset")
+                        && !(startsWithIgnoreCase(chars_, pos_, end_, "@charset \"")
+                                || startsWithIgnoreCase(chars_, pos_, end_, "@charset '"))) {
+                    // an invalid charset rule makes the parser skip the following rule
+                    return null;
+                }
+            }
+            else {
+                ruleFound_ = true;
+            }
+            final boolean atRule = kind == Statement.IMPORT || kind == Statement.AT_RULE;
+
+            // the prelude
+            boolean preludeTokens = false;
+            if (chars_.charAt(pos_) == '@') {
+                // the at keyword
+                int i = pos_ + 1;
+                while (i < end_ && isNameChar(chars_.charAt(i))) {
+                    i++;
+                }
+                pos_ = lines_.skip(pos_, i);
+            }
+            else if (!skipToken()) {
+                return null;
+            }
+            while (true) {
+                if (!skipWhitespaceAndComments()) {
+                    return null;
+                }
+                if (pos_ == end_) {
+                    return new Statement(Statement.OTHER, start, pos_ - start, line, column, -1, null);
+                }
+
+                final char c = chars_.charAt(pos_);
+                if (c == '{') {
+                    break;
+                }
+                if (c == '}') {
+                    if (atRule && topLevel) {
+                        // the parser skips unknown at rules up to the next brace
+                        pos_ = lines_.skip(pos_, pos_ + 1);
+                        return new Statement(Statement.OTHER, start, pos_ - start, line, column, -1, null);
+                    }
+                    return null;
+                }
+                if (c == ';') {
+                    pos_ = lines_.skip(pos_, pos_ + 1);
+                    if (atRule) {
+                        return new Statement(Statement.OTHER, start, pos_ - start, line, column, -1, null);
+                    }
+                    // part of an invalid rule
+                    kind = Statement.OTHER;
+                    continue;
+                }
+                preludeTokens = true;
+                if (!skipToken()) {
+                    return null;
+                }
+            }
+
+            if (kind == Statement.IMPORT) {
+                return null;
+            }
+            final int blockStart = pos_;
+            pos_ = lines_.skip(pos_, pos_ + 1);
+
+            if (kind == Statement.MEDIA) {
+                final List<Statement> children = statements(false);
+                if (children == null) {
+                    return null;
+                }
+                pos_ = lines_.skip(pos_, pos_ + 1);
+                for (final Statement child : children) {
+                    if (child.kind_ != Statement.STYLE && child.kind_ != Statement.PAGE) {
+                        // parsed at once
+                        return new Statement(Statement.OTHER, start, pos_ - start, line, column, -1, null);
+                    }
+                }
+                return new Statement(kind, start, pos_ - start, line, column, blockStart, children);
+            }
+
+            // the block
+            int depth = 1;
+            boolean nested = false;
+            while (depth > 0) {
+                if (!skipWhitespaceAndComments()) {
+                    return null;
+                }
+                if (pos_ == end_) {
+                    return null;
+                }
+                final char c = chars_.charAt(pos_);
+                if (c == '{') {
+                    depth++;
+                    nested = true;
+                }
+                else if (c == '}') {
+                    depth--;
+                }
+                if (!skipToken()) {
+                    return null;
+                }
+            }
+
+            if (nested) {
+                if (invalid) {
+                    // the parser skips invalid rules up to the next brace
+                    return null;
+                }
+                kind = Statement.OTHER;
+            }
+            if (kind == Statement.FONT_FACE && preludeTokens) {
+                kind = Statement.OTHER;
+            }
+            if (kind == Statement.AT_RULE) {
+                kind = Statement.OTHER;
+            }
+            return new Statement(kind, start, pos_ - start, line, column, blockStart, null);
+        }
+
+        private int kind() {
+            final char c = chars_.charAt(pos_);
+            if (c == '@') {
+                if (isKeyword("@media")) {
+                    return Statement.MEDIA;
+                }
+                if (isKeyword("@font-face")) {
+                    return Statement.FONT_FACE;
+                }
+                if (isKeyword("@page")) {
+                    return Statement.PAGE;
+                }
+                if (startsWithIgnoreCase(chars_, pos_, end_, "@import")
+                        || startsWithIgnoreCase(chars_, pos_, end_, "@charset")) {
+                    return Statement.IMPORT;
+                }
+                return Statement.AT_RULE;
+            }
+            if (isNameStart(c) || c == '.' || c == '#' || c == '*' || c == '[' || c == ':'
+                    || c == '-' && pos_ + 1 < end_ && isNameStart(chars_.charAt(pos_ + 1))) {
+                return Statement.STYLE;
+            }
+            return Statement.OTHER;
+        }
+
+        /**
+         * @return true if the keyword is next (only the plain lower case spelling)
+         */
+        private boolean isKeyword(final String keyword) {
+            final int next = pos_ + keyword.length();
+            if (next > end_) {
+                return false;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                if (chars_.charAt(pos_ + i) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            return next == end_ || !isNameChar(chars_.charAt(next));
+        }
+
+        /**
+         * @return false if a comment is not closed
+         */
+        private boolean skipWhitespaceAndComments() {
+            while (pos_ < end_) {
+                final char c = chars_.charAt(pos_);
+                if (isWhitespace(c)) {
+                    pos_ = lines_.skip(pos_, pos_ + 1);
+                }
+                else if (c == '/' && pos_ + 1 < end_ && chars_.charAt(pos_ + 1) == '*') {
+                    int commentEnd = pos_ + 2;
+                    while (commentEnd < end_
+                            && !(chars_.charAt(commentEnd) == '*' && commentEnd + 1 < end_
+                                    && chars_.charAt(commentEnd + 1) == '/')) {
+                        commentEnd++;
+                    }
+                    if (commentEnd == end_) {
+                        return false;
+                    }
+                    pos_ = lines_.skip(pos_, commentEnd + 2);
+                }
+                else {
+                    return true;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Skips a string, an escape, an url or a single char.
+         *
+         * @return false if there is no valid token
+         */
+        private boolean skipToken() {
+            final int i = pos_;
+            final char c = chars_.charAt(i);
+            if (c == '"' || c == '\'') {
+                final int stringEnd = skipString(chars_, i, end_);
+                if (stringEnd < 0) {
+                    return false;
+                }
+                pos_ = lines_.skip(i, stringEnd);
+            }
+            else if (c == '\\') {
+                pos_ = lines_.skip(i, Math.min(end_, i + 2));
+            }
+            else if ((c == 'u' || c == 'U') && isUrl(chars_, i, offset_, end_)) {
+                final int urlEnd = skipUnquotedUrl(chars_, i + 4, end_);
+                pos_ = lines_.skip(i, urlEnd < 0 ? i + 4 : urlEnd);
+            }
+            else {
+                pos_ = lines_.skip(i, i + 1);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A top level statement of a style sheet or a statement of a media rule.
+     */
+    static final class Statement {
+        /** Any statement parsed at once. */
+        static final int OTHER = 0;
+        /** A style rule. */
+        static final int STYLE = 1;
+        /** A font face rule. */
+        static final int FONT_FACE = 2;
+        /** A page rule. */
+        static final int PAGE = 3;
+        /** A media rule containing style and page rules only. */
+        static final int MEDIA = 4;
+        /** An import or charset rule, used while scanning. */
+        static final int IMPORT = 5;
+        /** Another at rule, used while scanning. */
+        static final int AT_RULE = 6;
+
+        private final int kind_;
+        private final int offset_;
+        private final int length_;
+        private final int line_;
+        private final int column_;
+        private final int blockStart_;
+        private final List<Statement> children_;
+
+        Statement(final int kind, final int offset, final int length, final int line, final int column,
+                final int blockStart, final List<Statement> children) {
+            kind_ = kind;
+            offset_ = offset;
+            length_ = length;
+            line_ = line;
+            column_ = column;
+            blockStart_ = blockStart;
+            children_ = children;
+        }
+
+        int getKind() {
+            return kind_;
+        }
+
+        int getOffset() {
+            return offset_;
+        }
+
+        int getLength() {
+            return length_;
+        }
+
+        int getLine() {
+            return line_;
+        }
+
+        int getColumn() {
+            return column_;
+        }
+
+        /**
+         * @return the index of the opening brace of the block or -1
+         */
+        int getBlockStart() {
+            return blockStart_;
+        }
+
+        /**
+         * @return the statements of a media rule
+         */
+        List<Statement> getChildren() {
+            return children_;
+        }
+    }
+
+    /**
+     * A part of a style sheet.
+     */
+    static final class Part {
+        private final int offset_;
+        private final int length_;
+        private final int line_;
+        private final int column_;
+
+        Part(final int offset, final int length, final int line, final int column) {
+            offset_ = offset;
+            length_ = length;
+            line_ = line;
+            column_ = column;
+        }
+
+        int getOffset() {
+            return offset_;
+        }
+
+        int getLength() {
+            return length_;
+        }
+
+        int getLine() {
+            return line_;
+        }
+
+        int getColumn() {
+            return column_;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.io.IOException;
+
+/**
+ * The second tier of a {@link StyleSheetCache}; stores the serialized style
+ * sheets evicted from (or not yet loaded into) memory, e.g. on disk (see
+ * {@link FileStyleSheetStore}) or in a store shared by many machines.
+ * The keys are made of letters and digits only.
+ *
+ * <p>Implementations have to be thread safe. The content of the store is
+ * deserialized, the store must be trusted.</p>
+ *
+ * @author Ronald Brill
+ */
+public interface StyleSheetStore {
+
+    /**
+     * @param key the key
+     * @return the stored data or null if there is nothing stored for the key
+     * @throws IOException in case of error
+     */
+    byte[] load(String key) throws IOException;
+
+    /**
+     * Stores the data, replacing any data already stored for the key.
+     *
+     * @param key the key
+     * @param data the data
+     * @throws IOException in case of error
+     */
+    void store(String key, byte[] data) throws IOException;
+}
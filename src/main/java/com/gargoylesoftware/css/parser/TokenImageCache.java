@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shares the images of short tokens. Most tokens of a style sheet are
+ * punctuation, whitespace, property names, keywords and small numbers;
+ * the same images occur again and again. Single ASCII chars are shared
+ * constants, all other short images are kept in a small direct mapped
+ * table (the last image wins in case of a collision).
+ *
+ * <p>The table is allocated once the first {@link #DEFAULT_LAZY_IMAGES}
+ * images have been created; tiny inputs like inline styles and property
+ * values never pay for it.</p>
+ *
+ * <p>Every char stream uses its own instance, no synchronization is
+ * required.</p>
+ *
+ * @author Ronald Brill
+ */
+final class TokenImageCache {
+
+    private static final int MAX_LENGTH = 32;
+    private static final int SIZE = 512;
+
+    /** The number of images created before the table is allocated. */
+    static final int DEFAULT_LAZY_IMAGES = 64;
+
+    private static final String[] ASCII = new String[128];
+
+    static {
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = String.valueOf((char) i);
+        }
+    }
+
+    private String[] images_;
+    // the number of images still to create before the table is allocated
+    private int lazyImages_;
+
+    /**
+     * Ctor.
+     */
+    TokenImageCache() {
+        this(DEFAULT_LAZY_IMAGES);
+    }
+
+    /**
+     * Ctor.
+     * @param lazyImages the number of images created before the table is allocated
+     */
+    TokenImageCache(final int lazyImages) {
+        lazyImages_ = lazyImages;
+    }
+
+    /**
+     * @return the table or null if not allocated so far
+     */
+    private String[] table() {
+        String[] images = images_;
+        if (images == null) {
+            if (lazyImages_ > 0) {
+                lazyImages_--;
+                return null;
+            }
+            images = new String[SIZE];
+            images_ = images;
+        }
+        return images;
+    }
+
+    private static int index(final int hash) {
+        return (hash ^ (hash >>> 9)) & (SIZE - 1);
+    }
+
+    /**
+     * @param chars the chars
+     * @param offset the index of the first char of the image
+     * @param length the length of the image
+     * @return the image
+     */
+    String get(final char[] chars, final int offset, final int length) {
+        if (length == 1 && chars[offset] < ASCII.length) {
+            return ASCII[chars[offset]];
+        }
+        final String[] images = length > MAX_LENGTH || length == 0 ? null : table();
+        if (images == null) {
+            return new String(chars, offset, length);
+        }
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int idx = index(hash);
+        final String cached = images[idx];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == chars[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+
+        final String image = new String(chars, offset, length);
+        images[idx] = image;
+        return image;
+    }
+
+    /**
+     * @param sequence the chars
+     * @param begin the index of the first char of the image
+     * @param end the index after the last char of the image
+     * @return the image
+     */
+    String get(final CharSequence sequence, final int begin, final int end) {
+        final int length = end - begin;
+        if (length == 1 && sequence.charAt(begin) < ASCII.length) {
+            return ASCII[sequence.charAt(begin)];
+        }
+        final String[] images = length > MAX_LENGTH || length == 0 ? null : table();
+        if (images == null) {
+            return sequence.subSequence(begin, end).toString();
+        }
+
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + sequence.charAt(i);
+        }
+
+        final int idx = index(hash);
+        final String cached = images[idx];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == sequence.charAt(begin + i)) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+
+        final String image = sequence.subSequence(begin, end).toString();
+        images[idx] = image;
+        return image;
+    }
+
+    /**
+     * Only images consisting of ASCII bytes are handled.
+     *
+     * @param bytes the bytes
+     * @param offset the index of the first byte of the image
+     * @param length the number of bytes of the image
+     * @return the image or null if the image is too long or contains non ASCII bytes
+     */
+    String getAscii(final byte[] bytes, final int offset, final int length) {
+        if (length == 1 && bytes[offset] >= 0) {
+            return ASCII[bytes[offset]];
+        }
+        if (length > MAX_LENGTH || length == 0) {
+            return null;
+        }
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = bytes[i];
+            if (b < 0) {
+                return null;
+            }
+            hash = 31 * hash + b;
+        }
+
+        final String[] images = table();
+        if (images == null) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+
+        final int idx = index(hash);
+        final String cached = images[idx];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == bytes[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+
+        final String image = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        images[idx] = image;
+        return image;
+    }
+}
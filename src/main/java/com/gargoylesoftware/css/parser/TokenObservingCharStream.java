@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.Token;
+
+/**
+ * A CharStream that gets to know the tokens built from its chars. The token
+ * managers pass every token except the eof token to the stream after the
+ * image of the token is complete.
+ *
+ * @author Ronald Brill
+ */
+public interface TokenObservingCharStream extends CharStream {
+
+    /**
+     * Called for every token read from this stream.
+     *
+     * @param token the token
+     */
+    void tokenMatched(Token token);
+}
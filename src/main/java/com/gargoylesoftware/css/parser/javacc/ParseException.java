@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser.javacc;
+
+/**
+ * Replaces the ParseException generated by JavaCC (the plugin doesn't generate
+ * classes already present in the sources).
+ *
+ * <p>The parser recovers from most of the errors and reports them to the error
+ * handler, the exception is only used to unwind to the recovery point. Therefore
+ * it doesn't fill in the stack trace and creates the message only if requested.</p>
+ *
+ * @author Ronald Brill
+ */
+public class ParseException extends Exception {
+
+    /**
+     * The last token consumed successfully; the token following
+     * this token is the first error token.
+     */
+    public Token currentToken;
+
+    /**
+     * The sequences of tokens (by their ordinal values) expected at this
+     * point of the parse.
+     */
+    public int[][] expectedTokenSequences;
+
+    /**
+     * The "tokenImage" array of the generated parser.
+     */
+    public String[] tokenImage;
+
+    private String message_;
+
+    /**
+     * This constructor is used by the method "generateParseException"
+     * in the generated parser.
+     *
+     * @param currentTokenVal the last token consumed successfully
+     * @param expectedTokenSequencesVal the expected token sequences
+     * @param tokenImageVal the token images
+     */
+    public ParseException(final Token currentTokenVal, final int[][] expectedTokenSequencesVal,
+            final String[] tokenImageVal) {
+        super(null, null, false, false);
+        currentToken = currentTokenVal;
+        expectedTokenSequences = expectedTokenSequencesVal;
+        tokenImage = tokenImageVal;
+    }
+
+    /**
+     * Creates a new ParseException.
+     */
+    public ParseException() {
+        super(null, null, false, false);
+    }
+
+    /**
+     * Creates a new ParseException.
+     *
+     * @param message the message
+     */
+    public ParseException(final String message) {
+        super(null, null, false, false);
+        message_ = message;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message_ == null && currentToken != null && expectedTokenSequences != null && tokenImage != null) {
+            message_ = createMessage();
+        }
+        return message_;
+    }
+
+    private String createMessage() {
+        final String eol = System.getProperty("line.separator", "\n");
+        final StringBuilder expected = new StringBuilder();
+        int maxSize = 0;
+        for (final int[] sequence : expectedTokenSequences) {
+            if (maxSize < sequence.length) {
+                maxSize = sequence.length;
+            }
+            for (final int kind : sequence) {
+                expected.append(tokenImage[kind]).append(' ');
+            }
+            if (sequence[sequence.length - 1] != 0) {
+                expected.append("...");
+            }
+            expected.append(eol).append("    ");
+        }
+
+        final StringBuilder message = new StringBuilder("Encountered \"");
+        Token tok = currentToken.next;
+        for (int i = 0; i < maxSize && tok != null; i++) {
+            if (i != 0) {
+                message.append(' ');
+            }
+            if (tok.kind == 0) {
+                message.append(tokenImage[0]);
+                break;
+            }
+            message.append(' ').append(tokenImage[tok.kind]).append(" \"").append(addEscapes(tok.image)).append(" \"");
+            tok = tok.next;
+        }
+        if (currentToken.next != null) {
+            message.append("\" at line ").append(currentToken.next.beginLine)
+                .append(", column ").append(currentToken.next.beginColumn);
+        }
+        message.append('.').append(eol);
+
+        if (expectedTokenSequences.length == 1) {
+            message.append("Was expecting:").append(eol).append("    ").append(expected);
+        }
+        else if (expectedTokenSequences.length > 1) {
+            message.append("Was expecting one of:").append(eol).append("    ").append(expected);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Escapes the chars that can't be used in an ASCII string literal.
+     *
+     * @param str the string
+     * @return the escaped string
+     */
+    static String addEscapes(final String str) {
+        final StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < str.length(); i++) {
+            final char ch = str.charAt(i);
+            switch (ch) {
+                case '\b':
+                    escaped.append("\\b");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\f':
+                    escaped.append("\\f");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\"':
+                    escaped.append("\\\"");
+                    break;
+                case '\'':
+                    escaped.append("\\\'");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                default:
+                    if (ch < 0x20 || ch > 0x7e) {
+                        final String s = "0000" + Integer.toString(ch, 16);
+                        escaped.append("\\u").append(s.substring(s.length() - 4));
+                    }
+                    else {
+                        escaped.append(ch);
+                    }
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+}
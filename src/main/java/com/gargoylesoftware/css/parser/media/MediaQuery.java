@@ -16,6 +16,7 @@
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.gargoylesoftware.css.dom.Property;
@@ -52,7 +53,8 @@ public MediaQuery(final String media, final boolean isOnly, final boolean isNot)
             implicitAll_ = true;
             media_ = "all";
         }
-        properties_ = new ArrayList<>(10);
+        // most queries have no or only a few properties
+        properties_ = new ArrayList<>();
         isOnly_ = isOnly;
         isNot_ = isNot;
     }
@@ -79,6 +81,10 @@ public void addMediaProperty(final Property mp) {
         properties_.add(mp);
     }
 
+    void makeUnmodifiable() {
+        properties_ = Collections.unmodifiableList(properties_);
+    }
+
     /**
      * @return the is only flag
      */
@@ -15,6 +15,7 @@
 package com.gargoylesoftware.css.parser.media;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.gargoylesoftware.css.parser.AbstractLocatable;
@@ -26,7 +27,8 @@
  */
 public class MediaQueryList extends AbstractLocatable {
 
-    private final List<MediaQuery> mediaQueries_;
+    private List<MediaQuery> mediaQueries_;
+    private boolean unmodifiable_;
 
     /**
      * Ctor.
@@ -57,6 +59,29 @@ public void add(final MediaQuery mediaQuery) {
         mediaQueries_.add(mediaQuery);
     }
 
+    /**
+     * Makes this list and all the media queries unmodifiable; used for lists
+     * shared by many callers (see {@link com.gargoylesoftware.css.parser.MediaQueryCache}).
+     */
+    public void makeUnmodifiable() {
+        if (unmodifiable_) {
+            return;
+        }
+        for (final MediaQuery mediaQuery : mediaQueries_) {
+            mediaQuery.makeUnmodifiable();
+        }
+        mediaQueries_ = Collections.unmodifiableList(mediaQueries_);
+        unmodifiable_ = true;
+    }
+
+    /**
+     * @return true if this list is unmodifiable
+     * @see #makeUnmodifiable()
+     */
+    public boolean isUnmodifiable() {
+        return unmodifiable_;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
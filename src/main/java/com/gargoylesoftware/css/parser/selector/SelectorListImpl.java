@@ -17,6 +17,7 @@
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -40,6 +41,15 @@ public List<Selector> getSelectors() {
         return selectors_;
     }
 
+    /**
+     * Makes this list unmodifiable, all the mutators throw an
+     * {@link UnsupportedOperationException} afterwards. Used for lists
+     * shared by many callers (see {@link com.gargoylesoftware.css.parser.SelectorCache}).
+     */
+    public void makeUnmodifiable() {
+        selectors_ = Collections.unmodifiableList(selectors_);
+    }
+
     @Override
     public String toString() {
         return selectors_.stream()
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gargoylesoftware.css.parser.CSSErrorHandler;
+import com.gargoylesoftware.css.parser.CSSParseException;
+
+/**
+ * Implementation of {@link CSSErrorHandler} collecting the problems of one or
+ * many style sheets. Repeated problems (the same {@link CSSParseException#getProblemKey()}
+ * and severity) are counted only; the distinct problems are kept in a ring of the given
+ * capacity, the oldest problem is dropped if the ring is full. The messages of the
+ * problems are not formatted before they are read.
+ *
+ * <p>The first occurrence of every problem can be passed on to another handler.
+ * The handler is thread safe.</p>
+ *
+ * @author Ronald Brill
+ */
+public class AggregatingErrorHandler implements CSSErrorHandler {
+
+    /** The default number of distinct problems kept. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The severity of a problem.
+     */
+    public enum Severity {
+        /** A warning. */
+        WARNING,
+        /** An error. */
+        ERROR,
+        /** A fatal error. */
+        FATAL_ERROR
+    }
+
+    private final int capacity_;
+    private final CSSErrorHandler delegate_;
+
+    // the ring of distinct problems and the index of the problems in the ring
+    private final Problem[] ring_;
+    private final Map<String, Problem> index_ = new HashMap<>();
+    private int head_;
+    private int size_;
+
+    private final long[] counts_ = new long[Severity.values().length];
+    private long dropped_;
+
+    /**
+     * Creates a new handler keeping {@link #DEFAULT_CAPACITY} distinct problems.
+     */
+    public AggregatingErrorHandler() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Creates a new handler.
+     *
+     * @param capacity the number of distinct problems kept
+     * @param delegate receives the first occurrence of every problem; may be null
+     */
+    public AggregatingErrorHandler(final int capacity, final CSSErrorHandler delegate) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive (" + capacity + ")");
+        }
+        capacity_ = capacity;
+        delegate_ = delegate;
+        ring_ = new Problem[capacity];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warning(final CSSParseException exception) {
+        if (report(Severity.WARNING, exception) && delegate_ != null) {
+            delegate_.warning(exception);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final CSSParseException exception) {
+        if (report(Severity.ERROR, exception) && delegate_ != null) {
+            delegate_.error(exception);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void fatalError(final CSSParseException exception) {
+        if (report(Severity.FATAL_ERROR, exception) && delegate_ != null) {
+            delegate_.fatalError(exception);
+        }
+    }
+
+    /**
+     * @return true if this is the first occurrence of the problem
+     */
+    private synchronized boolean report(final Severity severity, final CSSParseException exception) {
+        counts_[severity.ordinal()]++;
+
+        final String key = severity.ordinal() + exception.getProblemKey();
+        final Problem known = index_.get(key);
+        if (known != null) {
+            known.count_++;
+            return false;
+        }
+
+        final Problem problem = new Problem(key, severity, exception);
+        if (size_ == capacity_) {
+            // overwrite the oldest one
+            index_.remove(ring_[head_].key_);
+            dropped_++;
+        }
+        else {
+            size_++;
+        }
+        ring_[head_] = problem;
+        head_ = (head_ + 1) % capacity_;
+        index_.put(key, problem);
+        return true;
+    }
+
+    /**
+     * @return the distinct problems kept, the oldest first
+     */
+    public synchronized List<Problem> getProblems() {
+        final List<Problem> problems = new ArrayList<>(size_);
+        for (int i = 0; i < size_; i++) {
+            problems.add(ring_[(head_ - size_ + i + capacity_) % capacity_]);
+        }
+        return problems;
+    }
+
+    /**
+     * @param severity the severity
+     * @return the number of problems of the given severity reported, including the repeated ones
+     */
+    public synchronized long getCount(final Severity severity) {
+        return counts_[severity.ordinal()];
+    }
+
+    /**
+     * @return the number of distinct problems dropped from the ring
+     */
+    public synchronized long getDroppedProblems() {
+        return dropped_;
+    }
+
+    /**
+     * Removes all problems and resets the counters.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < capacity_; i++) {
+            ring_[i] = null;
+        }
+        index_.clear();
+        head_ = 0;
+        size_ = 0;
+        for (int i = 0; i < counts_.length; i++) {
+            counts_[i] = 0;
+        }
+        dropped_ = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AggregatingErrorHandler[warnings=" + counts_[Severity.WARNING.ordinal()]
+                + ", errors=" + counts_[Severity.ERROR.ordinal()]
+                + ", fatalErrors=" + counts_[Severity.FATAL_ERROR.ordinal()]
+                + ", distinct=" + size_ + ", dropped=" + dropped_ + "]";
+    }
+
+    /**
+     * A distinct problem.
+     */
+    public static final class Problem {
+        private final String key_;
+        private final Severity severity_;
+        private final CSSParseException exception_;
+        // only incremented by the handler holding its lock
+        private volatile long count_;
+
+        Problem(final String key, final Severity severity, final CSSParseException exception) {
+            key_ = key;
+            severity_ = severity;
+            exception_ = exception;
+            count_ = 1;
+        }
+
+        /**
+         * @return the severity
+         */
+        public Severity getSeverity() {
+            return severity_;
+        }
+
+        /**
+         * @return the first occurrence of the problem
+         */
+        public CSSParseException getException() {
+            return exception_;
+        }
+
+        /**
+         * @return the message of the problem
+         */
+        public String getMessage() {
+            return exception_.getMessage();
+        }
+
+        /**
+         * @return the number of occurrences
+         */
+        public long getCount() {
+            return count_;
+        }
+
+        @Override
+        public String toString() {
+            return severity_ + " [" + exception_.getLineNumber() + ":" + exception_.getColumnNumber() + "] "
+                    + getMessage() + " (" + getCount() + "x)";
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+/**
+ * The events reported by {@link CssEvents}; implemented on top of the
+ * Java Flight Recorder by the Java 11 part of the multi-release jar.
+ *
+ * <p>The begin methods return null if the event is not recorded; the end
+ * methods are only called with the objects returned by the begin methods.</p>
+ *
+ * @author Ronald Brill
+ */
+interface CssEventSupport {
+
+    /**
+     * @return the started event or null
+     */
+    Object beginParse();
+
+    /**
+     * @param event the event
+     * @param kind the kind of input parsed
+     * @param href the href of the style sheet or null
+     * @param inputLength the length of the input or -1 if not known
+     * @param ruleCount the number of rules, declarations or selectors created
+     * @param errorCount the number of errors reported
+     */
+    void endParse(Object event, String kind, String href, long inputLength, int ruleCount, int errorCount);
+
+    /**
+     * @return the started event or null
+     */
+    Object beginInsertRule();
+
+    /**
+     * @param event the event
+     * @param href the href of the style sheet or null
+     * @param inputLength the length of the rule text
+     * @param ruleCount the number of rules of the style sheet
+     * @param errorCount the number of errors
+     */
+    void endInsertRule(Object event, String href, long inputLength, int ruleCount, int errorCount);
+
+    /**
+     * @return the started event or null
+     */
+    Object beginRuleIndexBuild();
+
+    /**
+     * @param event the event
+     * @param href the href of the style sheet or null
+     * @param ruleCount the number of selector entries in the index
+     */
+    void endRuleIndexBuild(Object event, String href, int ruleCount);
+
+    /**
+     * @return the started event or null
+     */
+    Object beginRuleIndexLookup();
+
+    /**
+     * @param event the event
+     * @param elementName the element name looked up
+     * @param classCount the number of classes looked up
+     * @param entryCount the number of selector entries found
+     */
+    void endRuleIndexLookup(Object event, String elementName, int classCount, int entryCount);
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+/**
+ * Java Flight Recorder events for the parser and the object model.
+ *
+ * <p>The events are implemented in the Java 11 part of the multi-release jar;
+ * on Java 8 or if the jdk.jfr module is missing all methods do nothing. If a
+ * recording is running, the events
+ * "com.gargoylesoftware.css.Parse", "com.gargoylesoftware.css.InsertRule" and
+ * "com.gargoylesoftware.css.RuleIndexBuild" are recorded by default; the very
+ * frequent "com.gargoylesoftware.css.RuleIndexLookup" has to be enabled
+ * explicitly.</p>
+ *
+ * <p>This class is used by the parser and the object model; the begin methods
+ * return null if the event is not recorded, the end methods must be called
+ * with non null events only.</p>
+ *
+ * @author Ronald Brill
+ */
+public final class CssEvents {
+
+    private static final CssEventSupport SUPPORT = load();
+
+    private CssEvents() {
+    }
+
+    private static CssEventSupport load() {
+        try {
+            final Class<?> support = Class.forName("com.gargoylesoftware.css.util.JfrCssEventSupport");
+            return (CssEventSupport) support.getDeclaredConstructor().newInstance();
+        }
+        catch (final ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Java 8 or no jdk.jfr module
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the events are backed by the flight recorder
+     */
+    public static boolean isSupported() {
+        return SUPPORT != null;
+    }
+
+    /**
+     * Starts a parse event.
+     *
+     * @return the event or null if not recorded
+     */
+    public static Object beginParse() {
+        final CssEventSupport support = SUPPORT;
+        return support == null ? null : support.beginParse();
+    }
+
+    /**
+     * Ends and commits a parse event.
+     *
+     * @param event the event returned by {@link #beginParse()}
+     * @param kind the kind of input parsed, e.g. "styleSheet"
+     * @param href the href of the style sheet or null
+     * @param inputLength the length of the input or -1 if not known
+     * @param ruleCount the number of rules, declarations or selectors created
+     * @param errorCount the number of errors reported
+     */
+    public static void endParse(final Object event, final String kind, final String href,
+            final long inputLength, final int ruleCount, final int errorCount) {
+        SUPPORT.endParse(event, kind, href, inputLength, ruleCount, errorCount);
+    }
+
+    /**
+     * Starts an insert rule event.
+     *
+     * @return the event or null if not recorded
+     */
+    public static Object beginInsertRule() {
+        final CssEventSupport support = SUPPORT;
+        return support == null ? null : support.beginInsertRule();
+    }
+
+    /**
+     * Ends and commits an insert rule event.
+     *
+     * @param event the event returned by {@link #beginInsertRule()}
+     * @param href the href of the style sheet or null
+     * @param inputLength the length of the rule text
+     * @param ruleCount the number of rules of the style sheet
+     * @param errorCount the number of errors
+     */
+    public static void endInsertRule(final Object event, final String href, final long inputLength,
+            final int ruleCount, final int errorCount) {
+        SUPPORT.endInsertRule(event, href, inputLength, ruleCount, errorCount);
+    }
+
+    /**
+     * Starts a rule index build event.
+     *
+     * @return the event or null if not recorded
+     */
+    public static Object beginRuleIndexBuild() {
+        final CssEventSupport support = SUPPORT;
+        return support == null ? null : support.beginRuleIndexBuild();
+    }
+
+    /**
+     * Ends and commits a rule index build event.
+     *
+     * @param event the event returned by {@link #beginRuleIndexBuild()}
+     * @param href the href of the style sheet or null
+     * @param ruleCount the number of selector entries in the index
+     */
+    public static void endRuleIndexBuild(final Object event, final String href, final int ruleCount) {
+        SUPPORT.endRuleIndexBuild(event, href, ruleCount);
+    }
+
+    /**
+     * Starts a rule index lookup event.
+     *
+     * @return the event or null if not recorded
+     */
+    public static Object beginRuleIndexLookup() {
+        final CssEventSupport support = SUPPORT;
+        return support == null ? null : support.beginRuleIndexLookup();
+    }
+
+    /**
+     * Ends and commits a rule index lookup event.
+     *
+     * @param event the event returned by {@link #beginRuleIndexLookup()}
+     * @param elementName the element name looked up
+     * @param classCount the number of classes looked up
+     * @param entryCount the number of selector entries found
+     */
+    public static void endRuleIndexLookup(final Object event, final String elementName,
+            final int classCount, final int entryCount) {
+        SUPPORT.endRuleIndexLookup(event, elementName, classCount, entryCount);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Insertion of a rule into a style sheet.
+ *
+ * @author Ronald Brill
+ */
+@Name("com.gargoylesoftware.css.InsertRule")
+@Label("CSS Insert Rule")
+@Category({"HtmlUnit", "CSS"})
+@Description("Insertion of a rule into a style sheet.")
+final class InsertRuleEvent extends Event {
+
+    @Name("href")
+    @Label("Href")
+    private String href_;
+
+    @Name("inputLength")
+    @Label("Input Length")
+    @Description("The number of chars of the rule text")
+    private long inputLength_;
+
+    @Name("ruleCount")
+    @Label("Rule Count")
+    @Description("The number of rules of the style sheet after the insertion")
+    private int ruleCount_;
+
+    @Name("errorCount")
+    @Label("Error Count")
+    private int errorCount_;
+
+    void set(final String href, final long inputLength, final int ruleCount, final int errorCount) {
+        href_ = href;
+        inputLength_ = inputLength;
+        ruleCount_ = ruleCount;
+        errorCount_ = errorCount;
+    }
+}
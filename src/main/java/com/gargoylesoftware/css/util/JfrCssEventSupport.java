@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The {@link CssEventSupport} based on the Java Flight Recorder; loaded by {@link CssEvents}
+ * if running on Java 11 or later.
+ *
+ * @author Ronald Brill
+ */
+final class JfrCssEventSupport implements CssEventSupport {
+
+    /**
+     * Ctor.
+     * @throws IllegalStateException if the flight recorder is not available
+     */
+    JfrCssEventSupport() {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("The flight recorder is not available.");
+        }
+    }
+
+    private static Object begin(final Event event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Object beginParse() {
+        return begin(new ParseEvent());
+    }
+
+    @Override
+    public void endParse(final Object event, final String kind, final String href, final long inputLength,
+            final int ruleCount, final int errorCount) {
+        final ParseEvent parseEvent = (ParseEvent) event;
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.set(kind, href, inputLength, ruleCount, errorCount);
+            parseEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginInsertRule() {
+        return begin(new InsertRuleEvent());
+    }
+
+    @Override
+    public void endInsertRule(final Object event, final String href, final long inputLength,
+            final int ruleCount, final int errorCount) {
+        final InsertRuleEvent insertEvent = (InsertRuleEvent) event;
+        insertEvent.end();
+        if (insertEvent.shouldCommit()) {
+            insertEvent.set(href, inputLength, ruleCount, errorCount);
+            insertEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginRuleIndexBuild() {
+        return begin(new RuleIndexBuildEvent());
+    }
+
+    @Override
+    public void endRuleIndexBuild(final Object event, final String href, final int ruleCount) {
+        final RuleIndexBuildEvent buildEvent = (RuleIndexBuildEvent) event;
+        buildEvent.end();
+        if (buildEvent.shouldCommit()) {
+            buildEvent.set(href, ruleCount);
+            buildEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginRuleIndexLookup() {
+        return begin(new RuleIndexLookupEvent());
+    }
+
+    @Override
+    public void endRuleIndexLookup(final Object event, final String elementName,
+            final int classCount, final int entryCount) {
+        final RuleIndexLookupEvent lookupEvent = (RuleIndexLookupEvent) event;
+        lookupEvent.end();
+        if (lookupEvent.shouldCommit()) {
+            lookupEvent.set(elementName, classCount, entryCount);
+            lookupEvent.commit();
+        }
+    }
+}
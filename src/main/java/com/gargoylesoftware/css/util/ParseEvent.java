@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Parsing of a style sheet, style declaration, property value or selector list.
+ *
+ * @author Ronald Brill
+ */
+@Name("com.gargoylesoftware.css.Parse")
+@Label("CSS Parse")
+@Category({"HtmlUnit", "CSS"})
+@Description("Parsing of a style sheet, style declaration, property value or selector list.")
+final class ParseEvent extends Event {
+
+    @Name("kind")
+    @Label("Kind")
+    @Description("The kind of input: styleSheet, styleDeclaration, propertyValue or selectors")
+    private String kind_;
+
+    @Name("href")
+    @Label("Href")
+    private String href_;
+
+    @Name("inputLength")
+    @Label("Input Length")
+    @Description("The number of chars or bytes of the input, -1 if not known")
+    private long inputLength_;
+
+    @Name("ruleCount")
+    @Label("Rule Count")
+    @Description("The number of rules, declarations or selectors created")
+    private int ruleCount_;
+
+    @Name("errorCount")
+    @Label("Error Count")
+    private int errorCount_;
+
+    void set(final String kind, final String href, final long inputLength, final int ruleCount,
+            final int errorCount) {
+        kind_ = kind;
+        href_ = href;
+        inputLength_ = inputLength;
+        ruleCount_ = ruleCount;
+        errorCount_ = errorCount;
+    }
+}
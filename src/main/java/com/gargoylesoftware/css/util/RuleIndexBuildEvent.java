@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Building of the rule index of a style sheet (see {@code CSSStyleSheetImpl.buildRuleIndex()}).
+ *
+ * @author Ronald Brill
+ */
+@Name("com.gargoylesoftware.css.RuleIndexBuild")
+@Label("CSS Rule Index Build")
+@Category({"HtmlUnit", "CSS"})
+@Description("Building of the rule index of a style sheet.")
+final class RuleIndexBuildEvent extends Event {
+
+    @Name("href")
+    @Label("Href")
+    private String href_;
+
+    @Name("ruleCount")
+    @Label("Rule Count")
+    @Description("The number of selector entries in the index")
+    private int ruleCount_;
+
+    void set(final String href, final int ruleCount) {
+        href_ = href;
+        ruleCount_ = ruleCount;
+    }
+}
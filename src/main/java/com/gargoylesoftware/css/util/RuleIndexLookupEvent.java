@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lookup of the selectors for an element in the rule index.
+ *
+ * @author Ronald Brill
+ */
+@Name("com.gargoylesoftware.css.RuleIndexLookup")
+@Label("CSS Rule Index Lookup")
+@Category({"HtmlUnit", "CSS"})
+@Description("Lookup of the selectors for an element in the rule index.")
+@Enabled(false)
+@StackTrace(false)
+final class RuleIndexLookupEvent extends Event {
+
+    @Name("elementName")
+    @Label("Element Name")
+    private String elementName_;
+
+    @Name("classCount")
+    @Label("Class Count")
+    private int classCount_;
+
+    @Name("entryCount")
+    @Label("Entry Count")
+    private int entryCount_;
+
+    void set(final String elementName, final int classCount, final int entryCount) {
+        elementName_ = elementName;
+        classCount_ = classCount;
+        entryCount_ = entryCount;
+    }
+}
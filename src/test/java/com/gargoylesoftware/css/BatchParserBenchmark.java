@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.CSSOMBatchParser;
+import com.gargoylesoftware.css.parser.InputSource;
+
+/**
+ * Measures the throughput of the {@link CSSOMBatchParser} parsing the realworld
+ * style sheets from the test resources with different numbers of threads.
+ * This is not a test case; run the main method with the test classpath,
+ * e.g. <code>java -cp target/classes:target/test-classes:... com.gargoylesoftware.css.BatchParserBenchmark</code>.
+ * The optional arguments are the number of copies of every style sheet per
+ * batch and the thread counts to run; "virtual" uses virtual threads (if
+ * supported) with a concurrency of the number of processors.
+ *
+ * @author Ronald Brill
+ */
+public final class BatchParserBenchmark {
+
+    private BatchParserBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [copies [threads|virtual...]]
+     * @throws Exception in case of error
+     */
+    public static void main(final String[] args) throws Exception {
+        final int copies = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        final List<String> sheets = new ArrayList<>();
+        for (final String resource : ParserBenchmark.RESOURCES) {
+            try (InputStream is = BatchParserBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+                final String css = IOUtils.toString(is, StandardCharsets.UTF_8);
+                for (int i = 0; i < copies; i++) {
+                    sheets.add(css);
+                }
+            }
+        }
+
+        final List<String> configs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            configs.add(args[i]);
+        }
+        if (configs.isEmpty()) {
+            final int processors = Runtime.getRuntime().availableProcessors();
+            for (int threads = 1; threads < processors; threads *= 2) {
+                configs.add(Integer.toString(threads));
+            }
+            configs.add(Integer.toString(processors));
+            configs.add("virtual");
+        }
+        System.out.println(sheets.size() + " style sheets per batch, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        for (final String config : configs) {
+            final ExecutorService executor;
+            final int concurrency;
+            if ("virtual".equals(config)) {
+                executor = CSSOMBatchParser.newVirtualThreadExecutor();
+                if (executor == null) {
+                    System.out.println("virtual threads are not supported");
+                    continue;
+                }
+                concurrency = Runtime.getRuntime().availableProcessors();
+            }
+            else {
+                concurrency = Integer.parseInt(config);
+                executor = Executors.newFixedThreadPool(concurrency);
+            }
+            try {
+                run(config, new CSSOMBatchParser(executor, concurrency), sheets);
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static void run(final String name, final CSSOMBatchParser batch, final List<String> sheets)
+            throws Exception {
+        // warm up
+        parseAll(batch, sheets);
+        parseAll(batch, sheets);
+
+        final int iterations = 5;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parseAll(batch, sheets);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("%-8s threads %10.1f sheets/s",
+                name, sheets.size() * iterations / (elapsed / 1e9)));
+    }
+
+    private static void parseAll(final CSSOMBatchParser batch, final List<String> sheets) throws Exception {
+        final List<InputSource> sources = new ArrayList<>(sheets.size());
+        for (final String css : sheets) {
+            sources.add(new InputSource(css));
+        }
+        final List<CompletableFuture<CSSStyleSheetImpl>> results =
+                batch.parseStyleSheets(sources, ParserBenchmark.SILENT);
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get();
+    }
+}
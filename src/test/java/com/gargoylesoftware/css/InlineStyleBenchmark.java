@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.InputSource;
+import com.gargoylesoftware.css.parser.StyleDeclarationCache;
+
+/**
+ * Simple benchmark for {@link CSSOMParser#parseStyleDeclaration(CSSStyleDeclarationImpl, String)}
+ * with and without a {@link StyleDeclarationCache}. The workload simulates the inline styles of a
+ * template generated page: 20000 elements using 200 different declarations (taken from the
+ * realworld style sheets), a few of them very often.
+ * This is not a test case; run the main method with the test classpath,
+ * e.g. <code>java -cp target/classes:target/test-classes:... com.gargoylesoftware.css.InlineStyleBenchmark</code>.
+ * The optional argument is the number of iterations.
+ *
+ * @author Ronald Brill
+ */
+public final class InlineStyleBenchmark {
+
+    private static final int ELEMENTS = 20000;
+    private static final int STYLES = 200;
+
+    private InlineStyleBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [iterations]
+     * @throws Exception in case of error
+     */
+    public static void main(final String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        final Set<String> distinct = new LinkedHashSet<>();
+        try (InputStream is = InlineStyleBenchmark.class.getClassLoader()
+                .getResourceAsStream(ParserBenchmark.RESOURCES[0])) {
+            final String css = IOUtils.toString(is, StandardCharsets.UTF_8);
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setErrorHandler(ParserBenchmark.SILENT);
+            for (final AbstractCSSRuleImpl rule
+                    : parser.parseStyleSheet(new InputSource(css), null).getCssRules().getRules()) {
+                if (rule instanceof CSSStyleRuleImpl && distinct.size() < STYLES) {
+                    distinct.add(((CSSStyleRuleImpl) rule).getStyle().getCssText());
+                }
+            }
+        }
+        final List<String> styles = new ArrayList<>(distinct);
+        final Random random = new Random(4711);
+        final List<String> elements = new ArrayList<>(ELEMENTS);
+        for (int i = 0; i < ELEMENTS; i++) {
+            // skewed, the first styles are used much more often
+            final double r = random.nextDouble();
+            elements.add(styles.get((int) (r * r * r * styles.size())));
+        }
+        System.out.println(elements.size() + " elements, " + styles.size() + " styles, "
+                + iterations + " iterations");
+
+        run("uncached", new CSSOMParser(), elements, iterations);
+
+        final StyleDeclarationCache cache = new StyleDeclarationCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(cache);
+        run("cached", parser, elements, iterations);
+        System.out.println(cache);
+    }
+
+    private static void run(final String name, final CSSOMParser parser,
+            final List<String> elements, final int iterations) throws Exception {
+        parser.setErrorHandler(ParserBenchmark.SILENT);
+
+        // warm up
+        for (int i = 0; i < Math.max(1, iterations / 2); i++) {
+            parseAll(parser, elements);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parseAll(parser, elements);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final long heapStart = ParserBenchmark.usedHeap();
+        final List<CSSStyleDeclarationImpl> result = parseAll(parser, elements);
+        final long retained = ParserBenchmark.usedHeap() - heapStart;
+
+        System.out.println(String.format("%-16s %8.2f ms/iteration %10d KB retained (%d)",
+                name, elapsed / 1e6 / iterations, retained / 1024, result.size()));
+    }
+
+    private static List<CSSStyleDeclarationImpl> parseAll(final CSSOMParser parser,
+            final List<String> elements) throws Exception {
+        final List<CSSStyleDeclarationImpl> result = new ArrayList<>(elements.size());
+        for (final String style : elements) {
+            final CSSStyleDeclarationImpl sd = new CSSStyleDeclarationImpl(null);
+            parser.parseStyleDeclaration(sd, style);
+            result.add(sd);
+        }
+        return result;
+    }
+}
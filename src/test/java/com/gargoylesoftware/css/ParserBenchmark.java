@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.CSS3HandwrittenParser;
+import com.gargoylesoftware.css.parser.CSSErrorHandler;
+import com.gargoylesoftware.css.parser.CSSException;
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSParseException;
+import com.gargoylesoftware.css.parser.InputSource;
+
+/**
+ * Simple benchmark parsing the realworld style sheets from the test resources.
+ * This is not a test case; run the main method with the test classpath,
+ * e.g. <code>java -cp target/classes:target/test-classes:... com.gargoylesoftware.css.ParserBenchmark</code>.
+ * The optional arguments are the number of iterations and the
+ * names of the configurations to run; "default" and "handwritten" compare
+ * the generated parser with the {@link CSS3HandwrittenParser}, "parallel" splits
+ * the large style sheets and parses the parts using the common fork join pool
+ * (see {@link CSSOMParser#setForkJoinPool(ForkJoinPool)}; the allocation numbers
+ * only cover the calling thread), "lazy" only scans the rule boundaries and
+ * parses the rules on first access (see {@link CSSOMParser#setLazyParsing(boolean)}).
+ *
+ * @author Ronald Brill
+ */
+public final class ParserBenchmark {
+
+    static final String[] RESOURCES = {
+        "realworld/all.css",
+        "realworld/bootstrap_3_3_7_min.css",
+        "realworld/bootstrap_4_0_0.css",
+        "realworld/bootstrap_4_0_0_min.css",
+        "realworld/cargo.css",
+        "realworld/compass-homestyle.css",
+        "realworld/home.built.css",
+        "realworld/load.php.css",
+        "realworld/mui.css",
+        "realworld/normalize.css",
+        "realworld/style-V5-11.css",
+        "realworld/style.csx.css",
+        "realworld/www.css"
+    };
+
+    static final CSSErrorHandler SILENT = new CSSErrorHandler() {
+        @Override
+        public void warning(final CSSParseException exception) throws CSSException {
+        }
+
+        @Override
+        public void error(final CSSParseException exception) throws CSSException {
+        }
+
+        @Override
+        public void fatalError(final CSSParseException exception) throws CSSException {
+        }
+    };
+
+    private ParserBenchmark() {
+    }
+
+    /**
+     * @return the configurations to compare
+     */
+    private static Map<String, Supplier<CSSOMParser>> configurations() {
+        final Map<String, Supplier<CSSOMParser>> configs = new LinkedHashMap<>();
+        configs.put("default", () -> new CSSOMParser());
+        configs.put("noPositions", () -> {
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setPositionTracking(false);
+            return parser;
+        });
+        configs.put("handwritten", () -> new CSSOMParser(new CSS3HandwrittenParser()));
+        configs.put("parallel", () -> {
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setForkJoinPool(ForkJoinPool.commonPool());
+            return parser;
+        });
+        configs.put("lazy", () -> {
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setLazyParsing(true);
+            return parser;
+        });
+        return configs;
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [iterations [configuration...]]
+     * @throws Exception in case of error
+     */
+    public static void main(final String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        final List<String> sheets = new ArrayList<>();
+        long chars = 0;
+        for (final String resource : RESOURCES) {
+            try (InputStream is = ParserBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+                final String css = IOUtils.toString(is, StandardCharsets.UTF_8);
+                sheets.add(css);
+                chars += css.length();
+            }
+        }
+        System.out.println(sheets.size() + " style sheets, " + chars + " chars, " + iterations + " iterations");
+
+        final Map<String, Supplier<CSSOMParser>> configs = configurations();
+        final List<String> names = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            names.add(args[i]);
+        }
+        if (names.isEmpty()) {
+            names.addAll(configs.keySet());
+        }
+
+        for (final String name : names) {
+            final Supplier<CSSOMParser> config = configs.get(name);
+            if (config == null) {
+                System.out.println("unknown configuration '" + name + "'");
+                continue;
+            }
+            run(name, config, sheets, iterations);
+        }
+    }
+
+    private static void run(final String name, final Supplier<CSSOMParser> config,
+            final List<String> sheets, final int iterations) throws Exception {
+        // warm up
+        for (int i = 0; i < Math.max(1, iterations / 2); i++) {
+            parseAll(config, sheets);
+        }
+
+        final long allocatedStart = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parseAll(config, sheets);
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedStart;
+
+        final long heapStart = usedHeap();
+        final List<CSSStyleSheetImpl> result = parseAll(config, sheets);
+        final long retained = usedHeap() - heapStart;
+
+        System.out.println(String.format("%-16s %8.2f ms/iteration %10d KB allocated/iteration %10d KB retained (%d)",
+                name, elapsed / 1e6 / iterations,
+                allocated < 0 ? -1 : allocated / 1024 / iterations, retained / 1024, result.size()));
+    }
+
+    private static List<CSSStyleSheetImpl> parseAll(final Supplier<CSSOMParser> config,
+            final List<String> sheets) throws Exception {
+        final List<CSSStyleSheetImpl> result = new ArrayList<>(sheets.size());
+        for (final String css : sheets) {
+            final CSSOMParser parser = config.get();
+            parser.setErrorHandler(SILENT);
+            result.add(parser.parseStyleSheet(new InputSource(css), null));
+        }
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
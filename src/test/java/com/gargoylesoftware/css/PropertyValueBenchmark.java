@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSRuleListImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.Property;
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.InputSource;
+import com.gargoylesoftware.css.parser.PropertyValueCache;
+
+/**
+ * Simple benchmark for {@link CSSOMParser#parsePropertyValue(String)} with and without
+ * a {@link PropertyValueCache}. The workload are the values of all the declarations
+ * of the realworld style sheets in document order, the same mix of repeated values
+ * a script setting styles produces.
+ * This is not a test case; run the main method with the test classpath,
+ * e.g. <code>java -cp target/classes:target/test-classes:... com.gargoylesoftware.css.PropertyValueBenchmark</code>.
+ * The optional argument is the number of iterations.
+ *
+ * @author Ronald Brill
+ */
+public final class PropertyValueBenchmark {
+
+    private PropertyValueBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args [iterations]
+     * @throws Exception in case of error
+     */
+    public static void main(final String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        final List<String> values = new ArrayList<>();
+        for (final String resource : ParserBenchmark.RESOURCES) {
+            try (InputStream is = PropertyValueBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+                final String css = IOUtils.toString(is, StandardCharsets.UTF_8);
+                final CSSOMParser parser = new CSSOMParser();
+                parser.setErrorHandler(ParserBenchmark.SILENT);
+                collectValues(parser.parseStyleSheet(new InputSource(css), null).getCssRules(), values);
+            }
+        }
+        System.out.println(values.size() + " values, " + new HashSet<>(values).size() + " distinct, "
+                + iterations + " iterations");
+
+        run("uncached", new CSSOMParser(), values, iterations);
+
+        final PropertyValueCache cache = new PropertyValueCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+        run("cached", parser, values, iterations);
+        System.out.println(cache);
+    }
+
+    private static void collectValues(final CSSRuleListImpl rules, final List<String> values) {
+        for (final AbstractCSSRuleImpl rule : rules.getRules()) {
+            if (rule instanceof CSSStyleRuleImpl) {
+                for (final Property property : ((CSSStyleRuleImpl) rule).getStyle().getProperties()) {
+                    if (property.getValue() != null) {
+                        values.add(property.getValue().getCssText());
+                    }
+                }
+            }
+            else if (rule instanceof CSSMediaRuleImpl) {
+                collectValues(((CSSMediaRuleImpl) rule).getCssRules(), values);
+            }
+        }
+    }
+
+    private static void run(final String name, final CSSOMParser parser,
+            final List<String> values, final int iterations) throws Exception {
+        parser.setErrorHandler(ParserBenchmark.SILENT);
+
+        // warm up
+        for (int i = 0; i < Math.max(1, iterations / 2); i++) {
+            parseAll(parser, values);
+        }
+
+        final long start = System.nanoTime();
+        long chars = 0;
+        for (int i = 0; i < iterations; i++) {
+            chars += parseAll(parser, values);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("%-16s %8.2f ms/iteration (%d)",
+                name, elapsed / 1e6 / iterations, chars / iterations));
+    }
+
+    private static long parseAll(final CSSOMParser parser, final List<String> values) throws Exception {
+        long chars = 0;
+        for (final String value : values) {
+            chars += parser.parsePropertyValue(value).getCssText().length();
+        }
+        return chars;
+    }
+}
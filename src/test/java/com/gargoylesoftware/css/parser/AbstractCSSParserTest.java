@@ -79,6 +79,16 @@ public void tearDown() {
         Locale.setDefault(systemLocale_);
     }
 
+    /**
+     * Creates the parser used by the tests; override to run the tests
+     * with another parser implementation.
+     *
+     * @return a new parser
+     */
+    protected CSSOMParser createParser() {
+        return new CSSOMParser();
+    }
+
     /**
      * Helper.
      *
@@ -134,7 +144,7 @@ protected CSSStyleSheetImpl parse(final InputStream css,
 
     protected CSSStyleSheetImpl parse(final InputSource source,
             final int err, final int fatal, final int warn) throws IOException {
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -149,7 +159,7 @@ protected CSSStyleSheetImpl parse(final InputSource source,
 
     protected MediaQueryList parseMedia(final String media,
             final int err, final int fatal, final int warn) throws IOException {
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -163,7 +173,7 @@ protected MediaQueryList parseMedia(final String media,
     }
 
     protected SelectorList createSelectors(final String cssText) throws Exception {
-        return new CSSOMParser().parseSelectors(cssText);
+        return createParser().parseSelectors(cssText);
     }
 
     protected List<Condition> createConditions(final String cssText) throws Exception {
@@ -261,7 +271,7 @@ protected void selectorType(final String cssText, final SelectorType... selector
     }
 
     protected void checkErrorSelector(final String input, final String errorMsg) throws IOException {
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -276,7 +286,7 @@ protected void checkErrorSelector(final String input, final String errorMsg) thr
     }
 
     protected CSSStyleSheetImpl checkErrorSheet(final String input, final String errorMsg) throws IOException {
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+
+/**
+ * Runs all the {@link CSS3ParserTest} tests with the {@link CSS3HandwrittenParser}
+ * and compares the results of both parsers for the test corpus and random input.
+ *
+ * @author Ronald Brill
+ */
+public class CSS3HandwrittenParserTest extends CSS3ParserTest {
+
+    private static final String[] FRAGMENTS = {
+        " ", "\n", "/* c */", "{", "}", "(", ")", "[", "]", ";", ":", "::", ",", ".", "*", "/", "-", "+",
+        "=", ">", "~", "|", "!", "#", "#fff", "%", "'s'", "\"", "<!--", "-->", "~=", "|=", "^=", "$=", "*=",
+        "0", "12", "1.5", "a", "h1", "x", "px", "3em", "-2px", "50%", "10deg", "2s", "3dpi", "4foo", "inherit",
+        "and", "not", "only", "screen", "url(x.png)", "U+0-7F", "progid:a.b(c=1)", "calc(", "var(", "rgb(",
+        "rgba(", "hsl(", "not(", "lang(", "nth-child(", "--x", "@import", "@page", "@media", "@font-face",
+        "@charset", "@foo", "!important", "first-line", "before", "color", "a { b: c }", "p:hover", ".a#b",
+        "[x='y']", "@media screen { a { b: c } }", "1px solid red", "'str'",
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected CSSOMParser createParser() {
+        return new CSSOMParser(new CSS3HandwrittenParser());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sameResultTestCorpus() throws Exception {
+        final List<Path> files = corpus();
+        assertTrue(files.size() > 20);
+        for (final Path file : files) {
+            final String css = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertSameResult(css, file.getFileName().toString());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sameResultRandom() throws Exception {
+        final Random random = new Random(4711);
+        for (int i = 0; i < 3000; i++) {
+            final StringBuilder css = new StringBuilder();
+            final int count = 1 + random.nextInt(16);
+            for (int j = 0; j < count; j++) {
+                css.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameResult(css.toString(), css.toString());
+        }
+    }
+
+    private List<Path> corpus() throws Exception {
+        final Path root = Paths.get(getClass().getClassLoader().getResource("realworld").toURI()).getParent();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(".css")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void assertSameResult(final String css, final String name) throws Exception {
+        assertSameResult(css, name, p -> p.parseStyleSheet(new InputSource(new StringReader(css)), null));
+        assertSameResult(css, name, p -> p.parseStyleDeclaration(css));
+        assertSameResult(css, name, p -> p.parsePropertyValue(css));
+        assertSameResult(css, name, p -> p.parseSelectors(css));
+        assertSameResult(css, name, p -> p.parseMedia(css));
+        assertSameResult(css, name, p -> p.parseRule(css));
+    }
+
+    private void assertSameResult(final String css, final String name,
+            final ParserCall call) throws Exception {
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        final CSSOMParser expectedParser = new CSSOMParser();
+        expectedParser.setErrorHandler(expectedErrors);
+        final String expected = result(expectedParser, call);
+
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSOMParser parser = createParser();
+        parser.setErrorHandler(errors);
+        final String result = result(parser, call);
+
+        assertEquals(expected, result, name);
+        assertEquals(expectedErrors.getErrorMessage(), errors.getErrorMessage(), name);
+        assertEquals(expectedErrors.getErrorLines(), errors.getErrorLines(), name);
+        assertEquals(expectedErrors.getErrorColumns(), errors.getErrorColumns(), name);
+        assertEquals(expectedErrors.getWarningMessage(), errors.getWarningMessage(), name);
+    }
+
+    private static String result(final CSSOMParser parser, final ParserCall call) throws Exception {
+        try {
+            return String.valueOf(call.apply(parser));
+        }
+        catch (final RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * One of the parse methods of the {@link CSSOMParser}.
+     */
+    private interface ParserCall {
+        Object apply(CSSOMParser parser) throws Exception;
+    }
+}
@@ -26,6 +26,7 @@
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -33,6 +34,7 @@
 
 import com.gargoylesoftware.css.ErrorHandler;
 import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSFontFaceRuleImpl;
 import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
 import com.gargoylesoftware.css.dom.CSSRuleListImpl;
 import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
@@ -743,7 +745,7 @@ public void atRules1() throws Exception {
             + "h2 { color: red }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -789,7 +791,7 @@ public void atRules2() throws Exception {
             + "h1 {color: blue }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -834,7 +836,7 @@ public void atRules2b() throws Exception {
             + "h1 {color: blue }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -1142,7 +1144,7 @@ private void color(final String expected, final String cssText) throws Exception
     }
 
     private void color(final int errorCount, final String expected, final String cssText) throws Exception {
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1174,7 +1176,7 @@ private void color(final int errorCount, final String expected, final String css
     public void funct() throws Exception {
         final String cssText = "clip: foo(rect( 10px, 20em, 30px, max(40, blue(rgb(1,2,3))) ) )";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1265,7 +1267,7 @@ public void funct() throws Exception {
     public void calcPlus() throws Exception {
         final String cssText = "width: calc(100% + 80px)";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1305,7 +1307,7 @@ public void calcPlus() throws Exception {
     public void calcSum() throws Exception {
         final String cssText = "width: calc(42 - 16.4em)";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1345,7 +1347,7 @@ public void calcSum() throws Exception {
     public void calcSumWhitespace() throws Exception {
         String cssText = "width: calc(42 -16.4em)";
 
-        CSSOMParser parser = new CSSOMParser();
+        CSSOMParser parser = createParser();
         ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1364,7 +1366,7 @@ public void calcSumWhitespace() throws Exception {
 
         cssText = "width: calc(42-16.4em)";
 
-        parser = new CSSOMParser();
+        parser = createParser();
         errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1383,7 +1385,7 @@ public void calcSumWhitespace() throws Exception {
 
         cssText = "width: calc(42vh-16.4em)";
 
-        parser = new CSSOMParser();
+        parser = createParser();
         errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1406,7 +1408,7 @@ public void calcUnits() throws Exception {
         final String cssText = "width: calc(1cm + 2mm - 3in + 4px - 5pt + 6pc"
                 + " - 7em + 8ex - 9ch + 10rem -11vw + 12vh - 13vmin + 14vmax - 15%)";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1429,7 +1431,7 @@ public void calcUnits() throws Exception {
     public void calcComplex() throws Exception {
         final String cssText = "width: calc(14.1pc * 40mm / 1.2)";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1476,7 +1478,7 @@ public void calcComplex() throws Exception {
     public void calcCalc() throws Exception {
         final String cssText = "width: calc(14.1pc*(40mm/1.2))";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1644,7 +1646,7 @@ private void expression(final String cssText, final int err, final int fatal, fi
     public void beforeAfter() throws Exception {
         final String cssText = "heading:before { content: attr(test) \"testData\" }";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1677,7 +1679,7 @@ public void beforeAfter() throws Exception {
     public void rect() throws Exception {
         final String cssText = "clip: rect( 10px, 20px, 30px, 40px )";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1701,7 +1703,7 @@ public void rect() throws Exception {
     public void attr() throws Exception {
         final String cssText = "content: attr( data-foo )";
 
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
 
@@ -1851,7 +1853,7 @@ public void malformedDeclaration() throws Exception {
                     + "p { color:red;   background{;visibility:hidden}; display:block } /* same with recovery */\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -1923,7 +1925,7 @@ public void malformedDeclarationSkipOnlyDeclaration() throws Exception {
                             + "h3 { color: red& }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -1963,7 +1965,7 @@ public void malformedStatements() throws Exception {
                     + "p { color:blue; }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2042,7 +2044,7 @@ public void unexpectedEndOfStyleSheet() throws Exception {
                             + "  p:before { content: Hello";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2078,7 +2080,7 @@ public void unexpectedEndOfMediaRule() throws Exception {
                             + "  p:before { content: Hello }";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2113,7 +2115,7 @@ public void unexpectedEndOfPageRule() throws Exception {
         final String css = "@page :pageStyle { size: 21.0cm 29.7cm;";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2157,7 +2159,7 @@ public void unexpectedEndOfString() throws Exception {
                             + "}";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2200,7 +2202,7 @@ public void numbersOutsideDeclaration() throws Exception {
                             + ".green { color: green }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2233,7 +2235,7 @@ public void unbalancedRBraceAtEnd() throws Exception {
         final String css = ".red { color: red }\n}";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2349,7 +2351,7 @@ public void invalidCommaInDef() throws Exception {
         final String css = ".a, .b, { test: 1; }";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2376,7 +2378,7 @@ public void missingValue() throws Exception {
                            + "p { color: green }";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2409,7 +2411,7 @@ public void skipDeklarationsErrorBefore() throws Exception {
         final String css = ".a { test; color: green }";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2439,7 +2441,7 @@ public void skipDeklarationsErrorBetween() throws Exception {
         final String css = ".a { color: blue; test; background: green }";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2474,7 +2476,7 @@ public void skipJBossIssue() throws Exception {
                 + "}";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2787,7 +2789,7 @@ public void gradientIE6Style() throws Exception {
                             + ".h1 {filter: progid: }\n";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2835,7 +2837,7 @@ public void evalIEStyle() throws Exception {
                             + "}";
 
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final ErrorHandler errorHandler = new ErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -2920,6 +2922,40 @@ public void fontContainingForwardSlash() throws Exception {
         assertEquals("FontAwesome", value.item(6).getStringValue());
     }
 
+    /**
+     * @throws Exception in case of failure
+     */
+    @Test
+    public void hugeDataUrl() throws Exception {
+        final StringBuilder data = new StringBuilder("data:font/woff2;base64,");
+        while (data.length() < 300_000) {
+            data.append("d09GMgABAAAAAAm4AA0AAAAAEowAAAli+/=");
+        }
+
+        final String css = "@font-face { font-family: x; src: url( '" + data + "' ) format('woff2') }\n"
+                + "p { background: url(" + data + ") }\n"
+                + "div:before { content: \"" + data + "\" }";
+
+        final CSSStyleSheetImpl sheet = parse(css);
+        final CSSRuleListImpl rules = sheet.getCssRules();
+        assertEquals(3, rules.getLength());
+
+        CSSValueImpl value = ((CSSFontFaceRuleImpl) rules.getRules().get(0)).getStyle().getPropertyCSSValue("src");
+        assertEquals(data.toString(), value.item(0).getStringValue());
+        assertEquals("format(\"woff2\")", value.item(1).getCssText());
+
+        value = ((CSSStyleRuleImpl) rules.getRules().get(1)).getStyle().getPropertyCSSValue("background");
+        assertEquals(CSSPrimitiveValueType.CSS_URI, value.getPrimitiveType());
+        assertEquals(data.toString(), value.getStringValue());
+
+        value = ((CSSStyleRuleImpl) rules.getRules().get(2)).getStyle().getPropertyCSSValue("content");
+        assertEquals(CSSPrimitiveValueType.CSS_STRING, value.getPrimitiveType());
+        assertEquals(data.toString(), value.getStringValue());
+
+        // same result for all kind of char streams
+        assertEquals(sheet.toString(), createParser().parseStyleSheet(new InputSource(css), null).toString());
+    }
+
     /**
      * @throws Exception in case of failure
      */
@@ -3593,6 +3629,55 @@ public void commentNotClosed() throws Exception {
         assertEquals("p { color: red; }", rule.getCssText());
     }
 
+    /**
+     * Comments.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void commentSpecialCases() throws Exception {
+        // split to make checkstyle happy
+        final String css = "/*" + "*/p/**" + "*/{/*/ } */color/* * / *" + "*/:/*\n*/red/*/*" + "*/}"
+                + "h1 { color: /* } */ blue; }/* */";
+        final CSSStyleSheetImpl sheet = parse(css, 0, 0, 0);
+        final CSSRuleListImpl rules = sheet.getCssRules();
+
+        assertEquals(2, rules.getLength());
+        assertEquals("p { color: red; }", rules.getRules().get(0).getCssText());
+        assertEquals("h1 { color: blue; }", rules.getRules().get(1).getCssText());
+
+        // same for all kind of char streams
+        final byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        assertEquals(sheet.toString(),
+                createParser().parseStyleSheet(new InputSource(bytes, 0, bytes.length), null).toString());
+        assertEquals(sheet.toString(), createParser().parseStyleSheet(new InputSource(css), null).toString());
+    }
+
+    /**
+     * Comments.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void commentLong() throws Exception {
+        final StringBuilder comment = new StringBuilder("/*");
+        while (comment.length() < 100_000) {
+            comment.append(" * Licensed under the Apache License, Version 2.0 (the \"License\");\n");
+        }
+        comment.append("*/");
+
+        final String css = comment + "\np { color: red; }\n" + comment + "\nh1 {" + comment + "color: blue; }";
+        final CSSStyleSheetImpl sheet = parse(css, 0, 0, 0);
+        final CSSRuleListImpl rules = sheet.getCssRules();
+
+        assertEquals(2, rules.getLength());
+        assertEquals("p { color: red; }", rules.getRules().get(0).getCssText());
+        assertEquals("h1 { color: blue; }", rules.getRules().get(1).getCssText());
+
+        final int commentLines = comment.toString().split("\n").length;
+        assertEquals(commentLines + 1, ((CSSStyleRuleImpl) rules.getRules().get(0)).getLocator().getLineNumber());
+        assertEquals(2 * commentLines + 2,
+                ((CSSStyleRuleImpl) rules.getRules().get(1)).getLocator().getLineNumber());
+    }
+
     /**
      * Handle the famous star hack as smart as possible.
      * @throws Exception if any error occurs
@@ -3688,7 +3773,7 @@ public void unicodeEscaping() throws Exception {
 
     private void unicode(final String css, final String expected) throws IOException {
         final InputSource source = new InputSource(new StringReader(css));
-        final CSSOMParser parser = new CSSOMParser();
+        final CSSOMParser parser = createParser();
 
         final CSSStyleSheetImpl sheet = parser.parseStyleSheet(source, null);
         final CSSRuleListImpl rules = sheet.getCssRules();
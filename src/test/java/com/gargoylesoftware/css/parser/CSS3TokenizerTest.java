@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserTokenManager;
+import com.gargoylesoftware.css.parser.javacc.Token;
+import com.gargoylesoftware.css.parser.javacc.TokenMgrError;
+
+/**
+ * Tests for {@link CSS3Tokenizer}; all tokens are compared with the
+ * tokens of the generated {@link CSS3ParserTokenManager}.
+ *
+ * @author Ronald Brill
+ */
+public class CSS3TokenizerTest {
+
+    private static final String[] FRAGMENTS = {
+        " ", "\t", "\n", "\r\n", "\f", "/*", "*/", "/* x */", "{", "}", "(", ")", "[", "]", ";", ":", ",", ".",
+        "*", "/", "-", "+", "=", ">", "~", "|", "^", "$", "!", "#", "@", "%", "'", "\"", "\\", "<!--", "-->",
+        "~=", "|=", "^=", "$=", "*=", "0", "1", "12", ".5", "1e3", "1E-2", "e", "E", "a", "z", "_", "x", "f",
+        "px", "em", "rem", "ex", "ch", "vw", "vh", "vmin", "vmax", "cm", "mm", "in", "pt", "pc", "q", "deg",
+        "rad", "grad", "turn", "ms", "s", "hz", "khz", "dpi", "dpcm", "inherit", "and", "not", "only",
+        "url(", "u+", "U+0-7F", "U+4??", "progid:", "calc(", "var(", "rgb(", "hsl(", "not(", "lang(", "--",
+        "@import", "@page", "@media", "@font-face", "@charset", "@foo", "!important", "! /* */ important",
+        "\\31 ", "\\\n", "\\70 x", "\\50", "\\0000070", "\\\r\n", "\\ ", "\u00e4", "\u20ac", "\ud83d\ude00",
+        "\\e4", "\\P", "\\p", "\\i", "\\I",
+    };
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensSimple() throws Exception {
+        assertSameTokens("h1 { color: red }");
+        assertSameTokens("");
+        assertSameTokens(" ");
+        assertSameTokens("h1 {\n  color: red;\r\n  background: url( 'x.png' )\r}\n\n");
+        assertSameTokens("/* comment */ a /* second\n comment */ { }");
+        assertSameTokens("@media screen and (max-width: 100px) { p { margin: 1.5em -2px } }");
+        assertSameTokens("@import url(\"x.css\") screen; @charset \"utf-8\"; @font-face { }");
+        assertSameTokens("a[href^='http'], a[href$=\".pdf\"], a[title*=x], a[lang|=en], a[class~=b] { }");
+        assertSameTokens("p:not(.a) :lang(de) > b + i ~ u { top: calc(100% - 2px * 3) }");
+        assertSameTokens("a { --main-color: #06c; color: var(--main-color, rgb(1, 2, 3)) }");
+        assertSameTokens("a { filter: progid:DXImageTransform.Microsoft.Alpha(opacity=50) }");
+        assertSameTokens("@font-face { unicode-range: U+0025-00FF, u+4??; }");
+        assertSameTokens("a { width: 1px 2cm 3mm 4in 5pt 6pc 7q 8deg 9rad 10grad 11turn 12ms 13s }");
+        assertSameTokens("a { x: 1hz 2khz 3dpi 4dpcm 5% 6em 7rem 8ex 9ch 10vw 11vh 12vmin 13vmax 14foo }");
+        assertSameTokens("a { x: 1PX 2Em 3\\70 x 4p\\x 5\\50 X 6e3 7E-2px -.5 +3 }");
+        assertSameTokens("a { color: red ! important; x: y !/* c */important }");
+        assertSameTokens("<!-- a { } -->");
+        assertSameTokens("h1 { color: red } /* unterminated");
+        assertSameTokens("h1 { content: 'unterminated");
+        assertSameTokens("h1 { content: 'a\\\nb' \"\\\"\" }");
+        assertSameTokens(".\u00e4\u00f6\u00fc { font-family: \u5b8b\u4f53 }");
+        assertSameTokens(".\ud83d\ude00 { content: '\ud83d\ude00\ud83d\ude01' }");
+        assertSameTokens("a { b: url(\ud83d\ude00.png) url() url( ) url(x y) }");
+        assertSameTokens("\\31 23 { } .a\\:b { } \\");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensTestCorpus() throws Exception {
+        final List<Path> files = corpus();
+        assertTrue(files.size() > 20);
+        for (final Path file : files) {
+            assertSameTokens(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensRandom() throws Exception {
+        final Random random = new Random(4711);
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder css = new StringBuilder();
+            final int count = 1 + random.nextInt(12);
+            for (int j = 0; j < count; j++) {
+                css.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameTokens(css.toString());
+        }
+    }
+
+    private List<Path> corpus() throws Exception {
+        final Path root = Paths.get(getClass().getClassLoader().getResource("realworld").toURI()).getParent();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(".css")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSameTokens(final String css) throws Exception {
+        final CSS3ParserTokenManager expectedTokens =
+                new CSS3ParserTokenManager(new CssCharSequenceStream(css, 0, css.length(), 1, 1));
+        final CSS3Tokenizer tokens = new CSS3Tokenizer();
+        tokens.reset(new CssCharSequenceStream(css, 0, css.length(), 1, 1));
+
+        while (true) {
+            final Token expected;
+            try {
+                expected = expectedTokens.getNextToken();
+            }
+            catch (final TokenMgrError e) {
+                try {
+                    tokens.next();
+                }
+                catch (final TokenMgrError e2) {
+                    assertEquals(e.getMessage(), e2.getMessage(), css);
+                    return;
+                }
+                throw e;
+            }
+
+            final Token token = tokens.next();
+            final Supplier<String> msg = () -> "'" + css + "' token '" + expected.image + "'";
+            assertEquals(expected.kind, token.kind, msg);
+            assertEquals(expected.image, token.image, msg);
+            assertEquals(expected.beginLine, token.beginLine, msg);
+            assertEquals(expected.beginColumn, token.beginColumn, msg);
+            assertEquals(expected.endLine, token.endLine, msg);
+            assertEquals(expected.endColumn, token.endColumn, msg);
+
+            if (expected.kind == CSS3ParserConstants.EOF) {
+                return;
+            }
+        }
+    }
+}
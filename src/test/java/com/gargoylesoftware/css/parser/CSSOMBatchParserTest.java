@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for {@link CSSOMBatchParser}.
+ *
+ * @author Ronald Brill
+ */
+public class CSSOMBatchParserTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parseStyleSheets() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final CSSOMBatchParser batch = new CSSOMBatchParser(executor, 3);
+            final List<InputSource> sources = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final InputSource source = new InputSource("h" + i + " { color: red; width: " + i + "px }");
+                source.setURI("sheet" + i + ".css");
+                sources.add(source);
+            }
+
+            final List<CompletableFuture<CSSStyleSheetImpl>> results = batch.parseStyleSheets(sources, null);
+            assertEquals(100, results.size());
+            String colorName = null;
+            for (int i = 0; i < results.size(); i++) {
+                final CSSStyleSheetImpl sheet = results.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals("h" + i + " { color: red; width: " + i + "px; }", sheet.toString());
+                assertEquals("sheet" + i + ".css", sheet.getHref());
+
+                // the property names are shared
+                final String name = ((CSSStyleRuleImpl) sheet.getCssRules().getRules().get(0))
+                        .getStyle().getProperties().get(0).getName();
+                if (colorName == null) {
+                    colorName = name;
+                }
+                assertSame(colorName, name);
+            }
+            assertEquals(0, batch.getRunning());
+            assertEquals(0, batch.getQueued());
+            assertEquals(0, batch.getParserPool().getBorrowed());
+            assertTrue(batch.getParserPool().getMisses() <= 3);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsIsolated() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CSSOMBatchParser batch = new CSSOMBatchParser(executor, 2);
+
+            final InputSource missing = new InputSource((Reader) null);
+            missing.setURI(new File("target/does-not-exist.css").toURI().toString());
+
+            final ErrorHandler errorHandler1 = new ErrorHandler();
+            final ErrorHandler errorHandler3 = new ErrorHandler();
+            final CompletableFuture<CSSStyleSheetImpl> sheet1 =
+                    batch.parseStyleSheet(new InputSource("a { color: ; top: 0 }"), null, errorHandler1);
+            final CompletableFuture<CSSStyleSheetImpl> sheet2 =
+                    batch.parseStyleSheet(missing, null, null);
+            final CompletableFuture<CSSStyleSheetImpl> sheet3 =
+                    batch.parseStyleSheet(new InputSource("b { top: 1px }"), null, errorHandler3);
+
+            assertEquals("a { top: 0; }", sheet1.get().toString());
+            assertEquals(1, errorHandler1.getErrorCount());
+
+            final ExecutionException e = assertThrows(ExecutionException.class, () -> sheet2.get());
+            assertTrue(e.getCause() instanceof IOException);
+
+            assertEquals("b { top: 1px; }", sheet3.get().toString());
+            assertEquals(0, errorHandler3.getErrorCount());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void boundedConcurrency() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final AtomicInteger parsing = new AtomicInteger();
+            final AtomicInteger maxParsing = new AtomicInteger();
+
+            final CSSOMBatchParser batch = new CSSOMBatchParser(executor, 2);
+            final List<CompletableFuture<CSSStyleSheetImpl>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final Reader reader = new StringReader("p { top: " + i + "px }") {
+                    private boolean started_;
+
+                    @Override
+                    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                        if (!started_) {
+                            started_ = true;
+                            maxParsing.accumulateAndGet(parsing.incrementAndGet(), Math::max);
+                            try {
+                                Thread.sleep(2);
+                            }
+                            catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return super.read(cbuf, off, len);
+                    }
+
+                    @Override
+                    public void close() {
+                        if (started_) {
+                            // closed by the char stream and by the input source
+                            started_ = false;
+                            parsing.decrementAndGet();
+                        }
+                        super.close();
+                    }
+                };
+                results.add(batch.parseStyleSheet(new InputSource(reader), null, null));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("p { top: " + i + "px; }", results.get(i).get().toString());
+            }
+            assertTrue(maxParsing.get() <= 2, "max parsing " + maxParsing.get());
+            assertEquals(0, parsing.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void rejected() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        final CSSOMBatchParser batch = new CSSOMBatchParser(executor, 2);
+        final CompletableFuture<CSSStyleSheetImpl> sheet = batch.parseStyleSheet(new InputSource("p {}"), null, null);
+        assertTrue(sheet.isCompletedExceptionally());
+        assertEquals(0, batch.getRunning());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void callerRuns() throws Exception {
+        final List<InputSource> sources = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            sources.add(new InputSource("p { top: " + i + "px }"));
+        }
+
+        final CSSOMBatchParser batch = new CSSOMBatchParser(Runnable::run, 1);
+        final List<CompletableFuture<CSSStyleSheetImpl>> sheets = batch.parseStyleSheets(sources, null);
+        assertEquals(20000, sheets.size());
+        for (int i = 0; i < sheets.size(); i++) {
+            assertTrue(sheets.get(i).isDone());
+            assertEquals("p { top: " + i + "px; }", sheets.get(i).get().toString());
+        }
+        assertEquals(0, batch.getRunning());
+        assertEquals(0, batch.getQueued());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void virtualThreads() throws Exception {
+        ExecutorService executor = CSSOMBatchParser.newVirtualThreadExecutor();
+        if (executor == null) {
+            // not supported by this runtime
+            executor = Executors.newCachedThreadPool();
+        }
+        try {
+            final CountDownLatch done = new CountDownLatch(1);
+            final CSSOMBatchParser batch = new CSSOMBatchParser(executor, 1000);
+            batch.parseStyleSheet(new InputSource("p { top: 0 }"), null, null)
+                .thenRun(done::countDown);
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
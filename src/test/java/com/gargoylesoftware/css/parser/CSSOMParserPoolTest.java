@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+
+/**
+ * Tests for {@link CSSOMParserPool}.
+ *
+ * @author Ronald Brill
+ */
+public class CSSOMParserPoolTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void reuse() throws Exception {
+        final CSSOMParserPool pool = new CSSOMParserPool();
+
+        final CSSOMParser parser = pool.acquire();
+        assertEquals("red", parser.parsePropertyValue("red").getCssText());
+        pool.release(parser);
+
+        assertSame(parser, pool.acquire());
+        pool.release(parser);
+
+        assertEquals(2, pool.getHits() + pool.getMisses());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getContentions());
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(1, pool.getIdle());
+
+        pool.resetStatistics();
+        assertEquals(0, pool.getHits());
+        assertEquals(0, pool.getMisses());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void releaseResets() throws Exception {
+        final CSSOMParserPool pool = new CSSOMParserPool();
+
+        CSSOMParser parser = pool.acquire();
+        final ErrorHandler errorHandler = new ErrorHandler();
+        parser.setErrorHandler(errorHandler);
+        parser.setParentStyleSheet(new CSSStyleSheetImpl());
+        parser.parsePropertyValue("~");
+        assertEquals(1, errorHandler.getErrorCount());
+        pool.release(parser);
+
+        parser = pool.acquire();
+        assertNull(parser.getParentStyleSheet());
+        parser.parsePropertyValue("~");
+        final AbstractCSSRuleImpl rule = parser.parseRule("h1 { color: red }");
+        assertNull(rule.getParentStyleSheet());
+        pool.release(parser);
+
+        // the error went to the default handler
+        assertEquals(1, errorHandler.getErrorCount());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void contentionAndDiscards() throws Exception {
+        final CSSOMParserPool pool = new CSSOMParserPool(1, CSSOMParser::new);
+
+        final CSSOMParser parser1 = pool.acquire();
+        final CSSOMParser parser2 = pool.acquire();
+        assertNotSame(parser1, parser2);
+        assertEquals(2, pool.getMisses());
+        assertEquals(1, pool.getContentions());
+        assertEquals(2, pool.getBorrowed());
+
+        pool.release(parser1);
+        pool.release(parser2);
+        assertEquals(1, pool.getDiscards());
+        assertEquals(1, pool.getIdle());
+        assertEquals(0, pool.getBorrowed());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void defaultPoolUsedBySetters() throws Exception {
+        final CSSOMParserPool original = CSSOMParserPool.getDefault();
+        final CSSOMParserPool pool = new CSSOMParserPool(4, () -> new CSSOMParser(new CSS3HandwrittenParser()));
+        CSSOMParserPool.setDefault(pool);
+        try {
+            final CSSStyleDeclarationImpl style = new CSSStyleDeclarationImpl(null);
+            for (int i = 0; i < 10; i++) {
+                style.setProperty("width", i + "px", null);
+            }
+            style.setCssText("color: red; width: 1px");
+
+            assertEquals("color: red; width: 1px", style.getCssText());
+            assertEquals(1, pool.getMisses());
+            assertEquals(10, pool.getHits());
+        }
+        finally {
+            CSSOMParserPool.setDefault(original);
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void withParser() throws Exception {
+        final CSSOMParserPool pool = new CSSOMParserPool();
+        assertEquals("1px", pool.withParser(parser -> parser.parsePropertyValue("1px")).getCssText());
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(1, pool.getIdle());
+
+        // released on failure
+        final IOException e = assertThrows(IOException.class, () -> pool.withParser(parser -> {
+            throw new IOException("x");
+        }));
+        assertEquals("x", e.getMessage());
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(1, pool.getIdle());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void releaseDropsInput() throws Exception {
+        final AbstractCSSParser css3Parser = new CSS3Parser();
+        final CSSOMParserPool pool = new CSSOMParserPool(1, () -> new CSSOMParser(css3Parser));
+
+        final CSSOMParser parser = pool.acquire();
+        parser.setCollectStatistics(true);
+        parser.parseStyleSheet(new InputSource(new StringReader("h1 { color: red }")), null);
+        assertNotNull(css3Parser.getInputSource());
+        assertNotNull(parser.getStatistics());
+        pool.release(parser);
+
+        assertNull(css3Parser.getInputSource());
+        assertNull(parser.getStatistics());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedByThreads() throws Exception {
+        final CSSOMParserPool pool = new CSSOMParserPool(2, CSSOMParser::new);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int width = i;
+                results.add(executor.submit(() -> {
+                    final CSSOMParser parser = pool.acquire();
+                    try {
+                        return parser.parsePropertyValue(width + "px solid red").getCssText();
+                    }
+                    finally {
+                        pool.release(parser);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i + "px solid red", results.get(i).get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(200, pool.getHits() + pool.getMisses());
+        assertEquals(0, pool.getBorrowed());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.dom.CSSRuleListImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserTokenManager;
+import com.gargoylesoftware.css.parser.javacc.CharStream;
+import com.gargoylesoftware.css.parser.javacc.Token;
+import com.gargoylesoftware.css.parser.javacc.TokenMgrError;
+
+/**
+ * Tests for {@link CssCharSequenceStream}.
+ *
+ * @author Ronald Brill
+ */
+public class CssCharSequenceStreamTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensSimple() throws Exception {
+        assertSameTokens("h1 { color: red }");
+        assertSameTokens("");
+        assertSameTokens(" ");
+        assertSameTokens("\n");
+        assertSameTokens("h1 {\n  color: red;\r\n  background: url( 'x.png' )\r}\n\n");
+        assertSameTokens("/* comment */ a /* second\n comment */ { }");
+        assertSameTokens("p::after { content: \"\\\n\" }");
+        assertSameTokens("@media screen and (max-width: 100px) { p { margin: 1.5em -2px } }");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensLexicalError() throws Exception {
+        assertSameTokens("h1 { color: red } /* unterminated\n comment");
+        assertSameTokens("h1 { content: 'unterminated");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensRealWorld() throws Exception {
+        assertSameTokens(resource("realworld/all.css"));
+        assertSameTokens(resource("realworld/bootstrap_4_0_0.css"));
+        assertSameTokens(resource("realworld/bootstrap_3_3_7_min.css"));
+        assertSameTokens(resource("realworld/normalize.css"));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void slice() throws Exception {
+        final String css = "xxxxh1 { color: red }\np { margin: 0 }yyyy";
+
+        final CSSOMParser parser = new CSSOMParser();
+        final InputSource source = new InputSource(css, 4, css.length() - 8);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(source, null);
+
+        final CSSRuleListImpl rules = sheet.getCssRules();
+        assertEquals(2, rules.getLength());
+        assertEquals("h1 { color: red; }", rules.getRules().get(0).getCssText());
+        assertEquals("p { margin: 0; }", rules.getRules().get(1).getCssText());
+
+        final CSSStyleRuleImpl rule = (CSSStyleRuleImpl) rules.getRules().get(1);
+        assertEquals(2, rule.getLocator().getLineNumber());
+        assertEquals(1, rule.getLocator().getColumnNumber());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void charArraySlice() throws Exception {
+        final char[] css = "--h1 { color: red }--".toCharArray();
+
+        final CSSOMParser parser = new CSSOMParser();
+        final InputSource source = new InputSource(css, 2, css.length - 4);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(source, null);
+
+        final CSSRuleListImpl rules = sheet.getCssRules();
+        assertEquals(1, rules.getLength());
+        assertEquals("h1 { color: red; }", rules.getRules().get(0).getCssText());
+        assertEquals(1, rules.getRules().get(0).getLocator().getColumnNumber());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void charSequence() throws Exception {
+        final StringBuilder css = new StringBuilder("h1 { color: red }");
+
+        final CSSOMParser parser = new CSSOMParser();
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), null);
+        assertEquals("h1 { color: red; }", sheet.getCssRules().getRules().get(0).getCssText());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void startLineColumn() throws Exception {
+        final CharStream stream = new CssCharSequenceStream("ab\ncd", 7, 5);
+        final CSS3ParserTokenManager tokenManager = new CSS3ParserTokenManager(stream);
+
+        Token token = tokenManager.getNextToken();
+        assertEquals("ab", token.image);
+        assertEquals(7, token.beginLine);
+        assertEquals(5, token.beginColumn);
+        assertEquals(6, token.endColumn);
+
+        tokenManager.getNextToken();
+        token = tokenManager.getNextToken();
+        assertEquals("cd", token.image);
+        assertEquals(8, token.beginLine);
+        assertEquals(1, token.beginColumn);
+    }
+
+    private String resource(final String name) throws Exception {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(name)) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void assertSameTokens(final String css) throws Exception {
+        final CSS3ParserTokenManager expectedTokens =
+                new CSS3ParserTokenManager(new CssCharStream(new StringReader(css), 1, 1));
+        final CSS3ParserTokenManager tokens =
+                new CSS3ParserTokenManager(new CssCharSequenceStream(css, 1, 1));
+
+        while (true) {
+            final Token expected;
+            try {
+                expected = expectedTokens.getNextToken();
+            }
+            catch (final TokenMgrError e) {
+                try {
+                    tokens.getNextToken();
+                }
+                catch (final TokenMgrError e2) {
+                    assertEquals(e.getMessage(), e2.getMessage());
+                    return;
+                }
+                throw e;
+            }
+
+            final Token token = tokens.getNextToken();
+            assertEquals(expected.kind, token.kind);
+            assertEquals(expected.image, token.image);
+            assertEquals(expected.beginLine, token.beginLine, "beginLine of '" + token.image + "'");
+            assertEquals(expected.beginColumn, token.beginColumn, "beginColumn of '" + token.image + "'");
+            assertEquals(expected.endLine, token.endLine, "endLine of '" + token.image + "'");
+            assertEquals(expected.endColumn, token.endColumn, "endColumn of '" + token.image + "'");
+
+            if (expected.kind == CSS3ParserConstants.EOF) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserTokenManager;
+import com.gargoylesoftware.css.parser.javacc.Token;
+import com.gargoylesoftware.css.parser.javacc.TokenMgrError;
+
+/**
+ * Tests for {@link CssUtf8Stream}; all results are compared with the
+ * results of the char based {@link CssCharStream}.
+ *
+ * @author Ronald Brill
+ */
+public class CssUtf8StreamTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensSimple() throws Exception {
+        assertSameTokens("h1 { color: red }");
+        assertSameTokens("");
+        assertSameTokens(" ");
+        assertSameTokens("h1 {\n  color: red;\r\n  background: url( 'x.png' )\r}\n\n");
+        assertSameTokens("/* comment */ a /* second\n comment */ { }");
+        assertSameTokens("@media screen and (max-width: 100px) { p { margin: 1.5em -2px } }");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensMultiByte() throws Exception {
+        assertSameTokens("h1:before { content: \"\u00fe - \u00e4 - \u20ac\" }");
+        assertSameTokens(".\u00e4\u00f6\u00fc { font-family: \u5b8b\u4f53 }");
+        assertSameTokens(".\ud83d\ude00 { content: '\ud83d\ude00\ud83d\ude01' }");
+        assertSameTokens("#\ud83d\ude00\ud83d\ude00 /* \ud83d\ude00 */ { }");
+        assertSameTokens("a { b: url(\ud83d\ude00.png) }");
+        assertSameTokens("\ud83d\ude00");
+        assertSameTokens("\u00e4");
+        assertSameTokens("a\ud83d\ude00");
+        assertSameTokens("\ud83d\ude00 {");
+        assertSameTokens("h1 { color: red } /* unterminated \u00e4\ud83d\ude00");
+        assertSameTokens("h1 { content: 'unterminated \u00e4\ud83d\ude00");
+        assertSameTokens("\ufeffh1 { color: red }");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensTestCorpus() throws Exception {
+        final List<Path> files = corpus();
+        assertTrue(files.size() > 20);
+        for (final Path file : files) {
+            assertSameTokens(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parseTestCorpus() throws Exception {
+        for (final Path file : corpus()) {
+            final byte[] bytes = Files.readAllBytes(file);
+
+            final ErrorHandler expectedErrors = new ErrorHandler();
+            CSSOMParser parser = new CSSOMParser();
+            parser.setErrorHandler(expectedErrors);
+            // the reference is decoded using the sniffed encoding (e.g. the utf-16 bom of test-unicode.css)
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final Charset charset = EncodingSniffer.sniff(buffer, null);
+            final String css = new String(bytes, buffer.position(), buffer.remaining(), charset);
+            final CSSStyleSheetImpl expected = parser.parseStyleSheet(new InputSource(new StringReader(css)), null);
+
+            final ErrorHandler errors = new ErrorHandler();
+            parser = new CSSOMParser();
+            parser.setErrorHandler(errors);
+            final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(bytes, 0, bytes.length), null);
+
+            final String name = file.getFileName().toString();
+            assertEquals(expected.toString(), sheet.toString(), name);
+            assertEquals(expectedErrors.getErrorMessage(), errors.getErrorMessage(), name);
+            assertEquals(expectedErrors.getErrorLines(), errors.getErrorLines(), name);
+            assertEquals(expectedErrors.getErrorColumns(), errors.getErrorColumns(), name);
+            assertEquals(expectedErrors.getWarningMessage(), errors.getWarningMessage(), name);
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void directBuffer() throws Exception {
+        final String css = ".\u00e4\ud83d\ude00 { content: '\u20ac' }";
+        final byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+
+        final CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(new InputSource(buffer), null);
+        assertEquals("*.\u00e4\ud83d\ude00 { content: \"\u20ac\"; }", sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void slice() throws Exception {
+        final byte[] bytes = "xx.\u00e4 { color: red }yy".getBytes(StandardCharsets.UTF_8);
+
+        final CSSStyleSheetImpl sheet =
+                new CSSOMParser().parseStyleSheet(new InputSource(bytes, 2, bytes.length - 4), null);
+        assertEquals("*.\u00e4 { color: red; }", sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void malformed() throws Exception {
+        final byte[] bytes = {'.', 'a', (byte) 0xe2, (byte) 0x82, 'b', ' ', '{', ' ', '}'};
+
+        final CSSStyleSheetImpl sheet =
+                new CSSOMParser().parseStyleSheet(new InputSource(bytes, 0, bytes.length), null);
+        assertEquals("*.a\ufffd\ufffdb { }", sheet.toString());
+    }
+
+    private List<Path> corpus() throws Exception {
+        final Path root = Paths.get(getClass().getClassLoader().getResource("realworld").toURI()).getParent();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(".css")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void assertSameTokens(final String css) throws Exception {
+        final CSS3ParserTokenManager expectedTokens =
+                new CSS3ParserTokenManager(new CssCharStream(new StringReader(css), 1, 1));
+        final byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        final CSS3ParserTokenManager tokens =
+                new CSS3ParserTokenManager(new CssUtf8Stream(bytes, 0, bytes.length, 1, 1));
+
+        while (true) {
+            final Token expected;
+            try {
+                expected = expectedTokens.getNextToken();
+            }
+            catch (final TokenMgrError e) {
+                try {
+                    tokens.getNextToken();
+                }
+                catch (final TokenMgrError e2) {
+                    assertEquals(e.getMessage(), e2.getMessage());
+                    return;
+                }
+                throw e;
+            }
+
+            final Token token = tokens.getNextToken();
+            assertEquals(expected.kind, token.kind);
+            assertEquals(expected.image, token.image);
+            assertEquals(expected.beginLine, token.beginLine, "beginLine of '" + token.image + "'");
+            assertEquals(expected.beginColumn, token.beginColumn, "beginColumn of '" + token.image + "'");
+            assertEquals(expected.endLine, token.endLine, "endLine of '" + token.image + "'");
+            assertEquals(expected.endColumn, token.endColumn, "endColumn of '" + token.image + "'");
+
+            if (expected.kind == CSS3ParserConstants.EOF) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.dom.CSSValueImpl;
+import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+
+/**
+ * Tests for deeply nested input; the tests run with a small stack.
+ *
+ * @author Ronald Brill
+ */
+public class DeepNestingTest {
+
+    private static final int DEPTH = 20000;
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void values() throws Exception {
+        final String[] values = {
+            repeat("calc(", DEPTH) + "1px" + repeat(")", DEPTH),
+            "calc(" + repeat("(", DEPTH) + "1px" + repeat(")", DEPTH) + ")",
+            "calc(1px / " + repeat("(", DEPTH) + "2" + repeat(")", DEPTH) + ")",
+            repeat("f(", DEPTH) + "1" + repeat(")", DEPTH),
+            repeat("var(--x, ", DEPTH) + "1" + repeat(")", DEPTH),
+        };
+        for (final String value : values) {
+            final String css = "a { width: " + value + "; color: red }\nb { top: 0 }";
+            for (final AbstractCSSParser parser : new AbstractCSSParser[] {new CSS3Parser(), new CSS3HandwrittenParser()}) {
+                final ErrorHandler errors = new ErrorHandler();
+                final CSSStyleSheetImpl sheet = parseWithSmallStack(parser, css, errors);
+                assertEquals("a { color: red; }\r\nb { top: 0; }", sheet.toString());
+                assertEquals(1, errors.getErrorCount());
+                assertEquals("The nesting depth of the value is greater than 128.",
+                        errors.getErrorMessage());
+                assertEquals("1", errors.getErrorLines());
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void blocks() throws Exception {
+        final String[] sheets = {
+            "@foo { " + repeat("{", DEPTH) + repeat("}", DEPTH) + " }\nb { top: 0 }",
+            "a { @x " + repeat("{", DEPTH) + repeat("}", DEPTH) + " }\nb { top: 0 }",
+            "a { x: ! " + repeat("(", DEPTH) + repeat(")", DEPTH) + " }\nb { top: 0 }",
+            repeat("a:not(", DEPTH) + "b" + repeat(")", DEPTH) + " {}\nb { top: 0 }",
+        };
+        for (final String css : sheets) {
+            for (final AbstractCSSParser parser : new AbstractCSSParser[] {new CSS3Parser(), new CSS3HandwrittenParser()}) {
+                final CSSStyleSheetImpl sheet = parseWithSmallStack(parser, css, new ErrorHandler());
+                assertEquals("b { top: 0; }", sheet.getCssRules().getRules()
+                        .get(sheet.getCssRules().getLength() - 1).getCssText());
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void selectors() throws Exception {
+        final String[] sheets = {
+            "a" + repeat(":not(", DEPTH) + "b" + repeat(")", DEPTH) + " { top: 1px }\nb { top: 0 }",
+            repeat(":not(", DEPTH) + repeat(")", DEPTH) + " { top: 1px }\nb { top: 0 }",
+        };
+        for (final String css : sheets) {
+            for (final AbstractCSSParser parser : new AbstractCSSParser[] {new CSS3Parser(), new CSS3HandwrittenParser()}) {
+                final ErrorHandler errors = new ErrorHandler();
+                final CSSStyleSheetImpl sheet = parseWithSmallStack(parser, css, errors);
+                assertEquals("b { top: 0; }", sheet.toString());
+                assertEquals(1, errors.getErrorCount());
+                assertEquals("The nesting depth of the selector is greater than 128.", errors.getErrorMessage());
+                assertEquals("1", errors.getErrorLines());
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void mediaRules() throws Exception {
+        final String css = repeat("@media screen { ", DEPTH) + "a { top: 1px }" + repeat(" }", DEPTH)
+                + "\nb { top: 0 }";
+        for (final AbstractCSSParser parser : new AbstractCSSParser[] {new CSS3Parser(), new CSS3HandwrittenParser()}) {
+            final ErrorHandler errors = new ErrorHandler();
+            final CSSStyleSheetImpl sheet = parseWithSmallStack(parser, css, errors);
+            assertEquals(2, sheet.getCssRules().getLength());
+            assertEquals("b { top: 0; }", sheet.getCssRules().getRules().get(1).getCssText());
+            assertEquals(1, errors.getErrorCount());
+            assertEquals("The nesting depth of the rule is greater than 128.", errors.getErrorMessage());
+            assertEquals("1", errors.getErrorLines());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void maxNestingDepthOfSelectorsAndRules() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        final ErrorHandler errors = new ErrorHandler();
+        parser.setErrorHandler(errors);
+        parser.setMaxValueNestingDepth(2);
+
+        assertEquals("*:not(:not(a))", parser.parseSelectors(":not(:not(a))").toString());
+        assertNull(parser.parseSelectors(":not(:not(:not(a)))"));
+        assertEquals(1, errors.getErrorCount());
+        assertEquals("The nesting depth of the selector is greater than 2.", errors.getErrorMessage());
+
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(
+                "@media print { @media screen { a { top: 1px } } }\n"
+                + "@media print { @media screen { @media all { b { top: 2px } } } }"), null);
+        assertEquals("@media print {\n  @media screen {\n  a { top: 1px; }\n}\n}\r\n"
+                + "@media print {\n  @media screen {\n}\n}", sheet.toString());
+        assertEquals(2, errors.getErrorCount());
+        assertEquals("The nesting depth of the selector is greater than 2."
+                + " The nesting depth of the rule is greater than 2.", errors.getErrorMessage());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void maxValueNestingDepth() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        final ErrorHandler errors = new ErrorHandler();
+        parser.setErrorHandler(errors);
+
+        final String deepest = repeat("f(", AbstractCSSParser.DEFAULT_MAX_VALUE_NESTING_DEPTH) + "1"
+                + repeat(")", AbstractCSSParser.DEFAULT_MAX_VALUE_NESTING_DEPTH);
+        assertEquals(deepest, parser.parsePropertyValue(deepest).getCssText());
+        assertEquals(0, errors.getErrorCount());
+
+        parser.setMaxValueNestingDepth(3);
+        assertEquals("f(calc((1px + 2px)))", parser.parsePropertyValue("f(calc((1px + 2px)))").getCssText());
+        assertNull(parser.parsePropertyValue("f(g(h(i(1))))"));
+        assertEquals(1, errors.getErrorCount());
+        assertEquals("The nesting depth of the value is greater than 3.", errors.getErrorMessage());
+        assertEquals("1", errors.getErrorLines());
+        assertEquals("7", errors.getErrorColumns());
+
+        // the depth is reset after the error
+        assertEquals("f(g(h(1)))", parser.parsePropertyValue("f(g(h(1)))").getCssText());
+
+        assertThrows(IllegalArgumentException.class, () -> parser.setMaxValueNestingDepth(0));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void serialize() throws Exception {
+        final int depth = 100000;
+        LexicalUnit value = LexicalUnitImpl.createNumber(null, 1);
+        for (int i = 0; i < depth; i++) {
+            value = LexicalUnitImpl.createFunction(null, "f", value);
+        }
+        final LexicalUnitImpl deep = (LexicalUnitImpl) value;
+
+        final AtomicReference<String> text = new AtomicReference<>();
+        final AtomicReference<String> copyText = new AtomicReference<>();
+        final AtomicReference<String> cssValueText = new AtomicReference<>();
+        runWithSmallStack(() -> {
+            text.set(deep.getCssText());
+            copyText.set(deep.copy().getCssText());
+            cssValueText.set(new CSSValueImpl(deep).getCssText());
+        });
+        assertEquals(depth * 3 + 1, text.get().length());
+        assertEquals(repeat("f(", depth) + "1" + repeat(")", depth), text.get());
+        assertEquals(text.get(), copyText.get());
+        assertEquals(text.get(), cssValueText.get());
+    }
+
+    private static CSSStyleSheetImpl parseWithSmallStack(final AbstractCSSParser parser, final String css,
+            final ErrorHandler errors) throws Exception {
+        final AtomicReference<CSSStyleSheetImpl> sheet = new AtomicReference<>();
+        runWithSmallStack(() -> {
+            final CSSOMParser cssomParser = new CSSOMParser(parser);
+            cssomParser.setErrorHandler(errors);
+            try {
+                sheet.set(cssomParser.parseStyleSheet(new InputSource(css), null));
+            }
+            catch (final java.io.IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return sheet.get();
+    }
+
+    private static void runWithSmallStack(final Runnable runnable) throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread thread = new Thread(null, () -> {
+            try {
+                runnable.run();
+            }
+            catch (final Throwable e) {
+                failure.set(e);
+            }
+        }, "small-stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static String repeat(final String s, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for the different kinds of {@link InputSource}.
+ *
+ * @author Ronald Brill
+ */
+public class InputSourceTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void mappedFileRealWorld() throws Exception {
+        final Path file = Paths.get(getClass().getClassLoader().getResource("realworld/all.css").toURI());
+
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        final CSSStyleSheetImpl expected;
+        try (InputStream is = Files.newInputStream(file)) {
+            final CSSOMParser parser = new CSSOMParser();
+            parser.setErrorHandler(expectedErrors);
+            expected = parser.parseStyleSheet(
+                    new InputSource(new InputStreamReader(is, StandardCharsets.UTF_8)), null);
+        }
+
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(errors);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(file, StandardCharsets.UTF_8), null);
+
+        assertEquals(expected.getCssRules().getLength(), sheet.getCssRules().getLength());
+        assertEquals(expected.toString(), sheet.toString());
+        assertEquals(expectedErrors.getErrorCount(), errors.getErrorCount());
+        assertEquals(expectedErrors.getErrorLines(), errors.getErrorLines());
+        assertEquals(expectedErrors.getErrorColumns(), errors.getErrorColumns());
+    }
+
+    /**
+     * @param tempDir the temp dir
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void mappedFileCharset(@TempDir final Path tempDir) throws Exception {
+        final String css = "h1:before { content: \"\u00fe - \u00e4\" }";
+
+        Path file = tempDir.resolve("utf8.css");
+        Files.write(file, css.getBytes(StandardCharsets.UTF_8));
+        CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(new InputSource(file, StandardCharsets.UTF_8), null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+
+        file = tempDir.resolve("latin1.css");
+        Files.write(file, css.getBytes(StandardCharsets.ISO_8859_1));
+        sheet = new CSSOMParser().parseStyleSheet(new InputSource(file, StandardCharsets.ISO_8859_1), null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+    }
+
+    /**
+     * @param tempDir the temp dir
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void mappedFileEmpty(@TempDir final Path tempDir) throws Exception {
+        final Path file = tempDir.resolve("empty.css");
+        Files.write(file, new byte[0]);
+
+        final CSSStyleSheetImpl sheet =
+                new CSSOMParser().parseStyleSheet(new InputSource(file, StandardCharsets.UTF_8), null);
+        assertEquals(0, sheet.getCssRules().getLength());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void byteBufferReaderSmallReads() throws Exception {
+        final String text = "a\u00e4\ud83d\ude00b\u20ac\ud83d\ude01";
+        final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+        final StringBuilder result = new StringBuilder();
+        try (Reader reader = new ByteBufferReader(bytes, StandardCharsets.UTF_8.newDecoder())) {
+            final char[] buffer = new char[1];
+            int read = reader.read(buffer, 0, 1);
+            while (read != -1) {
+                assertEquals(1, read);
+                result.append(buffer[0]);
+                read = reader.read(buffer, 0, 1);
+            }
+        }
+        assertEquals(text, result.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void byteBufferReaderMalformed() throws Exception {
+        final byte[] bytes = {'a', (byte) 0xc3, 'b'};
+
+        final char[] buffer = new char[10];
+        try (Reader reader = new ByteBufferReader(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8.newDecoder())) {
+            final int read = reader.read(buffer, 0, buffer.length);
+            assertEquals(new String(bytes, StandardCharsets.UTF_8), new String(buffer, 0, read));
+            assertEquals(-1, reader.read(buffer, 0, buffer.length));
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sniffDefault() throws Exception {
+        assertEquals(StandardCharsets.UTF_8, sniff(new byte[0], null));
+        assertEquals(StandardCharsets.UTF_8, sniff("h1 { color: red }".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset \"foo-bar\";".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset \"utf-16\";".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset \"utf-16le\";".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("h1 { color: red }".getBytes(StandardCharsets.US_ASCII), "foo"));
+
+        // only the exact syntax is detected
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset 'iso-8859-2';".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset  \"iso-8859-2\";".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@CHARSET \"iso-8859-2\";".getBytes(StandardCharsets.US_ASCII), null));
+        assertEquals(StandardCharsets.UTF_8, sniff("@charset \"iso-8859-2\"".getBytes(StandardCharsets.US_ASCII), null));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sniffPrecedence() throws Exception {
+        final byte[] bom = {(byte) 0xfe, (byte) 0xff, 0, 'a'};
+        final byte[] charsetRule = "@charset \"iso-8859-2\";".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(StandardCharsets.UTF_16BE, sniff(bom, "iso-8859-5"));
+        assertEquals(Charset.forName("iso-8859-5"), sniff(charsetRule, "iso-8859-5"));
+        assertEquals(Charset.forName("iso-8859-2"), sniff(charsetRule, null));
+        assertEquals(Charset.forName("iso-8859-2"), sniff(charsetRule, "unknown-encoding"));
+
+        // labels from the encoding standard
+        assertEquals(Charset.forName("windows-1252"), sniff(charsetRule, " Latin1 "));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sniffBom() throws Exception {
+        final ByteBuffer bytes = ByteBuffer.wrap(new byte[] {(byte) 0xef, (byte) 0xbb, (byte) 0xbf, 'a'});
+        assertEquals(StandardCharsets.UTF_8, EncodingSniffer.sniff(bytes, null));
+        assertEquals(3, bytes.position());
+
+        assertEquals(StandardCharsets.UTF_16LE, sniff(new byte[] {(byte) 0xff, (byte) 0xfe}, null));
+    }
+
+    private static Charset sniff(final byte[] bytes, final String protocolEncoding) {
+        return EncodingSniffer.sniff(ByteBuffer.wrap(bytes), protocolEncoding);
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void bytesCharsetRule() throws Exception {
+        final String css = "@charset \"iso-8859-1\";\nh1:before { content: \"\u00fe - \u00e4\" }";
+        final byte[] bytes = css.getBytes(StandardCharsets.ISO_8859_1);
+
+        CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(new InputSource(bytes, 0, bytes.length), null);
+        assertEquals("@charset \"iso-8859-1\";\r\nh1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+
+        sheet = new CSSOMParser().parseStyleSheet(new InputSource(new ByteArrayInputStream(bytes)), null);
+        assertEquals("@charset \"iso-8859-1\";\r\nh1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void bytesProtocolEncoding() throws Exception {
+        final String css = "h1:before { content: \"\u00fe - \u00e4\" }";
+        final byte[] bytes = css.getBytes(StandardCharsets.ISO_8859_1);
+
+        InputSource source = new InputSource(bytes, 0, bytes.length);
+        source.setEncoding("ISO-8859-1");
+        CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(source, null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+
+        source = new InputSource(new ByteArrayInputStream(bytes));
+        source.setEncoding("ISO-8859-1");
+        sheet = new CSSOMParser().parseStyleSheet(source, null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void bytesBom() throws Exception {
+        final String css = "\ufeffh1:before { content: \"\u00fe - \u00e4\" }";
+
+        byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(new InputSource(bytes, 0, bytes.length), null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+
+        bytes = css.getBytes(StandardCharsets.UTF_16BE);
+        sheet = new CSSOMParser().parseStyleSheet(new InputSource(new ByteArrayInputStream(bytes)), null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+
+        bytes = css.getBytes(StandardCharsets.UTF_16LE);
+        final InputSource source = new InputSource(new ByteArrayInputStream(bytes));
+        source.setEncoding("iso-8859-1");
+        sheet = new CSSOMParser().parseStyleSheet(source, null);
+        assertEquals("h1:before { content: \"\u00fe - \u00e4\"; }", sheet.toString());
+    }
+
+    /**
+     * @param tempDir the temp dir
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void byteStreamLarge(@TempDir final Path tempDir) throws Exception {
+        final StringBuilder css = new StringBuilder("@charset \"iso-8859-15\";\n");
+        for (int i = 0; i < 500; i++) {
+            css.append(".c").append(i).append(":before { content: \"\u00fe - \u20ac\" }\n");
+        }
+        final byte[] bytes = css.toString().getBytes("iso-8859-15");
+
+        final CSSStyleSheetImpl expected = new CSSOMParser().parseStyleSheet(new InputSource(css), null);
+
+        CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(new InputSource(new ByteArrayInputStream(bytes)), null);
+        assertEquals(501, sheet.getCssRules().getLength());
+        assertEquals(expected.toString(), sheet.toString());
+
+        final Path file = tempDir.resolve("large.css");
+        Files.write(file, bytes);
+        sheet = new CSSOMParser().parseStyleSheet(new InputSource(file), null);
+        assertEquals(expected.toString(), sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void byteStreamRealWorld() throws Exception {
+        final Path file = Paths.get(getClass().getClassLoader().getResource("realworld/all.css").toURI());
+
+        final CSSStyleSheetImpl expected;
+        try (InputStream is = Files.newInputStream(file)) {
+            expected = new CSSOMParser().parseStyleSheet(
+                    new InputSource(new InputStreamReader(is, StandardCharsets.UTF_8)), null);
+        }
+
+        try (InputSource source = new InputSource(Files.newInputStream(file))) {
+            final CSSStyleSheetImpl sheet = new CSSOMParser().parseStyleSheet(source, null);
+            assertEquals(expected.toString(), sheet.toString());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void decoderPool() throws Exception {
+        final Charset charset = Charset.forName("iso-8859-2");
+        final CharsetDecoder decoder = CharsetDecoderPool.acquire(charset);
+        assertEquals(charset, decoder.charset());
+        CharsetDecoderPool.release(decoder);
+
+        assertSame(decoder, CharsetDecoderPool.acquire(charset));
+        assertNotSame(decoder, CharsetDecoderPool.acquire(charset));
+    }
+}
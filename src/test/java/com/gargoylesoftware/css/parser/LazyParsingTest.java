@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSPageRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for the lazy parsing of style sheets.
+ *
+ * @author Ronald Brill
+ */
+public class LazyParsingTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parsedOnAccess() throws Exception {
+        final String css = "a { color: red }\n@media print { b, c { top: 0 } @page :first { margin: 0 } }\n"
+                + "@font-face { font-family: x }";
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl sheet = parseLazy(css, errors);
+        final List<AbstractCSSRuleImpl> rules = sheet.getCssRules().getRules();
+        assertEquals(3, rules.size());
+        assertTrue(rules.get(0).isLazy());
+        assertFalse(rules.get(1).isLazy());
+        assertTrue(rules.get(2).isLazy());
+
+        final CSSMediaRuleImpl media = (CSSMediaRuleImpl) rules.get(1);
+        assertEquals("print", media.getMediaList().getMediaText());
+        assertEquals(2, media.getCssRules().getLength());
+        final AbstractCSSRuleImpl page = media.getCssRules().getRules().get(1);
+        assertTrue(page.isLazy());
+        assertEquals(media, page.getParentRule());
+        assertEquals(sheet, page.getParentStyleSheet());
+
+        // the locators are known without parsing
+        assertEquals(2, page.getLocator().getLineNumber());
+        assertEquals(32, page.getLocator().getColumnNumber());
+        assertTrue(page.isLazy());
+
+        assertEquals(":first", ((CSSPageRuleImpl) page).getSelectorText());
+        assertFalse(page.isLazy());
+        assertTrue(media.getCssRules().getRules().get(0).isLazy());
+
+        final CSSStyleRuleImpl rule = (CSSStyleRuleImpl) rules.get(0);
+        assertEquals("red", rule.getStyle().getPropertyValue("color"));
+        assertFalse(rule.isLazy());
+        assertEquals(1, rule.getStyle().getProperties().get(0).getLocator().getLineNumber());
+        assertEquals(5, rule.getStyle().getProperties().get(0).getLocator().getColumnNumber());
+
+        assertEquals(parse(css, new ErrorHandler()).toString(), sheet.toString());
+        assertEquals(0, errors.getErrorCount());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsOnAccess() throws Exception {
+        final String css = "a { color: red; top: }\nb > > c { color: blue }\nd { left: 0 }";
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        parse(css, expectedErrors);
+        assertEquals(2, expectedErrors.getErrorCount());
+
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl sheet = parseLazy(css, errors);
+
+        // the rule with invalid selectors is parsed (and ignored) at once
+        assertEquals(1, errors.getErrorCount());
+        assertEquals(expectedErrors.getErrorLines().split(" ")[1], errors.getErrorLines());
+        assertEquals(2, sheet.getCssRules().getLength());
+        final CSSStyleRuleImpl rule = (CSSStyleRuleImpl) sheet.getCssRules().getRules().get(0);
+        assertTrue(rule.isLazy());
+        assertTrue(sheet.getCssRules().getRules().get(1).isLazy());
+
+        assertEquals("red", rule.getStyle().getPropertyValue("color"));
+        assertEquals(2, errors.getErrorCount());
+
+        sheet.toString();
+        assertEquals(2, errors.getErrorCount());
+        assertEquals(parse(css, new ErrorHandler()).toString(), sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void resources() throws Exception {
+        final String[] resources = {"bad.css", "basic.css", "dojo.css", "html40.css", "test.css", "yuck.css",
+            "realworld/all.css", "realworld/bootstrap_4_0_0.css", "realworld/cargo.css",
+            "realworld/compass-homestyle.css", "realworld/home.built.css", "realworld/load.php.css",
+            "realworld/mui.css", "realworld/style-V5-11.css", "realworld/style.csx.css", "realworld/www.css"};
+        for (final String resource : resources) {
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream(resource)) {
+                final String css = IOUtils.toString(is, StandardCharsets.UTF_8);
+
+                final ErrorHandler expectedErrors = new ErrorHandler();
+                final CSSStyleSheetImpl expected = parse(css, expectedErrors);
+                final ErrorHandler errors = new ErrorHandler();
+                final CSSStyleSheetImpl sheet = parseLazy(css, errors);
+
+                assertEquals(expected.getCssRules().getLength(), sheet.getCssRules().getLength(), resource);
+                assertEquals(expected.toString(), sheet.toString(), resource);
+                assertEquals(expectedErrors.getErrorCount(), errors.getErrorCount(), resource);
+                assertEquals(expectedErrors.getWarningCount(), errors.getWarningCount(), resource);
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void inputChangedAfterParsing() throws Exception {
+        final String css = "x a { color: red }\nb { top: 0 } x";
+        final CSSStyleSheetImpl expected = parse(css.substring(2, css.length() - 2), new ErrorHandler());
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+
+        final char[] chars = css.toCharArray();
+        CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(chars, 2, chars.length - 4), null);
+        assertTrue(sheet.getCssRules().getRules().get(0).isLazy());
+        Arrays.fill(chars, 'z');
+        assertEquals(expected.toString(), sheet.toString());
+        assertEquals(2, sheet.getCssRules().getRules().get(1).getLocator().getLineNumber());
+
+        final StringBuilder builder = new StringBuilder(css);
+        sheet = parser.parseStyleSheet(new InputSource(builder, 2, builder.length() - 4), null);
+        assertTrue(sheet.getCssRules().getRules().get(0).isLazy());
+        builder.setLength(0);
+        assertEquals(expected.toString(), sheet.toString());
+        assertEquals(2, sheet.getCssRules().getRules().get(1).getLocator().getLineNumber());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void cached() throws Exception {
+        final String css = "h1{color:red} h2{color: ; background: } h3{x:1}";
+        final CSSStyleSheetImpl expected = parse(css, new ErrorHandler());
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+        parser.setStyleSheetCache(new StyleSheetCache());
+        for (int i = 0; i < 3; i++) {
+            final ErrorHandler errors = new ErrorHandler();
+            parser.setErrorHandler(errors);
+            final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), null);
+            assertEquals(2, errors.getErrorCount());
+            for (final AbstractCSSRuleImpl rule : sheet.getCssRules().getRules()) {
+                assertFalse(rule.isLazy());
+            }
+            assertEquals(expected.toString(), sheet.toString());
+            assertEquals(2, errors.getErrorCount());
+        }
+        assertEquals(2, parser.getStyleSheetCache().getHits());
+
+        // not cached, lazy as usual
+        parser.setStyleSheetCache(new StyleSheetCache(1024, 10));
+        parser.setErrorHandler(new ErrorHandler());
+        assertTrue(parser.parseStyleSheet(new InputSource(css), null).getCssRules().getRules().get(0).isLazy());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void serialization() throws Exception {
+        final CSSStyleSheetImpl sheet = parseLazy("a { color: red }\n@media screen { b { top: 0 } }", null);
+        assertTrue(sheet.getCssRules().getRules().get(0).isLazy());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(sheet);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final CSSStyleSheetImpl copy = (CSSStyleSheetImpl) ois.readObject();
+            assertFalse(copy.getCssRules().getRules().get(0).isLazy());
+            assertEquals(sheet.toString(), copy.toString());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void fallbacks() throws Exception {
+        // parsed at once
+        assertNotLazy("a { } } b { }");
+        assertNotLazy("a { x: 'abc } b { }");
+        assertNotLazy("<!-- a { } -->");
+        assertNotLazy("@media print { a { }");
+        assertNotLazy("@charset x; a { }");
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+        assertTrue(parser.isLazyParsing());
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(new StringReader("a { }")), null);
+        assertFalse(sheet.getCssRules().getRules().get(0).isLazy());
+
+        // the other rules are parsed at once
+        final String css = "@import 'x.css';\n@foo bar;\na { top: 0 }\n1 { }\n@media -x { b { } }\nc { }";
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        final CSSStyleSheetImpl expected = parse(css, expectedErrors);
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl lazy = parseLazy(css, errors);
+        assertEquals(expectedErrors.getErrorMessage(), errors.getErrorMessage());
+        assertEquals(expectedErrors.getErrorLines(), errors.getErrorLines());
+        assertEquals(expectedErrors.getErrorColumns(), errors.getErrorColumns());
+        assertTrue(lazy.getCssRules().getRules().get(lazy.getCssRules().getLength() - 1).isLazy());
+        assertEquals(expected.toString(), lazy.toString());
+    }
+
+    private static void assertNotLazy(final String css) throws Exception {
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        final CSSStyleSheetImpl expected = parse(css, expectedErrors);
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl sheet = parseLazy(css, errors);
+        for (final AbstractCSSRuleImpl rule : sheet.getCssRules().getRules()) {
+            assertFalse(rule.isLazy(), css);
+        }
+        assertEquals(expected.toString(), sheet.toString(), css);
+        assertEquals(expectedErrors.getErrorMessage(), errors.getErrorMessage(), css);
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void statements() throws Exception {
+        final String css = "a{}\n@media print { b { } }";
+        final List<StyleSheetSplitter.Statement> statements = StyleSheetSplitter.statements(css, 0, css.length());
+        assertNotNull(statements);
+        assertEquals(2, statements.size());
+        assertEquals(StyleSheetSplitter.Statement.STYLE, statements.get(0).getKind());
+        assertEquals(StyleSheetSplitter.Statement.MEDIA, statements.get(1).getKind());
+        assertEquals(2, statements.get(1).getLine());
+        assertEquals(1, statements.get(1).getColumn());
+        assertEquals(1, statements.get(1).getChildren().size());
+
+        assertNull(StyleSheetSplitter.statements("a { /* }", 0, 8));
+    }
+
+    private static CSSStyleSheetImpl parse(final String css, final ErrorHandler errors) throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(errors);
+        return parser.parseStyleSheet(new InputSource(css), null);
+    }
+
+    private static CSSStyleSheetImpl parseLazy(final String css, final ErrorHandler errors) throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+        if (errors != null) {
+            parser.setErrorHandler(errors);
+        }
+        return parser.parseStyleSheet(new InputSource(css), null);
+    }
+}
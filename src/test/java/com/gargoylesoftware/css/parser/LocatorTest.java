@@ -15,6 +15,8 @@
 package com.gargoylesoftware.css.parser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -31,6 +33,7 @@
 
 import org.junit.jupiter.api.Test;
 
+import com.gargoylesoftware.css.ErrorHandler;
 import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
 import com.gargoylesoftware.css.dom.CSSCharsetRuleImpl;
 import com.gargoylesoftware.css.dom.CSSFontFaceRuleImpl;
@@ -47,6 +50,7 @@
 import com.gargoylesoftware.css.dom.MediaListImpl;
 import com.gargoylesoftware.css.dom.Property;
 import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+import com.gargoylesoftware.css.parser.selector.Selector;
 
 /**
  * Testcases for correct error location reporting.
@@ -254,6 +258,84 @@ private void cssValue(final CSSValueImpl cssValue,
         }
     }
 
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void positionTrackingDisabled() throws Exception {
+        final String cssCode = CHARSET_RULE
+            + IMPORT_RULE
+            + UNKNOWN_AT_RULE
+            + PAGE_RULE
+            + FONT_FACE_RULE
+            + MEDIA_RULE_START
+            + STYLE_RULE
+            + "}\n";
+
+        CSSOMParser parser = new CSSOMParser();
+        parser.setPositionTracking(false);
+        noLocators(parser.parseStyleSheet(new InputSource(new StringReader(cssCode)), null).getCssRules());
+
+        parser = new CSSOMParser();
+        parser.setPositionTracking(false);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(cssCode), null);
+        noLocators(sheet.getCssRules());
+
+        parser = new CSSOMParser();
+        final CSSStyleSheetImpl expected = parser.parseStyleSheet(new InputSource(cssCode), null);
+        assertEquals(expected.toString(), sheet.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void positionTrackingDisabledErrors() throws Exception {
+        final String cssCode = "h1 { color: red }\n"
+            + "h2 { color: ; }\n";
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPositionTracking(false);
+        final ErrorHandler errorHandler = new ErrorHandler();
+        parser.setErrorHandler(errorHandler);
+        parser.parseStyleSheet(new InputSource(cssCode), null);
+
+        assertEquals(1, errorHandler.getErrorCount());
+        assertEquals("-1", errorHandler.getErrorLines());
+        assertEquals("-1", errorHandler.getErrorColumns());
+    }
+
+    private static void noLocators(final CSSRuleListImpl rules) {
+        assertTrue(rules.getLength() > 0);
+        for (final AbstractCSSRuleImpl rule : rules.getRules()) {
+            assertNull(rule.getLocator());
+            if (rule instanceof CSSStyleRuleImpl) {
+                final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
+                for (final Selector selector : styleRule.getSelectors()) {
+                    assertNull(selector.getLocator());
+                }
+                noLocators(styleRule.getStyle());
+            }
+            else if (rule instanceof CSSFontFaceRuleImpl) {
+                noLocators(((CSSFontFaceRuleImpl) rule).getStyle());
+            }
+            else if (rule instanceof CSSPageRuleImpl) {
+                noLocators(((CSSPageRuleImpl) rule).getStyle());
+            }
+            else if (rule instanceof CSSMediaRuleImpl) {
+                assertNull(((CSSMediaRuleImpl) rule).getMediaList().getLocator());
+                noLocators(((CSSMediaRuleImpl) rule).getCssRules());
+            }
+        }
+    }
+
+    private static void noLocators(final CSSStyleDeclarationImpl style) {
+        for (final Property property : style.getProperties()) {
+            assertNull(property.getLocator());
+            assertNull(property.getValue().getLocator());
+        }
+    }
+
     /**
      * @throws Exception if any error occurs
      */
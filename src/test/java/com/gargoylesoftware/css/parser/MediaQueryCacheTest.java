@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSImportRuleImpl;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.dom.MediaListImpl;
+import com.gargoylesoftware.css.parser.media.MediaQuery;
+import com.gargoylesoftware.css.parser.media.MediaQueryList;
+
+/**
+ * Tests for {@link MediaQueryCache}.
+ *
+ * @author Ronald Brill
+ */
+public class MediaQueryCacheTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void canonicalize() throws Exception {
+        assertEquals("screen", MediaQueryCache.canonicalize("screen"));
+        assertEquals("screen", MediaQueryCache.canonicalize("  screen\t"));
+        assertEquals("screen and (max-width: 767px)",
+                MediaQueryCache.canonicalize("screen  and\n(max-width:\t767px) "));
+        assertEquals("screen and (max-width: 767px)", MediaQueryCache.canonicalize("screen and (max-width: 767px)"));
+        assertEquals("", MediaQueryCache.canonicalize("   "));
+
+        // might be sensitive to white space
+        assertEquals("a  /* x */", MediaQueryCache.canonicalize("a  /* x */"));
+        assertEquals("(x: 'a  b')", MediaQueryCache.canonicalize("(x: 'a  b')"));
+        assertEquals("\\a  b", MediaQueryCache.canonicalize("\\a  b"));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parseMedia() throws Exception {
+        final MediaQueryCache cache = new MediaQueryCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setMediaQueryCache(cache);
+        assertSame(cache, parser.getMediaQueryCache());
+
+        final MediaQueryList media = parser.parseMedia("screen and (max-width: 767px)");
+        assertEquals("screen and (max-width: 767px)", media.getMediaQueries().get(0).toString());
+        assertSame(media, parser.parseMedia("screen and (max-width: 767px)"));
+        assertSame(media, parser.parseMedia(" screen   and (max-width: 767px)\n"));
+        assertNotSame(media, parser.parseMedia("print"));
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        assertTrue(media.isUnmodifiable());
+        assertThrows(UnsupportedOperationException.class, () -> media.add(new MediaQuery("print")));
+        assertThrows(UnsupportedOperationException.class,
+            () -> media.getMediaQueries().get(0).addMediaProperty(null));
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsNotCached() throws Exception {
+        final MediaQueryCache cache = new MediaQueryCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setMediaQueryCache(cache);
+
+        for (int i = 0; i < 3; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            parser.parseMedia("screen and (max-width: 767px");
+            assertEquals(1, errorHandler.getErrorCount());
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedByStyleSheets() throws Exception {
+        final MediaQueryCache cache = new MediaQueryCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setMediaQueryCache(cache);
+
+        final CSSStyleSheetImpl sheet1 = parser.parseStyleSheet(new InputSource(
+                "@import 'x.css' print;\n"
+                + "@media screen and (max-width:767px) { p { color: red } }\n"
+                + "@media print { p { color: blue } }"), null);
+        final CSSStyleSheetImpl sheet2 = parser.parseStyleSheet(new InputSource(
+                "\n\n@media screen  and (max-width: 767px) { h1 { color: red } }"), null);
+
+        final MediaListImpl import1 = ((CSSImportRuleImpl) sheet1.getCssRules().getRules().get(0)).getMedia();
+        final MediaListImpl media1 = ((CSSMediaRuleImpl) sheet1.getCssRules().getRules().get(1)).getMediaList();
+        final MediaListImpl print1 = ((CSSMediaRuleImpl) sheet1.getCssRules().getRules().get(2)).getMediaList();
+        final MediaListImpl media2 = ((CSSMediaRuleImpl) sheet2.getCssRules().getRules().get(0)).getMediaList();
+
+        assertEquals("screen and (max-width: 767px)", media1.getMediaText());
+        assertEquals("screen and (max-width: 767px)", media2.getMediaText());
+        assertSame(media1.mediaQuery(0), media2.mediaQuery(0));
+        assertSame(import1.mediaQuery(0), print1.mediaQuery(0));
+        assertSame(media1.mediaQuery(0), parser.parseMedia("screen and (max-width: 767px)").getMediaQueries().get(0));
+        assertEquals(2, cache.size());
+
+        // every rule keeps its own locator
+        assertEquals(2, media1.getLocator().getLineNumber());
+        assertEquals(3, media2.getLocator().getLineNumber());
+
+        // modifying one media list does not change the others
+        media1.setMedia(Arrays.asList("tv"));
+        assertEquals("tv", media1.getMediaText());
+        assertEquals("screen and (max-width: 767px)", media2.getMediaText());
+        assertNotEquals(media1.mediaQuery(0), media2.mediaQuery(0));
+    }
+}
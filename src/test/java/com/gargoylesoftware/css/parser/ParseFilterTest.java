@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.parser.media.MediaQuery;
+
+/**
+ * Tests for {@link ParseFilter}.
+ *
+ * @author Ronald Brill
+ */
+public class ParseFilterTest {
+
+    private static final String CSS = "@charset 'utf-8';\n"
+            + "@import 'print.css' print;\n"
+            + "@import 'all.css';\n"
+            + "@font-face { font-family: x; src: url(x.woff) }\n"
+            + "@page :first { margin: 0 }\n"
+            + "@media print { a { color: red } @page { margin: 1cm } }\n"
+            + "@media screen { b { color: blue; -webkit-transition: none } }\n"
+            + "@foo bar;\n"
+            + "p.x { color: green; -moz-box-sizing: border-box; -webkit-box-sizing: border-box; margin: 0 }\n"
+            + "#id { top: 0 }";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void ruleTypes() throws Exception {
+        final ParseFilter filter = new ParseFilter();
+        filter.rejectRuleTypes(ParseFilter.RuleType.FONT_FACE, ParseFilter.RuleType.PAGE,
+                ParseFilter.RuleType.UNKNOWN, ParseFilter.RuleType.CHARSET);
+        assertTrue(filter.isRejected(ParseFilter.RuleType.PAGE));
+
+        final CSSStyleSheetImpl sheet = parse(filter, CSS);
+        assertEquals("@import url(\"print.css\") print;\r\n"
+                + "@import url(\"all.css\");\r\n"
+                + "@media print {\n  a { color: red; }\n}\r\n"
+                + "@media screen {\n  b { color: blue; -webkit-transition: none; }\n}\r\n"
+                + "p.x { color: green; -moz-box-sizing: border-box; -webkit-box-sizing: border-box; margin: 0; }\r\n"
+                + "*#id { top: 0; }", sheet.toString());
+
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.FONT_FACE));
+        assertEquals(2, filter.getDroppedRules(ParseFilter.RuleType.PAGE));
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.UNKNOWN));
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.CHARSET));
+        assertEquals(5, filter.getDroppedRules());
+        assertEquals(0, filter.getDroppedProperties());
+
+        filter.resetStatistics();
+        assertEquals(0, filter.getDroppedRules());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void media() throws Exception {
+        final ParseFilter filter = new ParseFilter();
+        filter.setMediaFilter(media -> {
+            for (final MediaQuery query : media.getMediaQueries()) {
+                if (!"print".equalsIgnoreCase(query.getMedia())) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        assertNotNull(filter.getMediaFilter());
+
+        final CSSStyleSheetImpl sheet = parse(filter, CSS);
+        assertEquals(8, sheet.getCssRules().getLength());
+        assertTrue(sheet.toString().startsWith("@charset \"utf-8\";\r\n@import url(\"all.css\");\r\n@font-face"));
+        assertTrue(sheet.toString().contains("@media screen"));
+
+        // the rules inside the dropped media rule are not counted
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.IMPORT));
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.MEDIA));
+        assertEquals(2, filter.getDroppedRules());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void properties() throws Exception {
+        final ParseFilter filter = new ParseFilter();
+        filter.denyPropertyPrefixes("-webkit-", "-MOZ-");
+        filter.denyProperties("Margin");
+
+        final CSSStyleSheetImpl sheet = parse(filter, CSS);
+        assertTrue(sheet.toString().contains("b { color: blue; }"));
+        assertTrue(sheet.toString().contains("p.x { color: green; }"));
+        assertTrue(sheet.toString().contains("@page :first { }"));
+        assertEquals(6, filter.getDroppedProperties());
+        assertEquals(0, filter.getDroppedRules());
+
+        final ParseFilter allowed = new ParseFilter();
+        allowed.setAllowedProperties(Arrays.asList("COLOR", "top"));
+        allowed.denyProperties("top");
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setFilter(allowed);
+        parser.setStyleDeclarationCache(new StyleDeclarationCache());
+        for (int i = 0; i < 2; i++) {
+            final CSSStyleDeclarationImpl decl = parser.parseStyleDeclaration("color: red; top: 0; left: 0");
+            assertEquals("color: red", decl.getCssText());
+        }
+        assertEquals(4, allowed.getDroppedProperties());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void selectors() throws Exception {
+        final ParseFilter filter = new ParseFilter();
+        filter.setSelectorFilter(selectors -> !selectors.toString().contains("#"));
+        assertNotNull(filter.getSelectorFilter());
+
+        final CSSStyleSheetImpl sheet = parse(filter, CSS);
+        assertEquals(9, sheet.getCssRules().getLength());
+        assertEquals(1, filter.getDroppedRules(ParseFilter.RuleType.STYLE));
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setFilter(filter);
+        assertSame(filter, parser.getFilter());
+        assertNull(parser.parseRule("#x { top: 0 }"));
+        final CSSMediaRuleImpl media = (CSSMediaRuleImpl) parser.parseRule("@media print { #x { top: 0 } }");
+        assertEquals(0, media.getCssRules().getLength());
+        assertEquals("y { top: 0; }", parser.parseRule("y { top: 0 }").getCssText());
+        assertEquals(3, filter.getDroppedRules(ParseFilter.RuleType.STYLE));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void cacheNotUsed() throws Exception {
+        final StyleSheetCache cache = new StyleSheetCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleSheetCache(cache);
+        parser.setLazyParsing(true);
+        parser.parseStyleSheet(new InputSource(CSS), null);
+
+        final ParseFilter filter = new ParseFilter();
+        filter.rejectRuleTypes(ParseFilter.RuleType.STYLE);
+        parser.setFilter(filter);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(CSS), null);
+        assertEquals(8, sheet.getCssRules().getLength());
+        assertFalse(sheet.getCssRules().getRules().get(3).isLazy());
+        // including the style rules of the media rules
+        assertEquals(4, filter.getDroppedRules());
+        assertEquals(0, cache.getHits());
+    }
+
+    private static CSSStyleSheetImpl parse(final ParseFilter filter, final String css) throws Exception {
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(errors);
+        parser.setFilter(filter);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), null);
+        assertEquals(0, errors.getErrorCount() + errors.getWarningCount() + errors.getFatalErrorCount());
+        return sheet;
+    }
+}
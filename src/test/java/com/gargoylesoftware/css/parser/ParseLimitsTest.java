@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for {@link ParseLimits}.
+ *
+ * @author Ronald Brill
+ */
+public class ParseLimitsTest {
+
+    private static final String CSS = "@import 'a.css';\n"
+            + "a { color: red }\n"
+            + "@media print { b { color: blue } i { top: 0 } }\n"
+            + "p { background: url(x.png) }\n"
+            + "q { width: calc(1px + (2px * (3 + 4))) }";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void rules() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxRules(3);
+
+        final ParseLimitException e = assertThrows(ParseLimitException.class, () -> parse(limits, CSS));
+        assertEquals(ParseLimits.Limit.RULES, e.getLimit());
+        assertEquals("The input has more than 3 rules.", e.getMessage());
+        assertEquals(3, e.getLineNumber());
+
+        limits.setKeepPartialResult(true);
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl sheet = parse(limits, CSS, errors);
+        assertEquals("@import url(\"a.css\");\r\n"
+                + "a { color: red; }\r\n"
+                + "@media print {\n}", sheet.toString());
+        assertEquals(1, errors.getErrorCount());
+        assertEquals("The input has more than 3 rules.", errors.getErrorMessage());
+
+        // the rules inside of the media rule are counted too
+        limits.setMaxRules(6);
+        assertEquals(4, parse(limits, CSS, new ErrorHandler()).getCssRules().getLength());
+
+        // the limits apply to each parse
+        limits.setMaxRules(7);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(5, parse(limits, CSS).getCssRules().getLength());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void inputLength() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxInputLength(CSS.length());
+        assertEquals(5, parse(limits, CSS).getCssRules().getLength());
+        assertEquals(5, parse(limits, new InputSource(new StringReader(CSS))).getCssRules().getLength());
+
+        limits.setMaxInputLength(CSS.length() - 1);
+        // the length of a char sequence is checked in advance
+        ParseLimitException e = assertThrows(ParseLimitException.class, () -> parse(limits, CSS));
+        assertEquals(ParseLimits.Limit.INPUT_LENGTH, e.getLimit());
+        assertEquals(-1, e.getLineNumber());
+
+        e = assertThrows(ParseLimitException.class, () -> parse(limits, new InputSource(new StringReader(CSS))));
+        assertEquals(ParseLimits.Limit.INPUT_LENGTH, e.getLimit());
+        assertEquals("The input is longer than " + (CSS.length() - 1) + " chars.", e.getMessage());
+        assertEquals(5, e.getLineNumber());
+
+        // comments are counted too
+        limits.setMaxInputLength(100);
+        e = assertThrows(ParseLimitException.class,
+            () -> parse(limits, new InputSource(new StringReader("a { top: 0 } /*" + repeat("x", 200) + "*/"))));
+        assertEquals(ParseLimits.Limit.INPUT_LENGTH, e.getLimit());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void tokensAndStrings() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxTokens(10);
+        ParseLimitException e = assertThrows(ParseLimitException.class, () -> parse(limits, CSS));
+        assertEquals(ParseLimits.Limit.TOKENS, e.getLimit());
+        assertEquals("The input has more than 10 tokens.", e.getMessage());
+
+        final ParseLimits strings = new ParseLimits();
+        strings.setMaxStringLength(5);
+        assertEquals(5, parse(strings, CSS).getCssRules().getLength());
+
+        e = assertThrows(ParseLimitException.class, () -> parse(strings, "a { content: '123456' }"));
+        assertEquals(ParseLimits.Limit.STRING_LENGTH, e.getLimit());
+        e = assertThrows(ParseLimitException.class,
+            () -> parse(strings, "a { background: url(data:image/png;base64,AAAA) }"));
+        assertEquals(ParseLimits.Limit.STRING_LENGTH, e.getLimit());
+        assertEquals(1, e.getLineNumber());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedCaches() throws Exception {
+        final PropertyValueCache values = new PropertyValueCache();
+        final SelectorCache selectors = new SelectorCache();
+        final MediaQueryCache media = new MediaQueryCache();
+
+        final CSSOMParser unlimited = new CSSOMParser();
+        unlimited.setPropertyValueCache(values);
+        unlimited.setSelectorCache(selectors);
+        unlimited.setMediaQueryCache(media);
+        assertEquals("\"123456\"", unlimited.parsePropertyValue("'123456'").getCssText());
+        assertEquals(1, unlimited.parseSelectors("a[title='123456']").size());
+        assertEquals(1, unlimited.parseMedia("screen and (min-width: 100px)").getLength());
+
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxStringLength(5);
+        limits.setMaxTokens(5);
+        final CSSOMParser limited = new CSSOMParser();
+        limited.setParseLimits(limits);
+        limited.setPropertyValueCache(values);
+        limited.setSelectorCache(selectors);
+        limited.setMediaQueryCache(media);
+
+        // the results of the unlimited parser are not used
+        ParseLimitException e = assertThrows(ParseLimitException.class,
+            () -> limited.parsePropertyValue("'123456'"));
+        assertEquals(ParseLimits.Limit.STRING_LENGTH, e.getLimit());
+        e = assertThrows(ParseLimitException.class, () -> limited.parseSelectors("a[title='123456']"));
+        assertEquals(ParseLimits.Limit.STRING_LENGTH, e.getLimit());
+        e = assertThrows(ParseLimitException.class, () -> limited.parseMedia("screen and (min-width: 100px)"));
+        assertEquals(ParseLimits.Limit.TOKENS, e.getLimit());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void nestingDepth() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxNestingDepth(4);
+        assertEquals(5, parse(limits, CSS).getCssRules().getLength());
+
+        final String deep = "a { width: " + repeat("calc(", 1000) + "1px" + repeat(")", 1000) + " }";
+        final ParseLimitException e = assertThrows(ParseLimitException.class, () -> parse(limits, deep));
+        assertEquals(ParseLimits.Limit.NESTING_DEPTH, e.getLimit());
+        assertEquals("The nesting depth is greater than 4.", e.getMessage());
+        assertEquals(1, e.getLineNumber());
+        assertEquals(31, e.getColumnNumber());
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setParseLimits(limits);
+        assertThrows(ParseLimitException.class,
+            () -> parser.parsePropertyValue("f(g(h(i(j(1)))))"));
+        assertEquals("f(g(h(i(1))))", parser.parsePropertyValue("f(g(h(i(1))))").getCssText());
+        assertThrows(ParseLimitException.class,
+            () -> parser.parseSelectors(":not(:not(:not(:not(:not(a)))))"));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void cancellation() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        final ParseLimits.CancellationToken token = new ParseLimits.CancellationToken();
+        limits.setCancellationToken(token);
+        assertSame(token, limits.getCancellationToken());
+        assertEquals(5, parse(limits, CSS).getCssRules().getLength());
+
+        token.cancel();
+        final ParseLimitException e = assertThrows(ParseLimitException.class, () -> parse(limits, CSS));
+        assertEquals(ParseLimits.Limit.CANCELLED, e.getLimit());
+        assertEquals("The parser was cancelled.", e.getMessage());
+
+        // the timeout is checked from time to time while reading
+        final ParseLimits timeout = new ParseLimits();
+        timeout.setTimeout(1, TimeUnit.NANOSECONDS);
+        final String big = repeat("a { color: red }\n", 1000);
+        final ParseLimitException te = assertThrows(ParseLimitException.class, () -> parse(timeout, big));
+        assertEquals(ParseLimits.Limit.TIMEOUT, te.getLimit());
+
+        timeout.setTimeout(1, TimeUnit.MINUTES);
+        assertEquals(1000, parse(timeout, big).getCssRules().getLength());
+
+        assertThrows(IllegalArgumentException.class, () -> timeout.setMaxRules(0));
+        assertThrows(IllegalArgumentException.class, () -> timeout.setTimeout(-1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void handwrittenParser() throws Exception {
+        final ParseLimits limits = new ParseLimits();
+        limits.setMaxRules(3);
+        limits.setKeepPartialResult(true);
+
+        final CSSOMParser parser = new CSSOMParser(new CSS3HandwrittenParser());
+        parser.setErrorHandler(new ErrorHandler());
+        parser.setParseLimits(limits);
+        assertEquals(3, parser.parseStyleSheet(new InputSource(CSS), null).getCssRules().getLength());
+
+        limits.setMaxRules(100);
+        limits.setMaxNestingDepth(2);
+        assertThrows(ParseLimitException.class, () -> parser.parsePropertyValue("f(g(h(1)))"));
+
+        parser.setParseLimits(null);
+        assertNull(parser.getParseLimits());
+        assertEquals("f(g(h(1)))", parser.parsePropertyValue("f(g(h(1)))").getCssText());
+    }
+
+    private static CSSStyleSheetImpl parse(final ParseLimits limits, final String css) throws Exception {
+        return parse(limits, new InputSource(css));
+    }
+
+    private static CSSStyleSheetImpl parse(final ParseLimits limits, final InputSource source) throws Exception {
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSStyleSheetImpl sheet = parse(limits, source, errors);
+        assertEquals(0, errors.getErrorCount() + errors.getWarningCount() + errors.getFatalErrorCount());
+        return sheet;
+    }
+
+    private static CSSStyleSheetImpl parse(final ParseLimits limits, final String css,
+            final ErrorHandler errors) throws Exception {
+        return parse(limits, new InputSource(css), errors);
+    }
+
+    private static CSSStyleSheetImpl parse(final ParseLimits limits, final InputSource source,
+            final ErrorHandler errors) throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(errors);
+        parser.setParseLimits(limits);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(source, null);
+        assertTrue(sheet != null);
+        return sheet;
+    }
+
+    private static String repeat(final String s, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
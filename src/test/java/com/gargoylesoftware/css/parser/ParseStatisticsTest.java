@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+import com.gargoylesoftware.css.parser.javacc.CSS3ParserConstants;
+
+/**
+ * Tests for {@link ParseStatistics}.
+ *
+ * @author Ronald Brill
+ */
+public class ParseStatisticsTest {
+
+    private static final String CSS = "@import 'a.css';\n"
+            + "a, b { color: red }\n"
+            + "@media print { b { color: blue } i { top: 0; left: 1px } }\n"
+            + "@page :first { margin: 1in }\n"
+            + "q { width: calc(1px + (2px * 3)) }";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void styleSheet() throws Exception {
+        for (final AbstractCSSParser parser : new AbstractCSSParser[] {new CSS3Parser(), new CSS3HandwrittenParser()}) {
+            final CSSOMParser cssomParser = new CSSOMParser(parser);
+            cssomParser.setCollectStatistics(true);
+            cssomParser.parseStyleSheet(new InputSource(CSS), null);
+
+            final ParseStatistics statistics = cssomParser.getStatistics();
+            assertEquals(0, statistics.getBytesRead());
+            assertEquals(CSS.length(), statistics.getCharsRead());
+            assertEquals(7, statistics.getRules());
+            assertEquals(4, statistics.getRules(ParseFilter.RuleType.STYLE));
+            assertEquals(1, statistics.getRules(ParseFilter.RuleType.IMPORT));
+            assertEquals(1, statistics.getRules(ParseFilter.RuleType.MEDIA));
+            assertEquals(1, statistics.getRules(ParseFilter.RuleType.PAGE));
+            assertEquals(5, statistics.getSelectors());
+            assertEquals(6, statistics.getDeclarations());
+            // calc(1px + (2px * 3)) has 7 units
+            assertEquals(12, statistics.getLexicalUnits());
+            assertEquals(0, statistics.getErrors());
+            assertEquals(0, statistics.getWarnings());
+
+            assertEquals(statistics.getTokens(), sum(statistics.getTokensByKind()));
+            assertEquals(6, statistics.getTokens(CSS3ParserConstants.LBRACE));
+            assertEquals(6, statistics.getTokens(CSS3ParserConstants.RBRACE));
+            assertTrue(statistics.getTotalNanos() > 0);
+            assertTrue(statistics.getLexingNanos() > 0);
+            assertTrue(statistics.getBuildNanos() > 0);
+            assertEquals(statistics.getTotalNanos(),
+                    statistics.getLexingNanos() + statistics.getParsingNanos() + statistics.getBuildNanos());
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sources() throws Exception {
+        final byte[] bytes = CSS.getBytes(StandardCharsets.UTF_8);
+
+        ParseStatistics statistics = parse(new InputSource(new StringReader(CSS)));
+        assertEquals(0, statistics.getBytesRead());
+        assertEquals(CSS.length(), statistics.getCharsRead());
+        assertEquals(7, statistics.getRules());
+
+        statistics = parse(new InputSource(bytes, 0, bytes.length));
+        assertEquals(bytes.length, statistics.getBytesRead());
+        assertEquals(CSS.length(), statistics.getCharsRead());
+        assertEquals(7, statistics.getRules());
+
+        statistics = parse(new InputSource(new ByteArrayInputStream(bytes)));
+        assertEquals(bytes.length, statistics.getBytesRead());
+        assertEquals(CSS.length(), statistics.getCharsRead());
+        assertEquals(7, statistics.getRules());
+
+        // a token larger than the buffer
+        final StringBuilder css = new StringBuilder("a { background: url(data:image/png;base64,");
+        for (int i = 0; i < 10000; i++) {
+            css.append('x');
+        }
+        css.append(") }");
+        statistics = parse(new InputSource(new StringReader(css.toString())));
+        assertEquals(css.length(), statistics.getCharsRead());
+        assertTrue(statistics.getBufferExpansions() > 0);
+        assertEquals(1, statistics.getDeclarations());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void problems() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setCollectStatistics(true);
+        final ErrorHandler errors = new ErrorHandler();
+        parser.setErrorHandler(errors);
+        parser.parseStyleSheet(new InputSource("a { color: red; *top: 0 } b { color: #12 } c { top: 0 }"), null);
+
+        final ParseStatistics statistics = parser.getStatistics();
+        assertEquals(errors.getErrorCount(), statistics.getErrors());
+        assertEquals(errors.getWarningCount(), statistics.getWarnings());
+        final Map<String, Long> expected = new TreeMap<>();
+        expected.put("invalidColor", 1L);
+        expected.put("invalidDeclarationStarHack", 1L);
+        assertEquals(expected, statistics.getErrorsByKey());
+        assertEquals(3, statistics.getRules());
+        assertEquals(2, statistics.getDeclarations());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void metrics() throws Exception {
+        final Map<String, Long> counters = new TreeMap<>();
+        final Map<String, Long> timers = new TreeMap<>();
+        final ParseMetrics metrics = new ParseMetrics() {
+            @Override
+            public void count(final String name, final long value) {
+                counters.merge(name, value, Long::sum);
+            }
+
+            @Override
+            public void time(final String name, final long nanos) {
+                timers.merge(name, nanos, Long::sum);
+            }
+        };
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setParseMetrics(metrics);
+        parser.parseStyleSheet(new InputSource(CSS), null);
+        parser.parseStyleDeclaration("color: red; top: 0");
+        parser.parsePropertyValue("calc(1px + 2px)");
+
+        // the statistics of the last parse
+        assertEquals(4, parser.getStatistics().getLexicalUnits());
+
+        assertEquals(Long.valueOf(3), counters.get("css.parse.count"));
+        assertEquals(Long.valueOf(4), counters.get("css.parse.rules.style"));
+        assertEquals(Long.valueOf(1), counters.get("css.parse.rules.page"));
+        assertEquals(Long.valueOf(8), counters.get("css.parse.declarations"));
+        assertEquals(Long.valueOf(18), counters.get("css.parse.lexicalUnits"));
+        assertEquals(Long.valueOf(CSS.length() + 18 + 15), counters.get("css.parse.chars"));
+        assertNull(counters.get("css.parse.bytes"));
+        assertNull(counters.get("css.parse.errors.invalidColor"));
+
+        assertEquals(4, timers.size());
+        assertTrue(timers.get("css.parse.time.total") > 0);
+        assertTrue(timers.get("css.parse.time.lexing") > 0);
+        assertTrue(timers.containsKey("css.parse.time.parsing"));
+        assertTrue(timers.containsKey("css.parse.time.build"));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void disabled() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        assertNull(parser.getStatistics());
+        parser.parseStyleSheet(new InputSource(CSS), null);
+        assertNull(parser.getStatistics());
+
+        parser.setCollectStatistics(true);
+        parser.parseStyleSheet(new InputSource(CSS), null);
+        assertEquals(7, parser.getStatistics().getRules());
+
+        parser.setCollectStatistics(false);
+        parser.parseStyleSheet(new InputSource(CSS), null);
+        assertNull(parser.getStatistics());
+    }
+
+    private static ParseStatistics parse(final InputSource source) throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setCollectStatistics(true);
+        parser.parseStyleSheet(source, null);
+        return parser.getStatistics();
+    }
+
+    private static long sum(final Map<String, Long> counts) {
+        long sum = 0;
+        for (final Long count : counts.values()) {
+            sum += count;
+        }
+        return sum;
+    }
+}
@@ -15,6 +15,11 @@
 package com.gargoylesoftware.css.parser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
@@ -37,6 +42,9 @@ public void trimBy() {
         assertEquals("te", ParserUtils.trimBy(new StringBuilder("test"), 0, 2));
 
         assertEquals("e", ParserUtils.trimBy(new StringBuilder("test"), 1, 2));
+
+        assertEquals("test", ParserUtils.trimBy("test", 0, 0));
+        assertEquals("es", ParserUtils.trimBy("test", 1, 1));
     }
 
     /**
@@ -51,5 +59,104 @@ public void trimUrl() {
         assertEquals("test", ParserUtils.trimUrl(new StringBuilder("url(\"test\")")));
 
         assertEquals("test", ParserUtils.trimUrl(new StringBuilder("url(   test \t )")));
+        assertEquals("test", ParserUtils.trimUrl(new StringBuilder("url( \"test\"\n)")));
+
+        assertEquals("test", ParserUtils.trimUrl("url(test)"));
+        assertEquals("", ParserUtils.trimUrl("url()"));
+        assertEquals("", ParserUtils.trimUrl("url(  )"));
+        assertEquals("", ParserUtils.trimUrl("url('')"));
+        assertEquals("test", ParserUtils.trimUrl("url( 'test' )"));
+        assertEquals("'test\"", ParserUtils.trimUrl("url('test\")"));
+    }
+
+    /**
+     * @throws Exception on failure
+     */
+    @Test
+    public void parseDouble() {
+        final String[] numbers = {"0", "00", "0.0", ".0", "1", "1.", "1.5", ".5", "0.1", "0.3", "123.456",
+            "1e3", "1E3", "1e+3", "1e-3", "2.5e-7", "1e22", "1e23", "1e-22", "1e-23", "123456789012345",
+            "1234567890123456", "12345678901234567890", "0.000000000000000000000000001",
+            "9007199254740993", "1.7976931348623157e308", "4.9e-324", "1e400", "1e-400",
+            "00000000000000000000000001.5", "1.50000000000000000000", "0.1e00001", "3.14159265358979"};
+        for (final String number : numbers) {
+            assertBitIdentical(number);
+        }
+
+        final java.util.Random random = new Random(4711);
+        for (int i = 0; i < 100_000; i++) {
+            final StringBuilder number = new StringBuilder();
+            number.append(random.nextInt(random.nextBoolean() ? 10 : 100_000));
+            if (random.nextBoolean()) {
+                number.append('.');
+                final int digits = random.nextInt(18);
+                for (int d = 0; d < digits; d++) {
+                    number.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            if (random.nextInt(10) == 0) {
+                number.append('e').append(random.nextInt(50) - 25);
+            }
+            assertBitIdentical(number.toString());
+        }
+
+        assertEquals(1.5d, ParserUtils.parseDouble("x1.5px", 1, 4));
+    }
+
+    private static void assertBitIdentical(final String number) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(number)),
+                Double.doubleToRawLongBits(ParserUtils.parseDouble(number, 0, number.length())), number);
+    }
+
+    /**
+     * @throws Exception on failure
+     */
+    @Test
+    public void parseDoubleInvalid() {
+        for (final String number : new String[] {"", ".", "e3", "1e", "1e+", "1x", "--1", "1..2"}) {
+            assertThrows(NumberFormatException.class, () -> ParserUtils.parseDouble(number, 0, number.length()),
+                    number);
+        }
+
+        // same as Double.parseDouble
+        assertEquals(-1.5d, ParserUtils.parseDouble("-1.5", 0, 4));
+        assertEquals(1.5d, ParserUtils.parseDouble(" 1.5 ", 0, 5));
+        assertEquals(1.5d, ParserUtils.parseDouble("1.5d", 0, 4));
+    }
+
+    /**
+     * @throws Exception on failure
+     */
+    @Test
+    public void parseInt() {
+        assertEquals(0, ParserUtils.parseInt("0", 0, 1));
+        assertEquals(123, ParserUtils.parseInt("123", 0, 3));
+        assertEquals(23, ParserUtils.parseInt("123", 1, 3));
+        assertEquals(999999999, ParserUtils.parseInt("999999999", 0, 9));
+        assertEquals(Integer.MAX_VALUE, ParserUtils.parseInt("2147483647", 0, 10));
+        assertEquals(-5, ParserUtils.parseInt("-5", 0, 2));
+
+        assertThrows(NumberFormatException.class, () -> ParserUtils.parseInt("2147483648", 0, 10));
+        assertThrows(NumberFormatException.class, () -> ParserUtils.parseInt("1.5", 0, 3));
+        assertThrows(NumberFormatException.class, () -> ParserUtils.parseInt("", 0, 0));
+    }
+
+    /**
+     * @throws Exception on failure
+     */
+    @Test
+    public void isInt() {
+        assertTrue(ParserUtils.isInt("0"));
+        assertTrue(ParserUtils.isInt("000"));
+        assertTrue(ParserUtils.isInt("123"));
+        assertTrue(ParserUtils.isInt("2147483647"));
+        assertTrue(ParserUtils.isInt("000002147483647"));
+
+        assertFalse(ParserUtils.isInt(""));
+        assertFalse(ParserUtils.isInt("2147483648"));
+        assertFalse(ParserUtils.isInt("3000000000"));
+        assertFalse(ParserUtils.isInt("12345678901"));
+        assertFalse(ParserUtils.isInt("1.0"));
+        assertFalse(ParserUtils.isInt("1e3"));
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSValueImpl;
+
+/**
+ * Tests for {@link PropertyValueCache}.
+ *
+ * @author Ronald Brill
+ */
+public class PropertyValueCacheTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void hitsAndMisses() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+        assertSame(cache, parser.getPropertyValueCache());
+
+        final CSSValueImpl value1 = parser.parsePropertyValue("1px solid red");
+        final CSSValueImpl value2 = parser.parsePropertyValue("1px solid red");
+        assertEquals("1px solid red", value1.getCssText());
+        assertEquals("1px solid red", value2.getCssText());
+        assertNotSame(value1, value2);
+
+        parser.parsePropertyValue("none");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void eviction() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache(2, 10);
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+
+        parser.parsePropertyValue("1px");
+        parser.parsePropertyValue("2px");
+        parser.parsePropertyValue("3px");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        // the oldest one is gone
+        parser.parsePropertyValue("1px");
+        assertEquals(0, cache.getHits());
+        parser.parsePropertyValue("3px");
+        assertEquals(1, cache.getHits());
+
+        // too long to be cached
+        parser.parsePropertyValue("1px 2px 3px 4px");
+        parser.parsePropertyValue("1px 2px 3px 4px");
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsNotCached() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+
+        for (int i = 1; i <= 3; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            assertNull(parser.parsePropertyValue("rgb(1, 2, 3"));
+            assertEquals(1, errorHandler.getErrorCount());
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedUnitsAreImmutable() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+
+        parser.parsePropertyValue("rgb(1, 2, 3) 4px");
+        final LexicalUnitImpl shared = (LexicalUnitImpl) cache.get("rgb(1, 2, 3) 4px");
+        assertTrue(shared.isShared());
+        assertTrue(((LexicalUnitImpl) shared.getParameters()).isShared());
+        assertTrue(((LexicalUnitImpl) shared.getNextLexicalUnit()).isShared());
+        assertThrows(UnsupportedOperationException.class, () -> shared.setStringValue("x"));
+        assertThrows(UnsupportedOperationException.class,
+            () -> ((LexicalUnitImpl) shared.getParameters()).setDoubleValue(7));
+        assertThrows(UnsupportedOperationException.class,
+            () -> LexicalUnitImpl.createPixel(shared.getNextLexicalUnit(), 1));
+
+        final LexicalUnitImpl copy = shared.copy();
+        assertFalse(copy.isShared());
+        assertFalse(((LexicalUnitImpl) copy.getParameters()).isShared());
+        assertEquals(shared.getCssText(), copy.getCssText());
+        ((LexicalUnitImpl) copy.getNextLexicalUnit()).setDoubleValue(5);
+        assertEquals("rgb(1, 2, 3) 5px", copy.toString() + " " + copy.getNextLexicalUnit());
+        assertEquals("4px", shared.getNextLexicalUnit().toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void getValueCopies() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setPropertyValueCache(cache);
+        parser.parsePropertyValue("10px");
+
+        final CSSValueImpl value = parser.parsePropertyValue("10px");
+        assertEquals(1, cache.getHits());
+        assertEquals(10, value.getDoubleValue(), 0.0001);
+
+        final LexicalUnitImpl lu = (LexicalUnitImpl) value.getValue();
+        assertFalse(lu.isShared());
+        assertSame(lu, value.getValue());
+        lu.setDoubleValue(11);
+        assertEquals("11px", value.getCssText());
+
+        assertEquals("10px", parser.parsePropertyValue("10px").getCssText());
+
+        // the items of a list copy the whole chain
+        parser.parsePropertyValue("1px 2px");
+        final CSSValueImpl list = parser.parsePropertyValue("1px 2px");
+        final LexicalUnitImpl second = (LexicalUnitImpl) list.item(1).getValue();
+        assertFalse(second.isShared());
+        assertEquals("1px", second.getPreviousLexicalUnit().toString());
+        assertEquals("1px 2px", parser.parsePropertyValue("1px 2px").getCssText());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedByThreads() throws Exception {
+        final PropertyValueCache cache = new PropertyValueCache(8, 100);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                final int width = i % 16;
+                results.add(executor.submit(() -> {
+                    final CSSOMParser parser = new CSSOMParser();
+                    parser.setPropertyValueCache(cache);
+                    return parser.parsePropertyValue(width + "px solid rgb(1, 2, 3)").getCssText();
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 16 + "px solid rgb(1, 2, 3)", results.get(i).get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(400, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 8);
+    }
+}
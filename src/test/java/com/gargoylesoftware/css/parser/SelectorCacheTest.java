@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.css.parser.selector.SelectorListImpl;
+
+/**
+ * Tests for {@link SelectorCache}.
+ *
+ * @author Ronald Brill
+ */
+public class SelectorCacheTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void hitsAndMisses() throws Exception {
+        final SelectorCache cache = new SelectorCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setSelectorCache(cache);
+        assertSame(cache, parser.getSelectorCache());
+
+        final SelectorList selectors = parser.parseSelectors("div.a > p, span#id");
+        assertEquals("div.a > p, span#id", selectors.toString());
+        assertSame(selectors, parser.parseSelectors("div.a > p, span#id"));
+        parser.parseSelectors("p");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getInvalidHits());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void unmodifiable() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setSelectorCache(new SelectorCache());
+
+        final SelectorList selectors = parser.parseSelectors("div, p");
+        assertThrows(UnsupportedOperationException.class, () -> selectors.remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> selectors.clear());
+        assertThrows(UnsupportedOperationException.class,
+            () -> ((SelectorListImpl) selectors).getSelectors().add(selectors.get(0)));
+        assertEquals("div, p", selectors.toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void invalidSelectors() throws Exception {
+        final SelectorCache cache = new SelectorCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setSelectorCache(cache);
+
+        final ErrorHandler expected = new ErrorHandler();
+        final CSSOMParser uncached = new CSSOMParser();
+        uncached.setErrorHandler(expected);
+        assertNull(uncached.parseSelectors("div >> p"));
+
+        for (int i = 0; i < 3; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            assertNull(parser.parseSelectors("div >> p"));
+            assertEquals(1, errorHandler.getErrorCount());
+            assertEquals(expected.getErrorMessage(), errorHandler.getErrorMessage());
+            assertEquals(expected.getErrorLines(), errorHandler.getErrorLines());
+            assertEquals(expected.getErrorColumns(), errorHandler.getErrorColumns());
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getInvalidHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void leastRecentlyUsedEvicted() throws Exception {
+        final SelectorCache cache = new SelectorCache(2, 10);
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setSelectorCache(cache);
+
+        final SelectorList a = parser.parseSelectors("a");
+        parser.parseSelectors("b");
+        assertSame(a, parser.parseSelectors("a"));
+
+        // b is evicted, a was used
+        parser.parseSelectors("c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, parser.parseSelectors("a"));
+        assertEquals(2, cache.getHits());
+
+        parser.parseSelectors("b");
+        assertEquals(4, cache.getMisses());
+
+        // longer selectors are not cached
+        parser.parseSelectors("div > p > span > a > b");
+        parser.parseSelectors("div > p > span > a > b");
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sharedByThreads() throws Exception {
+        final SelectorCache cache = new SelectorCache(8, 100);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                final int id = i % 16;
+                results.add(executor.submit(() -> {
+                    final CSSOMParser parser = new CSSOMParser();
+                    parser.setSelectorCache(cache);
+                    return parser.parseSelectors("div.c" + id + " > p").toString();
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("div.c" + i % 16 + " > p", results.get(i).get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(400, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 8);
+    }
+}
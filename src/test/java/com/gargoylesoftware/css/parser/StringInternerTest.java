@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for {@link StringInterner}.
+ *
+ * @author Ronald Brill
+ */
+public class StringInternerTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void intern() throws Exception {
+        final StringInterner interner = new StringInterner(100, 10);
+
+        final String color = new String("color");
+        assertSame(color, interner.intern(color));
+        assertSame(color, interner.intern(new String("color")));
+        assertEquals(1, interner.getHits());
+        assertEquals(1, interner.getMisses());
+
+        // too long
+        final String longName = new String("border-bottom-color");
+        assertNotSame(longName, interner.intern(new String("border-bottom-color")));
+        assertNull(interner.intern(null));
+
+        interner.clear();
+        assertNotSame(color, interner.intern(new String("color")));
+        interner.resetStatistics();
+        assertEquals(0, interner.getHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void propertyNames() throws Exception {
+        final StringInterner interner = new StringInterner();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStringInterner(interner);
+        assertSame(interner, parser.getStringInterner());
+
+        final CSSStyleSheetImpl sheet1 = parser.parseStyleSheet(new InputSource("a { color: red }"), null);
+        final CSSStyleSheetImpl sheet2 = parser.parseStyleSheet(new InputSource("b { color: blue }"), null);
+        assertSame(name(sheet1), name(sheet2));
+        assertSame(name(sheet1), parser.parseStyleDeclaration("color: green").getProperties().get(0).getName());
+
+        parser.setStringInterner(null);
+        final CSSStyleSheetImpl sheet3 = parser.parseStyleSheet(new InputSource("b { color: blue }"), null);
+        assertNotSame(name(sheet1), name(sheet3));
+    }
+
+    private static String name(final CSSStyleSheetImpl sheet) {
+        return ((CSSStyleRuleImpl) sheet.getCssRules().getRules().get(0)).getStyle().getProperties().get(0).getName();
+    }
+}
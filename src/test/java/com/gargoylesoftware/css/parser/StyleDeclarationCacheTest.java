@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.CSSStyleDeclarationImpl;
+import com.gargoylesoftware.css.dom.CSSValueImpl;
+import com.gargoylesoftware.css.dom.Property;
+
+/**
+ * Tests for {@link StyleDeclarationCache}.
+ *
+ * @author Ronald Brill
+ */
+public class StyleDeclarationCacheTest {
+
+    private static final String STYLE = "color: red; margin: 1px 2px !important; background: rgb(1, 2, 3)";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void hitsAndMisses() throws Exception {
+        final StyleDeclarationCache cache = new StyleDeclarationCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(cache);
+        assertSame(cache, parser.getStyleDeclarationCache());
+
+        final CSSStyleDeclarationImpl sd1 = parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd2 = parse(parser, STYLE);
+        assertTrue(sd1.isShared());
+        assertTrue(sd2.isShared());
+        assertEquals(STYLE, sd1.getCssText());
+        assertEquals(STYLE, sd2.getCssText());
+
+        parse(parser, "color: blue");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void readingDoesNotCopy() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(new StyleDeclarationCache());
+        parse(parser, STYLE);
+
+        final CSSStyleDeclarationImpl sd = parse(parser, STYLE);
+        assertEquals(3, sd.getLength());
+        assertEquals("1px 2px", sd.getPropertyValue("margin"));
+        assertEquals("important", sd.getPropertyPriority("margin"));
+        assertEquals("", sd.getPropertyPriority("color"));
+        assertEquals("", sd.getPropertyValue("width"));
+        assertEquals(STYLE, sd.toString());
+        assertEquals(parse(parser, STYLE), sd);
+        assertTrue(sd.isShared());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void modificationCopies() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(new StyleDeclarationCache());
+        final CSSStyleDeclarationImpl sd1 = parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd2 = parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd3 = parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd4 = parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd5 = parse(parser, STYLE);
+
+        sd1.setProperty("color", "blue", null);
+        assertFalse(sd1.isShared());
+        assertEquals("color: blue; margin: 1px 2px !important; background: rgb(1, 2, 3)", sd1.getCssText());
+
+        sd2.removeProperty("margin");
+        assertEquals("color: red; background: rgb(1, 2, 3)", sd2.getCssText());
+
+        final CSSValueImpl value = sd3.getPropertyCSSValue("margin");
+        assertFalse(sd3.isShared());
+        value.item(0).setDoubleValue(7);
+        assertEquals("7 2px", sd3.getPropertyValue("margin"));
+
+        final Property property = sd4.getPropertyDeclaration("color");
+        assertFalse(sd4.isShared());
+        property.setImportant(true);
+        assertEquals(1, property.getLocator().getLineNumber());
+        assertEquals(1, property.getLocator().getColumnNumber());
+
+        sd5.getProperties().clear();
+        assertEquals(0, sd5.getLength());
+
+        final CSSStyleDeclarationImpl sd6 = parse(parser, STYLE);
+        assertTrue(sd6.isShared());
+        assertEquals(STYLE, sd6.getCssText());
+        assertNotSame(sd6.getProperties().get(0), sd4.getProperties().get(0));
+        assertEquals("color: red", sd6.getProperties().get(0).toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void setCssTextReplacesShared() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(new StyleDeclarationCache());
+        parse(parser, STYLE);
+        final CSSStyleDeclarationImpl sd = parse(parser, STYLE);
+
+        sd.setCssText("width: 1px");
+        assertFalse(sd.isShared());
+        assertEquals("width: 1px", sd.getCssText());
+        assertEquals(STYLE, parse(parser, STYLE).getCssText());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsNotCached() throws Exception {
+        final StyleDeclarationCache cache = new StyleDeclarationCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(cache);
+
+        for (int i = 1; i <= 3; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            final CSSStyleDeclarationImpl sd = parse(parser, "color: red; width: ; top: 1px");
+            assertEquals("color: red; top: 1px", sd.getCssText());
+            assertFalse(sd.isShared());
+            assertEquals(1, errorHandler.getErrorCount());
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void notEmptyNotCached() throws Exception {
+        final StyleDeclarationCache cache = new StyleDeclarationCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleDeclarationCache(cache);
+
+        final CSSStyleDeclarationImpl sd = new CSSStyleDeclarationImpl(null);
+        sd.setProperty("width", "1px", null);
+        parser.parseStyleDeclaration(sd, "color: red");
+        assertEquals("width: 1px; color: red", sd.getCssText());
+        assertFalse(sd.isShared());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    private static CSSStyleDeclarationImpl parse(final CSSOMParser parser, final String style) throws Exception {
+        final CSSStyleDeclarationImpl sd = new CSSStyleDeclarationImpl(null);
+        parser.parseStyleDeclaration(sd, style);
+        return sd;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSMediaRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+
+/**
+ * Tests for {@link StyleSheetCache}.
+ *
+ * @author Ronald Brill
+ */
+public class StyleSheetCacheTest {
+
+    private static final String CSS = "@media print { p { color: red } }\n"
+            + "h1 { color: blue; font-size: 2em }\n"
+            + "div > p.x { margin: 0 auto }";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void copiedRules() throws Exception {
+        final StyleSheetCache cache = new StyleSheetCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleSheetCache(cache);
+        assertSame(cache, parser.getStyleSheetCache());
+
+        final InputSource source1 = new InputSource(CSS);
+        source1.setMedia("screen");
+        source1.setTitle("one");
+        final CSSStyleSheetImpl sheet1 = parser.parseStyleSheet(source1, "http://a.example/x.css");
+        final CSSStyleSheetImpl sheet2 = parser.parseStyleSheet(new InputSource(CSS), "http://b.example/x.css");
+
+        assertNotSame(sheet1, sheet2);
+        assertNotSame(sheet1.getCssRules(), sheet2.getCssRules());
+        assertNotSame(sheet1.getCssRules().getRules().get(1), sheet2.getCssRules().getRules().get(1));
+        final CSSMediaRuleImpl media = (CSSMediaRuleImpl) sheet2.getCssRules().getRules().get(0);
+        assertSame(sheet2, media.getParentStyleSheet());
+        assertSame(sheet2, media.getCssRules().getRules().get(0).getParentStyleSheet());
+        assertSame(media, media.getCssRules().getRules().get(0).getParentRule());
+        assertEquals(sheet1.toString(), sheet2.toString());
+        assertEquals("http://a.example/x.css", sheet1.getHref());
+        assertEquals("http://b.example/x.css", sheet2.getHref());
+        assertEquals("screen", sheet1.getMedia().getMediaText());
+        assertEquals("", sheet2.getMedia().getMediaText());
+        assertEquals("one", sheet1.getTitle());
+        assertNull(sheet2.getTitle());
+        assertEquals(new CSSOMParser().parseStyleSheet(new InputSource(CSS), null).toString(), sheet2.toString());
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getWeight() > 0);
+
+        // not cacheable
+        parser.parseStyleSheet(new InputSource(new StringReader(CSS)), null);
+        assertEquals(1, cache.getMisses());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void independentCopies() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleSheetCache(new StyleSheetCache());
+
+        final CSSStyleSheetImpl sheet1 = parser.parseStyleSheet(new InputSource(CSS), null);
+        final CSSStyleSheetImpl sheet2 = parser.parseStyleSheet(new InputSource(CSS), null);
+        final String expected = sheet2.toString();
+
+        sheet1.insertRule("span { color: green }", 3);
+        sheet1.deleteRule(2);
+        final CSSMediaRuleImpl media = (CSSMediaRuleImpl) sheet1.getCssRules().getRules().get(0);
+        media.insertRule("b { top: 0 }", 0);
+        ((CSSStyleRuleImpl) media.getCssRules().getRules().get(1)).getStyle().setProperty("color", "green", "");
+        final CSSStyleRuleImpl h1 = (CSSStyleRuleImpl) sheet1.getCssRules().getRules().get(1);
+        h1.setSelectorText("h2");
+        h1.getStyle().getPropertyCSSValue("font-size").setDoubleValue(3);
+        h1.getStyle().getPropertyCSSValue("color").setCssText("red");
+        assertEquals("@media print {\n  b { top: 0; }\n  p { color: green; }\n}\r\n"
+                + "h2 { color: red; font-size: 3; }\r\n"
+                + "span { color: green; }", sheet1.toString());
+
+        assertEquals(expected, sheet2.toString());
+        assertEquals(expected, parser.parseStyleSheet(new InputSource(CSS), null).toString());
+
+        sheet2.getCssRules().getRules().get(2).setCssText("div { margin: 1px }");
+        assertEquals(expected, parser.parseStyleSheet(new InputSource(CSS), null).toString());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void errorsReplayed() throws Exception {
+        final StyleSheetCache cache = new StyleSheetCache();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleSheetCache(cache);
+
+        final String css = "h1 { top: 0 }\np { color: red; width: ; top: 1px }";
+        final ErrorHandler expected = new ErrorHandler();
+        final CSSOMParser uncached = new CSSOMParser();
+        uncached.setErrorHandler(expected);
+        final String expectedCss = uncached.parseStyleSheet(new InputSource(css), null).toString();
+        assertEquals(1, expected.getErrorCount());
+
+        for (int i = 0; i < 3; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), null);
+            assertEquals(expectedCss, sheet.toString());
+            assertEquals(1, errorHandler.getErrorCount());
+            assertEquals(expected.getErrorMessage(), errorHandler.getErrorMessage());
+            assertEquals(expected.getErrorLines(), errorHandler.getErrorLines());
+            assertEquals(expected.getErrorColumns(), errorHandler.getErrorColumns());
+        }
+        assertEquals(2, cache.getHits());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void keys() throws Exception {
+        final StyleSheetCache cache = new StyleSheetCache(1024, 10);
+
+        final String key = cache.key(new InputSource("p { x: 1 }"));
+        assertNotNull(key);
+        assertTrue(key.matches("c[0-9a-f]{64}a"), key);
+        assertEquals(key, cache.key(new InputSource("--p { x: 1 }--", 2, 10)));
+        assertNotEquals(key, cache.key(new InputSource("p { x: 2 }")));
+        assertNotEquals(key, cache.key(new InputSource("p { x:  1 }".substring(0, 10))));
+
+        final byte[] bytes = "p { x: 1 }".getBytes(StandardCharsets.ISO_8859_1);
+        final String bytesKey = cache.key(new InputSource(bytes, 0, bytes.length));
+        assertNotNull(bytesKey);
+        assertNotEquals(key, bytesKey);
+        final InputSource latin1 = new InputSource(bytes, 0, bytes.length);
+        latin1.setEncoding("ISO-8859-1");
+        assertNotEquals(bytesKey, cache.key(latin1));
+
+        // too long
+        assertNull(cache.key(new InputSource("p { x: 10 }")));
+        assertNull(cache.key(new InputSource(new StringReader("p"))));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void evictedByWeight() throws Exception {
+        final String css1 = "a { color: red }";
+        final String css2 = "b { color: red }";
+        final String css3 = "c { color: red }";
+        final CSSOMParser parser = new CSSOMParser();
+        final long weight = StyleSheetCache.estimateSize(parser.parseStyleSheet(new InputSource(css1), null));
+
+        final StyleSheetCache cache = new StyleSheetCache(2 * weight, 100);
+        parser.setStyleSheetCache(cache);
+        parser.parseStyleSheet(new InputSource(css1), null);
+        parser.parseStyleSheet(new InputSource(css2), null);
+        parser.parseStyleSheet(new InputSource(css1), null);
+        assertEquals(1, cache.getHits());
+        assertEquals(2 * weight, cache.getWeight());
+
+        // b is evicted, a was used
+        parser.parseStyleSheet(new InputSource(css3), null);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        parser.parseStyleSheet(new InputSource(css1), null);
+        assertEquals(2, cache.getHits());
+
+        // heavier than the whole cache
+        parser.parseStyleSheet(new InputSource("d { color: red; top: 0; left: 0 }"), null);
+        assertEquals(2, cache.size());
+        assertEquals(2 * weight, cache.getWeight());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void lazyRules() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+
+        // the size is estimated without parsing the rules
+        final CSSStyleSheetImpl lazy = parser.parseStyleSheet(new InputSource(CSS), null);
+        final List<AbstractCSSRuleImpl> rules = lazy.getCssRules().getRules();
+        assertTrue(StyleSheetCache.estimateSize(lazy) > 0);
+        assertTrue(rules.get(1).isLazy());
+        assertTrue(rules.get(2).isLazy());
+        assertTrue(((CSSMediaRuleImpl) rules.get(0)).getCssRules().getRules().get(0).isLazy());
+
+        // cached style sheets are parsed at once
+        final StyleSheetCache cache = new StyleSheetCache();
+        parser.setStyleSheetCache(cache);
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(CSS), null);
+        assertEquals(1, cache.size());
+        for (final AbstractCSSRuleImpl rule : sheet.getCssRules().getRules()) {
+            assertFalse(rule.isLazy());
+        }
+        assertEquals(StyleSheetCache.estimateSize(new CSSOMParser().parseStyleSheet(new InputSource(CSS), null)),
+                cache.getWeight());
+        assertEquals(sheet.toString(), lazy.toString());
+    }
+
+    /**
+     * @param directory the store directory
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void secondTier(@TempDir final Path directory) throws Exception {
+        final FileStyleSheetStore store = new FileStyleSheetStore(directory.resolve("cache"));
+        final StyleSheetCache cache1 = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000, store);
+        assertSame(store, cache1.getSecondTier());
+
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setStyleSheetCache(cache1);
+        final String css = CSS + "\np { width: ; }";
+        final String expected = parser.parseStyleSheet(new InputSource(css), null).toString();
+        assertEquals(1, cache1.getMisses());
+        assertEquals(0, cache1.getSecondTierFailures());
+
+        // a new process
+        final StyleSheetCache cache2 = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000,
+                new FileStyleSheetStore(directory.resolve("cache")));
+        parser.setStyleSheetCache(cache2);
+        for (int i = 0; i < 2; i++) {
+            final ErrorHandler errorHandler = new ErrorHandler();
+            parser.setErrorHandler(errorHandler);
+            final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), "x.css");
+            assertEquals(expected, sheet.toString());
+            assertEquals("x.css", sheet.getHref());
+            assertEquals(1, errorHandler.getErrorCount());
+        }
+        assertEquals(0, cache2.getMisses());
+        assertEquals(1, cache2.getSecondTierHits());
+        assertEquals(1, cache2.getHits());
+
+        // broken entries are parsed again
+        final String key = cache2.key(new InputSource(css));
+        Files.write(directory.resolve("cache").resolve(key + ".csscache"), new byte[] {1, 2, 3});
+        final StyleSheetCache cache3 = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000, store);
+        parser.setStyleSheetCache(cache3);
+        parser.setErrorHandler(null);
+        assertEquals(expected, parser.parseStyleSheet(new InputSource(css), null).toString());
+        assertEquals(1, cache3.getSecondTierFailures());
+        assertEquals(1, cache3.getMisses());
+    }
+
+    /**
+     * @param directory the store directory
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void secondTierLazyParsing(@TempDir final Path directory) throws Exception {
+        final StyleSheetCache cache = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000,
+                new FileStyleSheetStore(directory.resolve("cache")));
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setLazyParsing(true);
+        parser.setStyleSheetCache(cache);
+        final ErrorHandler errorHandler = new ErrorHandler();
+        parser.setErrorHandler(errorHandler);
+
+        final String css = "h1 { color: red } h2 { color: ; background: } h3 { x: 1 }";
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheet(new InputSource(css), null);
+        assertEquals(2, errorHandler.getErrorCount());
+        assertEquals(0, cache.getSecondTierFailures());
+        assertFalse(sheet.getCssRules().getRules().get(0).isLazy());
+
+        final StyleSheetCache cache2 = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000,
+                new FileStyleSheetStore(directory.resolve("cache")));
+        parser.setStyleSheetCache(cache2);
+        final ErrorHandler errorHandler2 = new ErrorHandler();
+        parser.setErrorHandler(errorHandler2);
+        assertEquals(sheet.toString(), parser.parseStyleSheet(new InputSource(css), null).toString());
+        assertEquals(1, cache2.getSecondTierHits());
+        assertEquals(2, errorHandler2.getErrorCount());
+        assertEquals(2, errorHandler.getErrorCount());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void secondTierClasses() throws Exception {
+        final Map<String, byte[]> entries = new HashMap<>();
+        final StyleSheetStore store = new StyleSheetStore() {
+            @Override
+            public byte[] load(final String key) {
+                return entries.get(key);
+            }
+
+            @Override
+            public void store(final String key, final byte[] data) {
+                entries.put(key, data);
+            }
+        };
+
+        final String css = "@charset 'utf-8';\n"
+                + "@import 'x.css' screen;\n"
+                + "@media screen and (max-width: 10px) { p { color: rgb(1, 2, 3); x: hsl(1, 2%, 3%) } }\n"
+                + "@page :first { margin: 1px }\n"
+                + "@font-face { font-family: x }\n"
+                + "@foo bar;\n"
+                + "div:not(.a)::before, #i[x|=y] > b + c ~ d:lang(en), [a^=b][a$=c][a*=d][a~=e] "
+                + "{ clip: rect(1px, 2px, 3px, 4px); content: counter(a) !important }\n"
+                + "p { width: ; }";
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(new ErrorHandler());
+        parser.setStyleSheetCache(new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000, store));
+        final String expected = parser.parseStyleSheet(new InputSource(css), null).toString();
+        assertEquals(1, entries.size());
+
+        final StyleSheetCache cache = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000, store);
+        parser.setStyleSheetCache(cache);
+        final ErrorHandler errorHandler = new ErrorHandler();
+        parser.setErrorHandler(errorHandler);
+        assertEquals(expected, parser.parseStyleSheet(new InputSource(css), null).toString());
+        assertEquals(1, errorHandler.getErrorCount());
+        assertEquals(1, cache.getSecondTierHits());
+        assertEquals(0, cache.getSecondTierFailures());
+
+        // other classes are not read back
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(1);
+            out.writeObject(new HashMap<String, String>());
+        }
+        entries.put(cache.key(new InputSource(css)), bytes.toByteArray());
+        final StyleSheetCache cache2 = new StyleSheetCache(StyleSheetCache.DEFAULT_MAX_WEIGHT, 1000, store);
+        parser.setStyleSheetCache(cache2);
+        parser.setErrorHandler(null);
+        assertEquals(expected, parser.parseStyleSheet(new InputSource(css), null).toString());
+        assertEquals(1, cache2.getSecondTierFailures());
+        assertEquals(1, cache2.getMisses());
+    }
+}
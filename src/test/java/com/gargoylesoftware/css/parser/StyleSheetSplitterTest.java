@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.dom.Property;
+
+/**
+ * Tests for {@link StyleSheetSplitter} and the parallel parsing of style sheets.
+ *
+ * @author Ronald Brill
+ */
+public class StyleSheetSplitterTest {
+
+    private static ForkJoinPool POOL_;
+
+    /**
+     * Creates the pool.
+     */
+    @BeforeAll
+    public static void createPool() {
+        POOL_ = new ForkJoinPool(4);
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @AfterAll
+    public static void shutdownPool() {
+        POOL_.shutdown();
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void split() throws Exception {
+        final String css = "a { x: '}' }\n/* } */ b { y: url(}) }\r\n@media print { c { z: 0 } }\n d { }";
+        final List<StyleSheetSplitter.Part> parts = StyleSheetSplitter.split(css, 0, css.length(), 10, 1);
+        assertNotNull(parts);
+        assertEquals(4, parts.size());
+
+        assertPart(css, parts.get(0), "a { x: '}' }", 1, 1);
+        assertPart(css, parts.get(1), "\n/* } */ b { y: url(}) }", 1, 13);
+        assertPart(css, parts.get(2), "\r\n@media print { c { z: 0 } }", 2, 24);
+        assertPart(css, parts.get(3), "\n d { }", 3, 28);
+
+        // the minimum part length
+        assertEquals(2, StyleSheetSplitter.split(css, 0, css.length(), 10, 30).size());
+        assertEquals(1, StyleSheetSplitter.split(css, 0, css.length(), 1, 1).size());
+
+        // offset
+        final List<StyleSheetSplitter.Part> offsetParts = StyleSheetSplitter.split("xx" + css + "xx", 2, css.length(), 10, 1);
+        assertEquals(4, offsetParts.size());
+        assertEquals(2, offsetParts.get(0).getOffset());
+        assertEquals(3, offsetParts.get(3).getLine());
+        assertEquals(28, offsetParts.get(3).getColumn());
+    }
+
+    private static void assertPart(final String css, final StyleSheetSplitter.Part part, final String expected,
+            final int line, final int column) {
+        assertEquals(expected, css.substring(part.getOffset(), part.getOffset() + part.getLength()));
+        assertEquals(line, part.getLine());
+        assertEquals(column, part.getColumn());
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void notSplit() throws Exception {
+        assertNotSplit("a { } } b { }");
+        assertNotSplit("a { } @import 'x.css'; b { }");
+        assertNotSplit("a { } @charset 'utf-8'; b { }");
+        assertNotSplit("@import 'x.css' { } b { }");
+        assertNotSplit("a { x: 'abc\n } b { }");
+        assertNotSplit("a { x: 'abc } b { }");
+
+        assertEquals(2, StyleSheetSplitter.split("@import 'x.css'; a { } b { }", 0, 28, 10, 1).size());
+
+        // no part starts with an invalid token
+        assertEquals(2, StyleSheetSplitter.split("a { } 1 { } b { } @ { } -1 { }", 0, 30, 10, 1).size());
+    }
+
+    private static void assertNotSplit(final String css) {
+        assertNull(StyleSheetSplitter.split(css, 0, css.length(), 10, 1), css);
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parallel() throws Exception {
+        assertParallel("a { color: red }\n\n  b { color: ; top: 0 }\n@media print { c { left: 0 } }\td { x: }");
+        assertParallel("@import 'x.css';\na { color: red }\nb { color: blue }\n@font-face { src: url(x) }");
+
+        // the parser gives up
+        assertParallel("a { color: red }\nb { color: blue }\n@media x { c { top: 0 } }\nd { top: 0 }\n@ { }");
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void parallelResources() throws Exception {
+        final String[] resources = {"bad.css", "basic.css", "dojo.css", "html40.css", "test.css", "yuck.css",
+            "realworld/all.css", "realworld/bootstrap_4_0_0.css", "realworld/cargo.css",
+            "realworld/compass-homestyle.css", "realworld/home.built.css", "realworld/load.php.css",
+            "realworld/mui.css", "realworld/style-V5-11.css", "realworld/style.csx.css", "realworld/www.css"};
+        for (final String resource : resources) {
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream(resource)) {
+                assertParallel(IOUtils.toString(is, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sequentialFallback() throws Exception {
+        final CSSOMParser parser = new CSSOMParser();
+        assertNull(parser.parseStyleSheetParallel(new InputSource("a { } } b { }"), null, POOL_, 1));
+        assertNull(parser.parseStyleSheetParallel(new InputSource("a { }"), null, POOL_, 1));
+
+        // small style sheets are parsed sequentially
+        parser.setForkJoinPool(POOL_);
+        assertSame(POOL_, parser.getForkJoinPool());
+        assertEquals("a { x: 1; }\r\nb { y: 2; }", parser.parseStyleSheet(new InputSource("a{x:1}b{y:2}"), null).toString());
+    }
+
+    private void assertParallel(final String css) throws Exception {
+        final ErrorHandler expectedErrors = new ErrorHandler();
+        final CSSOMParser sequentialParser = new CSSOMParser();
+        sequentialParser.setErrorHandler(expectedErrors);
+        final CSSStyleSheetImpl expected = sequentialParser.parseStyleSheet(new InputSource(css), "x.css");
+
+        final ErrorHandler errors = new ErrorHandler();
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(errors);
+        final InputSource source = new InputSource(css);
+        source.setMedia("screen");
+        final CSSStyleSheetImpl sheet = parser.parseStyleSheetParallel(source, "x.css", POOL_, 1);
+        assertNotNull(sheet);
+
+        assertEquals(expected.toString(), sheet.toString());
+        assertEquals("x.css", sheet.getHref());
+        assertEquals("screen", sheet.getMedia().getMediaText());
+        assertEquals(expectedErrors.getErrorCount(), errors.getErrorCount());
+        assertEquals(expectedErrors.getErrorMessage(), errors.getErrorMessage());
+        assertEquals(expectedErrors.getErrorLines(), errors.getErrorLines());
+        assertEquals(expectedErrors.getErrorColumns(), errors.getErrorColumns());
+        assertEquals(expectedErrors.getWarningMessage(), errors.getWarningMessage());
+        assertEquals(expectedErrors.getWarningLines(), errors.getWarningLines());
+        assertEquals(expectedErrors.getFatalErrorMessage(), errors.getFatalErrorMessage());
+
+        final List<AbstractCSSRuleImpl> expectedRules = expected.getCssRules().getRules();
+        final List<AbstractCSSRuleImpl> rules = sheet.getCssRules().getRules();
+        assertEquals(expectedRules.size(), rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            final AbstractCSSRuleImpl rule = rules.get(i);
+            assertSame(sheet, rule.getParentStyleSheet());
+            assertLocator(expectedRules.get(i).getLocator(), rule.getLocator());
+            if (rule instanceof CSSStyleRuleImpl) {
+                final List<Property> expectedProperties =
+                        ((CSSStyleRuleImpl) expectedRules.get(i)).getStyle().getProperties();
+                final List<Property> properties = ((CSSStyleRuleImpl) rule).getStyle().getProperties();
+                for (int j = 0; j < properties.size(); j++) {
+                    assertLocator(expectedProperties.get(j).getLocator(), properties.get(j).getLocator());
+                }
+            }
+        }
+        assertTrue(rules.isEmpty() || rules.get(0).getLocator() != null);
+    }
+
+    private static void assertLocator(final Locator expected, final Locator locator) {
+        assertEquals(expected.getUri(), locator.getUri());
+        assertEquals(expected.getLineNumber(), locator.getLineNumber());
+        assertEquals(expected.getColumnNumber(), locator.getColumnNumber());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link TokenImageCache}.
+ *
+ * @author Ronald Brill
+ */
+public class TokenImageCacheTest {
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void chars() throws Exception {
+        final TokenImageCache cache = new TokenImageCache(0);
+        final char[] chars = "color: red; color: blue".toCharArray();
+
+        final String color = cache.get(chars, 0, 5);
+        assertEquals("color", color);
+        assertSame(color, cache.get(chars, 12, 5));
+        assertEquals("olor", cache.get(chars, 13, 4));
+
+        assertSame(cache.get(chars, 5, 1), new TokenImageCache().get(chars, 5, 1));
+        assertEquals("", cache.get(chars, 0, 0));
+        assertEquals("color: red; color: blue", cache.get(chars, 0, chars.length));
+
+        final char[] nonAscii = "\u00e4\u00e4".toCharArray();
+        assertEquals("\u00e4", cache.get(nonAscii, 0, 1));
+        assertSame(cache.get(nonAscii, 0, 1), cache.get(nonAscii, 1, 1));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void sequence() throws Exception {
+        final TokenImageCache cache = new TokenImageCache(0);
+        final StringBuilder sequence = new StringBuilder("margin:0;margin:1");
+
+        final String margin = cache.get(sequence, 0, 6);
+        assertEquals("margin", margin);
+        assertSame(margin, cache.get(sequence, 9, 15));
+        assertEquals("0", cache.get(sequence, 7, 8));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void collision() throws Exception {
+        final TokenImageCache cache = new TokenImageCache(0);
+        // same hash code
+        final char[] chars = "AaBB".toCharArray();
+
+        final String first = cache.get(chars, 0, 2);
+        assertEquals("Aa", first);
+        assertEquals("BB", cache.get(chars, 2, 2));
+
+        final String second = cache.get(chars, 0, 2);
+        assertEquals("Aa", second);
+        assertNotSame(first, second);
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void ascii() throws Exception {
+        final TokenImageCache cache = new TokenImageCache(0);
+        final byte[] bytes = "p{}p \u00e4".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("p{", cache.getAscii(bytes, 0, 2));
+        assertSame(cache.getAscii(bytes, 0, 1), cache.getAscii(bytes, 3, 1));
+        assertNull(cache.getAscii(bytes, 4, 3));
+        assertNull(cache.getAscii(bytes, 5, 1));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void lazyTable() throws Exception {
+        final TokenImageCache cache = new TokenImageCache(2);
+        final char[] chars = "color: red; color: blue".toCharArray();
+
+        // the first images are not shared
+        final String color = cache.get(chars, 0, 5);
+        assertEquals("color", color);
+        assertNotSame(color, cache.get(chars, 12, 5));
+        // single chars don't count
+        assertSame(cache.get(chars, 5, 1), cache.get(chars, 5, 1));
+
+        final String shared = cache.get(chars, 0, 5);
+        assertSame(shared, cache.get(chars, 12, 5));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.CSSParseException;
+import com.gargoylesoftware.css.parser.InputSource;
+
+/**
+ * Tests for {@link AggregatingErrorHandler}.
+ *
+ * @author Ronald Brill
+ */
+public class AggregatingErrorHandlerTest {
+
+    private static final String CSS = "a { *zoom: 1; _height: 1px; color: red }\n"
+            + "b { *zoom: 1; _height: 1px }\n"
+            + "c { *zoom: 1; top: }\n"
+            + "d { *display: inline }";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void aggregate() throws Exception {
+        final ErrorHandler expected = new ErrorHandler();
+        final AggregatingErrorHandler handler = new AggregatingErrorHandler(10, expected);
+        final CSSOMParser parser = new CSSOMParser();
+        parser.setErrorHandler(handler);
+        parser.parseStyleSheet(new InputSource(CSS), null);
+
+        assertEquals(5, handler.getCount(AggregatingErrorHandler.Severity.ERROR));
+        assertEquals(0, handler.getCount(AggregatingErrorHandler.Severity.WARNING));
+        assertEquals(0, handler.getCount(AggregatingErrorHandler.Severity.FATAL_ERROR));
+
+        // the first occurrences are passed on
+        final List<AggregatingErrorHandler.Problem> problems = handler.getProblems();
+        assertEquals(expected.getErrorCount(), problems.size());
+        assertEquals(2, problems.size());
+        assertEquals(4, problems.get(0).getCount());
+        assertEquals(1, problems.get(1).getCount());
+        assertEquals("Error in declaration. '*' is not allowed as first char of a property.",
+                problems.get(0).getMessage());
+        assertEquals(1, problems.get(0).getException().getLineNumber());
+        assertEquals(AggregatingErrorHandler.Severity.ERROR, problems.get(0).getSeverity());
+        assertEquals(expected.getErrorMessage(), problems.get(0).getMessage() + " " + problems.get(1).getMessage());
+        assertEquals("ERROR [3:20] " + problems.get(1).getMessage() + " (1x)", problems.get(1).toString());
+
+        // the problems reported by the parser have no stack trace
+        assertEquals(0, problems.get(0).getException().getStackTrace().length);
+        assertEquals(0, problems.get(1).getException().getStackTrace().length);
+
+        handler.clear();
+        assertEquals(0, handler.getProblems().size());
+        assertEquals(0, handler.getCount(AggregatingErrorHandler.Severity.ERROR));
+    }
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void ring() throws Exception {
+        final AggregatingErrorHandler handler = new AggregatingErrorHandler(2, null);
+        for (int i = 0; i < 5; i++) {
+            handler.warning(new CSSParseException("w" + i, null, 1, i));
+        }
+        handler.warning(new CSSParseException("w4", null, 2, 1));
+        handler.fatalError(new CSSParseException("w4", null, 3, 1));
+
+        final List<AggregatingErrorHandler.Problem> problems = handler.getProblems();
+        assertEquals(2, problems.size());
+        assertEquals("w4", problems.get(0).getMessage());
+        assertEquals(2, problems.get(0).getCount());
+        assertEquals(AggregatingErrorHandler.Severity.FATAL_ERROR, problems.get(1).getSeverity());
+        assertEquals(4, handler.getDroppedProblems());
+        assertEquals(6, handler.getCount(AggregatingErrorHandler.Severity.WARNING));
+        assertEquals("AggregatingErrorHandler[warnings=6, errors=0, fatalErrors=1, distinct=2, dropped=4]",
+                handler.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> new AggregatingErrorHandler(0, null));
+    }
+}
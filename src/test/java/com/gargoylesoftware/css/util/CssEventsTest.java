@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019-2021 Ronald Brill.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.css.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import com.gargoylesoftware.css.ErrorHandler;
+import com.gargoylesoftware.css.dom.AbstractCSSRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleRuleImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl.CSSStyleSheetRuleIndex;
+import com.gargoylesoftware.css.dom.CSSStyleSheetImpl.SelectorEntry;
+import com.gargoylesoftware.css.dom.MediaListImpl;
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.InputSource;
+import com.gargoylesoftware.css.parser.selector.Selector;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests for {@link CssEvents}.
+ *
+ * @author Ronald Brill
+ */
+public class CssEventsTest {
+
+    private static final String PREFIX = "com.gargoylesoftware.css.";
+
+    /**
+     * @throws Exception if any error occurs
+     */
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void events() throws Exception {
+        assertTrue(CssEvents.isSupported());
+
+        final Path file = Files.createTempFile("cssparser", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(PREFIX + "Parse");
+                recording.enable(PREFIX + "InsertRule");
+                recording.enable(PREFIX + "RuleIndexBuild");
+                recording.enable(PREFIX + "RuleIndexLookup");
+                recording.start();
+
+                final CSSOMParser parser = new CSSOMParser();
+                parser.setErrorHandler(new ErrorHandler());
+                final CSSStyleSheetImpl sheet = parser.parseStyleSheet(
+                        new InputSource("a { color: red }\nb { color: #12 }"), "http://example.com/a.css");
+                parser.parseStyleDeclaration("color: red; top: 0");
+                parser.parsePropertyValue("1px");
+                parser.parseSelectors("a, b > i");
+
+                sheet.insertRule("i { top: 0 }", 2);
+
+                // only built by buildRuleIndex() is recorded
+                sheet.setRuleIndex(new CSSStyleSheetRuleIndex());
+                final CSSStyleSheetRuleIndex index = sheet.buildRuleIndex(idx -> {
+                    for (final AbstractCSSRuleImpl rule : sheet.getCssRules().getRules()) {
+                        final CSSStyleRuleImpl styleRule = (CSSStyleRuleImpl) rule;
+                        for (final Selector selector : styleRule.getSelectors()) {
+                            idx.addOtherSelector(selector, styleRule);
+                        }
+                    }
+                    idx.addMedia(new MediaListImpl(null));
+                });
+                assertSame(index, sheet.getRuleIndex());
+
+                // the lookup only, not the iteration
+                final Iterator<SelectorEntry> entries = index.getSelectorEntriesIteratorFor("b", null);
+                entries.next();
+                index.getSelectorEntriesIteratorFor("a", new String[] {"x", "y"});
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            final List<String> parses = new ArrayList<>();
+            final List<String> others = new ArrayList<>();
+            for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                final String name = event.getEventType().getName();
+                if ((PREFIX + "Parse").equals(name)) {
+                    parses.add(event.getString("kind") + " " + event.getString("href")
+                            + " " + event.getLong("inputLength") + " " + event.getInt("ruleCount")
+                            + " " + event.getInt("errorCount"));
+                }
+                else if ((PREFIX + "InsertRule").equals(name)) {
+                    others.add("insert " + event.getString("href") + " " + event.getLong("inputLength")
+                            + " " + event.getInt("ruleCount") + " " + event.getInt("errorCount"));
+                }
+                else if ((PREFIX + "RuleIndexBuild").equals(name)) {
+                    others.add("build " + event.getString("href") + " " + event.getInt("ruleCount"));
+                }
+                else if ((PREFIX + "RuleIndexLookup").equals(name)) {
+                    others.add("lookup " + event.getString("elementName") + " " + event.getInt("classCount")
+                            + " " + event.getInt("entryCount"));
+                }
+            }
+
+            assertEquals("[styleSheet http://example.com/a.css 33 2 1, styleDeclaration null 18 2 0, "
+                    + "propertyValue null 3 0 0, selectors null 8 2 0]", parses.toString());
+            assertEquals("[insert http://example.com/a.css 12 3 0, build http://example.com/a.css 3, "
+                    + "lookup b 0 3, lookup a 2 3]", others.toString());
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+}